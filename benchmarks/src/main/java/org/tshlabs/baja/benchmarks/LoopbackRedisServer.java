@@ -0,0 +1,93 @@
+package org.tshlabs.baja.benchmarks;
+
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Minimal in-process Redis server on the loopback interface used to measure
+ * client round trips without the variance of a real server.
+ * <p>
+ * {@code GET} returns a fixed value and every other command returns {@code +OK}.
+ * Replies are buffered until there are no more commands to read, so pipelined
+ * commands are answered with a single write the way a real server would.
+ */
+final class LoopbackRedisServer implements Closeable {
+
+    private static final byte[] OK = "+OK\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ServerSocket serverSocket;
+
+    private final byte[] value;
+
+    LoopbackRedisServer(int valueSize) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        final StringBuilder reply = new StringBuilder("$").append(valueSize).append("\r\n");
+        for (int i = 0; i < valueSize; i++) {
+            reply.append('x');
+        }
+        this.value = reply.append("\r\n").toString().getBytes(StandardCharsets.UTF_8);
+
+        final Thread acceptor = new Thread(this::accept, "loopback-redis-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket client = serverSocket.accept();
+                client.setTcpNoDelay(true);
+
+                final Thread handler = new Thread(() -> handle(client), "loopback-redis-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        try (Socket socket = client) {
+            final RespInputBuffer in = new RespInputBuffer(socket.getInputStream());
+            final OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            final RespParser parser = RespParser.getInstance();
+
+            while (true) {
+                parser.findType(in);
+                final List<Object> command = parser.readArray(in);
+                if ("GET".equals(command.get(0))) {
+                    out.write(value);
+                } else {
+                    out.write(OK);
+                }
+
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Client went away, nothing to do
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.tshlabs.baja.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tshlabs.baja.protocol.RespArgument;
+import org.tshlabs.baja.protocol.RespEncoder;
+import org.tshlabs.baja.protocol.RespOutputBuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for encoding small and large commands with {@link RespEncoder},
+ * both into a new array and directly into a reusable {@link RespOutputBuffer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespEncoderBenchmark {
+
+    private final RespEncoder encoder = RespEncoder.getInstance();
+
+    private RespOutputBuffer buffer;
+
+    private List<List<String>> smallCommand;
+
+    private List<List<String>> largeCommand;
+
+    private List<List<String>> manyArgsCommand;
+
+    private List<List<RespArgument>> binaryCommand;
+
+    @Setup
+    public void setup() {
+        buffer = new RespOutputBuffer(NullOutputStream.INSTANCE);
+
+        smallCommand = Collections.singletonList(Arrays.asList("SET", "user:1234", "some value"));
+
+        final char[] value = new char[64 * 1024];
+        Arrays.fill(value, 'x');
+        largeCommand = Collections.singletonList(Arrays.asList("SET", "user:1234", new String(value)));
+
+        final List<String> mset = new ArrayList<>();
+        mset.add("MSET");
+        for (int i = 0; i < 100; i++) {
+            mset.add("key:" + i);
+            mset.add("value:" + i);
+        }
+        manyArgsCommand = Collections.singletonList(mset);
+
+        final byte[] bytes = new byte[1024];
+        Arrays.fill(bytes, (byte) 0xff);
+        binaryCommand = Collections.singletonList(Arrays.asList(
+            RespArgument.of("SET"), RespArgument.of("blob"), RespArgument.of(bytes)));
+    }
+
+    @Benchmark
+    public byte[] encodeSmallToArray() {
+        return encoder.encodeMulti(smallCommand);
+    }
+
+    @Benchmark
+    public int encodeSmallToBuffer() throws IOException {
+        return encodeToBuffer(smallCommand);
+    }
+
+    @Benchmark
+    public int encodeLargeToBuffer() throws IOException {
+        return encodeToBuffer(largeCommand);
+    }
+
+    @Benchmark
+    public int encodeManyArgsToBuffer() throws IOException {
+        return encodeToBuffer(manyArgsCommand);
+    }
+
+    @Benchmark
+    public int encodeBinaryToBuffer() throws IOException {
+        encoder.encodeRawMulti(binaryCommand, buffer);
+        final int size = buffer.size();
+        buffer.reset();
+        return size;
+    }
+
+    private int encodeToBuffer(List<List<String>> command) throws IOException {
+        encoder.encodeMulti(command, buffer);
+        final int size = buffer.size();
+        buffer.reset();
+        return size;
+    }
+
+    /**
+     * Stream that discards everything written to it, for commands too large
+     * to fit in the output buffer.
+     */
+    static final class NullOutputStream extends OutputStream {
+
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+            // nothing
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // nothing
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.tshlabs.baja.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing integers, bulk strings of several sizes, and nested
+ * arrays with {@link RespParser} reading from a {@link RespInputBuffer}.
+ * <p>
+ * Each benchmark parses a single reply from an in-memory stream that is
+ * rewound after every invocation, so no I/O is involved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespParserBenchmark {
+
+    private final RespParser parser = RespParser.getInstance();
+
+    private Replay integer;
+
+    private Replay nested;
+
+    @Setup
+    public void setup() {
+        integer = new Replay(":9223372036854775807\r\n");
+
+        // Ten arrays of ten elements each, similar to the reply from EXEC or XRANGE
+        final StringBuilder reply = new StringBuilder("*10\r\n");
+        for (int i = 0; i < 10; i++) {
+            reply.append("*10\r\n");
+            for (int j = 0; j < 5; j++) {
+                reply.append("$7\r\nfield:").append(j).append("\r\n");
+                reply.append(":").append(i * j).append("\r\n");
+            }
+        }
+        nested = new Replay(reply.toString());
+    }
+
+    @Benchmark
+    public long parseInteger() throws IOException {
+        parser.findType(integer.rewind());
+        return parser.readLong(integer.input);
+    }
+
+    @Benchmark
+    public String parseBulkString(BulkReply bulk) throws IOException {
+        parser.findType(bulk.reply.rewind());
+        return parser.readBulkString(bulk.reply.input);
+    }
+
+    @Benchmark
+    public byte[] parseBulkBytes(BulkReply bulk) throws IOException {
+        parser.findType(bulk.reply.rewind());
+        return parser.readBulkBytes(bulk.reply.input);
+    }
+
+    @Benchmark
+    public ByteBuffer parseBulkByteBuffer(BulkReply bulk) throws IOException {
+        parser.findType(bulk.reply.rewind());
+        return parser.readBulkByteBuffer(bulk.reply.input);
+    }
+
+    @Benchmark
+    public List<Object> parseNestedArray() throws IOException {
+        parser.findType(nested.rewind());
+        return parser.readArray(nested.input);
+    }
+
+    /**
+     * Bulk string reply of each size, kept separate from the other replies so that
+     * only the bulk string benchmarks are run once per size.
+     */
+    @State(Scope.Thread)
+    public static class BulkReply {
+
+        @Param({"16", "1024", "65536"})
+        public int bulkSize;
+
+        private Replay reply;
+
+        @Setup
+        public void setup() {
+            final char[] value = new char[bulkSize];
+            Arrays.fill(value, 'x');
+            reply = new Replay("$" + bulkSize + "\r\n" + new String(value) + "\r\n");
+        }
+    }
+
+    /**
+     * Single reply that can be read over and over again through the same buffer.
+     */
+    private static final class Replay {
+
+        private final ByteArrayInputStream source;
+
+        private final RespInputBuffer input;
+
+        private Replay(String reply) {
+            this.source = new ByteArrayInputStream(reply.getBytes(StandardCharsets.UTF_8));
+            this.input = new RespInputBuffer(source);
+        }
+
+        private RespInputBuffer rewind() {
+            // The previous invocation consumed the whole reply, so the buffer
+            // is empty and will refill from the start of the source.
+            source.reset();
+            return input;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.tshlabs.baja.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tshlabs.baja.Pipeline;
+import org.tshlabs.baja.RedisCommand;
+import org.tshlabs.baja.RedisConnection;
+import org.tshlabs.baja.SocketConnectionFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for complete command round trips through a {@link RedisConnection}
+ * against a {@link LoopbackRedisServer}, one command at a time and pipelined.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    private static final int PIPELINE_SIZE = 100;
+
+    @Param({"16", "4096"})
+    public int valueSize;
+
+    private String value;
+
+    private LoopbackRedisServer server;
+
+    private RedisConnection connection;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Send values of the same size as the ones GET returns
+        final StringBuilder builder = new StringBuilder(valueSize);
+        for (int i = 0; i < valueSize; i++) {
+            builder.append('x');
+        }
+
+        value = builder.toString();
+        server = new LoopbackRedisServer(valueSize);
+        connection = new SocketConnectionFactory("127.0.0.1", server.getPort()).create();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    public String set() {
+        return RedisCommand.cmd("SET")
+            .arg("user:1234")
+            .arg(value)
+            .query(connection)
+            .asString();
+    }
+
+    @Benchmark
+    public String get() {
+        return RedisCommand.cmd("GET")
+            .arg("user:1234")
+            .query(connection)
+            .asString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_SIZE)
+    public void pipelinedGet(Blackhole bh) {
+        final Pipeline pipeline = connection.pipeline();
+        for (int i = 0; i < PIPELINE_SIZE; i++) {
+            bh.consume(RedisCommand.cmd("GET").arg("user:1234").queue(pipeline).asString());
+        }
+
+        pipeline.execute();
+    }
+}
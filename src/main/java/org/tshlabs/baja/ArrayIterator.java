@@ -0,0 +1,139 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.protocol.RespHandler;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator over the elements of an "array" response that parses each element
+ * from the connection only when it is requested, so that arrays with millions
+ * of elements don't need to fit in memory at once.
+ * <p>
+ * Elements have the same types as those returned by {@link RedisConnection#readArray()},
+ * except that error elements are returned as {@link org.tshlabs.baja.protocol.RespErrResponse}
+ * instances. Nested arrays are read in their entirety when they are reached. A null
+ * array has no elements.
+ * <p>
+ * No other responses can be read from the connection until every element has
+ * been consumed. Callers that stop early must {@link #close()} the iterator,
+ * which reads and discards the remaining elements without creating objects
+ * for them so that the connection can be used again.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+public class ArrayIterator implements Iterator<Object>, Closeable {
+
+    /**
+     * Handler that ignores everything, used to skip over elements.
+     */
+    private static final RespHandler DISCARD = new RespHandler() {
+        @Override
+        public void onArrayStart(long length) {
+        }
+
+        @Override
+        public void onBulk(byte[] bytes, int offset, int length) {
+        }
+
+        @Override
+        public void onSimpleString(byte[] bytes, int offset, int length) {
+        }
+
+        @Override
+        public void onInteger(long value) {
+        }
+
+        @Override
+        public void onError(String message) {
+        }
+
+        @Override
+        public void onNull() {
+        }
+    };
+
+    private final RedisConnection connection;
+
+    private final long size;
+
+    private long remaining;
+
+    /**
+     * Construct a new iterator over the given number of elements that have not
+     * yet been read from the connection.
+     *
+     * @param connection Connection to read elements from
+     * @param size       Number of elements in the array, negative for a null array
+     */
+    ArrayIterator(RedisConnection connection, long size) {
+        this.connection = Objects.requireNonNull(connection);
+        this.size = Math.max(size, 0);
+        this.remaining = this.size;
+    }
+
+    /**
+     * @return Total number of elements in the array, including any that have
+     * already been consumed
+     */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    /**
+     * Read the next element of the array from the connection.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return The next element
+     * @throws NoSuchElementException If there are no more elements
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If there was an I/O error
+     */
+    @Override
+    public Object next() {
+        if (remaining <= 0) {
+            throw new NoSuchElementException();
+        }
+
+        remaining--;
+        return connection.readReply();
+    }
+
+    /**
+     * Get a sequential {@code Stream} of the remaining elements. Closing the stream
+     * closes this iterator.
+     *
+     * @return Stream of remaining elements
+     */
+    public Stream<Object> stream() {
+        final Spliterator<Object> spliterator = Spliterators.spliterator(
+            this, remaining, Spliterator.ORDERED | Spliterator.SIZED);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Read and discard any elements that have not been consumed yet.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If there was an I/O error
+     */
+    @Override
+    public void close() {
+        while (remaining > 0) {
+            remaining--;
+            connection.readReply(DISCARD);
+        }
+    }
+}
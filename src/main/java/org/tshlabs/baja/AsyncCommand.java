@@ -0,0 +1,237 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Class that represents the future result of sending a previously constructed
+ * {@link RedisCommand} instance using an {@link AsyncRedisConnection} instance.
+ * <p>
+ * The command is not sent until one of the methods for reading the result is
+ * called, so exactly one of them should be called for each instance. Each
+ * returned future is completed on the event loop thread of the connection,
+ * so any dependent stages that block should use one of the {@code *Async}
+ * variants of {@link CompletableFuture} methods.
+ * <p>
+ * This class is thread safe.
+ */
+public class AsyncCommand {
+
+    private final AsyncRedisConnection connection;
+    private final RedisCommand command;
+
+    AsyncCommand(AsyncRedisConnection connection, RedisCommand command) {
+        this.connection = Objects.requireNonNull(connection);
+        this.command = Objects.requireNonNull(command);
+    }
+
+    /**
+     * Send the command and get a future for the results as a Java {@code String},
+     * which may be a "simple string" or "bulk string" on the Redis Server side.
+     * <p>
+     * The future is completed exceptionally with a {@link BajaTypeMismatchException}
+     * if the result was not a string type, a {@link org.tshlabs.baja.exceptions.BajaProtocolErrorException}
+     * if the Redis server responded with an error, or a {@link org.tshlabs.baja.exceptions.BajaResourceException}
+     * if there was an I/O error.
+     *
+     * @return Future for the command results as a string
+     */
+    public CompletableFuture<String> asString() {
+        return send(reply -> cast(reply, String.class, true));
+    }
+
+    /**
+     * Send the command and get a future for the results as a Java {@code long},
+     * which corresponds to the "integer" type on the Redis Server side.
+     * <p>
+     * The future is completed exceptionally with a {@link BajaTypeMismatchException}
+     * if the result was not an integer type, a {@link org.tshlabs.baja.exceptions.BajaProtocolErrorException}
+     * if the Redis server responded with an error, or a {@link org.tshlabs.baja.exceptions.BajaResourceException}
+     * if there was an I/O error.
+     *
+     * @return Future for the command results as a long
+     */
+    public CompletableFuture<Long> asLong() {
+        return send(reply -> cast(reply, Long.class, false));
+    }
+
+    /**
+     * Send the command and get a future for the results as a {@code List} of objects.
+     * <p>
+     * The actual types of the objects is undefined and should be known by the caller.
+     * The future is completed exceptionally in the same cases as {@link #asString()}.
+     *
+     * @return Future for the command results as a list
+     */
+    public CompletableFuture<List<Object>> asArray() {
+        return send(AsyncCommand::toList);
+    }
+
+    /**
+     * Send the command and get a future for the results as a {@code Map} of objects,
+     * which may be a "map" (RESP3) or an array of alternating keys and values (RESP2)
+     * on the Redis Server side.
+     * <p>
+     * The actual types of the keys and values is undefined and should be known by
+     * the caller. The future is completed exceptionally in the same cases as
+     * {@link #asString()}.
+     *
+     * @return Future for the command results as a map
+     */
+    public CompletableFuture<Map<Object, Object>> asMap() {
+        return send(AsyncCommand::toMap);
+    }
+
+    /**
+     * Send the command and get a future for the results as a {@code List} of
+     * {@code String}s.
+     * <p>
+     * Each entry in the list of results is converted to a {@code String} from whatever
+     * its original type was using {@code String#valueOf}. Null values will be preserved.
+     * The future is completed exceptionally in the same cases as {@link #asString()}.
+     *
+     * @return Future for the command results as a list of strings
+     */
+    public CompletableFuture<List<String>> asStringArray() {
+        return send(reply -> {
+            final List<?> res = toList(reply);
+            if (res == null) {
+                return null;
+            }
+
+            return res.stream()
+                .map(o -> o == null ? null : String.valueOf(o))
+                .collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Send the command and get a future for the results as an {@code Object}.
+     * <p>
+     * This may be useful for Redis commands that return multiple types based on arguments
+     * supplied to the commands. In this case, it is up to the caller of this method to
+     * inspect the results and determine the correct course of action.
+     *
+     * @return Future for the command results as an object
+     */
+    public CompletableFuture<Object> asObject() {
+        return send(Function.identity());
+    }
+
+    /**
+     * Send the command and discard the results once they are received.
+     * <p>
+     * Note that if the result of the command was an error from the Redis server
+     * the returned future will still be completed exceptionally with a
+     * {@link org.tshlabs.baja.exceptions.BajaProtocolErrorException}.
+     *
+     * @return Future completed once the results of the command have been received
+     */
+    public CompletableFuture<Void> discard() {
+        return send(reply -> null);
+    }
+
+    // VisibleForTesting
+    <T> CompletableFuture<T> send(Function<Object, T> converter) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        try {
+            sendTo(future, converter);
+        } catch (RuntimeException e) {
+            // The command is encoded on this thread so reading a streamed argument
+            // may fail here, but callers only expect failures through the future
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private <T> void sendTo(CompletableFuture<T> future, Function<Object, T> converter) {
+        connection.send(command.getRawArgs(), new ReplyHandler() {
+            @Override
+            public void onReply(Object reply) {
+                try {
+                    future.complete(converter.apply(reply));
+                } catch (RuntimeException e) {
+                    // Anything thrown here would be swallowed by the connection
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(BajaRuntimeException cause) {
+                future.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * Convert an array, or a RESP3 set or map, to a list in the same way as
+     * {@link RedisConnection#readArray()}.
+     */
+    @SuppressWarnings("unchecked")
+    static List<Object> toList(Object reply) {
+        if (reply instanceof Set) {
+            return new ArrayList<>((Set<Object>) reply);
+        }
+
+        if (reply instanceof Map) {
+            final List<Object> out = new ArrayList<>();
+            ((Map<Object, Object>) reply).forEach((k, v) -> {
+                out.add(k);
+                out.add(v);
+            });
+            return out;
+        }
+
+        return (List<Object>) cast(reply, List.class, true);
+    }
+
+    /**
+     * Convert a RESP3 map, or an array of alternating keys and values, to a map in
+     * the same way as {@link RedisConnection#readMap()}.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<Object, Object> toMap(Object reply) {
+        if (!(reply instanceof List)) {
+            return (Map<Object, Object>) cast(reply, Map.class, true);
+        }
+
+        final List<?> pairs = (List<?>) reply;
+        if (pairs.size() % 2 != 0) {
+            throw new BajaTypeMismatchException(
+                "Unexpected number of elements for map. Expected an even number, got " + pairs.size());
+        }
+
+        final Map<Object, Object> out = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.size(); i += 2) {
+            out.put(pairs.get(i), pairs.get(i + 1));
+        }
+
+        return out;
+    }
+
+    // VisibleForTesting
+    static <T> T cast(Object reply, Class<T> type, boolean nullable) {
+        if (reply == null && nullable) {
+            return null;
+        }
+
+        if (!type.isInstance(reply)) {
+            throw new BajaTypeMismatchException("Expected result of type " + type.getSimpleName() +
+                ", got " + (reply == null ? "null" : reply.getClass().getSimpleName()));
+        }
+
+        return type.cast(reply);
+    }
+}
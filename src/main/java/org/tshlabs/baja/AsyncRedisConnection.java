@@ -0,0 +1,382 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+import org.tshlabs.baja.protocol.RespArgument;
+import org.tshlabs.baja.protocol.RespEncoder;
+import org.tshlabs.baja.protocol.RespErrResponse;
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespParser;
+import org.tshlabs.baja.protocol.RespPush;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Class for sending commands to a Redis server over a non-blocking
+ * {@link SocketChannel} and handling the responses asynchronously.
+ * <p>
+ * All reads and writes are performed by a {@link RedisEventLoop}, which may be
+ * shared by many connections so that a single thread can service all of them.
+ * Replies are parsed only once they have been completely received, no matter
+ * how many reads it takes for that to happen, and are dispatched to the
+ * {@link ReplyHandler} for each command in the order the commands were sent.
+ * <p>
+ * Commands may be sent from any number of threads at once. Commands are
+ * encoded on the sending thread and then handed to the event loop, which
+ * writes every command that has accumulated since it last ran using a single
+ * gathering write. Under concurrent load this automatically pipelines
+ * commands from many threads, needing far fewer system calls and packets than
+ * writing each command on its own.
+ * <p>
+ * The socket channel must already be connected and is expected to be managed
+ * outside of the connection apart from being closed by {@link #close()}.
+ * <p>
+ * This class is thread safe.
+ */
+public class AsyncRedisConnection implements Closeable {
+
+    // Most platforms limit the number of buffers in a single gathering write to 1024
+    private static final int MAX_WRITE_BATCH = 1024;
+
+    private final SocketChannel channel;
+
+    private final RedisEventLoop loop;
+
+    private final RespEncoder encoder;
+
+    private final RespParser parser;
+
+    // Commands sent but not yet picked up by the event loop
+    private final Queue<Command> submitted = new ConcurrentLinkedQueue<>();
+
+    // Set when a task to pick up submitted commands has been scheduled on the
+    // event loop but has not started running yet
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private volatile Consumer<RespPush> pushListener;
+
+    // All of the state below is only accessed from the event loop thread
+
+    private final RespInputBuffer input;
+
+    private final Deque<ReplyHandler> pending = new ArrayDeque<>();
+
+    private final Deque<ByteBuffer> writes = new ArrayDeque<>();
+
+    private SelectionKey key;
+
+    private BajaRuntimeException failure;
+
+    /**
+     * Construct a new instance with the given connected socket channel, event
+     * loop, RESP encoder, and RESP parser.
+     *
+     * @param channel Connected channel to send commands and read responses with
+     * @param loop    Event loop to perform reads and writes on
+     * @param encoder RESP encoder for converting arguments to the wire format
+     * @param parser  RESP decoder for parsing results into Java objects
+     * @throws NullPointerException  If any arguments are null
+     * @throws BajaResourceException If the channel could not be made non-blocking or
+     *                               the event loop has stopped
+     */
+    public AsyncRedisConnection(
+        SocketChannel channel,
+        RedisEventLoop loop,
+        RespEncoder encoder,
+        RespParser parser) {
+        this.channel = Objects.requireNonNull(channel);
+        this.loop = Objects.requireNonNull(loop);
+        this.encoder = Objects.requireNonNull(encoder);
+        this.parser = Objects.requireNonNull(parser);
+        this.input = new RespInputBuffer(channel);
+
+        try {
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            throw new BajaResourceException(e);
+        }
+
+        try {
+            loop.execute(this::register);
+        } catch (RejectedExecutionException e) {
+            throw new BajaResourceException("Event loop is not running", e);
+        }
+    }
+
+    /**
+     * Encode and send the given arguments to the Redis server, invoking the
+     * handler once the reply has been received.
+     * <p>
+     * This is a non-blocking operation. The command is encoded on the calling
+     * thread and written by the event loop, along with any other commands sent
+     * around the same time. If the event loop has stopped, the handler is failed
+     * with a {@link BajaResourceException} instead.
+     *
+     * @param args    Command and arguments to send
+     * @param handler Callback for the reply to the command
+     * @throws NullPointerException If args or handler are null
+     */
+    public void send(List<RespArgument> args, ReplyHandler handler) {
+        Objects.requireNonNull(handler);
+        final ByteBuffer bytes = ByteBuffer.wrap(encoder.encodeRawMulti(
+            Collections.singletonList(Objects.requireNonNull(args))));
+
+        submitted.add(new Command(bytes, handler));
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                loop.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+                failSubmitted(new BajaResourceException("Event loop is not running", e));
+            }
+        }
+    }
+
+    /**
+     * Set a listener for RESP3 push frames, such as client side caching
+     * invalidations, received by this connection. Push frames are discarded
+     * if there is no listener.
+     * <p>
+     * The listener is called on the event loop thread and must not block.
+     *
+     * @param listener Listener for push frames or null to discard them
+     */
+    public void setPushListener(Consumer<RespPush> listener) {
+        this.pushListener = listener;
+    }
+
+    /**
+     * Close the underlying channel, failing any commands that have not received
+     * a reply yet with a {@link BajaResourceException}.
+     * <p>
+     * This is a non-blocking operation. The channel is closed by the event loop.
+     */
+    @Override
+    public void close() {
+        try {
+            loop.execute(() -> fail(new BajaResourceException("Connection closed")));
+        } catch (RejectedExecutionException e) {
+            // Commands that were pending were failed when the loop stopped
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // nothing
+            }
+
+            failSubmitted(new BajaResourceException("Connection closed"));
+        }
+    }
+
+    private void register() {
+        try {
+            key = loop.register(channel, SelectionKey.OP_READ, new Handler());
+        } catch (ClosedChannelException e) {
+            fail(new BajaResourceException(e));
+        }
+    }
+
+    private void drain() {
+        // Reset the flag before taking commands so that anything submitted while
+        // we're draining is guaranteed to schedule another run.
+        drainScheduled.set(false);
+
+        Command command;
+        while ((command = submitted.poll()) != null) {
+            if (failure != null) {
+                notifyFailure(command.handler, failure);
+                continue;
+            }
+
+            pending.add(command.handler);
+            writes.add(command.bytes);
+        }
+
+        // If there were already writes waiting for the socket to become writable
+        // the new ones will be written along with them.
+        if (failure == null && (key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        try {
+            while (!writes.isEmpty()) {
+                final ByteBuffer[] batch = nextBatch();
+                channel.write(batch);
+
+                for (ByteBuffer bytes : batch) {
+                    if (bytes.hasRemaining()) {
+                        // The socket buffer is full, wait until it's writable again
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+
+                    writes.poll();
+                }
+            }
+
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            fail(new BajaResourceException(e));
+        }
+    }
+
+    private ByteBuffer[] nextBatch() {
+        final ByteBuffer[] batch = new ByteBuffer[Math.min(writes.size(), MAX_WRITE_BATCH)];
+        int i = 0;
+        for (ByteBuffer bytes : writes) {
+            if (i == batch.length) {
+                break;
+            }
+
+            batch[i++] = bytes;
+        }
+
+        return batch;
+    }
+
+    private void read() {
+        try {
+            if (input.readAvailable() < 0) {
+                fail(new BajaResourceException("Connection closed by server"));
+                return;
+            }
+
+            while (input.hasCompleteReply()) {
+                final Object reply = parser.readReply(input);
+                if (reply instanceof RespPush) {
+                    notifyPush((RespPush) reply);
+                    continue;
+                }
+
+                final ReplyHandler handler = pending.poll();
+
+                if (handler == null) {
+                    fail(new BajaResourceException("Received reply without a pending command"));
+                    return;
+                }
+
+                dispatch(handler, reply);
+            }
+        } catch (IOException e) {
+            fail(new BajaResourceException(e));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            fail(new BajaResourceException("Invalid reply from server", e));
+        }
+    }
+
+    private static void dispatch(ReplyHandler handler, Object reply) {
+        if (reply instanceof RespErrResponse) {
+            notifyFailure(handler, RedisConnection.protocolError(((RespErrResponse) reply).getMessage()));
+            return;
+        }
+
+        try {
+            handler.onReply(reply);
+        } catch (RuntimeException e) {
+            // A misbehaving handler shouldn't break the connection for everyone else
+        }
+    }
+
+    private void notifyPush(RespPush push) {
+        final Consumer<RespPush> listener = pushListener;
+        if (listener == null) {
+            return;
+        }
+
+        try {
+            listener.accept(push);
+        } catch (RuntimeException e) {
+            // A misbehaving listener shouldn't break the connection for everyone else
+        }
+    }
+
+    private static void notifyFailure(ReplyHandler handler, BajaRuntimeException cause) {
+        try {
+            handler.onFailure(cause);
+        } catch (RuntimeException e) {
+            // A misbehaving handler shouldn't break the connection for everyone else
+        }
+    }
+
+    private void fail(BajaRuntimeException cause) {
+        if (failure != null) {
+            return;
+        }
+
+        failure = cause;
+        writes.clear();
+
+        if (key != null) {
+            key.cancel();
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing
+        }
+
+        ReplyHandler handler;
+        while ((handler = pending.poll()) != null) {
+            notifyFailure(handler, cause);
+        }
+
+        // Fail anything sent after the commands that were already pending
+        drain();
+    }
+
+    /**
+     * Fail commands that were sent but will never be picked up by the event loop
+     * because it has stopped. Safe to call from any thread.
+     */
+    private void failSubmitted(BajaRuntimeException cause) {
+        Command command;
+        while ((command = submitted.poll()) != null) {
+            notifyFailure(command.handler, cause);
+        }
+    }
+
+    private static final class Command {
+        private final ByteBuffer bytes;
+        private final ReplyHandler handler;
+
+        private Command(ByteBuffer bytes, ReplyHandler handler) {
+            this.bytes = bytes;
+            this.handler = handler;
+        }
+    }
+
+    private final class Handler implements RedisEventLoop.ChannelHandler {
+
+        @Override
+        public void onReadable() {
+            read();
+        }
+
+        @Override
+        public void onWritable() {
+            flush();
+        }
+
+        @Override
+        public void onLoopExit(BajaRuntimeException cause) {
+            fail(cause);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Class that represents the result of executing a previously constructed
+ * {@link RedisCommand} instance using a {@link NearCache}, which may have been
+ * returned from the cache without contacting the Redis server at all.
+ * <p>
+ * Collections returned by this class may be shared with the cache and must
+ * not be modified, including any collections nested within them.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+public class CachedCommand {
+
+    private final Object reply;
+
+    CachedCommand(NearCache cache, RedisCommand cmd) {
+        this.reply = Objects.requireNonNull(cache).query(Objects.requireNonNull(cmd));
+    }
+
+    /**
+     * Get the results of the executed command as a Java {@code String}, which
+     * may be a "simple string" or "bulk string" on the Redis Server side.
+     *
+     * @return Command results as a string
+     * @throws BajaTypeMismatchException If the result of the command was not a string type
+     */
+    public String asString() {
+        return AsyncCommand.cast(reply, String.class, true);
+    }
+
+    /**
+     * Get the results of the executed command as a Java {@code long}, which
+     * corresponds to the "integer" type on the Redis Server side.
+     *
+     * @return Command results as a long
+     * @throws BajaTypeMismatchException If the result of the command was not an integer type
+     */
+    public long asLong() {
+        return AsyncCommand.cast(reply, Long.class, false);
+    }
+
+    /**
+     * Get the results of the executed command as a Java {@code Double}, which may
+     * be a "double" (RESP3) or a string containing a double (RESP2) on the Redis
+     * Server side.
+     *
+     * @return Command results as a double, null if the result was null
+     * @throws BajaTypeMismatchException If the result of the command was not a double
+     */
+    public Double asDouble() {
+        if (reply instanceof Double) {
+            return (Double) reply;
+        }
+
+        final String value = AsyncCommand.cast(reply, String.class, true);
+        try {
+            return value == null ? null : RespParser.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new BajaTypeMismatchException("Unexpected value for double " + value);
+        }
+    }
+
+    /**
+     * Get the results of the executed command as a {@code Map} of objects, which
+     * may be a "map" (RESP3) or an array of alternating keys and values (RESP2) on
+     * the Redis Server side.
+     *
+     * @return Command results as a map
+     * @throws BajaTypeMismatchException If the result of the command was not a map type
+     */
+    public Map<Object, Object> asMap() {
+        final Map<Object, Object> res = AsyncCommand.toMap(reply);
+        return res == null ? null : Collections.unmodifiableMap(res);
+    }
+
+    /**
+     * Get the results of the executed command as a {@code List} of objects.
+     *
+     * @return Command results as a list
+     * @throws BajaTypeMismatchException If the result of the command was not an array type
+     */
+    public List<Object> asArray() {
+        final List<Object> res = AsyncCommand.toList(reply);
+        return res == null ? null : Collections.unmodifiableList(res);
+    }
+
+    /**
+     * Get the results of the executed command as a {@code List} of {@code String}s.
+     * <p>
+     * Each entry in the list of results is converted to a {@code String} from whatever
+     * its original type was using {@code String#valueOf}. Null values will be preserved.
+     *
+     * @return Command results as a list of strings
+     * @throws BajaTypeMismatchException If the result of the command was not an array type
+     */
+    public List<String> asStringArray() {
+        final List<Object> res = AsyncCommand.toList(reply);
+        if (res == null) {
+            return null;
+        }
+
+        return res.stream()
+            .map(o -> o == null ? null : String.valueOf(o))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the results of the executed command as an {@code Object}.
+     *
+     * @return Command results as an object
+     */
+    public Object asObject() {
+        return reply;
+    }
+}
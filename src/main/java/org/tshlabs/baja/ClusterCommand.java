@@ -0,0 +1,210 @@
+package org.tshlabs.baja;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Class that represents the result of sending a previously constructed
+ * {@link RedisCommand} instance using a {@link RedisCluster} instance.
+ * <p>
+ * The command is not sent until one of the methods for reading the result is
+ * called, so exactly one of them should be called for each instance. Each method
+ * sends the command to the node serving the slot of its key, following any
+ * redirects, and reads the result before returning the connection to the pool
+ * of the node.
+ * <p>
+ * Multi-key commands whose keys are in different slots, such as {@code MGET}
+ * or {@code DEL}, are split into one command per slot which are sent to their
+ * nodes in parallel, and the replies are merged into the reply the command would
+ * have had if all keys were on a single node.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+public class ClusterCommand {
+
+    private final RedisCluster cluster;
+    private final RedisCommand command;
+
+    ClusterCommand(RedisCluster cluster, RedisCommand command) {
+        this.cluster = Objects.requireNonNull(cluster);
+        this.command = Objects.requireNonNull(command);
+    }
+
+    /**
+     * Send the command and get the results as a Java {@code String}, which may
+     * be a "simple string" or "bulk string" on the Redis Server side.
+     *
+     * @return Command results as a string
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a string type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public String asString() {
+        return execute(ExecutedCommand::asString, r -> AsyncCommand.cast(r, String.class, true));
+    }
+
+    /**
+     * Send the command and get the results as raw bytes, which must be a "bulk
+     * string" on the Redis Server side.
+     *
+     * @return Command results as bytes
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a bulk string type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public byte[] asBytes() {
+        return execute(ExecutedCommand::asBytes, r -> AsyncCommand.cast(r, byte[].class, true));
+    }
+
+    /**
+     * Send the command and get the results as a value decoded by the given codec,
+     * which must be a "bulk string", "simple string", "integer" or "double" on the
+     * Redis Server side. Types other than bulk strings are decoded from their text.
+     *
+     * @param codec Codec to decode the results with
+     * @param <T>   Type of the value
+     * @return Command results as a value
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not one of those types or
+     *                                                                not a valid value
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T asValue(Codec<T> codec) {
+        Objects.requireNonNull(codec);
+        return execute(c -> c.asValue(codec), r -> (T) Codecs.decodeReply(codec, r));
+    }
+
+    /**
+     * Send the command and get the results as a Java {@code long}, which corresponds
+     * to the "integer" type on the Redis Server side.
+     *
+     * @return Command results as a long
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not an integer type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public long asLong() {
+        return execute(ExecutedCommand::asLong, r -> AsyncCommand.cast(r, Long.class, false));
+    }
+
+    /**
+     * Send the command and get the results as a Java {@code Double}, which may be a
+     * "double" (RESP3) or a string containing a double (RESP2) on the Redis Server side.
+     *
+     * @return Command results as a double, null if the result was null
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a double
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public Double asDouble() {
+        return execute(ExecutedCommand::asDouble, r -> AsyncCommand.cast(r, Double.class, true));
+    }
+
+    /**
+     * Send the command and get the results as a {@code Map} of objects, which may be
+     * a "map" (RESP3) or an array of alternating keys and values (RESP2) on the Redis
+     * Server side.
+     *
+     * @return Command results as a map
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a map type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public Map<Object, Object> asMap() {
+        return execute(ExecutedCommand::asMap, AsyncCommand::toMap);
+    }
+
+    /**
+     * Send the command and get the results as a {@code List} of objects.
+     *
+     * @return Command results as a list
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not an array type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public List<Object> asArray() {
+        return execute(ExecutedCommand::asArray, AsyncCommand::toList);
+    }
+
+    /**
+     * Send the command and get the results as a {@code List} of {@code String}s.
+     *
+     * @return Command results as a list of strings
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not an array type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public List<String> asStringArray() {
+        return execute(ExecutedCommand::asStringArray, ClusterCommand::toStringList);
+    }
+
+    /**
+     * Send the command and get the results as an {@code Object}.
+     *
+     * @return Command results as an object
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public Object asObject() {
+        return execute(ExecutedCommand::asObject, r -> r);
+    }
+
+    /**
+     * Send the command and discard the results.
+     *
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error or too many redirects
+     */
+    public void discard() {
+        execute(c -> {
+            c.discard();
+            return null;
+        }, r -> null);
+    }
+
+    /**
+     * Send the command using the given reader for the reply, or if it must be
+     * split by slot, send the parts and convert the merged reply.
+     */
+    private <T> T execute(Function<ExecutedCommand, T> reader, Function<Object, T> converter) {
+        final MultiKeySplit split = MultiKeySplit.of(command);
+        if (split == null) {
+            return cluster.execute(command, reader);
+        }
+
+        return converter.apply(cluster.execute(split));
+    }
+
+    private static List<String> toStringList(Object reply) {
+        final List<Object> res = AsyncCommand.toList(reply);
+        if (res == null) {
+            return null;
+        }
+
+        return res.stream()
+            .map(o -> o == null ? null : String.valueOf(o))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,59 @@
+package org.tshlabs.baja;
+
+import java.util.Objects;
+
+/**
+ * Address of a node in a Redis Cluster.
+ * <p>
+ * This class is thread safe.
+ */
+public final class ClusterNode {
+
+    private final String host;
+
+    private final int port;
+
+    /**
+     * Construct a new node address with the given host and port.
+     *
+     * @param host Host name or address of the node
+     * @param port Port of the node
+     * @throws NullPointerException If host is null
+     */
+    public ClusterNode(String host, int port) {
+        this.host = Objects.requireNonNull(host);
+        this.port = port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final ClusterNode other = (ClusterNode) o;
+        return port == other.port && host.equals(other.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port);
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
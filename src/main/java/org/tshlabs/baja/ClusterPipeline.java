@@ -0,0 +1,135 @@
+package org.tshlabs.baja;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A {@code ClusterPipeline} accepts {@link RedisCommand} instances and queued
+ * (future) {@link Result} instances to be later sent to the nodes of a
+ * {@link RedisCluster} together.
+ * <p>
+ * When executed, the commands are grouped by the node serving the slot of
+ * their key and the commands for each node are sent as a {@link Pipeline}
+ * using a connection to that node. The pipelines for different nodes are sent
+ * in parallel. The reply to each command is read into its {@link Result} no
+ * matter which node it was sent to, so results can be read in the order the
+ * commands were queued.
+ * <p>
+ * Commands that are redirected by a node are sent again to the node they were
+ * redirected to. Multi-key commands whose keys are in different slots, such as
+ * {@code MGET} or {@code DEL}, are split into one command per slot and the
+ * replies merged into the result of the original command. As with a
+ * {@link Pipeline}, error replies become the value of the result of the command
+ * and the remaining results are still populated.
+ * <p>
+ * Commands are not executed atomically, not even the parts of a split command.
+ * Once executed, the pipeline is empty and may be reused for more commands.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+public class ClusterPipeline {
+
+    private final RedisCluster cluster;
+    private final int chunkSize;
+    private final List<RedisCommand> queuedCommands = new ArrayList<>();
+    private final List<Result<?>> queuedResults = new ArrayList<>();
+
+    /**
+     * Construct a new pipeline instance that will send commands to the nodes of
+     * the given cluster, at most the given number at a time to each node.
+     *
+     * @param cluster   Cluster for executing this pipeline
+     * @param chunkSize Maximum number of commands to send to a node before reading replies
+     * @throws NullPointerException     If cluster is null
+     * @throws IllegalArgumentException If chunk size is less than one
+     */
+    ClusterPipeline(RedisCluster cluster, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, got " + chunkSize);
+        }
+
+        this.cluster = Objects.requireNonNull(cluster);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Queue the given command for future execution along with a holder for the result.
+     *
+     * @param command Command to execute as part of the pipeline
+     * @param result  Holder for the result of the command once the pipeline executes
+     * @param <V>     Type of the result of the command
+     * @return fluent interface
+     */
+    <V> ClusterPipeline queue(RedisCommand command, Result<V> result) {
+        queuedCommands.add(Objects.requireNonNull(command));
+        queuedResults.add(Objects.requireNonNull(result));
+        return this;
+    }
+
+    /**
+     * @return Number of commands queued and not yet executed
+     */
+    public int size() {
+        return queuedCommands.size();
+    }
+
+    /**
+     * Send each of the queued commands to the node serving its slot, populate
+     * the associated {@link Result} instances, and empty the pipeline.
+     *
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If one of the nodes could not
+     *                                                           be reached. The results of commands
+     *                                                           sent to other nodes are still populated.
+     * @throws IllegalArgumentException                          If the key of a command is streamed
+     */
+    public void execute() {
+        final List<RedisCommand> commands = new ArrayList<>(queuedCommands.size());
+        final List<Result<?>> results = new ArrayList<>(queuedResults.size());
+        final List<Runnable> merges = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < queuedCommands.size(); i++) {
+                final RedisCommand command = queuedCommands.get(i);
+                final Result<?> result = queuedResults.get(i);
+                final MultiKeySplit split = MultiKeySplit.of(command);
+
+                if (split == null) {
+                    commands.add(command);
+                    results.add(result);
+                    continue;
+                }
+
+                final List<Result<Object>> parts = new ArrayList<>();
+                for (RedisCommand part : split.getParts()) {
+                    final Result<Object> partResult = new Result<>();
+                    commands.add(part);
+                    results.add(partResult);
+                    parts.add(partResult);
+                }
+
+                merges.add(() -> merge(split, parts, result));
+            }
+
+            cluster.executeAll(commands, results, chunkSize);
+        } finally {
+            merges.forEach(Runnable::run);
+            queuedCommands.clear();
+            queuedResults.clear();
+        }
+    }
+
+    private static void merge(MultiKeySplit split, List<Result<Object>> parts, Result<?> result) {
+        final List<Object> replies = new ArrayList<>(parts.size());
+        for (Result<Object> part : parts) {
+            // Parts sent to a node that couldn't be reached have no reply
+            if (!part.isDone()) {
+                return;
+            }
+
+            replies.add(part.get());
+        }
+
+        result.setValue(split.merge(replies));
+    }
+}
@@ -0,0 +1,221 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.protocol.RespArgument;
+import org.tshlabs.baja.protocol.RespEncodings;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Methods for determining which of the 16384 Redis Cluster hash slots a key
+ * belongs to and which argument of a command is its key.
+ * <p>
+ * The slot of a key is the CRC16 of the key modulo 16384. If the key contains
+ * a non-empty hash tag, such as {@code {user1000}.following}, only the contents
+ * of the tag are hashed so that related keys end up in the same slot.
+ * <p>
+ * This class is thread safe.
+ *
+ * @see <a href="https://redis.io/topics/cluster-spec#keys-distribution-model">Keys distribution model</a>
+ */
+public final class ClusterSlots {
+
+    /**
+     * Number of hash slots in a Redis Cluster.
+     */
+    public static final int SLOT_COUNT = 16384;
+
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        // CRC16-CCITT (XMODEM) with polynomial 0x1021 as used by Redis Cluster
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+
+            CRC16_TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    // Commands that don't operate on keys and may be sent to any node
+    private static final Set<String> KEYLESS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "ASKING", "AUTH", "BGREWRITEAOF", "BGSAVE", "CLIENT", "CLUSTER", "COMMAND", "CONFIG",
+        "DBSIZE", "DISCARD", "ECHO", "EXEC", "FLUSHALL", "FLUSHDB", "FUNCTION", "HELLO", "INFO",
+        "KEYS", "LASTSAVE", "MULTI", "PING", "PUBLISH", "RANDOMKEY", "READONLY", "READWRITE",
+        "SAVE", "SCAN", "SCRIPT", "SELECT", "SLOWLOG", "TIME", "WAIT")));
+
+    // Commands whose first key is not their first argument
+    private static final Map<String, Integer> KEY_INDEXES;
+
+    // Commands with the number of keys as an argument followed by the keys
+    private static final Map<String, Integer> NUMKEYS_INDEXES;
+
+    static {
+        final Map<String, Integer> keyIndexes = new HashMap<>();
+        keyIndexes.put("BITOP", 2);
+        keyIndexes.put("MEMORY", 2);
+        keyIndexes.put("OBJECT", 2);
+        keyIndexes.put("XGROUP", 2);
+        keyIndexes.put("XINFO", 2);
+        KEY_INDEXES = Collections.unmodifiableMap(keyIndexes);
+
+        final Map<String, Integer> numkeysIndexes = new HashMap<>();
+        numkeysIndexes.put("EVAL", 2);
+        numkeysIndexes.put("EVALSHA", 2);
+        numkeysIndexes.put("EVAL_RO", 2);
+        numkeysIndexes.put("EVALSHA_RO", 2);
+        numkeysIndexes.put("FCALL", 2);
+        numkeysIndexes.put("FCALL_RO", 2);
+        numkeysIndexes.put("LMPOP", 1);
+        numkeysIndexes.put("SINTERCARD", 1);
+        numkeysIndexes.put("ZDIFF", 1);
+        numkeysIndexes.put("ZINTER", 1);
+        numkeysIndexes.put("ZINTERCARD", 1);
+        numkeysIndexes.put("ZMPOP", 1);
+        numkeysIndexes.put("ZUNION", 1);
+        NUMKEYS_INDEXES = Collections.unmodifiableMap(numkeysIndexes);
+    }
+
+    private ClusterSlots() {
+    }
+
+    /**
+     * Get the slot of the given key, encoded using the {@link RespEncodings#DEFAULT_PAYLOAD
+     * default} character set.
+     *
+     * @param key Key to get the slot of
+     * @return Slot of the key, between 0 and 16383
+     */
+    public static int getSlot(String key) {
+        return getSlot(key.getBytes(RespEncodings.DEFAULT_PAYLOAD));
+    }
+
+    /**
+     * Get the slot of the given binary key.
+     *
+     * @param key Key to get the slot of
+     * @return Slot of the key, between 0 and 16383
+     */
+    public static int getSlot(byte[] key) {
+        return getSlot(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * Get the slot of the given key argument.
+     *
+     * @param key Key to get the slot of
+     * @return Slot of the key, between 0 and 16383
+     * @throws IllegalArgumentException If the argument is streamed
+     */
+    public static int getSlot(RespArgument key) {
+        if (key.isStreamed()) {
+            throw new IllegalArgumentException("Streamed arguments can't be used as keys");
+        }
+
+        return key.isText() ? getSlot(key.getText()) : getSlot(key.getBytes());
+    }
+
+    /**
+     * Get the slot of the key of the given command.
+     *
+     * @param cmd Command to get the slot of
+     * @return Slot of the first key of the command or -1 if the command has no keys
+     * @throws IllegalArgumentException If the key of the command is streamed
+     */
+    public static int getSlot(RedisCommand cmd) {
+        final List<RespArgument> args = cmd.getRawArgs();
+        final int index = getKeyIndex(args);
+        return index < 0 ? -1 : getSlot(args.get(index));
+    }
+
+    private static int getSlot(ByteBuffer key) {
+        final int start = key.position();
+        final int end = key.limit();
+
+        for (int open = start; open < end; open++) {
+            if (key.get(open) != '{') {
+                continue;
+            }
+
+            for (int close = open + 1; close < end; close++) {
+                if (key.get(close) == '}') {
+                    // Empty tags like "{}" don't count and the whole key is hashed
+                    if (close > open + 1) {
+                        return crc16(key, open + 1, close) % SLOT_COUNT;
+                    }
+
+                    break;
+                }
+            }
+
+            break;
+        }
+
+        return crc16(key, start, end) % SLOT_COUNT;
+    }
+
+    /**
+     * Get the index of the first key in the given command and arguments.
+     *
+     * @return Index of the first key or -1 if the command has no keys
+     */
+    static int getKeyIndex(List<RespArgument> args) {
+        if (args.size() < 2) {
+            return -1;
+        }
+
+        final String command = args.get(0).toString().toUpperCase(Locale.ROOT);
+        if (KEYLESS.contains(command)) {
+            return -1;
+        }
+
+        final int index;
+        if (NUMKEYS_INDEXES.containsKey(command)) {
+            final int numkeysIndex = NUMKEYS_INDEXES.get(command);
+            index = hasKeys(args, numkeysIndex) ? numkeysIndex + 1 : -1;
+        } else if (command.equals("XREAD") || command.equals("XREADGROUP")) {
+            index = streamsIndex(args);
+        } else {
+            index = KEY_INDEXES.getOrDefault(command, 1);
+        }
+
+        return index >= 0 && index < args.size() ? index : -1;
+    }
+
+    private static boolean hasKeys(List<RespArgument> args, int numkeysIndex) {
+        try {
+            return numkeysIndex < args.size() && Long.parseLong(args.get(numkeysIndex).toString()) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static int streamsIndex(List<RespArgument> args) {
+        for (int i = 1; i < args.size(); i++) {
+            if ("STREAMS".equalsIgnoreCase(args.get(i).toString())) {
+                return i + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    // VisibleForTesting
+    static int crc16(ByteBuffer bytes, int start, int end) {
+        int crc = 0;
+        for (int i = start; i < end; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ bytes.get(i)) & 0xFF]) & 0xFFFF;
+        }
+
+        return crc;
+    }
+}
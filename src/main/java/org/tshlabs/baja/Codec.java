@@ -0,0 +1,44 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.protocol.RespArgument;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Conversion between values of a Java type and the bytes of the "bulk strings"
+ * they are stored as on the Redis server side.
+ * <p>
+ * Codecs are used to add typed arguments to a command with
+ * {@link RedisCommand#arg(Object, Codec)} and to read typed results with
+ * {@link ExecutedCommand#asValue(Codec)} and {@link QueuedCommand#asValue(Codec)}.
+ * Fast codecs for common types are available from {@link Codecs}.
+ * <p>
+ * Implementations must be thread safe.
+ *
+ * @param <T> Type of the values
+ */
+public interface Codec<T> {
+
+    /**
+     * Convert the given value to an argument for a command.
+     *
+     * @param value Value to convert, never null
+     * @return Argument to send for the value
+     */
+    RespArgument encode(T value);
+
+    /**
+     * Convert the bytes of a bulk string result to a value.
+     * <p>
+     * The buffer may be a read-only view of the connection's own buffer, and is
+     * only valid until this method returns. Implementations must not keep a
+     * reference to it.
+     *
+     * @param bytes Buffer positioned at the start of the bytes with the end of the
+     *              value as its limit
+     * @return Value for the bytes
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException If the bytes are not
+     *                                                               a valid value
+     */
+    T decode(ByteBuffer bytes);
+}
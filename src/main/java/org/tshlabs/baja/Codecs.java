@@ -0,0 +1,274 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespArgument;
+import org.tshlabs.baja.protocol.RespErrResponse;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Built-in {@link Codec} implementations for common types.
+ * <p>
+ * Numbers are encoded and decoded as ASCII digits without creating an intermediate
+ * {@code String} where possible. Text is encoded directly into the output buffer
+ * of the connection and decoded through a small reusable buffer for each thread,
+ * since the buffers given to {@link Codec#decode(ByteBuffer)} are usually read-only
+ * views of the connection's own buffer.
+ * <p>
+ * This class is thread safe.
+ */
+public final class Codecs {
+
+    /**
+     * Values stored as decimal integers, such as those used with {@code INCRBY}.
+     */
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public RespArgument encode(Long value) {
+            return RespArgument.of(encodeLong(value));
+        }
+
+        @Override
+        public Long decode(ByteBuffer bytes) {
+            return decodeLong(bytes);
+        }
+    };
+
+    /**
+     * Values stored as decimal floating point numbers, such as those used with
+     * {@code INCRBYFLOAT} or as the scores of sorted sets. Infinities are stored
+     * as {@code inf} and {@code -inf}.
+     */
+    public static final Codec<Double> DOUBLE = new Codec<Double>() {
+        @Override
+        public RespArgument encode(Double value) {
+            if (value.isNaN()) {
+                throw new IllegalArgumentException("NaN can't be stored");
+            }
+
+            if (value.isInfinite()) {
+                return RespArgument.of(value > 0 ? "inf" : "-inf");
+            }
+
+            final double d = value;
+            if (d == (long) d && Math.abs(d) < MAX_EXACT) {
+                return RespArgument.of(encodeLong((long) d));
+            }
+
+            return RespArgument.of(Double.toString(d));
+        }
+
+        @Override
+        public Double decode(ByteBuffer bytes) {
+            return decodeDouble(bytes);
+        }
+    };
+
+    /**
+     * Values stored as UTF-8 encoded text.
+     */
+    public static final Codec<String> UTF8 = new Codec<String>() {
+        @Override
+        public RespArgument encode(String value) {
+            return RespArgument.of(value);
+        }
+
+        @Override
+        public String decode(ByteBuffer bytes) {
+            final int length = bytes.remaining();
+            if (bytes.hasArray()) {
+                return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), length, StandardCharsets.UTF_8);
+            }
+
+            final byte[] scratch = scratch(length);
+            bytes.duplicate().get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Values stored as raw bytes, which are copied as-is.
+     */
+    public static final Codec<byte[]> BYTES = new Codec<byte[]>() {
+        @Override
+        public RespArgument encode(byte[] value) {
+            return RespArgument.of(value);
+        }
+
+        @Override
+        public byte[] decode(ByteBuffer bytes) {
+            final byte[] out = new byte[bytes.remaining()];
+            bytes.duplicate().get(out);
+            return out;
+        }
+    };
+
+    // Largest value below which every integer can be represented exactly as a double
+    private static final double MAX_EXACT = 1L << 53;
+
+    // Powers of ten that can be represented exactly as a double
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Values larger than this are decoded with a one-off array rather than the reusable one
+    private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private Codecs() {
+    }
+
+    /**
+     * Convert a result that has already been read from the connection, such as the
+     * result of a command in a pipeline or transaction, using the given codec.
+     * <p>
+     * Bulk strings in those results have already been decoded to {@code String}s
+     * with the default payload encoding, so are encoded again before being decoded.
+     * Error results and nulls are returned as-is.
+     */
+    static Object decodeReply(Codec<?> codec, Object reply) {
+        if (reply == null || reply instanceof RespErrResponse) {
+            return reply;
+        }
+
+        if (reply instanceof byte[]) {
+            return codec.decode(ByteBuffer.wrap((byte[]) reply));
+        }
+
+        if (reply instanceof Collection || reply instanceof Map) {
+            throw new BajaTypeMismatchException(
+                "Expected result of type String, got " + reply.getClass().getSimpleName());
+        }
+
+        return codec.decode(ByteBuffer.wrap(String.valueOf(reply).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] scratch(int length) {
+        if (length > MAX_SCRATCH_SIZE) {
+            return new byte[length];
+        }
+
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+
+        return scratch;
+    }
+
+    private static byte[] encodeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            return "-9223372036854775808".getBytes(StandardCharsets.US_ASCII);
+        }
+
+        long remaining = Math.abs(value);
+        int digits = 1;
+        for (long v = remaining; v >= 10; v /= 10) {
+            digits++;
+        }
+
+        final int length = value < 0 ? digits + 1 : digits;
+        final byte[] out = new byte[length];
+        for (int i = length - 1; i >= length - digits; i--) {
+            out[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+
+        if (value < 0) {
+            out[0] = '-';
+        }
+
+        return out;
+    }
+
+    private static long decodeLong(ByteBuffer bytes) {
+        final int start = bytes.position();
+        final int end = bytes.limit();
+        if (start == end) {
+            throw invalid("long", bytes);
+        }
+
+        final boolean negative = bytes.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 19) {
+            throw invalid("long", bytes);
+        }
+
+        // Accumulated as a negative number so that the minimum value doesn't overflow
+        long out = 0;
+        for (; i < end; i++) {
+            final int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9 || out < (Long.MIN_VALUE + digit) / 10) {
+                throw invalid("long", bytes);
+            }
+
+            out = out * 10 - digit;
+        }
+
+        if (!negative) {
+            if (out == Long.MIN_VALUE) {
+                throw invalid("long", bytes);
+            }
+
+            out = -out;
+        }
+
+        return out;
+    }
+
+    private static double decodeDouble(ByteBuffer bytes) {
+        final int start = bytes.position();
+        final int end = bytes.limit();
+
+        // Values with at most 15 significant digits and a short fraction, which is
+        // almost all of them, are exact as a double so can be computed with a single
+        // correctly rounded division instead of a general parser.
+        final boolean negative = start < end && bytes.get(start) == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        int i = negative ? start + 1 : start;
+        for (; i < end && digits <= 15; i++) {
+            final byte b = bytes.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+
+        if (i == end && digits > 0 && digits <= 15 && fraction != 0) {
+            final double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+            return negative ? -value : value;
+        }
+
+        final int length = end - start;
+        final byte[] scratch = scratch(length);
+        bytes.duplicate().get(scratch, 0, length);
+        try {
+            return RespParser.parseDouble(new String(scratch, 0, length, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw invalid("double", bytes);
+        }
+    }
+
+    private static BajaTypeMismatchException invalid(String type, ByteBuffer bytes) {
+        final byte[] copy = new byte[Math.min(bytes.remaining(), 64)];
+        bytes.duplicate().get(copy);
+        return new BajaTypeMismatchException(
+            "Unexpected value for " + type + " " + new String(copy, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,21 @@
+package org.tshlabs.baja;
+
+/**
+ * Destination for {@link RedisCommand} instances that are queued along with a
+ * holder for their future {@link Result} to be executed later as a group, such
+ * as a {@link Transaction} or {@link Pipeline}.
+ * <p>
+ * Implemented with a reference to the package-private {@code queue} method of
+ * each of those classes so that it doesn't become part of their public API.
+ */
+@FunctionalInterface
+interface CommandQueue {
+
+    /**
+     * Queue the given command for future execution along with a holder for the result.
+     *
+     * @param command Command to execute later
+     * @param result  Holder for the result of the command once it executes
+     */
+    void queue(RedisCommand command, Result<?> result);
+}
@@ -1,7 +1,16 @@
 package org.tshlabs.baja;
 
+import org.tshlabs.baja.protocol.RespHandler;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Class that represents the result of executing a previously constructed
@@ -14,7 +23,7 @@ public class ExecutedCommand {
 
     ExecutedCommand(RedisConnection connection, RedisCommand cmd) {
         this.connection = Objects.requireNonNull(connection);
-        this.connection.writeCommand(Objects.requireNonNull(cmd.getArgs()));
+        this.connection.writeRawCommand(Objects.requireNonNull(cmd.getRawArgs()));
     }
 
     /**
@@ -32,6 +41,123 @@ public class ExecutedCommand {
         return connection.readSimpleOrBulkString();
     }
 
+    /**
+     * Get the results of the executed command as raw bytes, which must be a
+     * "bulk string" on the Redis Server side.
+     * <p>
+     * The bytes are returned as-is without being decoded using a character set,
+     * making this suitable for binary values.
+     *
+     * @return Command results as bytes
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a bulk string type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public byte[] asBytes() {
+        return connection.readBulkBytes();
+    }
+
+    /**
+     * Get the results of the executed command as a read-only {@code ByteBuffer},
+     * which must be a "bulk string" on the Redis Server side.
+     * <p>
+     * When the connection reads from a {@link org.tshlabs.baja.protocol.RespInputBuffer}
+     * the returned buffer is a view of the connection's own buffer and no copy of
+     * the value is made. The view is only valid until the next read from the
+     * connection.
+     *
+     * @return Command results as a read-only byte buffer
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a bulk string type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public ByteBuffer asByteBuffer() {
+        return connection.readBulkByteBuffer();
+    }
+
+    /**
+     * Get the results of the executed command as a value decoded by the given codec,
+     * which must be a "bulk string", "simple string", "integer" or "double" on the
+     * Redis Server side. Types other than bulk strings are decoded from their text.
+     * <p>
+     * When the connection reads from a {@link org.tshlabs.baja.protocol.RespInputBuffer}
+     * the codec decodes a bulk string directly from the connection's own buffer.
+     *
+     * @param codec Codec to decode the results with
+     * @param <T>   Type of the value
+     * @return Command results as a value, null if the result was a null bulk string
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not one of those types or
+     *                                                                not a valid value
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public <T> T asValue(Codec<T> codec) {
+        Objects.requireNonNull(codec);
+        final ByteBuffer bytes = connection.readValueByteBuffer();
+        return bytes == null ? null : codec.decode(bytes);
+    }
+
+    /**
+     * Get the results of the executed command as an {@code InputStream} over the
+     * raw bytes of a "bulk string" on the Redis Server side.
+     * <p>
+     * The stream reads directly from the connection so large values never need
+     * to fit in memory. It must be read to the end or closed before the connection
+     * is used again. Closing it discards any unread bytes but does not close the
+     * connection.
+     *
+     * @return Command results as a stream, null if the result was a null bulk string
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a bulk string type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public InputStream asInputStream() {
+        return connection.readBulkStream();
+    }
+
+    /**
+     * Copy the results of the executed command, which must be a "bulk string" on
+     * the Redis Server side, to the given stream through a small fixed size buffer
+     * so that memory use does not depend on the size of the value.
+     *
+     * @param target Stream to copy the results to
+     * @return Number of bytes copied, or -1 if the result was a null bulk string
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a bulk string type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public long transferTo(OutputStream target) {
+        return connection.transferBulk(target);
+    }
+
+    /**
+     * Copy the results of the executed command, which must be a "bulk string" on
+     * the Redis Server side, to the given blocking channel (a {@code FileChannel}
+     * or {@code SocketChannel}, for example) through a small fixed size buffer so
+     * that memory use does not depend on the size of the value.
+     *
+     * @param target Blocking channel to copy the results to
+     * @return Number of bytes copied, or -1 if the result was a null bulk string
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a bulk string type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public long transferTo(WritableByteChannel target) {
+        return connection.transferBulk(Channels.newOutputStream(Objects.requireNonNull(target)));
+    }
+
     /**
      * Get the results of the executed command as a Java {@code long}, which
      * corresponds to the "integer" type on the Redis Server side.
@@ -47,6 +173,41 @@ public class ExecutedCommand {
         return connection.readLong();
     }
 
+    /**
+     * Get the results of the executed command as a Java {@code Double}, which may
+     * be a "double" (RESP3) or a string containing a double (RESP2) on the Redis
+     * Server side, such as the score returned by {@code ZSCORE}.
+     *
+     * @return Command results as a double, null if the result was null
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a double
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public Double asDouble() {
+        return connection.readDouble();
+    }
+
+    /**
+     * Get the results of the executed command as a {@code Map} of objects, which
+     * may be a "map" (RESP3) or an array of alternating keys and values (RESP2) on
+     * the Redis Server side, such as the result of {@code HGETALL}.
+     * <p>
+     * The actual types of the keys and values is undefined and should be known by
+     * the caller. Entries are in the order they were sent by the server.
+     *
+     * @return Command results as a map
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not a map type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public Map<Object, Object> asMap() {
+        return connection.readMap();
+    }
+
     /**
      * Get the results of the executed command as a {@code List} of objects.
      * <p>
@@ -63,6 +224,44 @@ public class ExecutedCommand {
         return connection.readArray();
     }
 
+    /**
+     * Get the results of the executed command as an iterator that parses each
+     * element of the array only when it is requested.
+     * <p>
+     * This is useful for commands such as {@code KEYS}, {@code SMEMBERS} or
+     * {@code LRANGE} that may return more elements than should be held in memory
+     * at once. The iterator must be exhausted or {@link ArrayIterator#close() closed}
+     * before the connection is used again.
+     *
+     * @return Command results as a lazy iterator
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not an array type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public ArrayIterator asIterator() {
+        return connection.readArrayIterator();
+    }
+
+    /**
+     * Get the results of the executed command as a {@code Stream} that parses each
+     * element of the array only when it is consumed.
+     * <p>
+     * The stream must be closed (using try-with-resources, for example) before the
+     * connection is used again, which discards any elements that were not consumed.
+     *
+     * @return Command results as a lazy stream
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException  If the result of the command
+     *                                                                was not an array type
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the Redis server responded
+     *                                                                with an error
+     */
+    public Stream<Object> asArrayStream() {
+        return connection.readArrayIterator().stream();
+    }
+
     /**
      * Get the results of the executed command as a {@code List} of {@code String}s.
      * <p>
@@ -96,6 +295,26 @@ public class ExecutedCommand {
         return connection.readAnyType();
     }
 
+    /**
+     * Decode the results of the executed command by reporting each value in them
+     * to the given handler as they are parsed, without creating intermediate lists,
+     * boxed numbers, or strings.
+     * <p>
+     * This is useful for large replies (from {@code HGETALL} or {@code ZRANGE}, for
+     * example) that the caller wants to decode directly into its own structures.
+     * Error results from the Redis server are reported to the handler using
+     * {@link RespHandler#onError(String)} rather than raising an exception.
+     *
+     * @param handler Handler to report values in the results to
+     * @param <T>     Type of the handler
+     * @return The given handler, for convenience
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If there was an I/O error
+     */
+    public <T extends RespHandler> T decode(T handler) {
+        connection.readReply(handler);
+        return handler;
+    }
+
     /**
      * Read and then immediately discard the results of an executed command.
      * <p>
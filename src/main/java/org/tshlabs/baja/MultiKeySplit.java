@@ -0,0 +1,153 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.protocol.RespArgument;
+import org.tshlabs.baja.protocol.RespErrResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A multi-key command whose keys belong to more than one cluster slot, split
+ * into one command per slot that can each be sent to the node serving that
+ * slot, along with a way to merge the replies to those commands into the reply
+ * the original command would have had.
+ * <p>
+ * Only commands that are not atomic across their keys anyway are split:
+ * {@code MGET}, {@code MSET}, {@code DEL}, {@code UNLINK}, {@code EXISTS} and
+ * {@code TOUCH}.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+final class MultiKeySplit {
+
+    private enum Merge {
+        // Replies are lists of values in the order of the keys of each part
+        VALUES,
+        // Replies are counts which are added together
+        SUM,
+        // Replies are a status which is the same for every part
+        STATUS
+    }
+
+    private final List<RedisCommand> parts;
+
+    // Index of each key of the original command in each part
+    private final List<List<Integer>> positions;
+
+    private final int numKeys;
+
+    private final Merge merge;
+
+    private MultiKeySplit(List<RedisCommand> parts, List<List<Integer>> positions, int numKeys, Merge merge) {
+        this.parts = parts;
+        this.positions = positions;
+        this.numKeys = numKeys;
+        this.merge = merge;
+    }
+
+    /**
+     * Split the given command by the slots of its keys.
+     *
+     * @param cmd Command to split
+     * @return The split command, or null if the command is not a splittable
+     * multi-key command or all of its keys are in the same slot
+     */
+    static MultiKeySplit of(RedisCommand cmd) {
+        final List<RespArgument> args = cmd.getRawArgs();
+        final String name = args.get(0).toString().toUpperCase(Locale.ROOT);
+
+        final int step;
+        final Merge merge;
+        switch (name) {
+            case "MGET":
+                step = 1;
+                merge = Merge.VALUES;
+                break;
+            case "DEL":
+            case "UNLINK":
+            case "EXISTS":
+            case "TOUCH":
+                step = 1;
+                merge = Merge.SUM;
+                break;
+            case "MSET":
+                step = 2;
+                merge = Merge.STATUS;
+                break;
+            default:
+                return null;
+        }
+
+        if (args.size() < 1 + 2 * step || (args.size() - 1) % step != 0) {
+            return null;
+        }
+
+        final Map<Integer, RedisCommand> bySlot = new LinkedHashMap<>();
+        final Map<Integer, List<Integer>> positionsBySlot = new LinkedHashMap<>();
+
+        for (int i = 1; i < args.size(); i += step) {
+            final int slot = ClusterSlots.getSlot(args.get(i));
+            final RedisCommand part = bySlot.computeIfAbsent(slot, s -> RedisCommand.cmd(name));
+            for (int j = i; j < i + step; j++) {
+                part.arg(args.get(j));
+            }
+
+            positionsBySlot.computeIfAbsent(slot, s -> new ArrayList<>()).add((i - 1) / step);
+        }
+
+        if (bySlot.size() < 2) {
+            return null;
+        }
+
+        return new MultiKeySplit(new ArrayList<>(bySlot.values()), new ArrayList<>(positionsBySlot.values()),
+            (args.size() - 1) / step, merge);
+    }
+
+    /**
+     * @return One command for each slot of the keys of the original command
+     */
+    List<RedisCommand> getParts() {
+        return parts;
+    }
+
+    /**
+     * Merge the replies to each part into the reply to the original command.
+     *
+     * @param replies Reply to each part, in the same order as the parts
+     * @return The merged reply, or the first error reply to any part
+     */
+    Object merge(List<Object> replies) {
+        for (Object reply : replies) {
+            if (reply instanceof RespErrResponse) {
+                return reply;
+            }
+        }
+
+        switch (merge) {
+            case VALUES:
+                final Object[] values = new Object[numKeys];
+                for (int i = 0; i < replies.size(); i++) {
+                    final List<?> partValues = AsyncCommand.cast(replies.get(i), List.class, false);
+                    final List<Integer> partPositions = positions.get(i);
+                    for (int j = 0; j < partPositions.size(); j++) {
+                        values[partPositions.get(j)] = partValues.get(j);
+                    }
+                }
+
+                return new ArrayList<>(Arrays.asList(values));
+            case SUM:
+                long sum = 0;
+                for (Object reply : replies) {
+                    sum += AsyncCommand.cast(reply, Long.class, false);
+                }
+
+                return sum;
+            default:
+                return replies.get(0);
+        }
+    }
+}
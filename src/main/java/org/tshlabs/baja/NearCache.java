@@ -0,0 +1,436 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.protocol.RespArgument;
+import org.tshlabs.baja.protocol.RespErrResponse;
+import org.tshlabs.baja.protocol.RespPush;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side cache of the replies to read commands sent using a {@link RedisConnection},
+ * kept up to date by the server using
+ * <a href="https://redis.io/topics/client-side-caching">client side caching</a>
+ * invalidation messages.
+ * <p>
+ * Building the cache switches the connection to RESP3 and enables tracking with
+ * {@code CLIENT TRACKING ON}, after which the server sends a push frame whenever
+ * a key that was read by the connection is modified. Cached replies for the key
+ * are discarded when the push frame is received. Push frames are read before each
+ * cached reply is returned, so a reply is never returned after an invalidation for
+ * it has been received by the client.
+ * <p>
+ * Only replies to the configured read commands, whose first argument is the key
+ * they read, are cached. Replies to other commands, error replies and commands with
+ * streamed arguments are never cached. The cache holds a bounded number of replies
+ * and discards the least recently or least frequently used when it is full.
+ * <p>
+ * The connection must not be used for anything else while the cache is in use,
+ * apart from sending commands using {@link RedisCommand#query(NearCache)}.
+ * Closing the cache disables tracking but does not close the connection.
+ * <p>
+ * This class is <em>not</em> thread safe, apart from the statistics methods which
+ * may be called from any thread.
+ */
+public class NearCache implements Closeable {
+
+    /**
+     * Policy for choosing which reply to discard when the cache is full.
+     */
+    public enum Eviction {
+        /**
+         * Discard the reply that was least recently used.
+         */
+        LRU,
+
+        /**
+         * Discard the reply that was used the least number of times, or the least
+         * recently used of those if there is more than one.
+         */
+        LFU
+    }
+
+    private static final Set<String> DEFAULT_COMMANDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "GET", "GETRANGE", "STRLEN", "TYPE",
+        "HGET", "HMGET", "HGETALL", "HEXISTS", "HKEYS", "HVALS", "HLEN", "HSTRLEN",
+        "LINDEX", "LLEN", "LRANGE",
+        "SCARD", "SISMEMBER", "SMEMBERS",
+        "ZCARD", "ZCOUNT", "ZRANGE", "ZRANGEBYSCORE", "ZRANK", "ZREVRANGE", "ZREVRANK", "ZSCORE")));
+
+    private final RedisConnection connection;
+
+    private final int maxSize;
+
+    private final Eviction eviction;
+
+    private final Set<String> commands;
+
+    private final Map<List<RespArgument>, Entry> entries = new HashMap<>();
+
+    // Commands whose replies are cached for each key, for handling invalidations
+    private final Map<String, Set<List<RespArgument>>> byKey = new HashMap<>();
+
+    // Cached commands in the order they should be evicted, grouped by the number
+    // of times they have been used. Everything is in a single group for LRU.
+    private final TreeMap<Long, LinkedHashSet<List<RespArgument>>> usage = new TreeMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private NearCache(Builder builder) {
+        this.connection = builder.connection;
+        this.maxSize = builder.maxSize;
+        this.eviction = builder.eviction;
+        this.commands = builder.commands;
+    }
+
+    /**
+     * Get a new builder for a cache of replies to commands sent using the given
+     * connection.
+     *
+     * @param connection Connection to send commands with
+     * @return Builder for configuring the cache
+     * @throws NullPointerException If connection is null
+     */
+    public static Builder builder(RedisConnection connection) {
+        return new Builder(connection);
+    }
+
+    /**
+     * Get the reply to the given command from the cache if it is cached,
+     * otherwise send the command using the connection and cache the reply
+     * if the command is cacheable.
+     *
+     * @throws BajaProtocolErrorException If the server replied with an error
+     * @throws BajaResourceException      If there was an I/O error
+     */
+    Object query(RedisCommand cmd) {
+        final List<RespArgument> args = cmd.getRawArgs();
+        final boolean cacheable = isCacheable(args);
+
+        if (cacheable) {
+            readInvalidations();
+
+            final Entry entry = entries.get(args);
+            if (entry != null) {
+                touch(args, entry);
+                hits.incrementAndGet();
+                return entry.reply;
+            }
+
+            misses.incrementAndGet();
+        }
+
+        final Object reply;
+        try {
+            connection.writeRawCommand(args);
+            reply = connection.readReply();
+        } catch (BajaResourceException e) {
+            // Invalidations may have been lost along with the connection
+            clear();
+            throw e;
+        }
+
+        if (reply instanceof RespErrResponse) {
+            throw RedisConnection.protocolError(((RespErrResponse) reply).getMessage());
+        }
+
+        if (cacheable) {
+            put(copyArgs(args), reply);
+        }
+
+        return reply;
+    }
+
+    /**
+     * Discard all cached replies.
+     */
+    public void clear() {
+        entries.clear();
+        byKey.clear();
+        usage.clear();
+    }
+
+    /**
+     * @return Number of replies currently cached
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Number of times a cached reply was returned
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of times a cacheable command had to be sent to the server
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of replies discarded because the cache was full
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Number of replies discarded because the server invalidated their key
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Disable tracking with {@code CLIENT TRACKING OFF}, stop listening for
+     * invalidations and discard all cached replies. The connection is left open.
+     *
+     * @throws BajaProtocolErrorException If the server responded with an error
+     * @throws BajaResourceException      If there was an I/O error
+     */
+    @Override
+    public void close() {
+        clear();
+        connection.setPushListener(null);
+        RedisCommand.cmd("CLIENT").arg("TRACKING").arg("OFF").query(connection).discard();
+    }
+
+    private boolean isCacheable(List<RespArgument> args) {
+        if (args.size() < 2 || !commands.contains(args.get(0).toString().toUpperCase(Locale.ROOT))) {
+            return false;
+        }
+
+        for (RespArgument arg : args) {
+            if (arg.isStreamed()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Copy the arguments of a command to use as the key of a cached reply. Binary
+     * arguments wrap the caller's array without copying it, and the caller is free
+     * to reuse the array once the command is sent, which would change the key.
+     */
+    private static List<RespArgument> copyArgs(List<RespArgument> args) {
+        final List<RespArgument> out = new ArrayList<>(args.size());
+        for (RespArgument arg : args) {
+            if (arg.isText()) {
+                out.add(arg);
+                continue;
+            }
+
+            final ByteBuffer bytes = arg.getBytes();
+            final byte[] copy = new byte[bytes.remaining()];
+            bytes.get(copy);
+            out.add(RespArgument.of(copy));
+        }
+
+        return out;
+    }
+
+    private void readInvalidations() {
+        try {
+            connection.readPendingPushes();
+        } catch (BajaResourceException e) {
+            clear();
+            throw e;
+        }
+    }
+
+    // VisibleForTesting
+    void onPush(RespPush push) {
+        if (!"invalidate".equals(push.getKind()) || push.getValues().size() < 2) {
+            return;
+        }
+
+        final Object keys = push.getValues().get(1);
+
+        // A null list of keys means that the server flushed everything
+        if (keys == null) {
+            invalidations.addAndGet(entries.size());
+            clear();
+            return;
+        }
+
+        if (keys instanceof List) {
+            for (Object key : (List<?>) keys) {
+                invalidate(String.valueOf(key));
+            }
+        }
+    }
+
+    private void invalidate(String key) {
+        final Set<List<RespArgument>> cached = byKey.remove(key);
+        if (cached == null) {
+            return;
+        }
+
+        for (List<RespArgument> args : cached) {
+            final Entry entry = entries.remove(args);
+            removeUsage(args, entry.uses);
+            invalidations.incrementAndGet();
+        }
+    }
+
+    private void put(List<RespArgument> args, Object reply) {
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+
+        final Entry entry = new Entry(args.get(1).toString(), reply);
+        entries.put(args, entry);
+        byKey.computeIfAbsent(entry.key, k -> new HashSet<>()).add(args);
+        addUsage(args, entry.uses);
+    }
+
+    private void touch(List<RespArgument> args, Entry entry) {
+        removeUsage(args, entry.uses);
+        if (eviction == Eviction.LFU) {
+            entry.uses++;
+        }
+
+        addUsage(args, entry.uses);
+    }
+
+    private void evict() {
+        final Map.Entry<Long, LinkedHashSet<List<RespArgument>>> group = usage.firstEntry();
+        final List<RespArgument> args = group.getValue().iterator().next();
+        final Entry entry = entries.remove(args);
+
+        removeUsage(args, entry.uses);
+
+        final Set<List<RespArgument>> cached = byKey.get(entry.key);
+        cached.remove(args);
+        if (cached.isEmpty()) {
+            byKey.remove(entry.key);
+        }
+
+        evictions.incrementAndGet();
+    }
+
+    private void addUsage(List<RespArgument> args, long uses) {
+        usage.computeIfAbsent(uses, k -> new LinkedHashSet<>()).add(args);
+    }
+
+    private void removeUsage(List<RespArgument> args, long uses) {
+        final Set<List<RespArgument>> group = usage.get(uses);
+        group.remove(args);
+        if (group.isEmpty()) {
+            usage.remove(uses);
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final Object reply;
+        private long uses;
+
+        private Entry(String key, Object reply) {
+            this.key = key;
+            this.reply = reply;
+        }
+    }
+
+    /**
+     * Builder for configuring and creating a {@link NearCache}.
+     * <p>
+     * This class is <em>not</em> thread safe.
+     */
+    public static class Builder {
+
+        private final RedisConnection connection;
+
+        private int maxSize = 10_000;
+
+        private Eviction eviction = Eviction.LRU;
+
+        private Set<String> commands = DEFAULT_COMMANDS;
+
+        private Builder(RedisConnection connection) {
+            this.connection = Objects.requireNonNull(connection);
+        }
+
+        /**
+         * @param maxSize Maximum number of replies to cache, default 10,000
+         * @return fluent interface
+         */
+        public Builder maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param eviction Policy for discarding replies when the cache is full, default LRU
+         * @return fluent interface
+         */
+        public Builder eviction(Eviction eviction) {
+            this.eviction = Objects.requireNonNull(eviction);
+            return this;
+        }
+
+        /**
+         * @param commands Read commands whose replies are cached, replacing the default
+         *                 set of common read commands. The first argument of each must be
+         *                 the only key it reads.
+         * @return fluent interface
+         */
+        public Builder commands(Collection<String> commands) {
+            final Set<String> out = new HashSet<>();
+            for (String command : commands) {
+                out.add(command.toUpperCase(Locale.ROOT));
+            }
+
+            this.commands = Collections.unmodifiableSet(out);
+            return this;
+        }
+
+        /**
+         * Switch the connection to RESP3, enable tracking, and create the cache.
+         *
+         * @return New cache using the configured settings
+         * @throws IllegalArgumentException   If any of the settings are invalid
+         * @throws BajaProtocolErrorException If the server does not support RESP3 or tracking
+         * @throws BajaResourceException      If there was an I/O error
+         */
+        public NearCache build() {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("Max size must be at least 1, got " + maxSize);
+            }
+
+            final NearCache cache = new NearCache(this);
+            connection.hello(3);
+            connection.setPushListener(cache::onPush);
+            RedisCommand.cmd("CLIENT").arg("TRACKING").arg("ON").query(connection).discard();
+            return cache;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.tshlabs.baja;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Observed latency and number of outstanding requests for a single node of a
+ * {@link RedisCluster}, used for choosing which node to send read commands to.
+ * <p>
+ * Latency is tracked as an exponentially weighted moving average of the time
+ * taken by each command. The average decays towards zero while the node isn't
+ * used, so a node that was slow for a short time is eventually tried again
+ * instead of being avoided forever.
+ * <p>
+ * This class is thread safe.
+ */
+final class NodeStats {
+
+    // Weight of each new sample in the moving average
+    private static final double ALPHA = 0.2;
+
+    // Time for the average of an unused node to decay to about a third
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private double averageNanos;
+
+    private long lastUpdate;
+
+    private boolean sampled;
+
+    /**
+     * Record that a command is about to be sent to the node.
+     */
+    void start() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Record that a command sent to the node has completed, whether successfully or not.
+     *
+     * @param startNanos Value of {@link System#nanoTime()} when the command was sent
+     */
+    void finish(long startNanos) {
+        outstanding.decrementAndGet();
+
+        final long now = System.nanoTime();
+        synchronized (this) {
+            final double elapsed = now - startNanos;
+            averageNanos = sampled ? ALPHA * elapsed + (1 - ALPHA) * decayed(now) : elapsed;
+            lastUpdate = now;
+            sampled = true;
+        }
+    }
+
+    /**
+     * @return Number of commands sent to the node that have not completed yet
+     */
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return Moving average of the latency of the node in nanoseconds, zero if
+     * the node has never been used
+     */
+    synchronized double getLatency() {
+        return decayed(System.nanoTime());
+    }
+
+    private double decayed(long now) {
+        if (!sampled) {
+            return 0;
+        }
+
+        return averageNanos * Math.exp(-(now - lastUpdate) / DECAY_NANOS);
+    }
+}
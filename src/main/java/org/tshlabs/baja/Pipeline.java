@@ -0,0 +1,122 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.protocol.RespArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A {@code Pipeline} accepts {@link RedisCommand} instances and queued
+ * (future) {@link Result} instances to be later sent to the Redis server
+ * together, without waiting for the reply to each command before sending
+ * the next one.
+ * <p>
+ * Unlike a {@link Transaction}, the commands are not wrapped in {@code MULTI}
+ * and {@code EXEC} and are not executed atomically. The reply to each command
+ * is read directly into its {@link Result}. If the Redis server responds to a
+ * command with an error, the result of that command is set to the
+ * {@link org.tshlabs.baja.protocol.RespErrResponse error response} (the same
+ * as for an error inside a transaction) and the remaining results are still
+ * populated.
+ * <p>
+ * Commands are sent in chunks of a configurable size, reading the replies to
+ * each chunk before sending the next one, so that neither side has to buffer
+ * the replies to an arbitrarily large pipeline at once. Once executed, the
+ * pipeline is empty and may be reused for more commands.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ *
+ * @see <a href="http://redis.io/topics/pipelining">Redis Pipelining</a>
+ */
+public class Pipeline {
+
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final RedisConnection connection;
+    private final int chunkSize;
+    private final List<RedisCommand> queuedCommands = new ArrayList<>();
+    private final List<Result<?>> queuedResults = new ArrayList<>();
+
+    /**
+     * Construct a new pipeline instance that will make use of the given connection
+     * and send commands in chunks of a default size.
+     *
+     * @param connection Connection for executing this pipeline
+     * @throws NullPointerException If connection is null
+     */
+    Pipeline(RedisConnection connection) {
+        this(connection, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Construct a new pipeline instance that will make use of the given connection
+     * and send commands in chunks of the given size.
+     *
+     * @param connection Connection for executing this pipeline
+     * @param chunkSize  Maximum number of commands to send before reading replies
+     * @throws NullPointerException     If connection is null
+     * @throws IllegalArgumentException If chunk size is less than one
+     */
+    Pipeline(RedisConnection connection, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, got " + chunkSize);
+        }
+
+        this.connection = Objects.requireNonNull(connection);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Queue the given command for future execution along with a holder for the result.
+     *
+     * @param command Command to execute as part of the pipeline
+     * @param result  Holder for the result of the command once the pipeline executes
+     * @param <V>     Type of the result of the command
+     * @return fluent interface
+     */
+    <V> Pipeline queue(RedisCommand command, Result<V> result) {
+        queuedCommands.add(Objects.requireNonNull(command));
+        queuedResults.add(Objects.requireNonNull(result));
+        return this;
+    }
+
+    /**
+     * @return Number of commands queued and not yet executed
+     */
+    public int size() {
+        return queuedCommands.size();
+    }
+
+    /**
+     * Send each of the queued commands to the Redis server in chunks, populate
+     * the associated {@link Result} instances, and empty the pipeline.
+     *
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If there was an I/O error
+     *                                                           executing the pipeline
+     */
+    public void execute() {
+        try {
+            for (int start = 0; start < queuedCommands.size(); start += chunkSize) {
+                final int end = Math.min(start + chunkSize, queuedCommands.size());
+                executeChunk(queuedCommands.subList(start, end), queuedResults.subList(start, end));
+            }
+        } finally {
+            queuedCommands.clear();
+            queuedResults.clear();
+        }
+    }
+
+    private void executeChunk(List<RedisCommand> commands, List<Result<?>> results) {
+        final List<List<RespArgument>> args = new ArrayList<>(commands.size());
+        for (RedisCommand command : commands) {
+            args.add(command.getRawArgs());
+        }
+
+        connection.writeRawMultiCommand(args);
+
+        for (Result<?> result : results) {
+            result.setValue(connection.readReply());
+        }
+    }
+}
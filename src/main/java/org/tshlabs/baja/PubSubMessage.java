@@ -0,0 +1,74 @@
+package org.tshlabs.baja;
+
+import java.util.Objects;
+
+/**
+ * Message published to a channel and received by a {@link RedisSubscriber}.
+ * <p>
+ * This class is thread safe.
+ */
+public final class PubSubMessage {
+
+    private final String pattern;
+
+    private final String channel;
+
+    private final String payload;
+
+    /**
+     * Construct a new message received on the given channel.
+     *
+     * @param pattern Pattern that matched the channel, null if the message was
+     *                received because of a subscription to the channel itself
+     * @param channel Channel the message was published to
+     * @param payload Contents of the message
+     * @throws NullPointerException If channel or payload is null
+     */
+    public PubSubMessage(String pattern, String channel, String payload) {
+        this.pattern = pattern;
+        this.channel = Objects.requireNonNull(channel);
+        this.payload = Objects.requireNonNull(payload);
+    }
+
+    /**
+     * @return Pattern that matched the channel, or null if the message was received
+     * because of a subscription to the channel itself
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final PubSubMessage other = (PubSubMessage) o;
+        return Objects.equals(pattern, other.pattern) &&
+            channel.equals(other.channel) &&
+            payload.equals(other.payload);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pattern, channel, payload);
+    }
+
+    @Override
+    public String toString() {
+        return "PubSubMessage{pattern=" + pattern + ", channel=" + channel + ", payload=" + payload + "}";
+    }
+}
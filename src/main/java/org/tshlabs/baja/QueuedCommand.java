@@ -5,8 +5,8 @@ import java.util.Objects;
 
 /**
  * Class that represents the result of queuing a previously constructed
- * {@link RedisCommand} instance using a {@link Transaction} instance to
- * be executed in the future as part of a Redis transaction.
+ * {@link RedisCommand} instance using a {@link Transaction}, {@link Pipeline} or
+ * {@link ClusterPipeline} instance to be executed in the future as part of a Redis transaction or pipeline.
  * <p>
  * This class is <em>not</em> thread safe.
  *
@@ -14,11 +14,11 @@ import java.util.Objects;
  */
 public class QueuedCommand {
 
-    private final Transaction transaction;
+    private final CommandQueue queue;
     private final RedisCommand command;
 
-    QueuedCommand(Transaction transaction, RedisCommand command) {
-        this.transaction = Objects.requireNonNull(transaction);
+    QueuedCommand(CommandQueue queue, RedisCommand command) {
+        this.queue = Objects.requireNonNull(queue);
         this.command = Objects.requireNonNull(command);
     }
 
@@ -31,7 +31,7 @@ public class QueuedCommand {
      */
     public Result<String> asString() {
         final Result<String> res = new Result<>();
-        transaction.queue(command, res);
+        queue.queue(command, res);
         return res;
     }
 
@@ -43,7 +43,27 @@ public class QueuedCommand {
      */
     public Result<Long> asLong() {
         final Result<Long> res = new Result<>();
-        transaction.queue(command, res);
+        queue.queue(command, res);
+        return res;
+    }
+
+    /**
+     * Get a holder for the future results of the queued command as a value decoded
+     * by the given codec, which must be a "bulk string", "simple string", "integer" or
+     * "double" on the Redis Server side. Types other than bulk strings are decoded from
+     * their text.
+     * <p>
+     * An error result is left as-is, as it is for the other types of results.
+     *
+     * @param codec Codec to decode the results with
+     * @param <T>   Type of the value
+     * @return Holder for queued command results as a value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> asValue(Codec<T> codec) {
+        Objects.requireNonNull(codec);
+        final Result<T> res = new Result<>(reply -> (T) Codecs.decodeReply(codec, reply));
+        queue.queue(command, res);
         return res;
     }
 
@@ -57,7 +77,7 @@ public class QueuedCommand {
      */
     public Result<List<Object>> asArray() {
         final Result<List<Object>> res = new Result<>();
-        transaction.queue(command, res);
+        queue.queue(command, res);
         return res;
     }
 
@@ -72,7 +92,7 @@ public class QueuedCommand {
      */
     public Result<List<String>> asStringArray() {
         final Result<List<String>> res = new Result<>();
-        transaction.queue(command, res);
+        queue.queue(command, res);
         return res;
     }
 
@@ -87,7 +107,7 @@ public class QueuedCommand {
      */
     public Result<Object> asObject() {
         final Result<Object> res = new Result<>();
-        transaction.queue(command, res);
+        queue.queue(command, res);
         return res;
     }
 
@@ -95,6 +115,6 @@ public class QueuedCommand {
      * Discard the future results of a queued command.
      */
     public void discard() {
-        transaction.queue(command, new Result<>());
+        queue.queue(command, new Result<>());
     }
 }
@@ -0,0 +1,758 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaRedirectException;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespErrResponse;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Client for a Redis Cluster that routes each command to the node serving the
+ * slot of its key.
+ * <p>
+ * The map of slots to nodes is fetched from one of the seed nodes using
+ * {@code CLUSTER SLOTS} when the client is built. When a node replies with a
+ * {@code MOVED} redirect, the slot is updated to point to the new node and the
+ * command is retried there. {@code ASK} redirects, sent while a slot is being
+ * migrated, retry the command on the new node after an {@code ASKING} command
+ * without updating the slot. When a node can't be reached the whole map is
+ * fetched again before the error is raised, since the command may or may not
+ * have been executed.
+ * <p>
+ * Each node has its own {@link RedisConnectionPool}, so the client may be shared
+ * between many threads. Commands are sent using {@link RedisCommand#query(RedisCluster)}
+ * and must not have streamed arguments, since they may need to be sent more than once.
+ * <p>
+ * Batches of commands may be sent using a {@link ClusterPipeline}, which sends the
+ * commands for each node as a separate pipeline, with the pipelines for different
+ * nodes sent in parallel. Multi-key commands that can't be sent to a single node
+ * because their keys are in different slots ({@code MGET}, {@code MSET}, {@code DEL},
+ * {@code UNLINK}, {@code EXISTS} and {@code TOUCH}) are split by slot, sent the same
+ * way, and their replies merged, whether sent alone or as part of a pipeline.
+ * Transactions can't span nodes and are not supported.
+ * <p>
+ * By default all commands are sent to the primary node serving their slot. Read
+ * commands may instead be sent to the primary or any of its replicas by choosing
+ * a {@link ReadFrom} policy other than {@link ReadFrom#PRIMARY}, in which case each
+ * new connection sends {@code READONLY} so replicas serve reads for their slots.
+ * Replicas are updated asynchronously and may return stale values. Latency and
+ * outstanding requests are tracked for commands sent with {@link RedisCommand#query(RedisCluster)}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @see <a href="https://redis.io/topics/cluster-spec">Redis Cluster Specification</a>
+ */
+public class RedisCluster implements Closeable {
+
+    /**
+     * Policy for choosing which node to send read commands to.
+     */
+    public enum ReadFrom {
+        /**
+         * Send all commands to the primary node serving their slot.
+         */
+        PRIMARY,
+
+        /**
+         * Send read commands to the node serving their slot, primary or replica,
+         * with the lowest moving average latency.
+         */
+        LOWEST_LATENCY,
+
+        /**
+         * Send read commands to the node serving their slot, primary or replica,
+         * with the fewest commands that have been sent but not completed.
+         */
+        LEAST_OUTSTANDING
+    }
+
+    // Commands that only read keys and may be sent to a replica
+    private static final Set<String> READ_COMMANDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "BITCOUNT", "BITPOS", "DUMP", "EXISTS", "GEODIST", "GEOHASH", "GEOPOS", "GEORADIUS_RO",
+        "GEORADIUSBYMEMBER_RO", "GEOSEARCH", "GET", "GETBIT", "GETRANGE", "HEXISTS", "HGET",
+        "HGETALL", "HKEYS", "HLEN", "HMGET", "HRANDFIELD", "HSCAN", "HSTRLEN", "HVALS", "LINDEX",
+        "LLEN", "LPOS", "LRANGE", "MGET", "PFCOUNT", "PTTL", "SCARD", "SDIFF", "SINTER",
+        "SINTERCARD", "SISMEMBER", "SMEMBERS", "SMISMEMBER", "SRANDMEMBER", "SSCAN", "STRLEN",
+        "SUNION", "TTL", "TYPE", "XINFO", "XLEN", "XPENDING", "XRANGE", "XREAD", "XREVRANGE",
+        "ZCARD", "ZCOUNT", "ZDIFF", "ZINTER", "ZINTERCARD", "ZLEXCOUNT", "ZMSCORE", "ZRANDMEMBER",
+        "ZRANGE", "ZRANGEBYLEX", "ZRANGEBYSCORE", "ZRANK", "ZREVRANGE", "ZREVRANGEBYLEX",
+        "ZREVRANGEBYSCORE", "ZREVRANK", "ZSCAN", "ZSCORE", "ZUNION")));
+
+    private final Set<ClusterNode> seeds;
+
+    private final Function<ClusterNode, RedisConnectionFactory> factory;
+
+    private final Consumer<RedisConnectionPool.Builder> poolConfig;
+
+    private final int maxRedirects;
+
+    private final ReadFrom readFrom;
+
+    private final ExecutorService executor;
+
+    private final boolean ownsExecutor;
+
+    private final AtomicReferenceArray<ClusterNode> slots = new AtomicReferenceArray<>(ClusterSlots.SLOT_COUNT);
+
+    private final AtomicReferenceArray<List<ClusterNode>> replicas = new AtomicReferenceArray<>(ClusterSlots.SLOT_COUNT);
+
+    private final Map<ClusterNode, RedisConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private final Map<ClusterNode, NodeStats> stats = new ConcurrentHashMap<>();
+
+    private final Object refreshLock = new Object();
+
+    private volatile boolean closed;
+
+    private RedisCluster(Builder builder) {
+        this.seeds = builder.seeds;
+        this.factory = builder.factory;
+        this.poolConfig = builder.poolConfig;
+        this.maxRedirects = builder.maxRedirects;
+        this.readFrom = builder.readFrom;
+        this.ownsExecutor = builder.executor == null;
+        this.executor = ownsExecutor ? Executors.newCachedThreadPool(RedisCluster::newThread) : builder.executor;
+    }
+
+    /**
+     * Get a new builder for a client that discovers the cluster using the given
+     * seed nodes.
+     *
+     * @param seeds One or more nodes of the cluster
+     * @return Builder for configuring the client
+     * @throws NullPointerException     If seeds is null
+     * @throws IllegalArgumentException If seeds is empty
+     */
+    public static Builder builder(Collection<ClusterNode> seeds) {
+        return new Builder(seeds);
+    }
+
+    /**
+     * Fetch the map of slots to nodes from the first node that replies to
+     * {@code CLUSTER SLOTS}, trying nodes that currently serve slots before the
+     * seed nodes.
+     *
+     * @throws BajaResourceException If none of the nodes could be reached
+     */
+    public void refreshTopology() {
+        synchronized (refreshLock) {
+            final Set<ClusterNode> candidates = new LinkedHashSet<>(getNodes());
+            candidates.addAll(seeds);
+
+            BajaRuntimeException last = null;
+            for (ClusterNode node : candidates) {
+                try {
+                    final List<Object> ranges = withConnection(node, c ->
+                        RedisCommand.cmd("CLUSTER").arg("SLOTS").query(c).asArray());
+                    updateSlots(node, ranges);
+                    return;
+                } catch (BajaRuntimeException e) {
+                    last = e;
+                }
+            }
+
+            throw new BajaResourceException("Could not fetch cluster slots from any of " + candidates, last);
+        }
+    }
+
+    /**
+     * @param slot Slot between 0 and 16383
+     * @return Node currently serving the slot or null if no node is known to serve it
+     */
+    public ClusterNode getNode(int slot) {
+        return slots.get(slot);
+    }
+
+    /**
+     * @param slot Slot between 0 and 16383
+     * @return Replicas of the primary node currently serving the slot, possibly empty
+     */
+    public List<ClusterNode> getReplicas(int slot) {
+        final List<ClusterNode> out = replicas.get(slot);
+        return out == null ? Collections.emptyList() : out;
+    }
+
+    /**
+     * @return All primary nodes that currently serve at least one slot
+     */
+    public Set<ClusterNode> getNodes() {
+        final Set<ClusterNode> out = new LinkedHashSet<>();
+        for (int i = 0; i < ClusterSlots.SLOT_COUNT; i++) {
+            final ClusterNode node = slots.get(i);
+            if (node != null) {
+                out.add(node);
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Borrow a connection to the given node, apply the given function to it,
+     * and return it to the pool of the node. Redirects are not followed.
+     *
+     * @param node Node to borrow a connection to
+     * @param func Function to apply to the connection
+     * @param <T>  Type of the result of the function
+     * @return Result of the function
+     * @throws BajaResourceException If no connection could be borrowed
+     * @throws IllegalStateException If the client has been closed
+     */
+    public <T> T withConnection(ClusterNode node, Function<RedisConnection, T> func) {
+        return getPool(node).withConnection(func);
+    }
+
+    /**
+     * Run the given scan and get its elements as a parallel {@code Stream}.
+     * <p>
+     * {@code SCAN} is run separately on every primary node, each with its own
+     * connection, so that the keys of each node may be processed by a different
+     * thread. Scans of a single set, hash or sorted set are run on the node serving
+     * its key. Redirects are not followed, so keys that move between nodes while the
+     * scan is running may be missed.
+     * <p>
+     * Connections are borrowed when the scan of each node starts and returned when
+     * it is exhausted. Streams that aren't consumed entirely, including because of an
+     * error, must be closed to return the connections of scans that were started but
+     * not finished. The command must not be modified until the stream has been
+     * consumed or closed.
+     *
+     * @param command Scan to run
+     * @param <T>     Type of the elements returned
+     * @return Parallel stream of the elements from every node
+     * @throws BajaResourceException If the nodes serving the keys could not be found
+     * @throws IllegalStateException If the client has been closed
+     */
+    public <T> Stream<T> scan(ScanCommand<T> command) {
+        final Collection<ClusterNode> nodes = command.getKey() == null ?
+            getNodes() :
+            Collections.singleton(getNodeForSlot(ClusterSlots.getSlot(command.getKey())));
+
+        final List<ScanSpliterator.Partition<T>> partitions = new ArrayList<>(nodes.size());
+        for (ClusterNode node : nodes) {
+            partitions.add(new ScanSpliterator.Partition<>(getPool(node), command));
+        }
+
+        return ScanSpliterator.stream(partitions);
+    }
+
+    /**
+     * Get a new {@link ClusterPipeline} instance that can be used to send many
+     * commands to the nodes of the cluster at once.
+     *
+     * @return New {@code ClusterPipeline} for sending commands
+     */
+    public ClusterPipeline pipeline() {
+        return new ClusterPipeline(this, Pipeline.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Get a new {@link ClusterPipeline} instance that can be used to send many
+     * commands to the nodes of the cluster at once, sending at most the given
+     * number of commands to a node before reading the replies.
+     *
+     * @param chunkSize Maximum number of commands to send to a node before reading replies
+     * @return New {@code ClusterPipeline} for sending commands
+     * @throws IllegalArgumentException If chunk size is less than one
+     */
+    public ClusterPipeline pipeline(int chunkSize) {
+        return new ClusterPipeline(this, chunkSize);
+    }
+
+    /**
+     * Close the connection pools of all nodes and stop the threads used for
+     * sending commands to nodes in parallel, unless they were supplied by the caller.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pools.values().forEach(RedisConnectionPool::close);
+        pools.clear();
+
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Send the command to the node serving its slot, following redirects, and
+     * read the reply using the given function.
+     */
+    <T> T execute(RedisCommand cmd, Function<ExecutedCommand, T> reader) {
+        ClusterNode node = getNodeForCommand(cmd);
+        boolean asking = false;
+
+        for (int redirects = 0; ; redirects++) {
+            final NodeStats nodeStats = getStats(node);
+            final long start = System.nanoTime();
+            nodeStats.start();
+
+            try {
+                final boolean ask = asking;
+                return withConnection(node, c -> {
+                    if (ask) {
+                        RedisCommand.cmd("ASKING").query(c).discard();
+                    }
+
+                    return reader.apply(cmd.query(c));
+                });
+            } catch (BajaRedirectException e) {
+                if (redirects >= maxRedirects) {
+                    throw e;
+                }
+
+                node = redirect(node, e);
+                asking = e.isAsk();
+            } catch (BajaResourceException e) {
+                refreshTopologySafely();
+                throw e;
+            } finally {
+                nodeStats.finish(start);
+            }
+        }
+    }
+
+    /**
+     * Send each part of the split command to the node serving its slot, in
+     * parallel, and merge the replies.
+     *
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If any of the parts failed
+     */
+    Object execute(MultiKeySplit split) {
+        final List<Result<?>> results = new ArrayList<>();
+        for (int i = 0; i < split.getParts().size(); i++) {
+            results.add(new Result<>());
+        }
+
+        executeAll(split.getParts(), results, Pipeline.DEFAULT_CHUNK_SIZE);
+
+        final List<Object> replies = new ArrayList<>(results.size());
+        results.forEach(r -> replies.add(r.get()));
+
+        final Object reply = split.merge(replies);
+        if (reply instanceof RespErrResponse) {
+            throw RedisConnection.protocolError(((RespErrResponse) reply).getMessage());
+        }
+
+        return reply;
+    }
+
+    /**
+     * Send each of the commands to the node serving its slot, as one pipeline per
+     * node with the pipelines of different nodes sent in parallel, and set the reply
+     * to each command as the value of its result.
+     * <p>
+     * Commands that are redirected are sent again, together with the other redirected
+     * commands, until they have been redirected the maximum number of times, after
+     * which the redirect error is their result. Error replies are set as the value of
+     * the result like for a {@link Pipeline}. If a node can't be reached the results
+     * of its commands are not set, the topology is refreshed, and the error is thrown
+     * after the commands for all other nodes have been sent.
+     */
+    void executeAll(List<RedisCommand> commands, List<Result<?>> results, int chunkSize) {
+        final ClusterNode[] nodes = new ClusterNode[commands.size()];
+        final boolean[] asking = new boolean[commands.size()];
+        List<Integer> pending = new ArrayList<>(commands.size());
+
+        for (int i = 0; i < commands.size(); i++) {
+            nodes[i] = getNodeForCommand(commands.get(i));
+            pending.add(i);
+        }
+
+        for (int redirects = 0; !pending.isEmpty(); redirects++) {
+            final Map<ClusterNode, List<Integer>> byNode = new LinkedHashMap<>();
+            for (int i : pending) {
+                byNode.computeIfAbsent(nodes[i], n -> new ArrayList<>()).add(i);
+            }
+
+            final Map<ClusterNode, Future<List<Object>>> futures = new LinkedHashMap<>();
+            Map.Entry<ClusterNode, List<Integer>> local = null;
+            for (Map.Entry<ClusterNode, List<Integer>> entry : byNode.entrySet()) {
+                if (local == null) {
+                    // Send the first batch on this thread while the others are sent in the background
+                    local = entry;
+                } else {
+                    futures.put(entry.getKey(), executor.submit(() ->
+                        sendBatch(entry.getKey(), entry.getValue(), commands, asking, chunkSize)));
+                }
+            }
+
+            final List<Integer> redirected = new ArrayList<>();
+            RuntimeException error = null;
+
+            for (Map.Entry<ClusterNode, List<Integer>> entry : byNode.entrySet()) {
+                final List<Integer> indexes = entry.getValue();
+                final List<Object> replies;
+                try {
+                    replies = entry == local ?
+                        sendBatch(entry.getKey(), indexes, commands, asking, chunkSize) :
+                        getBatch(futures.get(entry.getKey()));
+                } catch (RuntimeException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+
+                    continue;
+                }
+
+                for (int j = 0; j < indexes.size(); j++) {
+                    final int i = indexes.get(j);
+                    final Object reply = replies.get(j);
+                    final BajaRedirectException redirect = reply instanceof RespErrResponse ?
+                        BajaRedirectException.parse(((RespErrResponse) reply).getMessage()) : null;
+
+                    if (redirect != null && redirects < maxRedirects) {
+                        nodes[i] = redirect(nodes[i], redirect);
+                        asking[i] = redirect.isAsk();
+                        redirected.add(i);
+                    } else {
+                        results.get(i).setValue(reply);
+                    }
+                }
+            }
+
+            if (error != null) {
+                if (error instanceof BajaResourceException) {
+                    refreshTopologySafely();
+                }
+
+                throw error;
+            }
+
+            pending = redirected;
+        }
+    }
+
+    private List<Object> sendBatch(ClusterNode node, List<Integer> indexes, List<RedisCommand> commands,
+                                   boolean[] asking, int chunkSize) {
+        return withConnection(node, c -> {
+            final Pipeline pipeline = c.pipeline(chunkSize);
+            final List<Result<Object>> replies = new ArrayList<>(indexes.size());
+
+            for (int i : indexes) {
+                if (asking[i]) {
+                    RedisCommand.cmd("ASKING").queue(pipeline).discard();
+                }
+
+                replies.add(commands.get(i).queue(pipeline).asObject());
+            }
+
+            pipeline.execute();
+
+            final List<Object> out = new ArrayList<>(replies.size());
+            replies.forEach(r -> out.add(r.get()));
+            return out;
+        });
+    }
+
+    private static List<Object> getBatch(Future<List<Object>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BajaResourceException("Interrupted waiting for replies", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new BajaResourceException("Could not send commands", e.getCause());
+        }
+    }
+
+    /**
+     * Get the node to send a redirected command to, updating the slot map for
+     * {@code MOVED} redirects.
+     */
+    private ClusterNode redirect(ClusterNode from, BajaRedirectException e) {
+        final String host = e.getHost().isEmpty() ? from.getHost() : e.getHost();
+        final ClusterNode node = new ClusterNode(host, e.getPort());
+
+        if (!e.isAsk()) {
+            slots.set(e.getSlot(), node);
+            replicas.set(e.getSlot(), null);
+        }
+
+        return node;
+    }
+
+    /**
+     * Get the node to send the command to: a random node for keyless commands, the
+     * primary for the slot of the key, or for read commands any node serving the slot
+     * chosen using the read policy.
+     */
+    private ClusterNode getNodeForCommand(RedisCommand cmd) {
+        final int slot = ClusterSlots.getSlot(cmd);
+        if (slot < 0) {
+            return getAnyNode();
+        }
+
+        final ClusterNode primary = getNodeForSlot(slot);
+        final List<ClusterNode> candidates = replicas.get(slot);
+        if (readFrom == ReadFrom.PRIMARY || candidates == null || candidates.isEmpty() || !isReadCommand(cmd)) {
+            return primary;
+        }
+
+        // Ties go to the primary
+        ClusterNode best = primary;
+        double bestScore = score(primary);
+        for (ClusterNode replica : candidates) {
+            final double score = score(replica);
+            if (score < bestScore) {
+                best = replica;
+                bestScore = score;
+            }
+        }
+
+        return best;
+    }
+
+    private double score(ClusterNode node) {
+        final NodeStats nodeStats = getStats(node);
+        return readFrom == ReadFrom.LOWEST_LATENCY ? nodeStats.getLatency() : nodeStats.getOutstanding();
+    }
+
+    private static boolean isReadCommand(RedisCommand cmd) {
+        return READ_COMMANDS.contains(cmd.getRawArgs().get(0).toString().toUpperCase(Locale.ROOT));
+    }
+
+    private NodeStats getStats(ClusterNode node) {
+        return stats.computeIfAbsent(node, n -> new NodeStats());
+    }
+
+    private ClusterNode getNodeForSlot(int slot) {
+        final ClusterNode node = slots.get(slot);
+        if (node != null) {
+            return node;
+        }
+
+        refreshTopology();
+        final ClusterNode refreshed = slots.get(slot);
+        if (refreshed == null) {
+            throw new BajaResourceException("No node is serving slot " + slot);
+        }
+
+        return refreshed;
+    }
+
+    private ClusterNode getAnyNode() {
+        return getNodeForSlot(ThreadLocalRandom.current().nextInt(ClusterSlots.SLOT_COUNT));
+    }
+
+    private RedisConnectionPool getPool(ClusterNode node) {
+        if (closed) {
+            throw new IllegalStateException("Cluster client has been closed");
+        }
+
+        return pools.computeIfAbsent(node, n -> {
+            final RedisConnectionFactory base = factory.apply(n);
+            final RedisConnectionPool.Builder builder = RedisConnectionPool.builder(
+                readFrom == ReadFrom.PRIMARY ? base : () -> readOnly(base.create()));
+            poolConfig.accept(builder);
+            return builder.build();
+        });
+    }
+
+    /**
+     * Allow reads from a replica using the connection, closing it on failure.
+     */
+    private static RedisConnection readOnly(RedisConnection connection) {
+        try {
+            RedisCommand.cmd("READONLY").query(connection).discard();
+            return connection;
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "baja-cluster");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void refreshTopologySafely() {
+        try {
+            refreshTopology();
+        } catch (BajaRuntimeException e) {
+            // The original error is more useful to the caller
+        }
+    }
+
+    /**
+     * Update the map of slots from a {@code CLUSTER SLOTS} reply, which has an
+     * entry with the start slot, end slot, master and replicas of each range.
+     */
+    @SuppressWarnings("unchecked")
+    private void updateSlots(ClusterNode source, List<Object> ranges) {
+        final ClusterNode[] updated = new ClusterNode[ClusterSlots.SLOT_COUNT];
+        final List<?>[] updatedReplicas = new List<?>[ClusterSlots.SLOT_COUNT];
+
+        for (Object range : ranges) {
+            final List<?> fields = AsyncCommand.cast(range, List.class, false);
+            if (fields.size() < 3) {
+                throw new BajaTypeMismatchException("Unexpected cluster slots entry " + fields);
+            }
+
+            final int start = AsyncCommand.cast(fields.get(0), Long.class, false).intValue();
+            final int end = AsyncCommand.cast(fields.get(1), Long.class, false).intValue();
+            final ClusterNode master = parseNode(source, fields.get(2));
+
+            final List<ClusterNode> rangeReplicas = new ArrayList<>();
+            for (int i = 3; i < fields.size(); i++) {
+                rangeReplicas.add(parseNode(source, fields.get(i)));
+            }
+
+            final List<ClusterNode> shared = Collections.unmodifiableList(rangeReplicas);
+            for (int slot = start; slot <= end; slot++) {
+                updated[slot] = master;
+                updatedReplicas[slot] = shared;
+            }
+        }
+
+        for (int slot = 0; slot < updated.length; slot++) {
+            slots.set(slot, updated[slot]);
+            replicas.set(slot, (List<ClusterNode>) updatedReplicas[slot]);
+        }
+    }
+
+    private static ClusterNode parseNode(ClusterNode source, Object node) {
+        final List<?> fields = AsyncCommand.cast(node, List.class, false);
+        if (fields.size() < 2) {
+            throw new BajaTypeMismatchException("Unexpected cluster slots node " + fields);
+        }
+
+        // An empty host means the same host as the node we asked
+        final String host = String.valueOf(fields.get(0));
+        final int port = AsyncCommand.cast(fields.get(1), Long.class, false).intValue();
+        return new ClusterNode(host.isEmpty() ? source.getHost() : host, port);
+    }
+
+    /**
+     * Builder for configuring and creating a {@link RedisCluster}.
+     * <p>
+     * This class is <em>not</em> thread safe.
+     */
+    public static class Builder {
+
+        private final Set<ClusterNode> seeds;
+
+        private Function<ClusterNode, RedisConnectionFactory> factory =
+            node -> new SocketConnectionFactory(node.getHost(), node.getPort());
+
+        private Consumer<RedisConnectionPool.Builder> poolConfig = builder -> {
+        };
+
+        private int maxRedirects = 5;
+
+        private ExecutorService executor;
+
+        private ReadFrom readFrom = ReadFrom.PRIMARY;
+
+        private Builder(Collection<ClusterNode> seeds) {
+            if (seeds.isEmpty()) {
+                throw new IllegalArgumentException("At least one seed node is required");
+            }
+
+            this.seeds = new LinkedHashSet<>(seeds);
+        }
+
+        /**
+         * @param factory Function for creating a connection factory for a node, default
+         *                a {@link SocketConnectionFactory} with default timeouts
+         * @return fluent interface
+         */
+        public Builder connectionFactory(Function<ClusterNode, RedisConnectionFactory> factory) {
+            this.factory = Objects.requireNonNull(factory);
+            return this;
+        }
+
+        /**
+         * @param poolConfig Function for configuring the connection pool of each node,
+         *                   default pools use the default settings
+         * @return fluent interface
+         */
+        public Builder poolConfig(Consumer<RedisConnectionPool.Builder> poolConfig) {
+            this.poolConfig = Objects.requireNonNull(poolConfig);
+            return this;
+        }
+
+        /**
+         * @param maxRedirects Maximum number of redirects to follow for a command, default 5
+         * @return fluent interface
+         */
+        public Builder maxRedirects(int maxRedirects) {
+            this.maxRedirects = maxRedirects;
+            return this;
+        }
+
+        /**
+         * @param readFrom Policy for choosing the node to send read commands to, default
+         *                 {@link ReadFrom#PRIMARY}
+         * @return fluent interface
+         */
+        public Builder readFrom(ReadFrom readFrom) {
+            this.readFrom = Objects.requireNonNull(readFrom);
+            return this;
+        }
+
+        /**
+         * @param executor Executor for sending commands to nodes in parallel, which is not
+         *                 shut down when the client is closed. Default a cached pool of
+         *                 daemon threads owned by the client.
+         * @return fluent interface
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * Fetch the map of slots to nodes from the seed nodes and create the client.
+         *
+         * @return New client using the configured settings
+         * @throws IllegalArgumentException If any of the settings are invalid
+         * @throws BajaResourceException    If none of the seed nodes could be reached
+         */
+        public RedisCluster build() {
+            if (maxRedirects < 0) {
+                throw new IllegalArgumentException("Max redirects must not be negative, got " + maxRedirects);
+            }
+
+            final RedisCluster cluster = new RedisCluster(this);
+            try {
+                cluster.refreshTopology();
+            } catch (RuntimeException e) {
+                cluster.close();
+                throw e;
+            }
+
+            return cluster;
+        }
+    }
+}
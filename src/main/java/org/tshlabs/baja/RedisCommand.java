@@ -1,9 +1,15 @@
 package org.tshlabs.baja;
 
+import org.tshlabs.baja.protocol.RespArgument;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Class for assembling a command and sequence arguments to send to a Redis server
@@ -13,10 +19,10 @@ import java.util.Objects;
  */
 public class RedisCommand {
 
-    private final List<String> args = new ArrayList<>();
+    private final List<RespArgument> args = new ArrayList<>();
 
     private RedisCommand(String command) {
-        this.args.add(Objects.requireNonNull(command));
+        this.args.add(RespArgument.of(command));
     }
 
     /**
@@ -38,7 +44,21 @@ public class RedisCommand {
      * @return fluent interface
      */
     public RedisCommand arg(String arg) {
-        this.args.add(arg);
+        this.args.add(RespArgument.of(arg));
+        return this;
+    }
+
+    /**
+     * Append an argument of any type to the base Redis command, encoded using the
+     * given codec.
+     *
+     * @param arg   Argument to append to the command
+     * @param codec Codec to encode the argument with
+     * @param <T>   Type of the argument
+     * @return fluent interface
+     */
+    public <T> RedisCommand arg(T arg, Codec<T> codec) {
+        this.args.add(codec.encode(Objects.requireNonNull(arg)));
         return this;
     }
 
@@ -49,7 +69,7 @@ public class RedisCommand {
      * @return fluent interface
      */
     public RedisCommand arg(long arg) {
-        this.args.add(String.valueOf(arg));
+        this.args.add(RespArgument.of(String.valueOf(arg)));
         return this;
     }
 
@@ -60,7 +80,7 @@ public class RedisCommand {
      * @return fluent interface
      */
     public RedisCommand arg(int arg) {
-        this.args.add(String.valueOf(arg));
+        this.args.add(RespArgument.of(String.valueOf(arg)));
         return this;
     }
 
@@ -71,7 +91,7 @@ public class RedisCommand {
      * @return fluent interface
      */
     public RedisCommand arg(boolean arg) {
-        this.args.add(arg ? "1" : "0");
+        this.args.add(RespArgument.of(arg ? "1" : "0"));
         return this;
     }
 
@@ -82,7 +102,7 @@ public class RedisCommand {
      * @return fluent interface
      */
     public RedisCommand arg(float arg) {
-        this.args.add(String.valueOf(arg));
+        this.args.add(RespArgument.of(String.valueOf(arg)));
         return this;
     }
 
@@ -93,16 +113,125 @@ public class RedisCommand {
      * @return fluent interface
      */
     public RedisCommand arg(double arg) {
-        this.args.add(String.valueOf(arg));
+        this.args.add(RespArgument.of(String.valueOf(arg)));
+        return this;
+    }
+
+    /**
+     * Append a binary argument to the base Redis command.
+     * <p>
+     * The bytes will be sent to the Redis server verbatim. The array is not
+     * copied and must not be modified until the command has been sent.
+     *
+     * @param arg Argument to append to the command
+     * @return fluent interface
+     */
+    public RedisCommand arg(byte[] arg) {
+        this.args.add(RespArgument.of(arg));
         return this;
     }
 
+    /**
+     * Append a slice of a byte array as a binary argument to the base Redis command.
+     * <p>
+     * The bytes will be sent to the Redis server verbatim. The array is not
+     * copied and must not be modified until the command has been sent.
+     *
+     * @param arg    Array containing the argument to append to the command
+     * @param offset Start of the argument within the array
+     * @param length Number of bytes in the argument
+     * @return fluent interface
+     */
+    public RedisCommand arg(byte[] arg, int offset, int length) {
+        this.args.add(RespArgument.of(arg, offset, length));
+        return this;
+    }
+
+    /**
+     * Append the remaining bytes of a buffer as a binary argument to the base
+     * Redis command.
+     * <p>
+     * The bytes will be sent to the Redis server verbatim. The position of the
+     * buffer is not modified. The contents of the buffer are not copied and must
+     * not be modified until the command has been sent.
+     *
+     * @param arg Argument to append to the command
+     * @return fluent interface
+     */
+    public RedisCommand arg(ByteBuffer arg) {
+        this.args.add(RespArgument.of(arg));
+        return this;
+    }
+
+    /**
+     * Append a binary argument of the given length which is read from a channel
+     * as the command is sent, without being held in memory.
+     * <p>
+     * The channel is read from its current position when the command is sent,
+     * so the command can only be sent once. Commands sent using an
+     * {@link AsyncRedisConnection} are encoded in memory before being sent,
+     * including any streamed arguments.
+     *
+     * @param length Number of bytes to read from the channel
+     * @param source Channel to read the argument from
+     * @return fluent interface
+     * @throws IllegalArgumentException If length is negative
+     */
+    public RedisCommand arg(long length, ReadableByteChannel source) {
+        this.args.add(RespArgument.of(length, source));
+        return this;
+    }
+
+    /**
+     * Append a region of a file as a binary argument which is read as the
+     * command is sent, without being held in memory.
+     * <p>
+     * When the command is sent over a channel the region is transferred directly
+     * from the file to the socket by the operating system. The position of the
+     * file is not modified.
+     *
+     * @param file     File to read the argument from
+     * @param position Start of the argument within the file
+     * @param count    Number of bytes in the argument
+     * @return fluent interface
+     * @throws IllegalArgumentException If position or count are negative
+     */
+    public RedisCommand arg(FileChannel file, long position, long count) {
+        this.args.add(RespArgument.of(file, position, count));
+        return this;
+    }
+
+    /**
+     * Append an argument taken from another command, for splitting commands.
+     */
+    RedisCommand arg(RespArgument arg) {
+        this.args.add(Objects.requireNonNull(arg));
+        return this;
+    }
+
+    /**
+     * Get an immutable view of the arguments comprising this Redis command
+     * as strings.
+     * <p>
+     * Binary arguments are decoded using the {@link org.tshlabs.baja.protocol.RespEncodings#DEFAULT_PAYLOAD
+     * default} character set, making this suitable for logging or debugging but
+     * not for sending commands with binary arguments to the server. Use
+     * {@link #getRawArgs()} for that.
+     *
+     * @return Arguments as strings
+     */
+    public List<String> getArgs() {
+        return Collections.unmodifiableList(args.stream()
+            .map(RespArgument::toString)
+            .collect(Collectors.toList()));
+    }
+
     /**
      * Get an immutable view of the arguments comprising this Redis command.
      *
      * @return Arguments that will passed to the Redis connection
      */
-    public List<String> getArgs() {
+    public List<RespArgument> getRawArgs() {
         return Collections.unmodifiableList(args);
     }
 
@@ -117,6 +246,47 @@ public class RedisCommand {
         return new ExecutedCommand(Objects.requireNonNull(connection), this);
     }
 
+    /**
+     * Use the given {@link NearCache} to get the results of the command from the
+     * cache, or to send the command to the Redis server using the connection of
+     * the cache if they are not cached, and return a facade for reading the results.
+     *
+     * @param cache Cache to get results from or connection to use for sending commands
+     * @return Wrapper for reading results of the command executed
+     */
+    public CachedCommand query(NearCache cache) {
+        return new CachedCommand(Objects.requireNonNull(cache), this);
+    }
+
+    /**
+     * Use the given {@link RedisCluster} to send a command to the node serving the
+     * slot of its key, and return a facade for reading the results of the command.
+     * <p>
+     * The command is not sent until the results are read. It may be sent more than
+     * once if the cluster redirects it, so it must not have streamed arguments.
+     *
+     * @param cluster Cluster to use for sending commands to the Redis server
+     * @return Wrapper for reading results of the command
+     */
+    public ClusterCommand query(RedisCluster cluster) {
+        return new ClusterCommand(Objects.requireNonNull(cluster), this);
+    }
+
+    /**
+     * Prepare to send the command to the Redis server using the given
+     * {@link AsyncRedisConnection}, returning a facade for getting
+     * {@link java.util.concurrent.CompletableFuture futures} for the results.
+     * <p>
+     * Nothing is sent until one of the {@code as*()} methods of the facade is
+     * called, which sends the command without waiting for the results.
+     *
+     * @param connection Connection to use for sending commands to the Redis server
+     * @return Wrapper for the future results of the command
+     */
+    public AsyncCommand queryAsync(AsyncRedisConnection connection) {
+        return new AsyncCommand(Objects.requireNonNull(connection), this);
+    }
+
     /**
      * Use the given {@link Transaction} to queue a command for later execution
      * in the context of Redis transaction and return a facade for reading the
@@ -126,7 +296,31 @@ public class RedisCommand {
      * @return Wrapper for reading queued results of the command
      */
     public QueuedCommand queue(Transaction transaction) {
-        return new QueuedCommand(Objects.requireNonNull(transaction), this);
+        return new QueuedCommand(Objects.requireNonNull(transaction)::queue, this);
+    }
+
+    /**
+     * Use the given {@link Pipeline} to queue a command for later execution
+     * along with other commands without waiting for each reply, and return a
+     * facade for reading the {@link Result future results} of the command.
+     *
+     * @param pipeline Pipeline for executing commands in the future
+     * @return Wrapper for reading queued results of the command
+     */
+    public QueuedCommand queue(Pipeline pipeline) {
+        return new QueuedCommand(Objects.requireNonNull(pipeline)::queue, this);
+    }
+
+    /**
+     * Use the given {@link ClusterPipeline} to queue a command for later execution
+     * on the node serving the slot of its key, along with other commands, and return
+     * a facade for reading the {@link Result future results} of the command.
+     *
+     * @param pipeline Pipeline for executing commands in the future
+     * @return Wrapper for reading queued results of the command
+     */
+    public QueuedCommand queue(ClusterPipeline pipeline) {
+        return new QueuedCommand(Objects.requireNonNull(pipeline)::queue, this);
     }
 
 }
@@ -1,17 +1,27 @@
 package org.tshlabs.baja;
 
 import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaRedirectException;
 import org.tshlabs.baja.exceptions.BajaResourceException;
 import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespArgument;
 import org.tshlabs.baja.protocol.RespEncoder;
 import org.tshlabs.baja.protocol.RespErrResponse;
+import org.tshlabs.baja.protocol.RespHandler;
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespOutputBuffer;
 import org.tshlabs.baja.protocol.RespParser;
+import org.tshlabs.baja.protocol.RespPush;
 import org.tshlabs.baja.protocol.RespType;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
@@ -23,20 +33,35 @@ import java.util.stream.Collectors;
  * the REdis Serialization Protocol (RESP).
  * <p>
  * The connection operates on {@link InputStream} and {@link OutputStream}
- * implementations that are expected to be managed outside of the connection.
+ * implementations that are expected to be managed outside of the connection,
+ * apart from being closed by {@link #close()}.
+ * Commands are encoded directly into a fixed size {@link RespOutputBuffer}
+ * that is flushed to the output stream in chunks, so the output stream does
+ * not need to be buffered.
+ * <p>
+ * Connections start out using RESP2 and can be switched to RESP3 using
+ * {@link #hello(int)}. The typed read methods accept the equivalent RESP3 types
+ * as well as the RESP2 ones, so callers work the same way with either protocol.
+ * RESP3 push frames that arrive before a reply are passed to the
+ * {@link #setPushListener(Consumer) push listener}, if any, and attributes are
+ * skipped.
  * <p>
  * This class is <em>not</em> thread safe.
  */
-public class RedisConnection {
+public class RedisConnection implements Closeable {
 
     private final OutputStream outputStream;
 
+    private final RespOutputBuffer outputBuffer;
+
     private final InputStream inputStream;
 
     private final RespEncoder encoder;
 
     private final RespParser parser;
 
+    private Consumer<RespPush> pushListener;
+
     /**
      * Construct a new instance with the given input stream, output stream, RESP
      * encoder, and RESP parser.
@@ -54,6 +79,7 @@ public class RedisConnection {
         RespParser parser) {
         this.inputStream = Objects.requireNonNull(inputStream);
         this.outputStream = Objects.requireNonNull(outputStream);
+        this.outputBuffer = new RespOutputBuffer(outputStream);
         this.encoder = Objects.requireNonNull(encoder);
         this.parser = Objects.requireNonNull(parser);
     }
@@ -71,6 +97,77 @@ public class RedisConnection {
         return new Transaction(this);
     }
 
+    /**
+     * Get a new {@link Pipeline} instance that can be used to send multiple Redis
+     * commands at once without waiting for the reply to each, sending commands
+     * in chunks of a default size.
+     * <p>
+     * When the pipeline executes, it will use this connection instance.
+     *
+     * @return New {@code Pipeline} for executing multiple commands
+     * @see <a href="http://redis.io/topics/pipelining">Pipelining</a>
+     */
+    public Pipeline pipeline() {
+        return new Pipeline(this);
+    }
+
+    /**
+     * Get a new {@link Pipeline} instance that can be used to send multiple Redis
+     * commands at once without waiting for the reply to each, sending at most the
+     * given number of commands before reading their replies.
+     * <p>
+     * When the pipeline executes, it will use this connection instance.
+     *
+     * @param chunkSize Maximum number of commands to send before reading replies
+     * @return New {@code Pipeline} for executing multiple commands
+     * @throws IllegalArgumentException If chunk size is less than one
+     * @see <a href="http://redis.io/topics/pipelining">Pipelining</a>
+     */
+    public Pipeline pipeline(int chunkSize) {
+        return new Pipeline(this, chunkSize);
+    }
+
+    /**
+     * Set a listener for RESP3 push frames, such as client side caching
+     * invalidations, that arrive while reading the reply to a command. Push
+     * frames are discarded if there is no listener.
+     * <p>
+     * The listener is called on the thread reading from this connection.
+     *
+     * @param listener Listener for push frames or null to discard them
+     * @return fluent interface
+     */
+    public RedisConnection setPushListener(Consumer<RespPush> listener) {
+        this.pushListener = listener;
+        return this;
+    }
+
+    /**
+     * Switch this connection to the given version of the Redis protocol using
+     * the {@code HELLO} command and return the information about the server that
+     * it replies with.
+     * <p>
+     * Version 3 enables RESP3 replies, which include maps, sets, doubles and
+     * out of band push frames. Servers older than Redis 6 do not support the
+     * command and reply with an error.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @param protocolVersion Version of the protocol to use, 2 or 3
+     * @return Information about the server, such as its version and mode
+     * @throws BajaResourceException      If there was an error reading from the stream
+     * @throws BajaProtocolErrorException If the server does not support the protocol
+     *                                    version or the command
+     * @see <a href="https://redis.io/commands/hello">HELLO</a>
+     */
+    public Map<String, Object> hello(int protocolVersion) {
+        writeCommand(Arrays.asList("HELLO", String.valueOf(protocolVersion)));
+
+        final Map<String, Object> out = new LinkedHashMap<>();
+        readMap().forEach((k, v) -> out.put(String.valueOf(k), v));
+        return out;
+    }
+
     /**
      * Encode and send the given arguments to the Redis server
      * <p>
@@ -94,8 +191,53 @@ public class RedisConnection {
      * @throws BajaResourceException If there was an error writing to the output stream
      */
     public RedisConnection writeMultiCommand(List<List<String>> commands) {
+        Objects.requireNonNull(commands);
         IOFunction.runCommand(() -> {
-            outputStream.write(encoder.encodeMulti(Objects.requireNonNull(commands)));
+            try {
+                encoder.encodeMulti(commands, outputBuffer);
+                outputBuffer.flush();
+            } finally {
+                outputBuffer.reset();
+            }
+            return null;
+        });
+
+        return this;
+    }
+
+    /**
+     * Encode and send the given arguments, which may include binary arguments, to
+     * the Redis server
+     * <p>
+     * This is a blocking operation.
+     *
+     * @param args Command and arguments to send
+     * @return fluent interface
+     * @throws BajaResourceException If there was an error writing to the output stream
+     */
+    public RedisConnection writeRawCommand(List<RespArgument> args) {
+        return writeRawMultiCommand(Collections.singletonList(Objects.requireNonNull(args)));
+    }
+
+    /**
+     * Encode and send multiple commands and arguments, which may include binary
+     * arguments, to the Redis Server
+     * <p>
+     * This is a blocking operation.
+     *
+     * @param commands Multiple commands and associated arguments to send
+     * @return fluent interface
+     * @throws BajaResourceException If there was an error writing to the output stream
+     */
+    public RedisConnection writeRawMultiCommand(List<List<RespArgument>> commands) {
+        Objects.requireNonNull(commands);
+        IOFunction.runCommand(() -> {
+            try {
+                encoder.encodeRawMulti(commands, outputBuffer);
+                outputBuffer.flush();
+            } finally {
+                outputBuffer.reset();
+            }
             return null;
         });
 
@@ -130,8 +272,125 @@ public class RedisConnection {
      * @throws BajaProtocolErrorException If the server responded with an error result
      */
     public String readBulkString() {
-        verifyResponseType(Collections.singleton(RespType.BULK_STRING));
-        return IOFunction.runCommand(() -> parser.readBulkString(inputStream));
+        final RespType type = verifyResponseType(EnumSet.of(RespType.BULK_STRING, RespType.VERBATIM_STRING, RespType.NULL));
+        return readString(type);
+    }
+
+    /**
+     * Read a bulk string response from the server as raw bytes, without decoding
+     * it using a character set, throwing an exception if the response is not a
+     * bulk string type.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return The response as bytes
+     * @throws BajaTypeMismatchException  If the response was not a bulk string
+     * @throws BajaResourceException      If there was an error reading from the stream
+     * @throws BajaProtocolErrorException If the server responded with an error result
+     */
+    public byte[] readBulkBytes() {
+        if (verifyResponseType(EnumSet.of(RespType.BULK_STRING, RespType.NULL)) == RespType.NULL) {
+            return null;
+        }
+
+        return IOFunction.runCommand(() -> parser.readBulkBytes(inputStream));
+    }
+
+    /**
+     * Read a bulk string response from the server as a read-only {@link ByteBuffer},
+     * without decoding it using a character set, throwing an exception if the response
+     * is not a bulk string type.
+     * <p>
+     * If the input stream of this connection is a {@link org.tshlabs.baja.protocol.RespInputBuffer},
+     * the returned buffer is a view of the stream's buffer and is only valid until the
+     * next read from this connection.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return The response as a read-only byte buffer
+     * @throws BajaTypeMismatchException  If the response was not a bulk string
+     * @throws BajaResourceException      If there was an error reading from the stream
+     * @throws BajaProtocolErrorException If the server responded with an error result
+     */
+    public ByteBuffer readBulkByteBuffer() {
+        if (verifyResponseType(EnumSet.of(RespType.BULK_STRING, RespType.NULL)) == RespType.NULL) {
+            return null;
+        }
+
+        return IOFunction.runCommand(() -> parser.readBulkByteBuffer(inputStream));
+    }
+
+    /**
+     * Read a bulk string response as described by {@link #readBulkByteBuffer()}, or
+     * a simple string, integer or double response as the bytes of its text, the
+     * same way {@link Codecs} decodes them from a pipeline or transaction.
+     */
+    ByteBuffer readValueByteBuffer() {
+        final RespType type = verifyResponseType(EnumSet.of(
+            RespType.BULK_STRING, RespType.SIMPLE_STRING, RespType.INTEGER, RespType.DOUBLE, RespType.NULL));
+
+        switch (type) {
+            case BULK_STRING:
+                return IOFunction.runCommand(() -> parser.readBulkByteBuffer(inputStream));
+            case SIMPLE_STRING:
+                return asciiBytes(IOFunction.runCommand(() -> parser.readSimpleString(inputStream)));
+            case INTEGER:
+                return asciiBytes(String.valueOf(IOFunction.runCommand(() -> parser.readLong(inputStream))));
+            case DOUBLE:
+                return asciiBytes(String.valueOf(IOFunction.runCommand(() -> parser.readDouble(inputStream))));
+            default:
+                return null;
+        }
+    }
+
+    private static ByteBuffer asciiBytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Read a bulk string response from the server as a stream over its payload,
+     * without reading the payload into memory, throwing an exception if the
+     * response is not a bulk string type.
+     * <p>
+     * The returned stream reads directly from this connection and must be read
+     * to the end or closed before reading any other responses from this connection.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return Stream over the response, null if the response was a null bulk string
+     * @throws BajaTypeMismatchException  If the response was not a bulk string
+     * @throws BajaResourceException      If there was an error reading from the stream
+     * @throws BajaProtocolErrorException If the server responded with an error result
+     */
+    public InputStream readBulkStream() {
+        if (verifyResponseType(EnumSet.of(RespType.BULK_STRING, RespType.NULL)) == RespType.NULL) {
+            return null;
+        }
+
+        return IOFunction.runCommand(() -> parser.readBulkStream(inputStream));
+    }
+
+    /**
+     * Read a bulk string response from the server and copy it to the given stream
+     * in small chunks, without reading the payload into memory all at once,
+     * throwing an exception if the response is not a bulk string type.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @param target Stream to copy the response to
+     * @return Number of bytes copied, or -1 if the response was a null bulk string
+     * @throws BajaTypeMismatchException  If the response was not a bulk string
+     * @throws BajaResourceException      If there was an error reading from the
+     *                                    connection or writing to the target
+     * @throws BajaProtocolErrorException If the server responded with an error result
+     */
+    public long transferBulk(OutputStream target) {
+        Objects.requireNonNull(target);
+        if (verifyResponseType(EnumSet.of(RespType.BULK_STRING, RespType.NULL)) == RespType.NULL) {
+            return -1;
+        }
+
+        return IOFunction.runCommand(() -> parser.transferBulk(inputStream, target));
     }
 
     /**
@@ -149,13 +408,39 @@ public class RedisConnection {
         final Set<RespType> expected = new HashSet<>();
         expected.add(RespType.BULK_STRING);
         expected.add(RespType.SIMPLE_STRING);
+        expected.add(RespType.VERBATIM_STRING);
+        expected.add(RespType.NULL);
+
+        return readString(verifyResponseType(expected));
+    }
+
+    /**
+     * Read a double response from the server, throwing an exception if the result
+     * is not a double (RESP3) or a string containing a double (RESP2).
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return The response as a {@code Double}, null if the response was null
+     * @throws BajaTypeMismatchException  If the response was not a double or string, or
+     *                                    the string was not a valid double
+     * @throws BajaResourceException      If there was an error reading from the stream
+     * @throws BajaProtocolErrorException If the server responded with an error result
+     */
+    public Double readDouble() {
+        final Set<RespType> expected = EnumSet.of(
+            RespType.DOUBLE, RespType.BULK_STRING, RespType.SIMPLE_STRING, RespType.NULL);
 
         final RespType type = verifyResponseType(expected);
-        if (type == RespType.BULK_STRING) {
-            return IOFunction.runCommand(() -> parser.readBulkString(inputStream));
+        if (type == RespType.DOUBLE) {
+            return IOFunction.runCommand(() -> parser.readDouble(inputStream));
         }
 
-        return IOFunction.runCommand(() -> parser.readSimpleString(inputStream));
+        final String value = readString(type);
+        try {
+            return value == null ? null : RespParser.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new BajaTypeMismatchException("Unexpected value for double " + value);
+        }
     }
 
     /**
@@ -189,8 +474,143 @@ public class RedisConnection {
      * @throws BajaProtocolErrorException If the server responded with an error result
      */
     public List<Object> readArray() {
-        verifyResponseType(Collections.singleton(RespType.ARRAY));
-        return IOFunction.runCommand(() -> parser.readArray(inputStream));
+        return readList(verifyResponseType(EnumSet.of(RespType.ARRAY, RespType.SET, RespType.MAP, RespType.NULL)));
+    }
+
+    /**
+     * Read a "map" response from the server, throwing an exception if the result
+     * is not a map (RESP3) or an array of alternating keys and values (RESP2),
+     * as returned by commands such as {@code HGETALL} and {@code CONFIG GET}.
+     * <p>
+     * Entries are returned in the order they were sent by the server.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return The response as a {@code Map} of objects, null if the response was null
+     * @throws BajaTypeMismatchException  If the response was not a map, or was an array
+     *                                    with an odd number of elements
+     * @throws BajaResourceException      If there was an error reading from the stream
+     * @throws BajaProtocolErrorException If the server responded with an error result
+     */
+    public Map<Object, Object> readMap() {
+        final RespType type = verifyResponseType(EnumSet.of(RespType.MAP, RespType.ARRAY, RespType.NULL));
+        if (type == RespType.NULL) {
+            return null;
+        }
+
+        if (type == RespType.MAP) {
+            return IOFunction.runCommand(() -> parser.readMap(inputStream));
+        }
+
+        final List<Object> pairs = IOFunction.runCommand(() -> parser.readArray(inputStream));
+        if (pairs == null) {
+            return null;
+        }
+
+        if (pairs.size() % 2 != 0) {
+            throw new BajaTypeMismatchException(
+                "Unexpected number of elements for map. Expected an even number, got " + pairs.size());
+        }
+
+        final Map<Object, Object> out = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.size(); i += 2) {
+            out.put(pairs.get(i), pairs.get(i + 1));
+        }
+
+        return out;
+    }
+
+    /**
+     * Read the next push frame from the server, throwing an exception if the next
+     * response is not a push frame (RESP3) or an array (RESP2).
+     * <p>
+     * This is meant for connections that only receive out of band messages, such
+     * as those subscribed to pub/sub channels. Push frames read this way are not
+     * passed to the {@link #setPushListener(Consumer) push listener}.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return The next push frame
+     * @throws BajaTypeMismatchException  If the response was not a push frame or array
+     * @throws BajaResourceException      If there was an error reading from the stream
+     * @throws BajaProtocolErrorException If the server responded with an error result
+     */
+    public RespPush readPush() {
+        while (true) {
+            final RespType type = IOFunction.runCommand(() -> parser.findType(inputStream));
+            if (type == RespType.PUSH) {
+                return IOFunction.runCommand(() -> parser.readPush(inputStream));
+            }
+
+            if (type == RespType.ATTRIBUTE) {
+                IOFunction.runCommand(() -> parser.readMap(inputStream));
+                continue;
+            }
+
+            if (type == RespType.ARRAY) {
+                final List<Object> values = IOFunction.runCommand(() -> parser.readArray(inputStream));
+                return new RespPush(values == null ? Collections.emptyList() : values);
+            }
+
+            throw unexpectedType(type, EnumSet.of(RespType.PUSH, RespType.ARRAY));
+        }
+    }
+
+    /**
+     * Read any RESP3 push frames that have already been received from the server
+     * and pass them to the {@link #setPushListener(Consumer) push listener},
+     * without blocking to wait for more.
+     * <p>
+     * This must only be called when there are no replies outstanding, such as
+     * before sending a command. It relies on {@link InputStream#available()} to
+     * determine if anything has been received.
+     *
+     * @return Number of push frames read
+     * @throws BajaTypeMismatchException If anything other than a push frame was received
+     * @throws BajaResourceException     If there was an error reading from the stream
+     */
+    public int readPendingPushes() {
+        int read = 0;
+        while (IOFunction.runCommand(inputStream::available) > 0) {
+            final RespType type = IOFunction.runCommand(() -> parser.findType(inputStream));
+            if (type == RespType.ATTRIBUTE) {
+                IOFunction.runCommand(() -> parser.readMap(inputStream));
+                continue;
+            }
+
+            if (type != RespType.PUSH) {
+                throw unexpectedType(type, Collections.singleton(RespType.PUSH));
+            }
+
+            notifyPush(IOFunction.runCommand(() -> parser.readPush(inputStream)));
+            read++;
+        }
+
+        return read;
+    }
+
+    /**
+     * Read the header of an "array" response from the server and return an iterator
+     * that reads each element only when it is requested, throwing an exception if
+     * the result is not an array type.
+     * <p>
+     * The iterator must be exhausted or {@link ArrayIterator#close() closed} before
+     * reading any other responses from this connection.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return Iterator over the elements of the response
+     * @throws BajaTypeMismatchException  If the response was not an array
+     * @throws BajaResourceException      If there was an error reading from the stream
+     * @throws BajaProtocolErrorException If the server responded with an error result
+     */
+    public ArrayIterator readArrayIterator() {
+        final RespType type = verifyResponseType(EnumSet.of(RespType.ARRAY, RespType.SET, RespType.NULL));
+        if (type == RespType.NULL) {
+            return new ArrayIterator(this, 0);
+        }
+
+        return new ArrayIterator(this, IOFunction.runCommand(() -> parser.readLong(inputStream)));
     }
 
     /**
@@ -208,8 +628,8 @@ public class RedisConnection {
      * @throws BajaProtocolErrorException If the server responded with an error result
      */
     public List<String> readStringArray() {
-        verifyResponseType(Collections.singleton(RespType.ARRAY));
-        return IOFunction.runCommand(() -> parser.readArray(inputStream)).stream()
+        final List<Object> values = readList(verifyResponseType(EnumSet.of(RespType.ARRAY, RespType.SET, RespType.MAP)));
+        return values.stream()
             .map(i -> i == null ? null : String.valueOf(i))
             .collect(Collectors.toList());
     }
@@ -234,6 +654,13 @@ public class RedisConnection {
         expected.add(RespType.SIMPLE_STRING);
         expected.add(RespType.INTEGER);
         expected.add(RespType.ARRAY);
+        expected.add(RespType.MAP);
+        expected.add(RespType.SET);
+        expected.add(RespType.DOUBLE);
+        expected.add(RespType.BIG_NUMBER);
+        expected.add(RespType.BOOLEAN);
+        expected.add(RespType.NULL);
+        expected.add(RespType.VERBATIM_STRING);
 
         final RespType type = verifyResponseType(expected);
         switch (type) {
@@ -245,11 +672,128 @@ public class RedisConnection {
                 return IOFunction.runCommand(() -> parser.readLong(inputStream));
             case ARRAY:
                 return IOFunction.runCommand(() -> parser.readArray(inputStream));
+            case MAP:
+                return IOFunction.runCommand(() -> parser.readMap(inputStream));
+            case SET:
+                return IOFunction.runCommand(() -> parser.readSet(inputStream));
+            case DOUBLE:
+                return IOFunction.runCommand(() -> parser.readDouble(inputStream));
+            case BIG_NUMBER:
+                return IOFunction.runCommand(() -> parser.readBigNumber(inputStream));
+            case BOOLEAN:
+                return IOFunction.runCommand(() -> parser.readBoolean(inputStream));
+            case NULL:
+                return null;
+            case VERBATIM_STRING:
+                return IOFunction.runCommand(() -> parser.readVerbatimString(inputStream));
         }
 
         throw new IllegalStateException("Got unexpected result type " + type);
     }
 
+    /**
+     * Read a response of any type from the server, returning an error response
+     * as a {@link RespErrResponse} instead of throwing an exception.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return The response as an object
+     * @throws BajaResourceException If there was an error reading from the stream
+     */
+    public Object readReply() {
+        while (true) {
+            final Object reply = IOFunction.runCommand(() -> parser.readReply(inputStream));
+            if (!(reply instanceof RespPush)) {
+                return reply;
+            }
+
+            notifyPush((RespPush) reply);
+        }
+    }
+
+    /**
+     * Read a single response or RESP3 push frame from the server, returning a push
+     * frame as a {@link RespPush} instead of passing it to the push listener and
+     * reading the next response.
+     */
+    Object readFrame() {
+        return IOFunction.runCommand(() -> parser.readReply(inputStream));
+    }
+
+    /**
+     * Block until at least part of the next response has been received from the
+     * server, or the end of the stream has been reached, without reading any of it.
+     * <p>
+     * If this times out nothing has been consumed from the stream, unlike a read
+     * timeout partway through a response, so the response may still be read once
+     * it arrives. Waiting is only possible if the connection reads from a
+     * {@link RespInputBuffer} or a stream that supports {@code mark}, otherwise
+     * this returns immediately.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @throws BajaResourceException If there was an error reading from the stream,
+     *                               including a read timeout
+     */
+    public void awaitReply() {
+        IOFunction.runCommand(() -> {
+            if (inputStream.available() > 0) {
+                return null;
+            }
+
+            if (inputStream instanceof RespInputBuffer) {
+                ((RespInputBuffer) inputStream).readAvailable();
+            } else if (inputStream.markSupported()) {
+                inputStream.mark(1);
+                if (inputStream.read() >= 0) {
+                    inputStream.reset();
+                }
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Read a response of any type from the server, reporting each value in it to
+     * the given handler as it is parsed instead of building objects for them.
+     * <p>
+     * Error responses are reported to the handler rather than raising an exception.
+     * RESP3 push frames are reported to the handler as well, rather than being passed
+     * to the {@link #setPushListener(Consumer) push listener}.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @param handler Handler to report values in the response to
+     * @throws BajaResourceException If there was an error reading from the stream
+     */
+    public void readReply(RespHandler handler) {
+        Objects.requireNonNull(handler);
+        IOFunction.runCommand(() -> {
+            parser.parse(inputStream, handler);
+            return null;
+        });
+    }
+
+    /**
+     * Close the input and output streams of this connection. When the streams
+     * belong to a socket this closes the socket as well.
+     *
+     * @throws BajaResourceException If there was an error closing either stream
+     */
+    @Override
+    public void close() {
+        IOFunction.runCommand(() -> {
+            try {
+                inputStream.close();
+            } finally {
+                outputStream.close();
+            }
+
+            return null;
+        });
+    }
+
     /**
      * Ensure that the type of the result in the {@link InputStream} matches one of
      * the supplied, expected types and return the actual type of the result.
@@ -263,21 +807,107 @@ public class RedisConnection {
      */
     // VisibleForTesting
     RespType verifyResponseType(Set<RespType> expected) {
-        final RespType type = IOFunction.runCommand(() -> parser.findType(inputStream));
+        RespType type = IOFunction.runCommand(() -> parser.findType(inputStream));
+
+        // Push frames and attributes aren't part of the reply itself so we read
+        // past them to get to the type of the reply.
+        while (type == RespType.PUSH || type == RespType.ATTRIBUTE) {
+            if (type == RespType.PUSH) {
+                notifyPush(IOFunction.runCommand(() -> parser.readPush(inputStream)));
+            } else {
+                IOFunction.runCommand(() -> parser.readMap(inputStream));
+            }
+
+            type = IOFunction.runCommand(() -> parser.findType(inputStream));
+        }
 
         if (type == RespType.ERROR) {
             final RespErrResponse err = IOFunction.runCommand(() -> parser.readError(inputStream));
-            throw new BajaProtocolErrorException(err.getMessage());
+            throw protocolError(err.getMessage());
+        }
+
+        if (type == RespType.BLOB_ERROR) {
+            final RespErrResponse err = IOFunction.runCommand(() -> parser.readBlobError(inputStream));
+            throw protocolError(err.getMessage());
         }
 
         if (!expected.contains(type)) {
-            throw new BajaTypeMismatchException(
-                "Unexpected type. Expected one of " + expected + ", got " + type);
+            throw unexpectedType(type, expected);
+        }
+
+        if (type == RespType.NULL) {
+            IOFunction.runCommand(() -> {
+                parser.readNull(inputStream);
+                return null;
+            });
         }
 
         return type;
     }
 
+    /**
+     * Create an exception for an error reply from the server, which is a
+     * {@link BajaRedirectException} for Redis Cluster redirects.
+     */
+    static BajaProtocolErrorException protocolError(String message) {
+        final BajaRedirectException redirect = BajaRedirectException.parse(message);
+        return redirect != null ? redirect : new BajaProtocolErrorException(message);
+    }
+
+    private static BajaTypeMismatchException unexpectedType(RespType type, Set<RespType> expected) {
+        return new BajaTypeMismatchException(
+            "Unexpected type. Expected one of " + expected + ", got " + type);
+    }
+
+    /**
+     * Read a string of the given (already verified) type, which is null for RESP3 nulls.
+     */
+    private String readString(RespType type) {
+        switch (type) {
+            case BULK_STRING:
+                return IOFunction.runCommand(() -> parser.readBulkString(inputStream));
+            case SIMPLE_STRING:
+                return IOFunction.runCommand(() -> parser.readSimpleString(inputStream));
+            case VERBATIM_STRING:
+                return IOFunction.runCommand(() -> parser.readVerbatimString(inputStream));
+            case NULL:
+                return null;
+        }
+
+        throw new IllegalStateException("Got unexpected result type " + type);
+    }
+
+    /**
+     * Read a list of the given (already verified) type. Sets are read as lists in
+     * the order they were sent and maps as lists of alternating keys and values,
+     * the same way RESP2 servers send them.
+     */
+    private List<Object> readList(RespType type) {
+        switch (type) {
+            case ARRAY:
+            case SET:
+                return IOFunction.runCommand(() -> parser.readArray(inputStream));
+            case MAP:
+                final Map<Object, Object> map = IOFunction.runCommand(() -> parser.readMap(inputStream));
+                final List<Object> out = new ArrayList<>(map.size() * 2);
+                map.forEach((k, v) -> {
+                    out.add(k);
+                    out.add(v);
+                });
+                return out;
+            case NULL:
+                return null;
+        }
+
+        throw new IllegalStateException("Got unexpected result type " + type);
+    }
+
+    private void notifyPush(RespPush push) {
+        if (pushListener != null) {
+            pushListener.accept(push);
+        }
+    }
+
     /**
      * Simple functional interface for converting closures that throw
      * {@link IOException} to our {@link BajaResourceException} exception.
@@ -0,0 +1,20 @@
+package org.tshlabs.baja;
+
+/**
+ * Factory for creating new {@link RedisConnection} instances connected to a
+ * Redis server, used by a {@link RedisConnectionPool} to create connections
+ * as they are needed.
+ * <p>
+ * Implementations must be thread safe.
+ */
+@FunctionalInterface
+public interface RedisConnectionFactory {
+
+    /**
+     * Create a new connection to a Redis server.
+     *
+     * @return New connection, ready to send commands
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If the connection could not be created
+     */
+    RedisConnection create();
+}
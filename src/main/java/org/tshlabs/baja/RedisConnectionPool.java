@@ -0,0 +1,566 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Bounded pool of {@link RedisConnection} instances created by a
+ * {@link RedisConnectionFactory}, allowing many threads to share a small
+ * number of connections without each paying the cost of connecting.
+ * <p>
+ * Borrowing and returning a connection when one is idle only involves a
+ * lock-free deque, a concurrent map and a semaphore permit, so contention
+ * stays low even with many threads. Idle connections are reused most
+ * recently returned first, which keeps the set of connections in use small
+ * and lets the rest become idle long enough to be evicted.
+ * <p>
+ * When an eviction interval is configured, a background thread periodically
+ * closes connections that have been idle longer than the idle timeout (while
+ * keeping at least the minimum number idle), optionally checks the remaining
+ * idle connections with {@code PING}, and creates connections to bring the
+ * pool back up to the minimum number idle.
+ * <p>
+ * Connections borrowed from the pool are <em>not</em> thread safe and must
+ * only be used by a single thread at a time until they are returned.
+ * <p>
+ * This class is thread safe.
+ */
+public class RedisConnectionPool implements Closeable {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final RedisConnectionFactory factory;
+
+    private final int minIdle;
+
+    private final int maxTotal;
+
+    private final long borrowTimeoutNanos;
+
+    private final boolean testOnBorrow;
+
+    private final boolean testWhileIdle;
+
+    private final long idleTimeoutNanos;
+
+    private final ScheduledExecutorService evictor;
+
+    // Most recently returned connections are at the front
+    private final Deque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+
+    // Borrowed connections and the generation of the pool they were borrowed in
+    private final Map<RedisConnection, Integer> borrowed = new ConcurrentHashMap<>();
+
+    private final Semaphore permits;
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    private RedisConnectionPool(Builder builder) {
+        this.factory = builder.factory;
+        this.minIdle = builder.minIdle;
+        this.maxTotal = builder.maxTotal;
+        this.borrowTimeoutNanos = builder.borrowTimeoutNanos;
+        this.testOnBorrow = builder.testOnBorrow;
+        this.testWhileIdle = builder.testWhileIdle;
+        this.idleTimeoutNanos = builder.idleTimeoutNanos;
+        this.permits = new Semaphore(maxTotal);
+
+        if (builder.evictionIntervalNanos > 0) {
+            this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "baja-pool-evictor-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            this.evictor.scheduleWithFixedDelay(this::evictSafely,
+                builder.evictionIntervalNanos, builder.evictionIntervalNanos, TimeUnit.NANOSECONDS);
+        } else {
+            this.evictor = null;
+        }
+    }
+
+    /**
+     * Get a new builder for a pool that uses the given factory to create connections.
+     *
+     * @param factory Factory for creating new connections
+     * @return Builder for configuring the pool
+     * @throws NullPointerException If factory is null
+     */
+    public static Builder builder(RedisConnectionFactory factory) {
+        return new Builder(factory);
+    }
+
+    /**
+     * Borrow a connection from the pool, creating one if none are idle, and waiting
+     * up to the borrow timeout if the maximum number of connections are already
+     * borrowed.
+     * <p>
+     * The connection must be returned using {@link #release(RedisConnection)}, or
+     * {@link #invalidate(RedisConnection)} if it is broken.
+     *
+     * @return Connection for the exclusive use of the caller
+     * @throws BajaResourceException If no connection became available before the
+     *                               timeout or a new connection could not be created
+     * @throws IllegalStateException If the pool has been closed
+     */
+    public RedisConnection borrow() {
+        checkOpen();
+        acquirePermit();
+
+        try {
+            final int current = generation.get();
+            final RedisConnection connection = takeConnection(current);
+            borrowed.put(connection, current);
+            return connection;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a healthy connection to the pool so that it can be borrowed again.
+     *
+     * @param connection Connection previously borrowed from this pool
+     * @throws NullPointerException     If connection is null
+     * @throws IllegalArgumentException If the connection is not currently borrowed from this pool
+     */
+    public void release(RedisConnection connection) {
+        final Integer borrowedGeneration = unborrow(connection);
+
+        try {
+            if (closed || borrowedGeneration != generation.get()) {
+                destroy(connection);
+                return;
+            }
+
+            idle.offerFirst(new IdleConnection(connection, borrowedGeneration, System.nanoTime()));
+
+            // Make sure a connection returned while the pool was being closed isn't leaked
+            if (closed) {
+                destroyIdle(false);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close a broken connection instead of returning it to the pool.
+     *
+     * @param connection Connection previously borrowed from this pool
+     * @throws NullPointerException     If connection is null
+     * @throws IllegalArgumentException If the connection is not currently borrowed from this pool
+     */
+    public void invalidate(RedisConnection connection) {
+        unborrow(connection);
+
+        try {
+            destroy(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Borrow a connection, apply the given function to it, and return it to the
+     * pool. If the function fails for any reason other than an error reply from
+     * the server the connection is invalidated instead of being returned, since
+     * part of a reply may have been left unread.
+     *
+     * @param func Function to apply to a borrowed connection
+     * @param <T>  Type of the result of the function
+     * @return Result of the function
+     * @throws BajaResourceException If no connection could be borrowed
+     * @throws IllegalStateException If the pool has been closed
+     */
+    public <T> T withConnection(Function<RedisConnection, T> func) {
+        Objects.requireNonNull(func);
+        final RedisConnection connection = borrow();
+        boolean broken = false;
+
+        try {
+            return func.apply(connection);
+        } catch (BajaProtocolErrorException e) {
+            // Error replies are read completely and don't affect the connection itself
+            throw e;
+        } catch (RuntimeException e) {
+            // I/O errors, EOF, or a reply of an unexpected type leave the connection
+            // in an unknown state, with part of a reply possibly still unread
+            broken = true;
+            throw e;
+        } finally {
+            if (broken) {
+                invalidate(connection);
+            } else {
+                release(connection);
+            }
+        }
+    }
+
+    /**
+     * Close all idle connections and arrange for all currently borrowed connections
+     * to be closed when they are returned, so that every connection borrowed after
+     * this call is newly created. This is useful when the server the connections
+     * point to has changed, after a failover for example.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        destroyIdle(true);
+    }
+
+    /**
+     * @return Number of connections in the pool that are not currently borrowed
+     */
+    public int getNumIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return Number of connections currently borrowed from the pool
+     */
+    public int getNumActive() {
+        return borrowed.size();
+    }
+
+    /**
+     * Close all idle connections and stop the eviction thread. Connections that are
+     * currently borrowed are closed when they are returned. Borrowing connections
+     * from a closed pool is not allowed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+
+        destroyIdle(false);
+    }
+
+    /**
+     * Close connections that have been idle longer than the idle timeout, test the
+     * remaining idle connections if enabled, and create connections to bring the
+     * number of idle connections up to the minimum.
+     */
+    // VisibleForTesting
+    void evict() {
+        if (closed) {
+            return;
+        }
+
+        final int current = generation.get();
+        final long now = System.nanoTime();
+        int numIdle = idle.size();
+
+        // Oldest connections are usually at the end of the deque but connections put
+        // back after being tested aren't in order, so look at all of them from oldest
+        final Iterator<IdleConnection> oldest = idle.descendingIterator();
+        while (oldest.hasNext() && numIdle > minIdle) {
+            final IdleConnection conn = oldest.next();
+            if (conn.generation == current && now - conn.lastUsedNanos < idleTimeoutNanos) {
+                continue;
+            }
+
+            // The connection may have been borrowed since we started looking
+            if (idle.remove(conn)) {
+                destroy(conn.connection);
+                numIdle--;
+            }
+        }
+
+        if (testWhileIdle) {
+            testIdle();
+        }
+
+        while (!closed && getNumIdle() < minIdle) {
+            if (!topUp(current)) {
+                break;
+            }
+        }
+    }
+
+    /*
+     * Create a single idle connection while holding a permit, the same way a
+     * borrower would, so that creating it can't push the pool past the maximum.
+     */
+    private boolean topUp(int current) {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+
+        try {
+            if (total.get() >= maxTotal) {
+                return false;
+            }
+
+            final RedisConnection connection = createConnection();
+            idle.offerFirst(new IdleConnection(connection, current, System.nanoTime()));
+            return true;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictSafely() {
+        try {
+            evict();
+        } catch (RuntimeException e) {
+            // Keep running, the next attempt may work if the server is back
+        }
+    }
+
+    private void testIdle() {
+        // Iterate over a copy since connections that pass are added back to the deque
+        for (IdleConnection conn : new ArrayList<>(idle)) {
+            // Take the connection out of the pool while testing it so that
+            // no one borrows it at the same time, then put it back at the end
+            if (!idle.remove(conn)) {
+                continue;
+            }
+
+            if (isValid(conn.connection)) {
+                idle.offerLast(conn);
+            } else {
+                destroy(conn.connection);
+            }
+        }
+    }
+
+    private void acquirePermit() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+
+        try {
+            if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new BajaResourceException(
+                    "Timed out waiting for a connection, all " + maxTotal + " are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BajaResourceException("Interrupted waiting for a connection", e);
+        }
+    }
+
+    private RedisConnection takeConnection(int current) {
+        IdleConnection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            if (conn.generation == current && (!testOnBorrow || isValid(conn.connection))) {
+                return conn.connection;
+            }
+
+            destroy(conn.connection);
+        }
+
+        return createConnection();
+    }
+
+    private RedisConnection createConnection() {
+        total.incrementAndGet();
+
+        try {
+            return factory.create();
+        } catch (RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private Integer unborrow(RedisConnection connection) {
+        final Integer borrowedGeneration = borrowed.remove(Objects.requireNonNull(connection));
+        if (borrowedGeneration == null) {
+            throw new IllegalArgumentException("Connection is not borrowed from this pool");
+        }
+
+        return borrowedGeneration;
+    }
+
+    private void destroyIdle(boolean onlyStale) {
+        final int current = generation.get();
+        for (IdleConnection conn : idle) {
+            if (onlyStale && conn.generation == current) {
+                continue;
+            }
+
+            if (idle.remove(conn)) {
+                destroy(conn.connection);
+            }
+        }
+    }
+
+    private void destroy(RedisConnection connection) {
+        total.decrementAndGet();
+
+        try {
+            connection.close();
+        } catch (BajaRuntimeException e) {
+            // nothing
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Pool has been closed");
+        }
+    }
+
+    private static boolean isValid(RedisConnection connection) {
+        try {
+            return "PONG".equals(RedisCommand.cmd("PING").query(connection).asString());
+        } catch (BajaRuntimeException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static final class IdleConnection {
+        private final RedisConnection connection;
+        private final int generation;
+        private final long lastUsedNanos;
+
+        private IdleConnection(RedisConnection connection, int generation, long lastUsedNanos) {
+            this.connection = connection;
+            this.generation = generation;
+            this.lastUsedNanos = lastUsedNanos;
+        }
+    }
+
+    /**
+     * Builder for configuring and creating a {@link RedisConnectionPool}.
+     * <p>
+     * This class is <em>not</em> thread safe.
+     */
+    public static class Builder {
+
+        private final RedisConnectionFactory factory;
+
+        private int minIdle = 0;
+
+        private int maxTotal = 8;
+
+        private long borrowTimeoutNanos = TimeUnit.SECONDS.toNanos(2);
+
+        private boolean testOnBorrow = false;
+
+        private boolean testWhileIdle = true;
+
+        private long idleTimeoutNanos = TimeUnit.MINUTES.toNanos(1);
+
+        private long evictionIntervalNanos = TimeUnit.SECONDS.toNanos(30);
+
+        private Builder(RedisConnectionFactory factory) {
+            this.factory = Objects.requireNonNull(factory);
+        }
+
+        /**
+         * @param minIdle Minimum number of idle connections kept by the eviction thread, default 0
+         * @return fluent interface
+         */
+        public Builder minIdle(int minIdle) {
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        /**
+         * @param maxTotal Maximum number of connections that may be borrowed at once, default 8
+         * @return fluent interface
+         */
+        public Builder maxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+            return this;
+        }
+
+        /**
+         * @param timeout Maximum time to wait for a connection to be returned when
+         *                all connections are borrowed, default two seconds
+         * @param unit    Unit of the timeout
+         * @return fluent interface
+         */
+        public Builder borrowTimeout(long timeout, TimeUnit unit) {
+            this.borrowTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * @param testOnBorrow True to check idle connections with {@code PING} before
+         *                     lending them out, default false
+         * @return fluent interface
+         */
+        public Builder testOnBorrow(boolean testOnBorrow) {
+            this.testOnBorrow = testOnBorrow;
+            return this;
+        }
+
+        /**
+         * @param testWhileIdle True to check idle connections with {@code PING} from
+         *                      the eviction thread, default true
+         * @return fluent interface
+         */
+        public Builder testWhileIdle(boolean testWhileIdle) {
+            this.testWhileIdle = testWhileIdle;
+            return this;
+        }
+
+        /**
+         * @param timeout Time a connection may be idle before being evicted, default one minute
+         * @param unit    Unit of the timeout
+         * @return fluent interface
+         */
+        public Builder idleTimeout(long timeout, TimeUnit unit) {
+            this.idleTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * @param interval Time between runs of the eviction thread, zero to disable
+         *                 the eviction thread entirely, default thirty seconds
+         * @param unit     Unit of the interval
+         * @return fluent interface
+         */
+        public Builder evictionInterval(long interval, TimeUnit unit) {
+            this.evictionIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * @return New pool using the configured settings
+         * @throws IllegalArgumentException If any of the settings are invalid
+         */
+        public RedisConnectionPool build() {
+            if (maxTotal < 1) {
+                throw new IllegalArgumentException("Max total must be at least 1, got " + maxTotal);
+            }
+
+            if (minIdle < 0 || minIdle > maxTotal) {
+                throw new IllegalArgumentException("Min idle must be between 0 and " + maxTotal + ", got " + minIdle);
+            }
+
+            if (borrowTimeoutNanos < 0 || idleTimeoutNanos < 0 || evictionIntervalNanos < 0) {
+                throw new IllegalArgumentException("Timeouts and intervals must not be negative");
+            }
+
+            return new RedisConnectionPool(this);
+        }
+    }
+}
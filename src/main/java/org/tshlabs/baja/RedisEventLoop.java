@@ -0,0 +1,242 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single thread driving a {@link Selector} that performs all reads and writes
+ * for any number of {@link AsyncRedisConnection} instances.
+ * <p>
+ * Work is submitted to the loop from any thread using {@link #execute(Runnable)}
+ * and runs on the loop thread in the order it was submitted. Tasks and channel
+ * callbacks run on the loop thread and must not block.
+ * <p>
+ * When the loop stops, because it was closed or its selector failed, every channel
+ * registered with it is told so that it can fail any work waiting on it. Tasks that
+ * were already submitted are still run, and tasks submitted afterwards are rejected.
+ * <p>
+ * This class is thread safe.
+ */
+public class RedisEventLoop implements Closeable {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final Selector selector;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    /**
+     * Construct and start a new event loop running on its own daemon thread.
+     *
+     * @throws BajaResourceException If the selector could not be opened
+     */
+    public RedisEventLoop() {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new BajaResourceException(e);
+        }
+
+        this.thread = new Thread(this::run, "baja-event-loop-" + THREAD_COUNT.incrementAndGet());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Run the given task on the event loop thread.
+     * <p>
+     * Tasks are run in the order they are submitted, including tasks submitted
+     * while the loop is stopping.
+     *
+     * @param task Task to run on the event loop thread
+     * @throws RejectedExecutionException If the loop has stopped
+     */
+    public void execute(Runnable task) {
+        Objects.requireNonNull(task);
+        if (!running) {
+            throw new RejectedExecutionException("Event loop is not running");
+        }
+
+        tasks.add(task);
+
+        // The loop may have stopped between checking and adding the task. If it
+        // hasn't taken the task to run while stopping, it never will.
+        if (!running) {
+            if (tasks.remove(task)) {
+                throw new RejectedExecutionException("Event loop is not running");
+            }
+
+            return;
+        }
+
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * @return True if the loop has not stopped, false otherwise
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return True if the calling thread is the event loop thread, false otherwise
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Stop the event loop and wait for its thread to exit. Channels registered
+     * with the loop are told that it has stopped, which closes the channels of
+     * {@link AsyncRedisConnection} instances and fails their pending commands.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+
+        if (!inEventLoop()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Register a channel with the selector of this loop, invoking the handler when
+     * it is ready for the given operations. Must be called on the loop thread.
+     */
+    SelectionKey register(SelectableChannel channel, int ops, ChannelHandler handler) throws ClosedChannelException {
+        if (!inEventLoop()) {
+            throw new IllegalStateException("Channels must be registered from the event loop thread");
+        }
+
+        if (!running) {
+            throw new ClosedChannelException();
+        }
+
+        return channel.register(selector, ops, handler);
+    }
+
+    private void run() {
+        BajaRuntimeException cause = new BajaResourceException("Event loop closed");
+        try {
+            while (running) {
+                // Don't block if tasks were submitted from the loop thread itself
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+
+                runTasks();
+                processSelectedKeys();
+            }
+        } catch (IOException | RuntimeException e) {
+            cause = new BajaResourceException("Event loop failed", e);
+        } finally {
+            stop(cause);
+        }
+    }
+
+    /**
+     * Tell every registered channel that the loop has stopped, run any tasks that
+     * were submitted before it did, and close the selector.
+     */
+    private void stop(BajaRuntimeException cause) {
+        running = false;
+
+        for (SelectionKey key : selector.keys()) {
+            try {
+                ((ChannelHandler) key.attachment()).onLoopExit(cause);
+            } catch (RuntimeException e) {
+                // Handlers deal with their own failures
+            }
+        }
+
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Tasks deal with their own failures
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // nothing
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while (running && (task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Tasks are responsible for reporting their own failures, all
+                // we can do is make sure a bad one doesn't stop the loop.
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+
+            final ChannelHandler handler = (ChannelHandler) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable()) {
+                    handler.onReadable();
+                }
+
+                if (key.isValid() && key.isWritable()) {
+                    handler.onWritable();
+                }
+            } catch (RuntimeException e) {
+                // As with tasks, handlers deal with their own failures
+            }
+        }
+    }
+
+    /**
+     * Callbacks for channels registered with the loop, invoked on the loop thread.
+     */
+    interface ChannelHandler {
+
+        void onReadable();
+
+        void onWritable();
+
+        /**
+         * Called when the loop stops, after which the channel will never be ready again.
+         */
+        void onLoopExit(BajaRuntimeException cause);
+    }
+}
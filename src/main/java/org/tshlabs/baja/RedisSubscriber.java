@@ -0,0 +1,447 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+import org.tshlabs.baja.protocol.RespPush;
+
+import java.io.Closeable;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Subscriber for Redis <a href="https://redis.io/topics/pubsub">Pub/Sub</a>
+ * messages, using a connection dedicated to receiving them.
+ * <p>
+ * A reader thread parses each frame as it arrives on the connection, as either a
+ * RESP2 array or a RESP3 push frame, and puts messages on a bounded queue. A
+ * separate dispatch thread takes messages off the queue and passes them to the
+ * listener in batches of everything that is waiting, up to a maximum batch size.
+ * A slow listener therefore never stops the socket from being read; instead the
+ * queue fills up and the {@link Overflow overflow policy} decides which messages
+ * are dropped. Counters for received, delivered and dropped messages, and the
+ * number of messages waiting to be delivered, may be read from any thread.
+ * <p>
+ * Channels and patterns may be subscribed to and unsubscribed from at any time,
+ * from any thread. The connection must not be used for anything else once the
+ * subscriber has been built, and is closed when the subscriber is closed.
+ * Connections with a read timeout may be used: timeouts while waiting for the
+ * start of a message are ignored, but a timeout partway through reading a message
+ * is reported to the error listener like any other error.
+ * <p>
+ * This class is thread safe.
+ */
+public class RedisSubscriber implements Closeable {
+
+    /**
+     * Policy for handling messages that arrive when the queue is full.
+     */
+    public enum Overflow {
+        /**
+         * Drop the message that just arrived.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Drop the message that has been waiting longest to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Stop reading from the connection until there is room, pushing back on the
+         * server. The server may disconnect subscribers whose output buffer grows
+         * too large.
+         */
+        BLOCK
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final RedisConnection connection;
+
+    private final Consumer<List<PubSubMessage>> listener;
+
+    private final Consumer<RuntimeException> errorListener;
+
+    private final Overflow overflow;
+
+    private final int batchSize;
+
+    private final BlockingQueue<PubSubMessage> queue;
+
+    private final Object writeLock = new Object();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong delivered = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread reader;
+
+    private final Thread dispatcher;
+
+    private volatile boolean closed;
+
+    private RedisSubscriber(Builder builder) {
+        this.connection = builder.connection;
+        this.listener = builder.listener;
+        this.errorListener = builder.errorListener;
+        this.overflow = builder.overflow;
+        this.batchSize = builder.batchSize;
+        this.queue = new ArrayBlockingQueue<>(builder.queueSize);
+
+        final int id = THREAD_COUNT.incrementAndGet();
+        this.reader = new Thread(this::read, "baja-subscriber-reader-" + id);
+        this.reader.setDaemon(true);
+        this.dispatcher = new Thread(this::dispatch, "baja-subscriber-dispatch-" + id);
+        this.dispatcher.setDaemon(true);
+    }
+
+    /**
+     * Get a new builder for a subscriber that receives messages using the given
+     * connection and passes them to the given listener.
+     *
+     * @param connection Connection to dedicate to receiving messages
+     * @param listener   Listener for each batch of messages, called on the dispatch thread
+     * @return Builder for configuring the subscriber
+     * @throws NullPointerException If connection or listener is null
+     */
+    public static Builder builder(RedisConnection connection, Consumer<List<PubSubMessage>> listener) {
+        return new Builder(connection, listener);
+    }
+
+    /**
+     * Subscribe to the given channels with {@code SUBSCRIBE}.
+     *
+     * @param channels One or more channels to subscribe to
+     * @return fluent interface
+     * @throws BajaResourceException If there was an I/O error
+     * @throws IllegalStateException If the subscriber has been closed
+     */
+    public RedisSubscriber subscribe(String... channels) {
+        return send("SUBSCRIBE", channels);
+    }
+
+    /**
+     * Subscribe to channels matching the given patterns with {@code PSUBSCRIBE}.
+     *
+     * @param patterns One or more glob-style patterns to subscribe to
+     * @return fluent interface
+     * @throws BajaResourceException If there was an I/O error
+     * @throws IllegalStateException If the subscriber has been closed
+     */
+    public RedisSubscriber psubscribe(String... patterns) {
+        return send("PSUBSCRIBE", patterns);
+    }
+
+    /**
+     * Unsubscribe from the given channels with {@code UNSUBSCRIBE}, or from all
+     * channels if none are given.
+     *
+     * @param channels Channels to unsubscribe from
+     * @return fluent interface
+     * @throws BajaResourceException If there was an I/O error
+     * @throws IllegalStateException If the subscriber has been closed
+     */
+    public RedisSubscriber unsubscribe(String... channels) {
+        return send("UNSUBSCRIBE", channels);
+    }
+
+    /**
+     * Unsubscribe from the given patterns with {@code PUNSUBSCRIBE}, or from all
+     * patterns if none are given.
+     *
+     * @param patterns Patterns to unsubscribe from
+     * @return fluent interface
+     * @throws BajaResourceException If there was an I/O error
+     * @throws IllegalStateException If the subscriber has been closed
+     */
+    public RedisSubscriber punsubscribe(String... patterns) {
+        return send("PUNSUBSCRIBE", patterns);
+    }
+
+    /**
+     * @return Number of messages read from the connection
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return Number of messages passed to the listener
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * @return Number of messages dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Number of messages waiting to be passed to the listener
+     */
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * @return True if the subscriber has not been closed and the connection has
+     * not failed, false otherwise
+     */
+    public boolean isOpen() {
+        return !closed && reader.isAlive();
+    }
+
+    /**
+     * Stop reading and delivering messages and close the connection. Messages that
+     * are waiting to be delivered are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        reader.interrupt();
+
+        try {
+            connection.close();
+        } catch (BajaRuntimeException e) {
+            // nothing
+        }
+    }
+
+    private RedisSubscriber send(String command, String... args) {
+        if (closed) {
+            throw new IllegalStateException("Subscriber has been closed");
+        }
+
+        final List<String> full = new ArrayList<>(args.length + 1);
+        full.add(command);
+        full.addAll(Arrays.asList(args));
+
+        // Writing only uses the output side of the connection, so it may happen
+        // while the reader thread is blocked reading the input side
+        synchronized (writeLock) {
+            connection.writeCommand(full);
+        }
+
+        return this;
+    }
+
+    private void read() {
+        try {
+            while (!closed) {
+                try {
+                    connection.awaitReply();
+                } catch (BajaResourceException e) {
+                    // Nothing of the next frame has been read, so it's safe to keep waiting
+                    if (!closed && e.getCause() instanceof SocketTimeoutException) {
+                        continue;
+                    }
+
+                    throw e;
+                }
+
+                // A timeout from here on would leave part of the frame unread, so it's
+                // treated like any other error instead of being ignored
+                final Object reply = connection.readFrame();
+
+                // RESP2 messages are plain arrays, RESP3 messages are push frames
+                if (reply instanceof RespPush) {
+                    onPush((RespPush) reply);
+                } else if (reply instanceof List) {
+                    onFrame((List<?>) reply);
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!closed) {
+                errorListener.accept(e);
+            }
+        } finally {
+            dispatcher.interrupt();
+        }
+    }
+
+    private void onPush(RespPush push) {
+        onFrame(push.getValues());
+    }
+
+    // VisibleForTesting
+    void onFrame(List<?> frame) {
+        if (frame.isEmpty()) {
+            return;
+        }
+
+        final String kind = String.valueOf(frame.get(0));
+        if ("message".equals(kind) && frame.size() >= 3) {
+            enqueue(new PubSubMessage(null, String.valueOf(frame.get(1)), String.valueOf(frame.get(2))));
+        } else if ("pmessage".equals(kind) && frame.size() >= 4) {
+            enqueue(new PubSubMessage(String.valueOf(frame.get(1)), String.valueOf(frame.get(2)),
+                String.valueOf(frame.get(3))));
+        }
+
+        // Confirmations of subscribing and unsubscribing need no action
+    }
+
+    private void enqueue(PubSubMessage message) {
+        received.incrementAndGet();
+
+        switch (overflow) {
+            case DROP_NEWEST:
+                if (!queue.offer(message)) {
+                    dropped.incrementAndGet();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(message)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+            default:
+                try {
+                    queue.put(message);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BajaResourceException("Interrupted waiting for room in the queue", e);
+                }
+        }
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            // Each batch is a new list since listeners may hold on to it
+            final List<PubSubMessage> batch = new ArrayList<>(batchSize);
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // Either closed, or the reader stopped and nothing more will arrive
+                drain();
+                return;
+            }
+
+            queue.drainTo(batch, batchSize - 1);
+            deliver(batch);
+        }
+    }
+
+    private void drain() {
+        while (!closed) {
+            final List<PubSubMessage> batch = new ArrayList<>(batchSize);
+            if (queue.drainTo(batch, batchSize) == 0) {
+                return;
+            }
+
+            deliver(batch);
+        }
+    }
+
+    private void deliver(List<PubSubMessage> batch) {
+        try {
+            listener.accept(Collections.unmodifiableList(batch));
+        } catch (RuntimeException e) {
+            errorListener.accept(e);
+        }
+
+        delivered.addAndGet(batch.size());
+    }
+
+    /**
+     * Builder for configuring and creating a {@link RedisSubscriber}.
+     * <p>
+     * This class is <em>not</em> thread safe.
+     */
+    public static class Builder {
+
+        private final RedisConnection connection;
+
+        private final Consumer<List<PubSubMessage>> listener;
+
+        private Consumer<RuntimeException> errorListener = e -> {
+        };
+
+        private Overflow overflow = Overflow.DROP_NEWEST;
+
+        private int queueSize = 10_000;
+
+        private int batchSize = 100;
+
+        private Builder(RedisConnection connection, Consumer<List<PubSubMessage>> listener) {
+            this.connection = Objects.requireNonNull(connection);
+            this.listener = Objects.requireNonNull(listener);
+        }
+
+        /**
+         * @param errorListener Listener for errors reading from the connection, after which
+         *                      no more messages are received, and errors thrown by the message
+         *                      listener, default to ignore them
+         * @return fluent interface
+         */
+        public Builder errorListener(Consumer<RuntimeException> errorListener) {
+            this.errorListener = Objects.requireNonNull(errorListener);
+            return this;
+        }
+
+        /**
+         * @param overflow Policy for messages that arrive when the queue is full, default
+         *                 {@link Overflow#DROP_NEWEST}
+         * @return fluent interface
+         */
+        public Builder overflow(Overflow overflow) {
+            this.overflow = Objects.requireNonNull(overflow);
+            return this;
+        }
+
+        /**
+         * @param queueSize Maximum number of messages waiting to be delivered, default 10,000
+         * @return fluent interface
+         */
+        public Builder queueSize(int queueSize) {
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * @param batchSize Maximum number of messages passed to the listener at once, default 100
+         * @return fluent interface
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Start reading and delivering messages. No channels are subscribed to yet.
+         *
+         * @return New subscriber using the configured settings
+         * @throws IllegalArgumentException If any of the settings are invalid
+         */
+        public RedisSubscriber build() {
+            if (queueSize < 1) {
+                throw new IllegalArgumentException("Queue size must be at least 1, got " + queueSize);
+            }
+
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be at least 1, got " + batchSize);
+            }
+
+            final RedisSubscriber subscriber = new RedisSubscriber(this);
+            subscriber.dispatcher.start();
+            subscriber.reader.start();
+            return subscriber;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+
+/**
+ * Callback for the reply to a command sent using an {@link AsyncRedisConnection}.
+ * <p>
+ * Exactly one of the methods will be invoked for each command sent. Both are
+ * invoked on the thread of the {@link RedisEventLoop} used by the connection
+ * and must not block.
+ */
+public interface ReplyHandler {
+
+    /**
+     * Handle a successful reply to a command.
+     * <p>
+     * The reply will be a {@code String}, {@code Long}, {@code List} of objects,
+     * or {@code null} depending on the type of the reply. It is the responsibility
+     * of the caller to know the expected type.
+     *
+     * @param reply Reply from the Redis server
+     */
+    void onReply(Object reply);
+
+    /**
+     * Handle a failure to execute a command.
+     *
+     * @param cause A {@link org.tshlabs.baja.exceptions.BajaProtocolErrorException} if
+     *              the server responded with an error or a
+     *              {@link org.tshlabs.baja.exceptions.BajaResourceException} if the
+     *              connection failed before a reply was received
+     */
+    void onFailure(BajaRuntimeException cause);
+}
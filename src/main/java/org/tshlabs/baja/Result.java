@@ -1,11 +1,13 @@
 package org.tshlabs.baja;
 
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * Holder for the future result of a {@link RedisCommand} that has been queued for
- * execution as part of a transaction.
+ * execution as part of a transaction or pipeline.
  * <p>
  * This class is thread safe.
  */
@@ -21,13 +23,35 @@ public class Result<V> {
      */
     private final AtomicReference<Optional<V>> ref;
 
+    /**
+     * Conversion applied to the raw result of the command, null to use it as-is.
+     */
+    private final Function<Object, V> converter;
+
+    private volatile RuntimeException failure;
+
     public Result() {
-        this.ref = new AtomicReference<>();
+        this(new AtomicReference<>(), null);
+    }
+
+    /**
+     * Construct a new holder that converts the raw result of the command before
+     * holding it.
+     *
+     * @param converter Conversion to apply to the result
+     */
+    Result(Function<Object, V> converter) {
+        this(new AtomicReference<>(), Objects.requireNonNull(converter));
     }
 
     // VisibleForTesting
     Result(AtomicReference<Optional<V>> ref) {
+        this(ref, null);
+    }
+
+    private Result(AtomicReference<Optional<V>> ref, Function<Object, V> converter) {
         this.ref = ref;
+        this.converter = converter;
     }
 
     /**
@@ -38,7 +62,19 @@ public class Result<V> {
      */
     @SuppressWarnings("unchecked")
     void setValue(Object value) {
-        if (!this.ref.compareAndSet(null, Optional.ofNullable((V) value))) {
+        V converted = null;
+        if (converter == null) {
+            converted = (V) value;
+        } else {
+            // Failures are raised by get() so that the rest of the pipeline is still read
+            try {
+                converted = converter.apply(value);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        if (!this.ref.compareAndSet(null, Optional.ofNullable(converted))) {
             throw new IllegalStateException("Transaction has already been executed");
         }
     }
@@ -53,6 +89,8 @@ public class Result<V> {
     /**
      * @return The result of the executed command if available
      * @throws IllegalStateException If the transaction has not been executed
+     * @throws org.tshlabs.baja.exceptions.BajaTypeMismatchException If the result could
+     *                                                               not be converted
      */
     public V get() {
         final Optional<V> val = ref.get();
@@ -60,6 +98,10 @@ public class Result<V> {
             throw new IllegalStateException("Transaction has not been executed");
         }
 
+        if (failure != null) {
+            throw failure;
+        }
+
         return val.orElse(null);
     }
 
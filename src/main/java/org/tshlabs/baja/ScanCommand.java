@@ -0,0 +1,264 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Class for assembling one of the cursor based {@code SCAN} family of commands
+ * and iterating over every element it returns, one page at a time.
+ * <p>
+ * Elements are keys for {@code SCAN}, members for {@code SSCAN}, fields and values
+ * for {@code HSCAN}, and members and scores for {@code ZSCAN}. As with the commands
+ * themselves, an element may be returned more than once and elements added or
+ * removed during the iteration may or may not be returned.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ *
+ * @param <T> Type of the elements returned
+ * @see <a href="https://redis.io/commands/scan">SCAN</a>
+ */
+public class ScanCommand<T> {
+
+    private final String command;
+
+    private final String key;
+
+    private final Function<List<Object>, List<T>> converter;
+
+    private String pattern;
+
+    private String type;
+
+    private int count;
+
+    private ScanCommand(String command, String key, Function<List<Object>, List<T>> converter) {
+        this.command = command;
+        this.key = key;
+        this.converter = converter;
+    }
+
+    /**
+     * Create a new command for iterating over the keys of the current database.
+     *
+     * @return Builder for scanning keys
+     */
+    public static ScanCommand<String> scan() {
+        return new ScanCommand<>("SCAN", null, ScanCommand::toStrings);
+    }
+
+    /**
+     * Create a new command for iterating over the members of a set.
+     *
+     * @param key Key of the set
+     * @return Builder for scanning members of the set
+     */
+    public static ScanCommand<String> sscan(String key) {
+        return new ScanCommand<>("SSCAN", Objects.requireNonNull(key), ScanCommand::toStrings);
+    }
+
+    /**
+     * Create a new command for iterating over the fields and values of a hash.
+     *
+     * @param key Key of the hash
+     * @return Builder for scanning fields and values of the hash
+     */
+    public static ScanCommand<Map.Entry<String, String>> hscan(String key) {
+        return new ScanCommand<>("HSCAN", Objects.requireNonNull(key), page -> toPairs(page, String::valueOf));
+    }
+
+    /**
+     * Create a new command for iterating over the members and scores of a sorted set.
+     *
+     * @param key Key of the sorted set
+     * @return Builder for scanning members and scores of the sorted set
+     */
+    public static ScanCommand<Map.Entry<String, Double>> zscan(String key) {
+        return new ScanCommand<>("ZSCAN", Objects.requireNonNull(key), page -> toPairs(page, ScanCommand::toDouble));
+    }
+
+    /**
+     * Run several scans, each with its own connection borrowed from the given pool,
+     * and get their elements as a single parallel {@code Stream}. This allows a large
+     * keyspace to be scanned by more than one thread when the scans are disjoint, for
+     * example one {@code SCAN} for each {@link #type(String) type} of key or for each
+     * of several {@link #match(String) patterns} that don't overlap.
+     * <p>
+     * Connections are borrowed when each scan starts and returned when it is exhausted.
+     * Streams that aren't consumed entirely, including because of an error, must be
+     * closed to return the connections of scans that were started but not finished.
+     * The commands must not be modified until the stream has been consumed or closed.
+     *
+     * @param pool       Pool to borrow a connection for each scan from
+     * @param partitions Scans to run, in parallel where possible
+     * @param <T>        Type of the elements returned
+     * @return Parallel stream of the elements of every scan
+     */
+    public static <T> Stream<T> parallelStream(RedisConnectionPool pool, Collection<ScanCommand<T>> partitions) {
+        Objects.requireNonNull(pool);
+        final List<ScanSpliterator.Partition<T>> out = new ArrayList<>(partitions.size());
+        for (ScanCommand<T> command : partitions) {
+            out.add(new ScanSpliterator.Partition<>(pool, command));
+        }
+
+        return ScanSpliterator.stream(out);
+    }
+
+    /**
+     * @param pattern Glob-style pattern that returned elements must match
+     * @return fluent interface
+     */
+    public ScanCommand<T> match(String pattern) {
+        this.pattern = Objects.requireNonNull(pattern);
+        return this;
+    }
+
+    /**
+     * @param count Number of elements for the server to examine for each page, which
+     *              is a hint rather than an exact number, default the server default
+     * @return fluent interface
+     * @throws IllegalArgumentException If the count is less than 1
+     */
+    public ScanCommand<T> count(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be at least 1, got " + count);
+        }
+
+        this.count = count;
+        return this;
+    }
+
+    /**
+     * @param type Type of key that returned keys must have, such as {@code string} or
+     *             {@code hash}, only supported by {@code SCAN} in Redis 6.0 and later
+     * @return fluent interface
+     * @throws IllegalStateException If this is not a {@code SCAN} command
+     */
+    public ScanCommand<T> type(String type) {
+        if (key != null) {
+            throw new IllegalStateException("Type may only be used with SCAN, not " + command);
+        }
+
+        this.type = Objects.requireNonNull(type);
+        return this;
+    }
+
+    /**
+     * Start iterating over the elements using the given connection, sending the
+     * first command immediately.
+     * <p>
+     * The connection cannot be used for anything else until the iterator has been
+     * exhausted or closed.
+     *
+     * @param connection Connection to send commands with
+     * @return Iterator over the elements
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If there was an I/O error
+     */
+    public ScanIterator<T> iterate(RedisConnection connection) {
+        return new ScanIterator<>(connection, this);
+    }
+
+    /**
+     * Start iterating over the elements using the given connection and get them as a
+     * sequential {@code Stream}. The connection cannot be used for anything else until
+     * the stream has been consumed or closed.
+     *
+     * @param connection Connection to send commands with
+     * @return Stream of the elements
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If there was an I/O error
+     */
+    public Stream<T> stream(RedisConnection connection) {
+        return iterate(connection).stream();
+    }
+
+    /**
+     * @return Key of the set, hash or sorted set being scanned, null for {@code SCAN}
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Get the arguments of the command for fetching the page at the given cursor.
+     */
+    List<String> getArgs(String cursor) {
+        final List<String> out = new ArrayList<>(9);
+        out.add(command);
+        if (key != null) {
+            out.add(key);
+        }
+
+        out.add(cursor);
+        if (pattern != null) {
+            out.add("MATCH");
+            out.add(pattern);
+        }
+
+        if (count > 0) {
+            out.add("COUNT");
+            out.add(String.valueOf(count));
+        }
+
+        if (type != null) {
+            out.add("TYPE");
+            out.add(type);
+        }
+
+        return out;
+    }
+
+    /**
+     * Convert the elements of a single page of the reply.
+     */
+    List<T> convert(List<Object> page) {
+        return converter.apply(page);
+    }
+
+    private static List<String> toStrings(List<Object> page) {
+        final List<String> out = new ArrayList<>(page.size());
+        for (Object element : page) {
+            out.add(String.valueOf(element));
+        }
+
+        return out;
+    }
+
+    private static <V> List<Map.Entry<String, V>> toPairs(List<Object> page, Function<Object, V> values) {
+        if (page.size() % 2 != 0) {
+            throw new BajaTypeMismatchException(
+                "Unexpected number of elements for pairs. Expected an even number, got " + page.size());
+        }
+
+        if (page.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Map.Entry<String, V>> out = new ArrayList<>(page.size() / 2);
+        for (int i = 0; i < page.size(); i += 2) {
+            out.add(new AbstractMap.SimpleImmutableEntry<>(String.valueOf(page.get(i)), values.apply(page.get(i + 1))));
+        }
+
+        return out;
+    }
+
+    private static Double toDouble(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+
+        try {
+            return RespParser.parseDouble(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            throw new BajaTypeMismatchException("Unexpected value for double " + value);
+        }
+    }
+}
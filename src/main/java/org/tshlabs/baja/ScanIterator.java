@@ -0,0 +1,160 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.protocol.RespErrResponse;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator over every element returned by a {@link ScanCommand}, fetching each page
+ * of elements from the server as the previous one is consumed.
+ * <p>
+ * The command for the next page is sent as soon as the cursor for it is known,
+ * before the elements of the current page are returned, so the server works on the
+ * next page while the caller is processing the current one. Only one page is fetched
+ * ahead since the cursor for each page comes from the reply to the previous one.
+ * <p>
+ * No other commands can be sent with the connection until every element has been
+ * consumed. Callers that stop early must {@link #close()} the iterator, which reads
+ * and discards the page that was fetched ahead so that the connection can be used
+ * again.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ *
+ * @param <T> Type of the elements returned
+ */
+public class ScanIterator<T> implements Iterator<T>, Closeable {
+
+    private final RedisConnection connection;
+
+    private final ScanCommand<T> command;
+
+    private Iterator<T> page = Collections.emptyIterator();
+
+    private boolean outstanding;
+
+    private long pages;
+
+    /**
+     * Construct a new iterator and send the command for the first page.
+     *
+     * @param connection Connection to send commands with
+     * @param command    Command to fetch each page with
+     */
+    ScanIterator(RedisConnection connection, ScanCommand<T> command) {
+        this.connection = Objects.requireNonNull(connection);
+        this.command = Objects.requireNonNull(command);
+        send("0");
+    }
+
+    /**
+     * @return Number of pages that have been read from the server so far
+     */
+    public long getPages() {
+        return pages;
+    }
+
+    /**
+     * Determine if there are more elements, reading the next page from the server
+     * if the current one has been consumed.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return True if there are more elements, false otherwise
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the server responded
+     *                                                                with an error result
+     */
+    @Override
+    public boolean hasNext() {
+        // Pages may be empty when nothing in them matched the pattern
+        while (!page.hasNext()) {
+            if (!outstanding) {
+                return false;
+            }
+
+            fetch();
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the next element, reading the next page from the server if the current
+     * one has been consumed.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @return The next element
+     * @throws NoSuchElementException If there are no more elements
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException      If there was an I/O error
+     * @throws org.tshlabs.baja.exceptions.BajaProtocolErrorException If the server responded
+     *                                                                with an error result
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return page.next();
+    }
+
+    /**
+     * Get a sequential {@code Stream} of the remaining elements. Closing the stream
+     * closes this iterator.
+     *
+     * @return Stream of remaining elements
+     */
+    public Stream<T> stream() {
+        final Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+            this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Stop iterating, reading and discarding the page that was fetched ahead if any.
+     * <p>
+     * This is a blocking operation.
+     *
+     * @throws org.tshlabs.baja.exceptions.BajaResourceException If there was an I/O error
+     */
+    @Override
+    public void close() {
+        page = Collections.emptyIterator();
+        if (outstanding) {
+            outstanding = false;
+            connection.readReply();
+        }
+    }
+
+    private void send(String cursor) {
+        connection.writeCommand(command.getArgs(cursor));
+        outstanding = true;
+    }
+
+    private void fetch() {
+        outstanding = false;
+        final Object reply = connection.readReply();
+        if (reply instanceof RespErrResponse) {
+            throw RedisConnection.protocolError(((RespErrResponse) reply).getMessage());
+        }
+
+        final List<Object> parts = AsyncCommand.toList(reply);
+        final String cursor = String.valueOf(parts.get(0));
+        if (!"0".equals(cursor)) {
+            send(cursor);
+        }
+
+        pages++;
+        page = command.convert(AsyncCommand.toList(parts.get(1))).iterator();
+    }
+}
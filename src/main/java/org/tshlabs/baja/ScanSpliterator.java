@@ -0,0 +1,185 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Spliterator over the elements of several independent scans, such as one for
+ * each node of a cluster or one for each key type of a single server, so that
+ * they can be run in parallel by a {@code Stream} or fork-join task.
+ * <p>
+ * The cursor of a single scan can't be shared, so splitting divides the remaining
+ * partitions between spliterators and a spliterator with a single partition can't
+ * be split any further. Each partition borrows its own connection from its pool
+ * when it is started and returns it when it is exhausted.
+ * <p>
+ * This class is <em>not</em> thread safe, although spliterators split from it
+ * may be used by other threads.
+ *
+ * @param <T> Type of the elements returned
+ */
+final class ScanSpliterator<T> implements Spliterator<T> {
+
+    /**
+     * A single scan and the pool to borrow a connection for it from.
+     */
+    static final class Partition<T> {
+
+        private final RedisConnectionPool pool;
+
+        private final ScanCommand<T> command;
+
+        Partition(RedisConnectionPool pool, ScanCommand<T> command) {
+            this.pool = Objects.requireNonNull(pool);
+            this.command = Objects.requireNonNull(command);
+        }
+    }
+
+    private final List<Partition<T>> partitions;
+
+    // Every spliterator split from the same root, so that they can all be closed
+    private final Queue<ScanSpliterator<T>> family;
+
+    private final int end;
+
+    private int next;
+
+    private RedisConnectionPool pool;
+
+    private RedisConnection connection;
+
+    private ScanIterator<T> iterator;
+
+    private ScanSpliterator(List<Partition<T>> partitions, Queue<ScanSpliterator<T>> family, int start, int end) {
+        this.partitions = partitions;
+        this.family = family;
+        this.end = end;
+        this.next = start;
+        family.add(this);
+    }
+
+    /**
+     * Get a parallel {@code Stream} of the elements of every partition. Closing the
+     * stream returns any connections that are still borrowed, which is required if
+     * it isn't consumed entirely.
+     */
+    static <T> Stream<T> stream(List<Partition<T>> partitions) {
+        final ScanSpliterator<T> root = new ScanSpliterator<>(
+            partitions, new ConcurrentLinkedQueue<>(), 0, partitions.size());
+        return StreamSupport.stream(root, true).onClose(root::closeAll);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (iterator == null || !advance(action)) {
+            finish();
+            if (next >= end) {
+                return false;
+            }
+
+            start(partitions.get(next++));
+        }
+
+        return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        final int remaining = end - next;
+        if (remaining < 2) {
+            return null;
+        }
+
+        final int mid = next + remaining / 2;
+        final ScanSpliterator<T> prefix = new ScanSpliterator<>(partitions, family, next, mid);
+        next = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.NONNULL;
+    }
+
+    private void start(Partition<T> partition) {
+        pool = partition.pool;
+        connection = pool.borrow();
+        try {
+            iterator = partition.command.iterate(connection);
+        } catch (BajaRuntimeException e) {
+            abandon();
+            throw e;
+        }
+    }
+
+    private boolean advance(Consumer<? super T> action) {
+        final boolean more;
+        try {
+            more = iterator.hasNext();
+        } catch (BajaRuntimeException e) {
+            abandon();
+            throw e;
+        }
+
+        if (more) {
+            action.accept(iterator.next());
+        }
+
+        return more;
+    }
+
+    /**
+     * Stop the current partition, if any, and return its connection to the pool.
+     */
+    private void finish() {
+        if (iterator == null) {
+            return;
+        }
+
+        try {
+            iterator.close();
+            pool.release(connection);
+        } catch (BajaRuntimeException e) {
+            pool.invalidate(connection);
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Drop the connection of the current partition, which is in an unknown state.
+     */
+    private void abandon() {
+        try {
+            pool.invalidate(connection);
+        } finally {
+            clear();
+        }
+    }
+
+    private void clear() {
+        pool = null;
+        connection = null;
+        iterator = null;
+    }
+
+    private void closeAll() {
+        ScanSpliterator<T> spliterator;
+        while ((spliterator = family.poll()) != null) {
+            spliterator.finish();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Factory for creating {@link RedisConnection} instances connected to the current
+ * master of a group of Redis servers monitored by
+ * <a href="https://redis.io/topics/sentinel">Redis Sentinel</a>.
+ * <p>
+ * The address of the master is looked up from the first Sentinel that knows it
+ * using {@code SENTINEL GET-MASTER-ADDR-BY-NAME} when the factory is built. A
+ * background thread stays subscribed to the {@code +switch-master} channel of one
+ * of the Sentinels, and when a failover is announced the new address is used for
+ * all connections created after that and the failover listeners are notified. A
+ * listener that {@link RedisConnectionPool#clear() clears} a pool using this factory
+ * makes sure no connections to the old master are borrowed after the failover.
+ * <p>
+ * Failovers may also be missed, for example while the subscription is being
+ * re-established. If enabled, each new connection is checked with {@code ROLE}
+ * and if the server is not a master, or can't be reached, the address is looked
+ * up from the Sentinels again before retrying once.
+ * <p>
+ * This class is thread safe.
+ *
+ * @see <a href="https://redis.io/topics/sentinel-clients">Guidelines for Redis clients with support for Redis Sentinel</a>
+ */
+public class SentinelConnectionFactory implements RedisConnectionFactory, Closeable {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final String SWITCH_MASTER = "+switch-master";
+
+    private final String masterName;
+
+    private final List<InetSocketAddress> sentinels;
+
+    private final Function<InetSocketAddress, RedisConnectionFactory> factory;
+
+    private final boolean checkRole;
+
+    private final long retryIntervalNanos;
+
+    private final List<Consumer<InetSocketAddress>> listeners = new CopyOnWriteArrayList<>();
+
+    private final Object lookupLock = new Object();
+
+    private volatile InetSocketAddress master;
+
+    private volatile RedisConnection subscription;
+
+    private volatile Thread subscriber;
+
+    private volatile boolean closed;
+
+    private SentinelConnectionFactory(Builder builder) {
+        this.masterName = builder.masterName;
+        this.sentinels = builder.sentinels;
+        this.factory = builder.factory;
+        this.checkRole = builder.checkRole;
+        this.retryIntervalNanos = builder.retryIntervalNanos;
+    }
+
+    /**
+     * Get a new builder for a factory that creates connections to the master with
+     * the given name, discovered using the given Sentinels.
+     *
+     * @param masterName Name of the master as configured in the Sentinels
+     * @param sentinels  Addresses of one or more Sentinels monitoring the master
+     * @return Builder for configuring the factory
+     * @throws NullPointerException     If master name or sentinels is null
+     * @throws IllegalArgumentException If sentinels is empty
+     */
+    public static Builder builder(String masterName, Collection<InetSocketAddress> sentinels) {
+        return new Builder(masterName, sentinels);
+    }
+
+    /**
+     * Create a new connection to the current master, looking up the master again
+     * and retrying once if it can't be reached or is no longer a master.
+     *
+     * @return New connection to the master
+     * @throws BajaResourceException If the master could not be reached
+     * @throws IllegalStateException If the factory has been closed
+     */
+    @Override
+    public RedisConnection create() {
+        if (closed) {
+            throw new IllegalStateException("Sentinel connection factory has been closed");
+        }
+
+        final InetSocketAddress current = master;
+        try {
+            return connect(current);
+        } catch (BajaRuntimeException e) {
+            // The master may have changed without us hearing about it
+            final InetSocketAddress found;
+            try {
+                found = lookup();
+            } catch (BajaRuntimeException lookupError) {
+                e.addSuppressed(lookupError);
+                throw e;
+            }
+
+            if (found.equals(current)) {
+                throw e;
+            }
+
+            return connect(found);
+        }
+    }
+
+    /**
+     * @return Address of the current master
+     */
+    public InetSocketAddress getMaster() {
+        return master;
+    }
+
+    /**
+     * Add a listener that is called with the address of the new master after each
+     * failover, from the thread that noticed the failover.
+     *
+     * @param listener Listener to call after a failover
+     * @return fluent interface
+     */
+    public SentinelConnectionFactory addFailoverListener(Consumer<InetSocketAddress> listener) {
+        listeners.add(Objects.requireNonNull(listener));
+        return this;
+    }
+
+    /**
+     * Remove a listener that was previously added.
+     *
+     * @param listener Listener to remove
+     * @return fluent interface
+     */
+    public SentinelConnectionFactory removeFailoverListener(Consumer<InetSocketAddress> listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Stop listening for failovers. Connections that were already created are not closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        final Thread thread = subscriber;
+        if (thread != null) {
+            thread.interrupt();
+        }
+
+        closeQuietly(subscription);
+    }
+
+    /**
+     * Look up the address of the master from the first Sentinel that knows it,
+     * and update the current master if it has changed.
+     *
+     * @return Address of the master
+     * @throws BajaResourceException If none of the Sentinels knew the address of the master
+     */
+    InetSocketAddress lookup() {
+        synchronized (lookupLock) {
+            BajaRuntimeException last = null;
+            for (InetSocketAddress sentinel : sentinels) {
+                try {
+                    final InetSocketAddress found = withSentinel(sentinel, this::getMasterAddress);
+                    if (found != null) {
+                        setMaster(found);
+                        return found;
+                    }
+                } catch (BajaRuntimeException e) {
+                    last = e;
+                }
+            }
+
+            throw new BajaResourceException("No Sentinel knows the master " + masterName + " of " + sentinels, last);
+        }
+    }
+
+    private RedisConnection connect(InetSocketAddress address) {
+        final RedisConnection connection = factory.apply(address).create();
+        if (!checkRole) {
+            return connection;
+        }
+
+        try {
+            final List<Object> role = RedisCommand.cmd("ROLE").query(connection).asArray();
+            if (role.isEmpty() || !"master".equals(String.valueOf(role.get(0)))) {
+                throw new BajaResourceException("Server " + address + " is not a master, role " + role);
+            }
+
+            return connection;
+        } catch (RuntimeException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+    }
+
+    private InetSocketAddress getMasterAddress(RedisConnection connection) {
+        // The reply is a null array if the Sentinel doesn't know the master
+        final List<Object> address = RedisCommand.cmd("SENTINEL")
+            .arg("GET-MASTER-ADDR-BY-NAME")
+            .arg(masterName)
+            .query(connection)
+            .asArray();
+
+        if (address == null || address.size() < 2) {
+            return null;
+        }
+
+        return InetSocketAddress.createUnresolved(String.valueOf(address.get(0)),
+            Integer.parseInt(String.valueOf(address.get(1))));
+    }
+
+    private <T> T withSentinel(InetSocketAddress sentinel, Function<RedisConnection, T> func) {
+        final RedisConnection connection = factory.apply(sentinel).create();
+        try {
+            return func.apply(connection);
+        } finally {
+            closeQuietly(connection);
+        }
+    }
+
+    private void setMaster(InetSocketAddress address) {
+        final InetSocketAddress previous = master;
+        master = address;
+
+        if (previous != null && !previous.equals(address)) {
+            for (Consumer<InetSocketAddress> listener : listeners) {
+                listener.accept(address);
+            }
+        }
+    }
+
+    private void start() {
+        final Thread thread = new Thread(this::subscribe, "baja-sentinel-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        subscriber = thread;
+        thread.start();
+    }
+
+    /**
+     * Stay subscribed to failover announcements from one Sentinel at a time, moving
+     * on to the next one whenever the connection breaks.
+     */
+    private void subscribe() {
+        for (int i = 0; !closed; i = (i + 1) % sentinels.size()) {
+            try {
+                subscribe(sentinels.get(i));
+            } catch (RuntimeException e) {
+                // Try the next Sentinel after a short pause
+            }
+
+            if (!closed) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(retryIntervalNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void subscribe(InetSocketAddress sentinel) {
+        final RedisConnection connection = factory.apply(sentinel).create();
+        subscription = connection;
+
+        try {
+            if (closed) {
+                return;
+            }
+
+            RedisCommand.cmd("SUBSCRIBE").arg(SWITCH_MASTER).query(connection).asArray();
+
+            // A failover may have happened while we weren't subscribed
+            lookup();
+
+            boolean waiting = false;
+            while (!closed) {
+                try {
+                    connection.awaitReply();
+                } catch (BajaResourceException e) {
+                    if (waiting || !(e.getCause() instanceof SocketTimeoutException)) {
+                        throw e;
+                    }
+
+                    // Nothing was announced for a while, so make sure the Sentinel is still there
+                    RedisCommand.cmd("PING").query(connection);
+                    waiting = true;
+                    continue;
+                }
+
+                // A timeout partway through a message leaves the rest of it unread, so
+                // it breaks the subscription and we move on to the next Sentinel
+                final List<Object> message = connection.readArray();
+                waiting = false;
+                onMessage(message);
+            }
+        } finally {
+            subscription = null;
+            closeQuietly(connection);
+        }
+    }
+
+    // VisibleForTesting
+    void onMessage(List<Object> message) {
+        // Messages are "message", the channel, then "<name> <old ip> <old port> <new ip> <new port>"
+        if (message.size() < 3 || !"message".equals(String.valueOf(message.get(0))) ||
+            !SWITCH_MASTER.equals(String.valueOf(message.get(1)))) {
+            return;
+        }
+
+        final String[] fields = String.valueOf(message.get(2)).split(" ");
+        if (fields.length < 5 || !fields[0].equals(masterName)) {
+            return;
+        }
+
+        try {
+            setMaster(InetSocketAddress.createUnresolved(fields[3], Integer.parseInt(fields[4])));
+        } catch (IllegalArgumentException e) {
+            // Malformed announcement, the next failed connection will look up the master instead
+        }
+    }
+
+    private static void closeQuietly(RedisConnection connection) {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            connection.close();
+        } catch (BajaRuntimeException e) {
+            // nothing
+        }
+    }
+
+    /**
+     * Builder for configuring and creating a {@link SentinelConnectionFactory}.
+     * <p>
+     * This class is <em>not</em> thread safe.
+     */
+    public static class Builder {
+
+        private final String masterName;
+
+        private final List<InetSocketAddress> sentinels;
+
+        private Function<InetSocketAddress, RedisConnectionFactory> factory =
+            address -> new SocketConnectionFactory(address.getHostString(), address.getPort());
+
+        private boolean checkRole = true;
+
+        private long retryIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+
+        private Builder(String masterName, Collection<InetSocketAddress> sentinels) {
+            if (sentinels.isEmpty()) {
+                throw new IllegalArgumentException("At least one Sentinel is required");
+            }
+
+            this.masterName = Objects.requireNonNull(masterName);
+            this.sentinels = new ArrayList<>(sentinels);
+        }
+
+        /**
+         * @param factory Function for creating a connection factory for a Sentinel or master,
+         *                default a {@link SocketConnectionFactory} with default timeouts. The
+         *                read timeout also controls how often an idle Sentinel is checked.
+         * @return fluent interface
+         */
+        public Builder connectionFactory(Function<InetSocketAddress, RedisConnectionFactory> factory) {
+            this.factory = Objects.requireNonNull(factory);
+            return this;
+        }
+
+        /**
+         * @param checkRole True to check that each new connection is to a master with
+         *                  {@code ROLE}, default true
+         * @return fluent interface
+         */
+        public Builder checkRole(boolean checkRole) {
+            this.checkRole = checkRole;
+            return this;
+        }
+
+        /**
+         * @param interval Time to wait before subscribing to the next Sentinel after
+         *                 losing the connection to one, default one second
+         * @param unit     Unit of the interval
+         * @return fluent interface
+         */
+        public Builder retryInterval(long interval, TimeUnit unit) {
+            this.retryIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Look up the master from the Sentinels, start listening for failovers, and
+         * create the factory.
+         *
+         * @return New factory using the configured settings
+         * @throws IllegalArgumentException If any of the settings are invalid
+         * @throws BajaResourceException    If none of the Sentinels knew the address of the master
+         */
+        public SentinelConnectionFactory build() {
+            if (retryIntervalNanos < 0) {
+                throw new IllegalArgumentException("Retry interval must not be negative");
+            }
+
+            final SentinelConnectionFactory out = new SentinelConnectionFactory(this);
+            out.lookup();
+            out.start();
+            return out;
+        }
+    }
+}
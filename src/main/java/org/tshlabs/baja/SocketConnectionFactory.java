@@ -0,0 +1,100 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.protocol.RespEncoder;
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Objects;
+
+/**
+ * Factory for creating {@link RedisConnection} instances that communicate
+ * with a Redis server at a fixed host and port over a TCP socket.
+ * <p>
+ * Sockets are created with {@code TCP_NODELAY} enabled and the input of each
+ * connection is read through a {@link RespInputBuffer}.
+ * <p>
+ * This class is thread safe.
+ */
+public class SocketConnectionFactory implements RedisConnectionFactory {
+
+    private static final int DEFAULT_TIMEOUT_MILLIS = 2000;
+
+    private final String host;
+
+    private final int port;
+
+    private final int connectTimeoutMillis;
+
+    private final int readTimeoutMillis;
+
+    /**
+     * Construct a new factory for the given host and port with default connect
+     * and read timeouts of two seconds.
+     *
+     * @param host Host name or address of the Redis server
+     * @param port Port of the Redis server
+     * @throws NullPointerException If host is null
+     */
+    public SocketConnectionFactory(String host, int port) {
+        this(host, port, DEFAULT_TIMEOUT_MILLIS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Construct a new factory for the given host and port with the given connect
+     * and read timeouts. A timeout of zero means to wait forever.
+     *
+     * @param host                 Host name or address of the Redis server
+     * @param port                 Port of the Redis server
+     * @param connectTimeoutMillis Timeout for establishing a connection in milliseconds
+     * @param readTimeoutMillis    Timeout for reading a response in milliseconds
+     * @throws NullPointerException     If host is null
+     * @throws IllegalArgumentException If either timeout is negative
+     */
+    public SocketConnectionFactory(String host, int port, int connectTimeoutMillis, int readTimeoutMillis) {
+        if (connectTimeoutMillis < 0 || readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeouts must not be negative");
+        }
+
+        this.host = Objects.requireNonNull(host);
+        this.port = port;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public RedisConnection create() {
+        final Socket socket = new Socket();
+
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(readTimeoutMillis);
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+
+            return new RedisConnection(
+                new RespInputBuffer(socket.getInputStream()),
+                socket.getOutputStream(),
+                RespEncoder.getInstance(),
+                RespParser.getInstance());
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing
+            }
+
+            throw new BajaResourceException("Could not connect to " + host + ":" + port, e);
+        }
+    }
+}
@@ -0,0 +1,763 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+import org.tshlabs.baja.protocol.RespErrResponse;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Consumer of one or more <a href="https://redis.io/topics/streams-intro">Redis Streams</a>
+ * as a member of a consumer group.
+ * <p>
+ * A single poll thread owns a connection to the server. Each round it sends
+ * {@code XACK} for the entries processed since the previous round together with
+ * a blocking {@code XREADGROUP} for up to {@code count} new entries, in a single
+ * write. The reply to {@code XREADGROUP} is decoded straight into {@link StreamEntry}
+ * instances as it is parsed, and each entry is passed to the handler on a worker
+ * pool. Entries are acknowledged only after the handler returns without throwing;
+ * entries whose handler fails stay pending in the group and may be claimed again
+ * later. The number of entries being processed at once is limited, so a slow
+ * handler causes the consumer to read less rather than to buffer without bound.
+ * <p>
+ * Entries that have been pending for too long, because the consumer that read them
+ * failed or their handler threw, are periodically claimed with {@code XAUTOCLAIM}
+ * and processed like new entries. This requires Redis 6.2 or later and may be
+ * disabled.
+ * <p>
+ * If the connection fails, it is closed and a new one is created after a short
+ * pause. The connection must not have a read timeout shorter than the time that
+ * {@code XREADGROUP} blocks for.
+ * <p>
+ * This class is thread safe.
+ */
+public class StreamConsumer implements Closeable {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final RedisConnectionFactory factory;
+
+    private final String group;
+
+    private final String consumer;
+
+    private final Consumer<StreamEntry> handler;
+
+    private final List<String> streams;
+
+    private final int count;
+
+    private final long blockMillis;
+
+    private final long claimMinIdleMillis;
+
+    private final long claimIntervalNanos;
+
+    private final long retryIntervalMillis;
+
+    private final long shutdownTimeoutMillis;
+
+    private final Consumer<RuntimeException> errorListener;
+
+    private final ExecutorService executor;
+
+    private final boolean ownsExecutor;
+
+    private final Semaphore permits;
+
+    private final Queue<StreamEntry> acks = new ConcurrentLinkedQueue<>();
+
+    private final Object lock = new Object();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong acknowledged = new AtomicLong();
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    // Cursor for the next XAUTOCLAIM of each stream, only used by the poll thread
+    private final Map<String, String> cursors = new HashMap<>();
+
+    private final Thread poller;
+
+    private RedisConnection connection;
+
+    private long lastClaim;
+
+    private volatile boolean closed;
+
+    private StreamConsumer(Builder builder) {
+        this.factory = builder.factory;
+        this.group = builder.group;
+        this.consumer = builder.consumer;
+        this.handler = builder.handler;
+        this.streams = builder.streams;
+        this.count = builder.count;
+        this.blockMillis = builder.blockMillis;
+        this.claimMinIdleMillis = builder.claimMinIdleMillis;
+        this.claimIntervalNanos = builder.claimIntervalNanos;
+        this.retryIntervalMillis = builder.retryIntervalMillis;
+        this.shutdownTimeoutMillis = builder.shutdownTimeoutMillis;
+        this.errorListener = builder.errorListener;
+        this.permits = new Semaphore(builder.maxInFlight);
+
+        final int id = THREAD_COUNT.incrementAndGet();
+        this.ownsExecutor = builder.executor == null;
+        this.executor = ownsExecutor ?
+            Executors.newFixedThreadPool(builder.workers, r -> {
+                final Thread thread = new Thread(r, "baja-stream-worker-" + id);
+                thread.setDaemon(true);
+                return thread;
+            }) :
+            builder.executor;
+
+        this.poller = new Thread(this::poll, "baja-stream-poll-" + id);
+        this.poller.setDaemon(true);
+
+        for (String stream : streams) {
+            cursors.put(stream, "0-0");
+        }
+
+        // Claim entries left pending by a previous run as soon as we start
+        this.lastClaim = System.nanoTime() - claimIntervalNanos;
+    }
+
+    /**
+     * Get a new builder for a consumer that reads from streams as a member of
+     * the given group and passes each entry to the given handler.
+     *
+     * @param factory  Factory for the connection used to read and acknowledge entries
+     * @param group    Name of the consumer group, which must already exist
+     * @param consumer Name of this consumer within the group
+     * @param handler  Handler for each entry, called on a worker thread
+     * @return Builder for configuring the consumer
+     * @throws NullPointerException If any of the arguments are null
+     */
+    public static Builder builder(
+        RedisConnectionFactory factory, String group, String consumer, Consumer<StreamEntry> handler) {
+        return new Builder(factory, group, consumer, handler);
+    }
+
+    /**
+     * @return Number of entries read or claimed from the server
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return Number of entries the handler returned for without throwing
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return Number of entries the handler threw an exception for
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return Number of entries acknowledged by the server
+     */
+    public long getAcknowledged() {
+        return acknowledged.get();
+    }
+
+    /**
+     * @return Number of pending entries claimed from other consumers
+     */
+    public long getClaimed() {
+        return claimed.get();
+    }
+
+    /**
+     * @return Number of entries being processed or waiting for a worker
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return True if the consumer has not been closed, false otherwise
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Stop reading entries, wait for entries being processed to finish, acknowledge
+     * them and close the connection.
+     * <p>
+     * This is a blocking operation that may take as long as the time {@code XREADGROUP}
+     * blocks for plus the shutdown timeout.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+
+        if (Thread.currentThread() == poller) {
+            return;
+        }
+
+        try {
+            poller.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void poll() {
+        try {
+            while (!closed) {
+                try {
+                    if (connection == null) {
+                        connection = factory.create();
+                    }
+
+                    if (claimIntervalNanos > 0 && System.nanoTime() - lastClaim >= claimIntervalNanos) {
+                        // Updated first so that a server without XAUTOCLAIM isn't asked every round
+                        lastClaim = System.nanoTime();
+                        claim();
+                    }
+
+                    read();
+                } catch (RuntimeException e) {
+                    if (closed) {
+                        break;
+                    }
+
+                    errorListener.accept(e);
+                    disconnect();
+                    pause(retryIntervalMillis);
+                }
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Acknowledge processed entries and read new ones in a single round trip.
+     */
+    private void read() {
+        final int available = acquire();
+        if (available == 0) {
+            return;
+        }
+
+        final List<StreamEntry> done = drainAcks();
+        final List<List<String>> commands = ackCommands(done);
+        final List<String> xreadgroup = new ArrayList<>(streams.size() * 2 + 9);
+        xreadgroup.addAll(Arrays.asList("XREADGROUP", "GROUP", group, consumer,
+            "COUNT", String.valueOf(available), "BLOCK", String.valueOf(blockMillis), "STREAMS"));
+        xreadgroup.addAll(streams);
+        xreadgroup.addAll(Collections.nCopies(streams.size(), ">"));
+        commands.add(xreadgroup);
+
+        final StreamEntryDecoder decoder = new StreamEntryDecoder();
+        boolean sent = false;
+        try {
+            connection.writeMultiCommand(commands);
+            readAcks(commands.size() - 1);
+            sent = true;
+            connection.readReply(decoder);
+        } catch (RuntimeException e) {
+            if (!sent) {
+                // XACK is idempotent so sending it again is harmless if it did succeed
+                acks.addAll(done);
+            }
+
+            permits.release(available);
+            throw e;
+        }
+
+        final List<StreamEntry> entries = decoder.getEntries();
+        permits.release(available - Math.min(available, entries.size()));
+
+        if (decoder.getError() != null) {
+            throw RedisConnection.protocolError(decoder.getError());
+        }
+
+        dispatch(entries);
+    }
+
+    /**
+     * Claim entries that have been pending for too long from each stream, continuing
+     * from where the previous claim of the stream left off.
+     */
+    private void claim() {
+        for (String stream : streams) {
+            final int available = acquire();
+            if (available == 0) {
+                return;
+            }
+
+            final Object reply;
+            try {
+                connection.writeCommand(Arrays.asList("XAUTOCLAIM", stream, group, consumer,
+                    String.valueOf(claimMinIdleMillis), cursors.get(stream), "COUNT", String.valueOf(available)));
+                reply = connection.readReply();
+            } catch (RuntimeException e) {
+                permits.release(available);
+                throw e;
+            }
+
+            final List<StreamEntry> entries = new ArrayList<>();
+            final List<StreamEntry> deleted = new ArrayList<>();
+            try {
+                if (reply instanceof RespErrResponse) {
+                    throw RedisConnection.protocolError(((RespErrResponse) reply).getMessage());
+                }
+
+                final List<Object> parts = AsyncCommand.toList(reply);
+                cursors.put(stream, String.valueOf(parts.get(0)));
+
+                for (Object item : AsyncCommand.toList(parts.get(1))) {
+                    final List<Object> entry = AsyncCommand.toList(item);
+                    final Object fields = entry.get(1);
+                    if (fields == null) {
+                        // Deleted from the stream while pending, so there's nothing to process
+                        deleted.add(new StreamEntry(stream, String.valueOf(entry.get(0)), Collections.emptyMap()));
+                    } else {
+                        entries.add(new StreamEntry(stream, String.valueOf(entry.get(0)), toFields(fields)));
+                    }
+                }
+            } finally {
+                permits.release(available - Math.min(available, entries.size()));
+            }
+
+            acks.addAll(deleted);
+            claimed.addAndGet(entries.size());
+            dispatch(entries);
+        }
+    }
+
+    /**
+     * Wait until at least one entry may be processed, acknowledging processed entries
+     * while waiting, and take as many permits as are available up to the batch size.
+     *
+     * @return Number of permits taken, zero if the consumer was closed while waiting
+     */
+    private int acquire() {
+        try {
+            while (!permits.tryAcquire(blockMillis, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    return 0;
+                }
+
+                flushAcks();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BajaResourceException("Interrupted waiting for entries to be processed", e);
+        }
+
+        int available = 1;
+        while (available < count && permits.tryAcquire()) {
+            available++;
+        }
+
+        return available;
+    }
+
+    private void dispatch(List<StreamEntry> entries) {
+        received.addAndGet(entries.size());
+
+        for (StreamEntry entry : entries) {
+            inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> process(entry));
+            } catch (RejectedExecutionException e) {
+                // The entry stays pending and will be claimed again later
+                finish();
+                errorListener.accept(e);
+            }
+        }
+    }
+
+    private void process(StreamEntry entry) {
+        try {
+            handler.accept(entry);
+            processed.incrementAndGet();
+            acks.add(entry);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            errorListener.accept(e);
+        } finally {
+            finish();
+        }
+    }
+
+    private void finish() {
+        permits.release();
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private List<StreamEntry> drainAcks() {
+        final List<StreamEntry> out = new ArrayList<>();
+        StreamEntry entry;
+        while ((entry = acks.poll()) != null) {
+            out.add(entry);
+        }
+
+        return out;
+    }
+
+    /**
+     * Build one {@code XACK} for each stream that has processed entries.
+     */
+    private List<List<String>> ackCommands(List<StreamEntry> done) {
+        final Map<String, List<String>> byStream = new LinkedHashMap<>();
+        for (StreamEntry entry : done) {
+            byStream.computeIfAbsent(entry.getStream(), stream -> {
+                final List<String> xack = new ArrayList<>();
+                xack.add("XACK");
+                xack.add(stream);
+                xack.add(group);
+                return xack;
+            }).add(entry.getId());
+        }
+
+        return new ArrayList<>(byStream.values());
+    }
+
+    private void readAcks(int replies) {
+        for (int i = 0; i < replies; i++) {
+            final Object reply = connection.readReply();
+            if (reply instanceof RespErrResponse) {
+                // The group or stream was removed, retrying the acknowledgement won't help
+                errorListener.accept(RedisConnection.protocolError(((RespErrResponse) reply).getMessage()));
+            } else if (reply instanceof Long) {
+                acknowledged.addAndGet((Long) reply);
+            }
+        }
+    }
+
+    /**
+     * Send acknowledgements for processed entries without reading any new ones.
+     */
+    private void flushAcks() {
+        final List<StreamEntry> done = drainAcks();
+        if (done.isEmpty()) {
+            return;
+        }
+
+        final List<List<String>> commands = ackCommands(done);
+        try {
+            connection.writeMultiCommand(commands);
+            readAcks(commands.size());
+        } catch (RuntimeException e) {
+            acks.addAll(done);
+            throw e;
+        }
+    }
+
+    private static Map<String, String> toFields(Object reply) {
+        final List<Object> values = AsyncCommand.toList(reply);
+        final Map<String, String> out = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < values.size(); i += 2) {
+            out.put(String.valueOf(values.get(i)), String.valueOf(values.get(i + 1)));
+        }
+
+        return out;
+    }
+
+    private void pause(long millis) {
+        // Waiting for zero milliseconds would wait until notified instead of not at all
+        if (millis <= 0) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (!closed) {
+                try {
+                    lock.wait(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for entries being processed to finish, acknowledge them and close the connection.
+     */
+    private void shutdown() {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        synchronized (lock) {
+            long remaining;
+            while (inFlight.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+
+        if (connection != null) {
+            try {
+                flushAcks();
+            } catch (RuntimeException e) {
+                // Unacknowledged entries stay pending and will be claimed again later
+                errorListener.accept(e);
+            }
+        }
+
+        disconnect();
+    }
+
+    private void disconnect() {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            connection.close();
+        } catch (BajaRuntimeException e) {
+            // nothing
+        } finally {
+            connection = null;
+        }
+    }
+
+    /**
+     * Builder for configuring and creating a {@link StreamConsumer}.
+     * <p>
+     * This class is <em>not</em> thread safe.
+     */
+    public static class Builder {
+
+        private final RedisConnectionFactory factory;
+
+        private final String group;
+
+        private final String consumer;
+
+        private final Consumer<StreamEntry> handler;
+
+        private List<String> streams = Collections.emptyList();
+
+        private int count = 100;
+
+        private long blockMillis = 1000;
+
+        private int workers = Runtime.getRuntime().availableProcessors();
+
+        private ExecutorService executor;
+
+        private int maxInFlight = 1000;
+
+        private long claimMinIdleMillis = TimeUnit.MINUTES.toMillis(1);
+
+        private long claimIntervalNanos = TimeUnit.SECONDS.toNanos(30);
+
+        private long retryIntervalMillis = 1000;
+
+        private long shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+
+        private Consumer<RuntimeException> errorListener = e -> {
+        };
+
+        private Builder(
+            RedisConnectionFactory factory, String group, String consumer, Consumer<StreamEntry> handler) {
+            this.factory = Objects.requireNonNull(factory);
+            this.group = Objects.requireNonNull(group);
+            this.consumer = Objects.requireNonNull(consumer);
+            this.handler = Objects.requireNonNull(handler);
+        }
+
+        /**
+         * @param streams Keys of the streams to read from, which must each have the
+         *                consumer group already
+         * @return fluent interface
+         */
+        public Builder streams(String... streams) {
+            this.streams = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(streams)));
+            return this;
+        }
+
+        /**
+         * @param count Maximum number of entries to read or claim at once, default 100
+         * @return fluent interface
+         */
+        public Builder count(int count) {
+            this.count = count;
+            return this;
+        }
+
+        /**
+         * @param block Time for {@code XREADGROUP} to wait for new entries, default one
+         *              second. Processed entries are acknowledged at least this often.
+         * @param unit  Unit of the time
+         * @return fluent interface
+         */
+        public Builder block(long block, TimeUnit unit) {
+            this.blockMillis = unit.toMillis(block);
+            return this;
+        }
+
+        /**
+         * @param workers Number of threads to process entries on, default the number
+         *                of available processors. Ignored if an executor is given.
+         * @return fluent interface
+         */
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * @param executor Executor to process entries on, which is not shut down when
+         *                 the consumer is closed, default a pool of daemon threads owned
+         *                 by the consumer
+         * @return fluent interface
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * @param maxInFlight Maximum number of entries being processed or waiting for a
+         *                    worker at once, default 1,000
+         * @return fluent interface
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param minIdle Time an entry must have been pending for before it is claimed
+         *                by this consumer, default one minute
+         * @param unit    Unit of the time
+         * @return fluent interface
+         */
+        public Builder claimMinIdle(long minIdle, TimeUnit unit) {
+            this.claimMinIdleMillis = unit.toMillis(minIdle);
+            return this;
+        }
+
+        /**
+         * @param interval Time between claiming pending entries, default 30 seconds, or
+         *                 zero to never claim them
+         * @param unit     Unit of the time
+         * @return fluent interface
+         */
+        public Builder claimInterval(long interval, TimeUnit unit) {
+            this.claimIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * @param interval Time to wait before creating a new connection after an error,
+         *                 or zero to reconnect immediately, default one second
+         * @param unit     Unit of the time
+         * @return fluent interface
+         */
+        public Builder retryInterval(long interval, TimeUnit unit) {
+            this.retryIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * @param timeout Time to wait for entries being processed to finish when the
+         *                consumer is closed, default ten seconds
+         * @param unit    Unit of the time
+         * @return fluent interface
+         */
+        public Builder shutdownTimeout(long timeout, TimeUnit unit) {
+            this.shutdownTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * @param errorListener Listener for errors reading or acknowledging entries, which
+         *                      are retried with a new connection, and errors thrown by the
+         *                      handler, default to ignore them
+         * @return fluent interface
+         */
+        public Builder errorListener(Consumer<RuntimeException> errorListener) {
+            this.errorListener = Objects.requireNonNull(errorListener);
+            return this;
+        }
+
+        /**
+         * Start reading and processing entries.
+         *
+         * @return New consumer using the configured settings
+         * @throws IllegalArgumentException If any of the settings are invalid
+         */
+        public StreamConsumer build() {
+            if (streams.isEmpty()) {
+                throw new IllegalArgumentException("At least one stream must be given");
+            }
+
+            if (count < 1) {
+                throw new IllegalArgumentException("Count must be at least 1, got " + count);
+            }
+
+            if (blockMillis < 1) {
+                throw new IllegalArgumentException("Block time must be at least one millisecond");
+            }
+
+            if (executor == null && workers < 1) {
+                throw new IllegalArgumentException("Workers must be at least 1, got " + workers);
+            }
+
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("Max in flight must be at least 1, got " + maxInFlight);
+            }
+
+            if (claimMinIdleMillis < 0 || claimIntervalNanos < 0 || retryIntervalMillis < 0 ||
+                shutdownTimeoutMillis < 0) {
+                throw new IllegalArgumentException("Times must not be negative");
+            }
+
+            final StreamConsumer out = new StreamConsumer(this);
+            out.poller.start();
+            return out;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.tshlabs.baja;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Entry read from a Redis Stream, with the fields and values it was added with.
+ * <p>
+ * This class is thread safe.
+ *
+ * @see <a href="https://redis.io/topics/streams-intro">Introduction to Redis Streams</a>
+ */
+public final class StreamEntry {
+
+    private final String stream;
+
+    private final String id;
+
+    private final Map<String, String> fields;
+
+    /**
+     * Construct a new entry of the given stream.
+     *
+     * @param stream Key of the stream the entry belongs to
+     * @param id     ID of the entry, such as {@code 1526919030474-55}
+     * @param fields Fields and values of the entry, in the order they were added
+     * @throws NullPointerException If any of the arguments are null
+     */
+    public StreamEntry(String stream, String id, Map<String, String> fields) {
+        this.stream = Objects.requireNonNull(stream);
+        this.id = Objects.requireNonNull(id);
+        this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return Fields and values of the entry, in the order they were added
+     */
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final StreamEntry other = (StreamEntry) o;
+        return stream.equals(other.stream) && id.equals(other.id) && fields.equals(other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stream, id, fields);
+    }
+
+    @Override
+    public String toString() {
+        return "StreamEntry{stream=" + stream + ", id=" + id + ", fields=" + fields + "}";
+    }
+}
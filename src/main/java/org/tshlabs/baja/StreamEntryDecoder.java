@@ -0,0 +1,147 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.protocol.RespEncodings;
+import org.tshlabs.baja.protocol.RespHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handler that decodes the reply to {@code XREAD} or {@code XREADGROUP} into
+ * {@link StreamEntry} instances as it is parsed, without building the nested
+ * lists that reading the reply as an array would.
+ * <p>
+ * The reply is either a RESP2 array of {@code [stream, entries]} pairs or a
+ * RESP3 map of streams to entries, where each entry is an {@code [id, fields]}
+ * pair and the fields are a flat array of alternating names and values. A null
+ * reply means that the command timed out without any new entries.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+final class StreamEntryDecoder implements RespHandler {
+
+    // Nesting level of the name of a stream, an entry and its fields
+    private static final int STREAM_LEVEL = 1;
+    private static final int ENTRY_LEVEL = 3;
+    private static final int FIELDS_LEVEL = 4;
+
+    private final List<StreamEntry> entries = new ArrayList<>();
+
+    private int depth;
+
+    // RESP2 wraps each stream in an extra [stream, entries] array
+    private int offset;
+
+    private String stream;
+
+    private String id;
+
+    private Map<String, String> fields;
+
+    private String field;
+
+    private String error;
+
+    @Override
+    public void onArrayStart(long length) {
+        open(false);
+    }
+
+    @Override
+    public void onMapStart(long entries) {
+        open(true);
+    }
+
+    @Override
+    public void onArrayEnd() {
+        close();
+    }
+
+    @Override
+    public void onMapEnd() {
+        close();
+    }
+
+    @Override
+    public void onBulk(byte[] bytes, int offset, int length) {
+        onString(new String(bytes, offset, length, RespEncodings.DEFAULT_PAYLOAD));
+    }
+
+    @Override
+    public void onSimpleString(byte[] bytes, int offset, int length) {
+        onString(new String(bytes, offset, length, RespEncodings.DEFAULT_PAYLOAD));
+    }
+
+    @Override
+    public void onInteger(long value) {
+        onString(String.valueOf(value));
+    }
+
+    @Override
+    public void onError(String message) {
+        error = message;
+    }
+
+    @Override
+    public void onNull() {
+        // Either a timeout or an entry that was deleted, neither of which have fields
+    }
+
+    /**
+     * @return Entries decoded so far, in the order they were received
+     */
+    List<StreamEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return Error message if the reply was an error, null otherwise
+     */
+    String getError() {
+        return error;
+    }
+
+    private void open(boolean map) {
+        if (depth == 0) {
+            offset = map ? 0 : 1;
+        }
+
+        depth++;
+
+        final int level = depth - offset;
+        if (level == ENTRY_LEVEL) {
+            id = null;
+            fields = null;
+        } else if (level == FIELDS_LEVEL) {
+            fields = new LinkedHashMap<>();
+            field = null;
+        }
+    }
+
+    private void close() {
+        if (depth - offset == ENTRY_LEVEL && id != null) {
+            entries.add(new StreamEntry(stream, id, fields == null ? Collections.emptyMap() : fields));
+        }
+
+        depth--;
+    }
+
+    private void onString(String value) {
+        final int level = depth - offset;
+        if (level == STREAM_LEVEL) {
+            stream = value;
+        } else if (level == ENTRY_LEVEL) {
+            id = value;
+        } else if (level == FIELDS_LEVEL) {
+            if (field == null) {
+                field = value;
+            } else {
+                fields.put(field, value);
+                field = null;
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.tshlabs.baja;
 
+import org.tshlabs.baja.protocol.RespArgument;
+
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -50,14 +52,14 @@ public class Transaction {
      * Build a list of commands that wrap the queued RedisCommand instances
      * in a Redis transaction.
      */
-    private static List<List<String>> getTransactionCommands(List<RedisCommand> queued) {
-        final List<List<String>> commands = new ArrayList<>();
+    private static List<List<RespArgument>> getTransactionCommands(List<RedisCommand> queued) {
+        final List<List<RespArgument>> commands = new ArrayList<>();
 
-        commands.add(Collections.singletonList("MULTI"));
+        commands.add(Collections.singletonList(RespArgument.of("MULTI")));
         commands.addAll(queued.stream()
-            .map(RedisCommand::getArgs)
+            .map(RedisCommand::getRawArgs)
             .collect(Collectors.toList()));
-        commands.add(Collections.singletonList("EXEC"));
+        commands.add(Collections.singletonList(RespArgument.of("EXEC")));
 
         return commands;
     }
@@ -67,9 +69,9 @@ public class Transaction {
      * except the last one (the "EXEC" command) and returning the output
      * of it as a list.
      */
-    private static List<Object> getTransactionResults(RedisConnection connection, List<List<String>> commands) {
+    private static List<Object> getTransactionResults(RedisConnection connection, List<List<RespArgument>> commands) {
         final int resultsToDiscard = commands.size() - 1;
-        connection.writeMultiCommand(commands);
+        connection.writeRawMultiCommand(commands);
 
         // Discard the output from starting the transaction and the "QUEUED"
         // response after every command that's run. All the results will be
@@ -93,7 +95,7 @@ public class Transaction {
      *                                                                commands in the transaction
      */
     public void execute() {
-        final List<List<String>> commands = getTransactionCommands(queuedCommands);
+        final List<List<RespArgument>> commands = getTransactionCommands(queuedCommands);
         final List<Object> response = getTransactionResults(connection, commands);
 
         final Iterator<Object> responseIt = response.listIterator();
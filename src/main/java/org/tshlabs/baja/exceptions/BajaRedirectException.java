@@ -0,0 +1,93 @@
+package org.tshlabs.baja.exceptions;
+
+/**
+ * Error reply from a Redis Cluster node indicating that the key of a command
+ * is served by a different node, either permanently ({@code MOVED}) or only for
+ * the next command while the slot is being migrated ({@code ASK}).
+ *
+ * @see <a href="https://redis.io/topics/cluster-spec">Redis Cluster Specification</a>
+ */
+public class BajaRedirectException extends BajaProtocolErrorException {
+
+    private static final String MOVED = "MOVED ";
+
+    private static final String ASK = "ASK ";
+
+    private final boolean ask;
+
+    private final int slot;
+
+    private final String host;
+
+    private final int port;
+
+    public BajaRedirectException(String message, boolean ask, int slot, String host, int port) {
+        super(message);
+        this.ask = ask;
+        this.slot = slot;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Parse an error reply of the form {@code MOVED <slot> <host>:<port>} or
+     * {@code ASK <slot> <host>:<port>}.
+     *
+     * @param message Error reply from the server
+     * @return The redirect or null if the error was not a redirect
+     */
+    public static BajaRedirectException parse(String message) {
+        if (message == null) {
+            return null;
+        }
+
+        final boolean ask = message.startsWith(ASK);
+        if (!ask && !message.startsWith(MOVED)) {
+            return null;
+        }
+
+        final int slotEnd = message.indexOf(' ', ask ? ASK.length() : MOVED.length());
+        final int portStart = message.lastIndexOf(':');
+        if (slotEnd < 0 || portStart < slotEnd) {
+            return null;
+        }
+
+        try {
+            final int slot = Integer.parseInt(message.substring(ask ? ASK.length() : MOVED.length(), slotEnd));
+            final int port = Integer.parseInt(message.substring(portStart + 1).trim());
+            return new BajaRedirectException(message, ask, slot, message.substring(slotEnd + 1, portStart), port);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return True if this is an {@code ASK} redirect that only applies to the next
+     * command, false if this is a {@code MOVED} redirect
+     */
+    public boolean isAsk() {
+        return ask;
+    }
+
+    /**
+     * @return Slot of the key of the command
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * @return Host of the node serving the slot, which is empty if it is the same
+     * host as the node that sent the redirect
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return Port of the node serving the slot
+     */
+    public int getPort() {
+        return port;
+    }
+}
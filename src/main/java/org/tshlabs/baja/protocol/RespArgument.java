@@ -0,0 +1,244 @@
+package org.tshlabs.baja.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+
+/**
+ * A single argument of a command to be sent to a Redis server.
+ * <p>
+ * Arguments are either text, which is encoded by a {@link RespEncoder} using
+ * its payload character set, or raw bytes which are written to the server
+ * verbatim. Raw byte arguments are binary safe and are not copied: callers
+ * must not modify the underlying array or buffer until the command has been
+ * written.
+ * <p>
+ * Large binary values may also be streamed from a channel or a region of a file
+ * when the command is written, instead of being held in memory. Streamed
+ * arguments read from their source as they are written and so can only be
+ * written once, unless they are a file region which is read without changing
+ * the position of the file.
+ * <p>
+ * This class is thread safe.
+ *
+ * @see <a href="http://redis.io/topics/protocol">Redis Protocol</a>
+ */
+public final class RespArgument {
+
+    private final String text;
+
+    private final ByteBuffer bytes;
+
+    private final ReadableByteChannel source;
+
+    private final long position;
+
+    private final long length;
+
+    private RespArgument(String text, ByteBuffer bytes) {
+        this(text, bytes, null, -1, -1);
+    }
+
+    private RespArgument(String text, ByteBuffer bytes, ReadableByteChannel source, long position, long length) {
+        this.text = text;
+        this.bytes = bytes;
+        this.source = source;
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * Create a new text argument.
+     *
+     * @param text Text of the argument
+     * @return New argument
+     * @throws NullPointerException If text is null
+     */
+    public static RespArgument of(String text) {
+        return new RespArgument(Objects.requireNonNull(text), null);
+    }
+
+    /**
+     * Create a new binary argument from all bytes of the given array.
+     *
+     * @param bytes Bytes of the argument
+     * @return New argument
+     * @throws NullPointerException If bytes is null
+     */
+    public static RespArgument of(byte[] bytes) {
+        return of(bytes, 0, Objects.requireNonNull(bytes).length);
+    }
+
+    /**
+     * Create a new binary argument from a slice of the given array.
+     *
+     * @param bytes  Array containing the bytes of the argument
+     * @param offset Start of the argument in the array
+     * @param length Number of bytes in the argument
+     * @return New argument
+     * @throws NullPointerException      If bytes is null
+     * @throws IndexOutOfBoundsException If the offset and length are not valid
+     *                                   for the array
+     */
+    public static RespArgument of(byte[] bytes, int offset, int length) {
+        return new RespArgument(null, ByteBuffer.wrap(Objects.requireNonNull(bytes), offset, length).slice());
+    }
+
+    /**
+     * Create a new binary argument from the remaining bytes of the given buffer.
+     * <p>
+     * The position and limit of the given buffer are not modified.
+     *
+     * @param bytes Buffer containing the bytes of the argument
+     * @return New argument
+     * @throws NullPointerException If bytes is null
+     */
+    public static RespArgument of(ByteBuffer bytes) {
+        return new RespArgument(null, Objects.requireNonNull(bytes).slice());
+    }
+
+    /**
+     * Create a new binary argument that reads exactly {@code length} bytes from
+     * the given channel when it is written.
+     * <p>
+     * The channel is not closed once the argument has been written. If it reaches
+     * the end of the stream before {@code length} bytes are read, writing the
+     * command fails.
+     *
+     * @param length Number of bytes to read from the channel
+     * @param source Channel to read the bytes of the argument from
+     * @return New argument
+     * @throws NullPointerException     If source is null
+     * @throws IllegalArgumentException If length is negative
+     */
+    public static RespArgument of(long length, ReadableByteChannel source) {
+        Objects.requireNonNull(source);
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must not be negative, got " + length);
+        }
+
+        return new RespArgument(null, null, source, -1, length);
+    }
+
+    /**
+     * Create a new binary argument from a region of a file which is read when the
+     * argument is written.
+     * <p>
+     * When the command is written to a channel the region is transferred using
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * allowing the operating system to send it without copying it into the heap.
+     * The position of the file channel is not modified.
+     *
+     * @param file     File to read the bytes of the argument from
+     * @param position Start of the region within the file
+     * @param count    Number of bytes in the region
+     * @return New argument
+     * @throws NullPointerException     If file is null
+     * @throws IllegalArgumentException If position or count are negative
+     */
+    public static RespArgument of(FileChannel file, long position, long count) {
+        Objects.requireNonNull(file);
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("Position and count must not be negative, got " +
+                position + " and " + count);
+        }
+
+        return new RespArgument(null, null, file, position, count);
+    }
+
+    /**
+     * @return True if this is a text argument, false if it is a binary argument
+     */
+    public boolean isText() {
+        return text != null;
+    }
+
+    /**
+     * @return The text of this argument or null if this is a binary argument
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return True if this is a binary argument read from a channel or file region
+     * when it is written, false otherwise
+     */
+    public boolean isStreamed() {
+        return source != null;
+    }
+
+    /**
+     * @return Number of bytes in a streamed argument or -1 if this is not a
+     * streamed argument
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return A read-only view of the bytes of this argument or null if this is
+     * a text or streamed argument
+     */
+    public ByteBuffer getBytes() {
+        return bytes == null ? null : bytes.asReadOnlyBuffer();
+    }
+
+    /**
+     * Get the bytes of a binary argument without making it read-only so that
+     * the backing array (if any) can be used to write it without a copy.
+     */
+    ByteBuffer getBytesUnsafe() {
+        return bytes.duplicate();
+    }
+
+    /**
+     * Get the channel a streamed argument is read from.
+     */
+    ReadableByteChannel getSource() {
+        return source;
+    }
+
+    /**
+     * Get the start of a file region argument or -1 if the argument should be
+     * read from the current position of its channel.
+     */
+    long getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final RespArgument other = (RespArgument) o;
+        return Objects.equals(text, other.text) && Objects.equals(bytes, other.bytes) &&
+            source == other.source && position == other.position && length == other.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text, bytes, source, position, length);
+    }
+
+    /**
+     * @return The text of this argument, a placeholder with the length of a
+     * streamed argument, or the bytes of this argument decoded using the
+     * {@link RespEncodings#DEFAULT_PAYLOAD default} character set
+     */
+    @Override
+    public String toString() {
+        if (source != null) {
+            return "<" + length + " bytes>";
+        }
+
+        return text != null ? text : RespEncodings.DEFAULT_PAYLOAD.decode(bytes.duplicate()).toString();
+    }
+}
@@ -0,0 +1,101 @@
+package org.tshlabs.baja.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * Stream over the payload of a single bulk string that reads directly from the
+ * underlying stream, so that the bulk string never needs to be held in memory.
+ * <p>
+ * The stream ends after the payload. The trailing {@code \r\n} of the bulk
+ * string is consumed once the end of the payload is reached, or when the
+ * stream is closed, which also discards any of the payload not yet read.
+ * Closing this stream does not close the underlying stream.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+class RespBulkInputStream extends InputStream {
+
+    private final InputStream source;
+
+    private long remaining;
+
+    private boolean finished;
+
+    RespBulkInputStream(InputStream source, long length) {
+        this.source = Objects.requireNonNull(source);
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining == 0) {
+            finish();
+            return -1;
+        }
+
+        final int b = source.read();
+        if (b == -1) {
+            throw new IllegalStateException("Unexpected EOF reading stream");
+        }
+
+        remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (remaining == 0) {
+            finish();
+            return -1;
+        }
+
+        final int read = source.read(b, off, (int) Math.min(len, remaining));
+        if (read == -1) {
+            throw new IllegalStateException("Unexpected EOF reading stream");
+        }
+
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long skipped = source.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(remaining, source.available());
+    }
+
+    /**
+     * Discard the rest of the payload and consume the trailing {@code \r\n}
+     * so that the underlying stream is positioned at the next response.
+     */
+    @Override
+    public void close() throws IOException {
+        while (remaining > 0) {
+            // Not every stream supports skipping, fall back to reading
+            if (skip(remaining) == 0 && read() == -1) {
+                break;
+            }
+        }
+
+        finish();
+    }
+
+    private void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            RespParser.expectNewline(source.read(), source);
+        }
+    }
+}
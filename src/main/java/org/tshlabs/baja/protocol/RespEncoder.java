@@ -1,14 +1,19 @@
 package org.tshlabs.baja.protocol;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
 /**
- * Class for encoding an argument list to a byte array as expected by
- * the Redis server.
+ * Class for encoding an argument list to a byte array or {@link RespOutputBuffer}
+ * as expected by the Redis server.
  * <p>
  * The {@link RespEncodings#PROTOCOL protocol} encoding will be used for
  * Redis protocol control characters and a user specified encoding used for
@@ -24,6 +29,8 @@ public class RespEncoder {
 
     private final Charset payloadCharset;
 
+    private final boolean asciiCompatible;
+
     /**
      * Construct a new encoder using a {@link RespEncodings#DEFAULT_PAYLOAD default}
      * character set for encoding string data.
@@ -41,6 +48,9 @@ public class RespEncoder {
      */
     public RespEncoder(Charset payloadCharset) {
         this.payloadCharset = Objects.requireNonNull(payloadCharset);
+        this.asciiCompatible = StandardCharsets.UTF_8.equals(payloadCharset) ||
+            StandardCharsets.US_ASCII.equals(payloadCharset) ||
+            StandardCharsets.ISO_8859_1.equals(payloadCharset);
     }
 
     /**
@@ -68,6 +78,10 @@ public class RespEncoder {
      *    List&lt;String&gt; cmd = Arrays.asList("SET", "foo", "bar");
      *    byte[] bytes = encoder.encodeMulti(Collections.singletonList(cmd));
      * </pre>
+     * <p>
+     * Callers sending commands to a server should prefer
+     * {@link #encodeMulti(List, RespOutputBuffer)} which avoids building the
+     * entire encoded output in memory.
      *
      * @param commands List of multiple commands and arguments as strings
      * @return The commands and associated arguments as a byte array
@@ -76,43 +90,156 @@ public class RespEncoder {
         Objects.requireNonNull(commands);
 
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
-        for (List<String> args : commands) {
-            writeCommandToStream(args, out);
-        }
+        final RespOutputBuffer buffer = new RespOutputBuffer(out);
+        IOFunction.runCommand(() -> {
+            encodeMulti(commands, buffer);
+            buffer.flush();
+        });
+        return out.toByteArray();
+    }
+
+    /**
+     * Convert multiple lists of {@link RespArgument}s to a byte array as specified
+     * by the payload character set and the Redis Serialization Protocol.
+     * <p>
+     * Text arguments are encoded using the payload character set while binary
+     * arguments are written verbatim, making this method suitable for commands
+     * with binary keys or values. Streamed arguments are read into the returned
+     * array in full.
+     * <p>
+     * Callers sending commands to a server should prefer
+     * {@link #encodeRawMulti(List, RespOutputBuffer)} which avoids building the
+     * entire encoded output in memory.
+     *
+     * @param commands List of multiple commands and arguments
+     * @return The commands and associated arguments as a byte array
+     */
+    public byte[] encodeRawMulti(List<List<RespArgument>> commands) {
+        Objects.requireNonNull(commands);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(out);
+        IOFunction.runCommand(() -> {
+            encodeRawMulti(commands, buffer);
+            buffer.flush();
+        });
         return out.toByteArray();
     }
 
-    private ByteArrayOutputStream writeCommandToStream(List<String> args, ByteArrayOutputStream stream) {
-        writeToStream(stream, getArrayPreamble(args));
+    /**
+     * Encode multiple lists of strings as specified by the payload character set
+     * and the Redis Serialization Protocol directly into the given output buffer.
+     * <p>
+     * The output buffer will be flushed to its underlying stream or channel as it
+     * fills up but callers must {@link RespOutputBuffer#flush() flush} it afterwards
+     * to make sure all commands are sent.
+     *
+     * @param commands List of multiple commands and arguments as strings
+     * @param out      Buffer to write the encoded commands to
+     * @throws IOException If the output buffer could not be flushed
+     */
+    public void encodeMulti(List<List<String>> commands, RespOutputBuffer out) throws IOException {
+        Objects.requireNonNull(commands);
+        Objects.requireNonNull(out);
 
-        for (String arg : args) {
-            writeToStream(stream, getArgPreamble(arg));
-            writeToStream(stream, arg.getBytes(payloadCharset));
-            stream.write('\r');
-            stream.write('\n');
+        for (List<String> args : commands) {
+            out.writeHeader(RespType.ARRAY, args.size());
+
+            for (String arg : args) {
+                writeText(arg, out);
+            }
         }
+    }
+
+    /**
+     * Encode multiple lists of {@link RespArgument}s as specified by the payload
+     * character set and the Redis Serialization Protocol directly into the given
+     * output buffer.
+     * <p>
+     * The output buffer will be flushed to its underlying stream or channel as it
+     * fills up but callers must {@link RespOutputBuffer#flush() flush} it afterwards
+     * to make sure all commands are sent.
+     * <p>
+     * Streamed arguments are copied from their source to the output as they are
+     * encoded, without being held in memory.
+     *
+     * @param commands List of multiple commands and arguments
+     * @param out      Buffer to write the encoded commands to
+     * @throws IOException If the output buffer could not be flushed or a streamed
+     *                     argument could not be read
+     */
+    public void encodeRawMulti(List<List<RespArgument>> commands, RespOutputBuffer out) throws IOException {
+        Objects.requireNonNull(commands);
+        Objects.requireNonNull(out);
+
+        for (List<RespArgument> args : commands) {
+            out.writeHeader(RespType.ARRAY, args.size());
 
-        return stream;
+            for (RespArgument arg : args) {
+                if (arg.isText()) {
+                    writeText(arg.getText(), out);
+                } else if (arg.isStreamed()) {
+                    out.writeHeader(RespType.BULK_STRING, arg.getLength());
+                    if (arg.getPosition() >= 0) {
+                        out.transferFrom((FileChannel) arg.getSource(), arg.getPosition(), arg.getLength());
+                    } else {
+                        out.transferFrom(arg.getSource(), arg.getLength());
+                    }
+                    out.writeNewline();
+                } else {
+                    final ByteBuffer bytes = arg.getBytesUnsafe();
+                    out.writeHeader(RespType.BULK_STRING, bytes.remaining());
+                    out.write(bytes);
+                    out.writeNewline();
+                }
+            }
+        }
     }
 
-    private static void writeToStream(ByteArrayOutputStream stream, byte[] bytes) {
-        // Pass the offset and length here explicitly so that we're calling
-        // the .write() method defined in ByteArrayOutputStream (instead of the
-        // one defined in OutputStream) which doesn't include an IOException as
-        // part of its signature. This way we don't have to pretend to handle an
-        // exception that will never be raised.
-        stream.write(bytes, 0, bytes.length);
+    private void writeText(String text, RespOutputBuffer out) throws IOException {
+        // Most arguments (command names, keys, numbers) are plain ASCII which
+        // is encoded the same way by every ASCII compatible character set. We
+        // can write those straight into the buffer without encoding them to a
+        // temporary byte array first.
+        if (asciiCompatible && isAscii(text)) {
+            out.writeHeader(RespType.BULK_STRING, text.length());
+            out.writeAscii(text);
+        } else {
+            // Bulk string lengths are the number of bytes, not characters, so
+            // they must be computed after the argument has been encoded.
+            final byte[] bytes = text.getBytes(payloadCharset);
+            out.writeHeader(RespType.BULK_STRING, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        out.writeNewline();
     }
 
-    // VisibleForTesting
-    static byte[] getArrayPreamble(List<String> args) {
-        return (RespType.ARRAY.getString() + args.size() +
-            "\r\n").getBytes(RespEncodings.PROTOCOL);
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
-    // VisibleForTesting
-    static byte[] getArgPreamble(String arg) {
-        return (RespType.BULK_STRING.getString() + arg.length() +
-            "\r\n").getBytes(RespEncodings.PROTOCOL);
+    /**
+     * Functional interface for encoding into an in-memory buffer which will never
+     * actually throw an {@link IOException}.
+     */
+    @FunctionalInterface
+    private interface IOFunction {
+
+        void call() throws IOException;
+
+        static void runCommand(IOFunction func) {
+            try {
+                func.call();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 }
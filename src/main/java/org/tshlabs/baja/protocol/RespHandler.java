@@ -0,0 +1,169 @@
+package org.tshlabs.baja.protocol;
+
+/**
+ * Callbacks invoked by {@link RespParser#parse(java.io.InputStream, RespHandler)}
+ * for each value in a reply as it is parsed, allowing callers to decode replies
+ * directly into their own structures without the parser creating any lists,
+ * boxed numbers, or strings.
+ * <p>
+ * Values are reported depth first in the order they appear in the reply. Each
+ * array is reported with {@link #onArrayStart(long)}, followed by each of its
+ * elements, followed by {@link #onArrayEnd()}. Null bulk strings and null arrays
+ * are both reported with {@link #onNull()}.
+ * <p>
+ * Callbacks for the RESP3 types have default implementations that report them
+ * as the closest RESP2 type, so that handlers written for RESP2 keep working
+ * against a server using RESP3: maps, sets and push frames are reported as
+ * arrays (maps with two elements per entry), doubles and big numbers as simple
+ * strings, booleans as the integers 1 or 0, and verbatim strings as bulk strings
+ * without their format prefix. Attributes are skipped.
+ * <p>
+ * Byte ranges passed to the handler may refer to an internal buffer of the
+ * stream being parsed and are only valid for the duration of the call. They
+ * must be copied if they are needed afterwards.
+ *
+ * @see <a href="http://redis.io/topics/protocol">Redis Protocol</a>
+ */
+public interface RespHandler {
+
+    /**
+     * Called at the start of a non-null array, before any of its elements.
+     *
+     * @param length Number of elements in the array
+     */
+    void onArrayStart(long length);
+
+    /**
+     * Called after the last element of an array.
+     */
+    default void onArrayEnd() {
+    }
+
+    /**
+     * Called for a non-null bulk string.
+     *
+     * @param bytes  Array containing the contents of the bulk string
+     * @param offset Offset of the contents in the array
+     * @param length Length of the contents in bytes
+     */
+    void onBulk(byte[] bytes, int offset, int length);
+
+    /**
+     * Called for a simple string.
+     *
+     * @param bytes  Array containing the contents of the simple string
+     * @param offset Offset of the contents in the array
+     * @param length Length of the contents in bytes
+     */
+    void onSimpleString(byte[] bytes, int offset, int length);
+
+    /**
+     * Called for an integer.
+     *
+     * @param value Value of the integer
+     */
+    void onInteger(long value);
+
+    /**
+     * Called for an error.
+     *
+     * @param message Error message sent by the server
+     */
+    void onError(String message);
+
+    /**
+     * Called for a null bulk string or null array.
+     */
+    void onNull();
+
+    /**
+     * Called at the start of a RESP3 map, before any of its entries. Each entry
+     * is reported as its key followed by its value.
+     *
+     * @param entries Number of entries in the map
+     */
+    default void onMapStart(long entries) {
+        onArrayStart(entries * 2);
+    }
+
+    /**
+     * Called after the last entry of a RESP3 map.
+     */
+    default void onMapEnd() {
+        onArrayEnd();
+    }
+
+    /**
+     * Called at the start of a RESP3 set, before any of its elements.
+     *
+     * @param length Number of elements in the set
+     */
+    default void onSetStart(long length) {
+        onArrayStart(length);
+    }
+
+    /**
+     * Called after the last element of a RESP3 set.
+     */
+    default void onSetEnd() {
+        onArrayEnd();
+    }
+
+    /**
+     * Called at the start of a RESP3 push frame, before any of its elements.
+     *
+     * @param length Number of elements in the push frame
+     */
+    default void onPushStart(long length) {
+        onArrayStart(length);
+    }
+
+    /**
+     * Called after the last element of a RESP3 push frame.
+     */
+    default void onPushEnd() {
+        onArrayEnd();
+    }
+
+    /**
+     * Called for a RESP3 double.
+     *
+     * @param value Value of the double
+     */
+    default void onDouble(double value) {
+        final byte[] bytes = String.valueOf(value).getBytes(RespEncodings.PROTOCOL);
+        onSimpleString(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Called for a RESP3 big number.
+     *
+     * @param bytes  Array containing the decimal digits of the number
+     * @param offset Offset of the digits in the array
+     * @param length Number of digits, including any sign
+     */
+    default void onBigNumber(byte[] bytes, int offset, int length) {
+        onSimpleString(bytes, offset, length);
+    }
+
+    /**
+     * Called for a RESP3 boolean.
+     *
+     * @param value Value of the boolean
+     */
+    default void onBoolean(boolean value) {
+        onInteger(value ? 1 : 0);
+    }
+
+    /**
+     * Called for a RESP3 verbatim string.
+     *
+     * @param format Three character format of the string, such as {@code txt} or {@code mkd}
+     * @param bytes  Array containing the contents of the string
+     * @param offset Offset of the contents in the array, after the format prefix
+     * @param length Length of the contents in bytes
+     */
+    default void onVerbatimString(String format, byte[] bytes, int offset, int length) {
+        onBulk(bytes, offset, length);
+    }
+}
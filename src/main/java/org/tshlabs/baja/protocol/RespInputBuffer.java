@@ -0,0 +1,467 @@
+package org.tshlabs.baja.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * {@link InputStream} implementation that reads from an underlying stream
+ * in large chunks into a growable buffer that it owns.
+ * <p>
+ * When a {@link RespParser} is given an instance of this class, it will scan
+ * for {@code \r\n} line endings in the buffer and parse RESP integers directly
+ * from bytes instead of reading the stream one byte at a time and allocating
+ * intermediate strings. Bulk strings may also be read as read-only views of
+ * the buffer via {@link RespParser#readBulkByteBuffer(InputStream)} without
+ * copying them.
+ * <p>
+ * The buffer grows as needed to hold the largest line or bulk string view
+ * requested. When it has grown beyond a retention limit it is shrunk back to
+ * its initial size once all buffered bytes have been consumed.
+ * <p>
+ * Example:
+ * <pre>
+ *    InputStream in = new RespInputBuffer(socket.getInputStream());
+ *    RedisConnection connection = new RedisConnection(
+ *        in, out, RespEncoder.getInstance(), RespParser.getInstance());
+ * </pre>
+ * <p>
+ * The buffer may also read from a {@link ReadableByteChannel}. When the
+ * channel is non-blocking, callers should read whatever is available with
+ * {@link #readAvailable()} and only parse a reply once {@link #hasCompleteReply()}
+ * indicates that all of it has been buffered.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+public class RespInputBuffer extends InputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private static final byte CR = '\r';
+
+    private static final byte LF = '\n';
+
+    private final InputStream source;
+
+    private final ReadableByteChannel channel;
+
+    private final RespReplyScanner scanner = new RespReplyScanner();
+
+    private final int initialSize;
+
+    private byte[] buffer;
+
+    private int position;
+
+    private int limit;
+
+    /**
+     * Construct a new buffer reading from the given stream with a default
+     * initial buffer size.
+     *
+     * @param source Stream to read responses from
+     * @throws NullPointerException If source is null
+     */
+    public RespInputBuffer(InputStream source) {
+        this(source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Construct a new buffer reading from the given stream with the given
+     * initial buffer size. The buffer will grow as required to hold lines
+     * longer than the initial size.
+     *
+     * @param source      Stream to read responses from
+     * @param initialSize Initial size of the buffer in bytes
+     * @throws NullPointerException     If source is null
+     * @throws IllegalArgumentException If initialSize is not positive
+     */
+    public RespInputBuffer(InputStream source, int initialSize) {
+        this(Objects.requireNonNull(source), null, initialSize);
+    }
+
+    /**
+     * Construct a new buffer reading from the given channel with a default
+     * initial buffer size.
+     *
+     * @param channel Channel to read responses from
+     * @throws NullPointerException If channel is null
+     */
+    public RespInputBuffer(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Construct a new buffer reading from the given channel with the given
+     * initial buffer size. The buffer will grow as required to hold lines
+     * longer than the initial size.
+     *
+     * @param channel     Channel to read responses from
+     * @param initialSize Initial size of the buffer in bytes
+     * @throws NullPointerException     If channel is null
+     * @throws IllegalArgumentException If initialSize is not positive
+     */
+    public RespInputBuffer(ReadableByteChannel channel, int initialSize) {
+        this(null, Objects.requireNonNull(channel), initialSize);
+    }
+
+    private RespInputBuffer(InputStream source, ReadableByteChannel channel, int initialSize) {
+        if (initialSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive, got " + initialSize);
+        }
+
+        this.source = source;
+        this.channel = channel;
+        this.initialSize = initialSize;
+        this.buffer = new byte[initialSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.requireNonNull(b);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (position == limit) {
+            // Large reads bypass the buffer entirely since there's no point
+            // copying them twice. Smaller reads fill the buffer so that the
+            // following header lines are likely to be available already.
+            if (len >= buffer.length) {
+                return verifyNotEmpty(readSource(b, off, len));
+            }
+
+            if (!fill()) {
+                return -1;
+            }
+        }
+
+        final int toCopy = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, toCopy);
+        position += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            if (position == limit && !fill()) {
+                break;
+            }
+
+            final int chunk = (int) Math.min(n - skipped, limit - position);
+            position += chunk;
+            skipped += chunk;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (limit - position) + (source != null ? source.available() : 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (source != null) {
+            source.close();
+        } else {
+            channel.close();
+        }
+    }
+
+    /**
+     * Perform a single read from the underlying stream or channel into the
+     * buffer, growing it if it is full. This is meant to be used with
+     * non-blocking channels when they are ready to be read.
+     *
+     * @return Number of bytes read, possibly zero, or -1 if the end of the
+     * stream or channel has been reached
+     * @throws IOException If the underlying stream or channel could not be read
+     */
+    public int readAvailable() throws IOException {
+        return fillOnce(0);
+    }
+
+    /**
+     * Determine if a complete reply has been buffered, without parsing it or
+     * reading from the underlying stream or channel.
+     * <p>
+     * Progress through a partial reply is remembered so that repeated calls
+     * as more data arrives only look at the new data. Once this method returns
+     * true the reply must be consumed (with a {@link RespParser}, for example)
+     * before calling it again.
+     *
+     * @return True if a complete reply is buffered, false otherwise
+     * @throws IllegalStateException If the buffered data is not a valid reply
+     */
+    public boolean hasCompleteReply() {
+        return scanner.scan(buffer, position, limit) >= 0;
+    }
+
+    /**
+     * Read until encountering a {@code \r\n} and return the contents as a
+     * string in the {@link RespEncodings#PROTOCOL protocol} encoding, not
+     * including the {@code \r\n}.
+     */
+    String readLine() throws IOException {
+        final int end = findLineEnd();
+        final String line = new String(buffer, position, end - position, RespEncodings.PROTOCOL);
+        position = end + 2;
+        return line;
+    }
+
+    /**
+     * Read until encountering a {@code \r\n} and parse the contents as a
+     * signed 64 bit integer without creating any intermediate strings.
+     *
+     * @throws NumberFormatException If the line is not a valid integer
+     */
+    long readLongLine() throws IOException {
+        final int end = findLineEnd();
+        final long val = parseLong(buffer, position, end);
+        position = end + 2;
+        return val;
+    }
+
+    /**
+     * Return a read-only view of the next {@code len} bytes of the buffer and
+     * advance past them, reading more from the underlying stream as needed.
+     * <p>
+     * The view shares the buffer and is only valid until the next read from
+     * this stream.
+     */
+    ByteBuffer readSlice(int len) throws IOException {
+        final int start = require(len);
+        final ByteBuffer slice = ByteBuffer.wrap(buffer, start, len).slice().asReadOnlyBuffer();
+        position += len;
+        return slice;
+    }
+
+    /**
+     * Copy the next {@code len} bytes to the given stream one buffer at a time,
+     * reading more from the underlying stream as needed but never growing the
+     * buffer to hold them all.
+     */
+    void copyTo(long len, OutputStream out) throws IOException {
+        long remaining = len;
+        while (remaining > 0) {
+            if (position == limit && !fill()) {
+                throw new IllegalStateException("Unexpected EOF reading stream");
+            }
+
+            final int chunk = (int) Math.min(remaining, limit - position);
+            out.write(buffer, position, chunk);
+            position += chunk;
+            remaining -= chunk;
+        }
+    }
+
+    /**
+     * Make sure the next {@code len} bytes are in the buffer, reading more from
+     * the underlying stream as needed, and return their offset in {@link #array()}.
+     * Callers are expected to {@link #skip(long)} past the bytes once done with them.
+     */
+    int require(int len) throws IOException {
+        while (limit - position < len) {
+            if (!fill(len)) {
+                throw new IllegalStateException("Unexpected EOF reading stream");
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Make sure an entire line is in the buffer, reading more from the underlying
+     * stream as needed, and return the length of the line (not including the
+     * trailing {@code \r\n}) starting at the current offset in {@link #array()}.
+     * Callers are expected to {@link #skip(long)} past the line and newline.
+     */
+    int requireLine() throws IOException {
+        return findLineEnd() - position;
+    }
+
+    /**
+     * @return Current offset of unread bytes in {@link #array()}
+     */
+    int offset() {
+        return position;
+    }
+
+    /**
+     * @return Internal buffer of this stream, only valid until the next read
+     */
+    byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * Return the index of the next {@code \r} in the buffer, reading more from
+     * the underlying stream as needed and verifying that it is followed by a
+     * {@code \n}.
+     */
+    private int findLineEnd() throws IOException {
+        // Track the number of bytes known not to be a line ending relative
+        // to the current position since filling the buffer may move unread
+        // bytes to the start of it.
+        int scanned = 0;
+
+        while (true) {
+            for (int i = position + scanned; i < limit; i++) {
+                if (buffer[i] == CR) {
+                    if (i + 1 == limit) {
+                        // Need at least one more byte to check for the LF
+                        break;
+                    }
+
+                    if (buffer[i + 1] != LF) {
+                        throw new IllegalStateException("Expected LF (\\n), got " + buffer[i + 1]);
+                    }
+
+                    return i;
+                }
+
+                scanned++;
+            }
+
+            if (!fill()) {
+                throw new IllegalStateException("Unexpected EOF reading stream");
+            }
+        }
+    }
+
+    /**
+     * Move any unread bytes to the start of the buffer, grow it if it's full,
+     * and read more bytes from the underlying stream into it. Return false if
+     * the end of the underlying stream has been reached.
+     */
+    private boolean fill() throws IOException {
+        return fill(0);
+    }
+
+    /**
+     * Fill the buffer as described by {@link #fill()}, making sure that the
+     * buffer is large enough to eventually hold {@code required} bytes.
+     */
+    private boolean fill(int required) throws IOException {
+        return verifyNotEmpty(fillOnce(required)) > 0;
+    }
+
+    /**
+     * Fill the buffer as described by {@link #fill(int)} but return the number
+     * of bytes read, or -1 if the end of the underlying stream has been reached.
+     */
+    private int fillOnce(int required) throws IOException {
+        if (position == limit && buffer.length > MAX_RETAINED_SIZE && required <= initialSize) {
+            // Don't hang on to a huge buffer from a previous large read
+            buffer = new byte[initialSize];
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+        }
+
+        limit -= position;
+        position = 0;
+
+        if (limit == buffer.length || required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, required));
+        }
+
+        final int read = readSource(buffer, limit, buffer.length - limit);
+        if (read > 0) {
+            limit += read;
+        }
+
+        return read;
+    }
+
+    /**
+     * Only non-blocking channels will return nothing from a read, which means
+     * that a caller is trying to parse a reply that hasn't been completely
+     * received. Raise an error instead of spinning until more data arrives.
+     */
+    private static int verifyNotEmpty(int read) {
+        if (read == 0) {
+            throw new IllegalStateException("Reply is incomplete and no more data is available");
+        }
+
+        return read;
+    }
+
+    private int readSource(byte[] b, int off, int len) throws IOException {
+        if (source != null) {
+            return source.read(b, off, len);
+        }
+
+        return channel.read(ByteBuffer.wrap(b, off, len));
+    }
+
+    /**
+     * Parse a signed base 10 integer from the given range of bytes. Follows
+     * the same approach as {@link Long#parseLong(String)}: the result is
+     * accumulated as a negative number so that {@link Long#MIN_VALUE} can be
+     * represented, and overflow is detected before it happens.
+     */
+    // VisibleForTesting
+    static long parseLong(byte[] bytes, int start, int end) {
+        if (start >= end) {
+            throw new NumberFormatException("Empty integer");
+        }
+
+        int i = start;
+        final boolean negative = bytes[i] == '-';
+        if (negative || bytes[i] == '+') {
+            i++;
+        }
+
+        if (i == end) {
+            throw invalidLong(bytes, start, end);
+        }
+
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multMin = limit / 10;
+        long result = 0;
+
+        for (; i < end; i++) {
+            final int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || result < multMin) {
+                throw invalidLong(bytes, start, end);
+            }
+
+            result *= 10;
+            if (result < limit + digit) {
+                throw invalidLong(bytes, start, end);
+            }
+
+            result -= digit;
+        }
+
+        return negative ? result : -result;
+    }
+
+    private static NumberFormatException invalidLong(byte[] bytes, int start, int end) {
+        return new NumberFormatException("For input string: \"" +
+            new String(bytes, start, end - start, RespEncodings.PROTOCOL) + "\"");
+    }
+}
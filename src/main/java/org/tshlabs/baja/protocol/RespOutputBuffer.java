@@ -0,0 +1,463 @@
+package org.tshlabs.baja.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * Fixed size, reusable buffer that encoded commands are written into before
+ * being sent to a Redis server via an {@link OutputStream} or a blocking
+ * {@link WritableByteChannel}.
+ * <p>
+ * The buffer is flushed to the underlying stream or channel whenever it fills
+ * up, so the amount of memory used while writing a large pipeline of commands
+ * is bounded by the size of the buffer. Writes larger than the buffer bypass
+ * it entirely instead of being copied.
+ * <p>
+ * Array and bulk string headers are written using pre-encoded headers for
+ * small lengths and a table of digit pairs for larger lengths, so writing
+ * them does not allocate.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ *
+ * @see <a href="http://redis.io/topics/protocol">Redis Protocol</a>
+ */
+public class RespOutputBuffer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int CACHED_HEADERS = 1024;
+
+    private static final byte[][] ARRAY_HEADERS = buildHeaders(RespType.ARRAY);
+
+    private static final byte[][] BULK_STRING_HEADERS = buildHeaders(RespType.BULK_STRING);
+
+    private static final byte[] DIGIT_TENS = new byte[100];
+
+    private static final byte[] DIGIT_ONES = new byte[100];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (byte) ('0' + i / 10);
+            DIGIT_ONES[i] = (byte) ('0' + i % 10);
+        }
+    }
+
+    private static final int MAX_HEADER_LEN = 1 + 20 + 2;
+
+    private final OutputStream stream;
+
+    private final WritableByteChannel channel;
+
+    private final byte[] buffer;
+
+    private final ByteBuffer channelBuffer;
+
+    private int count;
+
+    /**
+     * Construct a new buffer writing to the given stream with a default size.
+     *
+     * @param stream Stream to send encoded commands to
+     * @throws NullPointerException If stream is null
+     */
+    public RespOutputBuffer(OutputStream stream) {
+        this(stream, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Construct a new buffer writing to the given stream with the given size.
+     *
+     * @param stream Stream to send encoded commands to
+     * @param size   Size of the buffer in bytes
+     * @throws NullPointerException     If stream is null
+     * @throws IllegalArgumentException If size is too small to hold a header
+     */
+    public RespOutputBuffer(OutputStream stream, int size) {
+        this(Objects.requireNonNull(stream), null, size);
+    }
+
+    /**
+     * Construct a new buffer writing to the given blocking channel with a
+     * default size.
+     *
+     * @param channel Channel to send encoded commands to
+     * @throws NullPointerException If channel is null
+     */
+    public RespOutputBuffer(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Construct a new buffer writing to the given blocking channel with the
+     * given size.
+     *
+     * @param channel Channel to send encoded commands to
+     * @param size    Size of the buffer in bytes
+     * @throws NullPointerException     If channel is null
+     * @throws IllegalArgumentException If size is too small to hold a header
+     */
+    public RespOutputBuffer(WritableByteChannel channel, int size) {
+        this(null, Objects.requireNonNull(channel), size);
+    }
+
+    private RespOutputBuffer(OutputStream stream, WritableByteChannel channel, int size) {
+        if (size < MAX_HEADER_LEN) {
+            throw new IllegalArgumentException("Buffer size must be at least " + MAX_HEADER_LEN + ", got " + size);
+        }
+
+        this.stream = stream;
+        this.channel = channel;
+        this.buffer = new byte[size];
+        this.channelBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Write a single byte.
+     *
+     * @param b Byte to write
+     * @throws IOException If the buffer had to be flushed and could not be
+     */
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+
+        buffer[count++] = (byte) b;
+    }
+
+    /**
+     * Write a range of a byte array.
+     *
+     * @param bytes  Array to write bytes from
+     * @param offset Start of the range to write
+     * @param length Number of bytes to write
+     * @throws IOException If the buffer had to be flushed and could not be
+     */
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length >= buffer.length) {
+            flushBuffer();
+            writeThrough(ByteBuffer.wrap(bytes, offset, length));
+            return;
+        }
+
+        if (length > buffer.length - count) {
+            flushBuffer();
+        }
+
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    /**
+     * Write the remaining bytes of the given buffer, leaving its position unchanged.
+     *
+     * @param bytes Buffer to write bytes from
+     * @throws IOException If the buffer had to be flushed and could not be
+     */
+    public void write(ByteBuffer bytes) throws IOException {
+        if (bytes.hasArray()) {
+            write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            return;
+        }
+
+        final ByteBuffer src = bytes.duplicate();
+        if (src.remaining() >= buffer.length) {
+            flushBuffer();
+            writeThrough(src);
+            return;
+        }
+
+        if (src.remaining() > buffer.length - count) {
+            flushBuffer();
+        }
+
+        final int length = src.remaining();
+        src.get(buffer, count, length);
+        count += length;
+    }
+
+    /**
+     * Write exactly {@code length} bytes read from the given channel, copying
+     * them through this buffer in chunks.
+     *
+     * @param source Channel to read bytes from
+     * @param length Number of bytes to write
+     * @throws EOFException If the channel ended before {@code length} bytes were read
+     * @throws IOException  If the channel could not be read or the buffer could
+     *                      not be flushed
+     */
+    public void transferFrom(ReadableByteChannel source, long length) throws IOException {
+        long remaining = length;
+
+        while (remaining > 0) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+
+            final int chunk = (int) Math.min(remaining, buffer.length - count);
+            channelBuffer.clear().position(count).limit(count + chunk);
+            final int read = source.read(channelBuffer);
+            if (read < 0) {
+                throw new EOFException("Expected " + length + " bytes from channel, got " + (length - remaining));
+            }
+
+            count += read;
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Write a region of the given file without changing the position of the file.
+     * <p>
+     * When writing to a channel, the region is sent using
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)} which allows
+     * the operating system to copy it directly from the file system cache to the
+     * socket. When writing to a stream it is copied through this buffer in chunks.
+     *
+     * @param file     File to read bytes from
+     * @param position Start of the region within the file
+     * @param length   Number of bytes in the region
+     * @throws EOFException If the file ended before the end of the region
+     * @throws IOException  If the file could not be read or the buffer could not
+     *                      be flushed
+     */
+    public void transferFrom(FileChannel file, long position, long length) throws IOException {
+        long offset = position;
+        final long end = position + length;
+
+        if (channel != null) {
+            flushBuffer();
+
+            while (offset < end) {
+                final long transferred = file.transferTo(offset, end - offset, channel);
+                if (transferred <= 0 && offset >= file.size()) {
+                    throw new EOFException("Expected " + length + " bytes from file, got " + (offset - position));
+                }
+
+                offset += transferred;
+            }
+
+            return;
+        }
+
+        while (offset < end) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+
+            final int chunk = (int) Math.min(end - offset, buffer.length - count);
+            channelBuffer.clear().position(count).limit(count + chunk);
+            final int read = file.read(channelBuffer, offset);
+            if (read < 0) {
+                throw new EOFException("Expected " + length + " bytes from file, got " + (offset - position));
+            }
+
+            count += read;
+            offset += read;
+        }
+    }
+
+    /**
+     * Write each character of the given string as a single byte. Callers must
+     * make sure that the string only contains ASCII characters.
+     *
+     * @param ascii String containing only ASCII characters
+     * @throws IOException If the buffer had to be flushed and could not be
+     */
+    public void writeAscii(String ascii) throws IOException {
+        final int length = ascii.length();
+        int written = 0;
+
+        while (written < length) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+
+            final int chunk = Math.min(length - written, buffer.length - count);
+            for (int i = 0; i < chunk; i++) {
+                buffer[count++] = (byte) ascii.charAt(written + i);
+            }
+
+            written += chunk;
+        }
+    }
+
+    /**
+     * Write a type and length header followed by {@code \r\n}, such as
+     * {@code *3\r\n} or {@code $5\r\n}.
+     *
+     * @param type   Type of the header, array or bulk string
+     * @param length Length to include in the header
+     * @throws IOException If the buffer had to be flushed and could not be
+     */
+    public void writeHeader(RespType type, long length) throws IOException {
+        if (length >= 0 && length < CACHED_HEADERS) {
+            if (type == RespType.ARRAY) {
+                final byte[] header = ARRAY_HEADERS[(int) length];
+                write(header, 0, header.length);
+                return;
+            }
+
+            if (type == RespType.BULK_STRING) {
+                final byte[] header = BULK_STRING_HEADERS[(int) length];
+                write(header, 0, header.length);
+                return;
+            }
+        }
+
+        if (buffer.length - count < MAX_HEADER_LEN) {
+            flushBuffer();
+        }
+
+        buffer[count++] = (byte) type.getByte();
+        count = putLong(buffer, count, length);
+        buffer[count++] = '\r';
+        buffer[count++] = '\n';
+    }
+
+    /**
+     * Write a {@code \r\n} line ending.
+     *
+     * @throws IOException If the buffer had to be flushed and could not be
+     */
+    public void writeNewline() throws IOException {
+        if (buffer.length - count < 2) {
+            flushBuffer();
+        }
+
+        buffer[count++] = '\r';
+        buffer[count++] = '\n';
+    }
+
+    /**
+     * @return Number of bytes written to the buffer but not yet flushed
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Discard any bytes written to the buffer that have not been flushed yet.
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Write any buffered bytes to the underlying stream or channel, and flush
+     * the underlying stream.
+     *
+     * @throws IOException If the bytes could not be written
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        if (stream != null) {
+            stream.flush();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        // Reset the count before writing so that a failed write doesn't leave
+        // a partial command in the buffer to be sent along with the next one.
+        final int length = count;
+        count = 0;
+
+        if (stream != null) {
+            stream.write(buffer, 0, length);
+        } else {
+            channelBuffer.clear().limit(length);
+            writeThrough(channelBuffer);
+        }
+    }
+
+    private void writeThrough(ByteBuffer bytes) throws IOException {
+        if (stream != null) {
+            if (bytes.hasArray()) {
+                stream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                return;
+            }
+
+            // Direct buffers have to be copied out in chunks using our own buffer
+            while (bytes.hasRemaining()) {
+                final int chunk = Math.min(bytes.remaining(), buffer.length);
+                bytes.get(buffer, 0, chunk);
+                stream.write(buffer, 0, chunk);
+            }
+
+            return;
+        }
+
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Write the base 10 representation of the given value into the array at the
+     * given offset, two digits at a time, and return the offset after it.
+     */
+    // VisibleForTesting
+    static int putLong(byte[] bytes, int offset, long value) {
+        if (value == Long.MIN_VALUE) {
+            final byte[] min = String.valueOf(Long.MIN_VALUE).getBytes(RespEncodings.PROTOCOL);
+            System.arraycopy(min, 0, bytes, offset, min.length);
+            return offset + min.length;
+        }
+
+        if (value < 0) {
+            bytes[offset++] = '-';
+            value = -value;
+        }
+
+        final int end = offset + digits(value);
+        int pos = end;
+
+        while (value >= 100) {
+            final int pair = (int) (value % 100);
+            value /= 100;
+            bytes[--pos] = DIGIT_ONES[pair];
+            bytes[--pos] = DIGIT_TENS[pair];
+        }
+
+        if (value >= 10) {
+            bytes[--pos] = DIGIT_ONES[(int) value];
+            bytes[--pos] = DIGIT_TENS[(int) value];
+        } else {
+            bytes[--pos] = (byte) ('0' + value);
+        }
+
+        return end;
+    }
+
+    private static int digits(long value) {
+        long threshold = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < threshold) {
+                return i;
+            }
+
+            threshold *= 10;
+        }
+
+        return 19;
+    }
+
+    private static byte[][] buildHeaders(RespType type) {
+        final byte[][] headers = new byte[CACHED_HEADERS][];
+        for (int i = 0; i < CACHED_HEADERS; i++) {
+            headers[i] = (type.getString() + i + "\r\n").getBytes(RespEncodings.PROTOCOL);
+        }
+
+        return headers;
+    }
+}
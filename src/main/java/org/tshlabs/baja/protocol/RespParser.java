@@ -4,11 +4,18 @@ package org.tshlabs.baja.protocol;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Class for parsing results and error responses from a Redis server into
@@ -18,6 +25,17 @@ import java.util.Objects;
  * other response types are encoded using the {@link RespEncodings#PROTOCOL}
  * encoding.
  * <p>
+ * Any {@link InputStream} may be used with the parser. When the stream is a
+ * {@link RespInputBuffer}, lines and integers are parsed directly from its
+ * buffer instead of one byte at a time.
+ * <p>
+ * Both RESP2 and RESP3 replies are supported. RESP3 maps are returned as
+ * {@link Map}s, sets as {@link Set}s, doubles as {@link Double}s, big numbers as
+ * {@link BigInteger}s, booleans as {@link Boolean}s, verbatim strings as strings
+ * without their format prefix, blob errors as {@link RespErrResponse}s and push
+ * frames as {@link RespPush}es. Attributes are read and discarded, returning the
+ * value that follows them.
+ * <p>
  * This class is thread safe.
  *
  * @see <a href="http://redis.io/topics/protocol">Redis Protocol</a>
@@ -28,6 +46,13 @@ public class RespParser {
 
     private static final int BULK_STRING_MAX_LEN = 1024 * 1024 * 512;
 
+    private static final int TRANSFER_CHUNK_SIZE = 8192;
+
+    // Verbatim strings start with a three character format and a colon, "txt:"
+    private static final int VERBATIM_FORMAT_LEN = 3;
+
+    private static final int VERBATIM_PREFIX_LEN = VERBATIM_FORMAT_LEN + 1;
+
     private static final char CR = '\r';
 
     private static final char LF = '\n';
@@ -111,30 +136,317 @@ public class RespParser {
 
         final List<Object> out = new ArrayList<>();
         for (long i = 0; i < arraySize; i++) {
-            final RespType type = findType(stream);
-
-            switch (type) {
-                case ARRAY:
-                    out.add(readArray(stream));
-                    break;
-                case BULK_STRING:
-                    out.add(readBulkString(stream));
-                    break;
-                case ERROR:
-                    out.add(readError(stream));
-                    break;
-                case INTEGER:
-                    out.add(readLong(stream));
-                    break;
-                case SIMPLE_STRING:
-                    out.add(readSimpleString(stream));
-                    break;
-            }
+            out.add(readValue(findType(stream), stream));
+        }
+
+        return out;
+    }
+
+    /**
+     * Read a RESP3 map response from the input stream. Attribute responses may
+     * also be read using this method.
+     * <p>
+     * Before using this method to read a map, callers are expected to use the
+     * {@link #findType(InputStream)} method to determine that the response is a
+     * map type.
+     * <p>
+     * Entries are returned in the order they were sent by the server.
+     *
+     * @param stream Input stream to read the map from
+     * @return The map response
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream
+     */
+    public Map<Object, Object> readMap(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        final long mapSize = readLong(stream);
+
+        if (mapSize < 0) {
+            return null;
+        }
+
+        final Map<Object, Object> out = new LinkedHashMap<>();
+        for (long i = 0; i < mapSize; i++) {
+            final Object key = readValue(findType(stream), stream);
+            out.put(key, readValue(findType(stream), stream));
         }
 
         return out;
     }
 
+    /**
+     * Read a RESP3 set response from the input stream.
+     * <p>
+     * Before using this method to read a set, callers are expected to use the
+     * {@link #findType(InputStream)} method to determine that the response is a
+     * set type.
+     * <p>
+     * Elements are returned in the order they were sent by the server.
+     *
+     * @param stream Input stream to read the set from
+     * @return The set response
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream
+     */
+    public Set<Object> readSet(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        final List<Object> elements = readArray(stream);
+        return elements == null ? null : new LinkedHashSet<>(elements);
+    }
+
+    /**
+     * Read a RESP3 push frame from the input stream.
+     * <p>
+     * Before using this method to read a push frame, callers are expected to use
+     * the {@link #findType(InputStream)} method to determine that the response is
+     * a push type.
+     *
+     * @param stream Input stream to read the push frame from
+     * @return The push frame
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream
+     */
+    public RespPush readPush(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        final List<Object> elements = readArray(stream);
+        return new RespPush(elements == null ? Collections.emptyList() : elements);
+    }
+
+    /**
+     * Read a complete response of any type from the input stream, including
+     * determining its type.
+     * <p>
+     * Error responses are returned as {@link RespErrResponse} instances rather
+     * than raising an exception. Arrays are returned as lists of objects as
+     * described by {@link #readArray(InputStream)}.
+     *
+     * @param stream Input stream to read the response from
+     * @return The response as an object
+     * @throws IOException              If the stream could not be read
+     * @throws IllegalArgumentException If the response was not one of the
+     *                                  known types
+     * @throws IllegalStateException    If EOF was encountered reading the
+     *                                  stream
+     */
+    public Object readReply(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        return readValue(findType(stream), stream);
+    }
+
+    /**
+     * Read a complete response of any type from the input stream, including
+     * determining its type, and report each value in it to the given handler
+     * as it is parsed.
+     * <p>
+     * No intermediate objects are created for the values in the response when
+     * the stream is a {@link RespInputBuffer}: integers are passed as primitives
+     * and strings as ranges of the stream's own buffer. Other streams are supported
+     * but bulk strings and simple strings are copied into new arrays first. Bulk
+     * strings are buffered in their entirety before being passed to the handler.
+     * <p>
+     * Error responses are reported to the handler rather than raising an exception.
+     *
+     * @param stream  Input stream to read the response from
+     * @param handler Handler to report values in the response to
+     * @throws IOException              If the stream could not be read
+     * @throws IllegalArgumentException If the response contained an unknown type
+     * @throws IllegalStateException    If EOF was encountered reading the
+     *                                  stream
+     */
+    public void parse(InputStream stream, RespHandler handler) throws IOException {
+        Objects.requireNonNull(stream);
+        Objects.requireNonNull(handler);
+        parseValue(findType(stream), stream, handler);
+    }
+
+    private void parseValue(RespType type, InputStream stream, RespHandler handler) throws IOException {
+        switch (type) {
+            case ARRAY:
+                final long arraySize = readLong(stream);
+                if (arraySize < 0) {
+                    handler.onNull();
+                    return;
+                }
+
+                handler.onArrayStart(arraySize);
+                for (long i = 0; i < arraySize; i++) {
+                    parseValue(findType(stream), stream, handler);
+                }
+                handler.onArrayEnd();
+                return;
+            case BULK_STRING:
+                parseBulk(stream, handler, type);
+                return;
+            case ERROR:
+                handler.onError(readError(stream).getMessage());
+                return;
+            case INTEGER:
+                handler.onInteger(readLong(stream));
+                return;
+            case SIMPLE_STRING:
+                parseSimpleString(stream, handler, type);
+                return;
+            case MAP:
+                final long mapSize = readLong(stream);
+                handler.onMapStart(mapSize);
+                for (long i = 0; i < mapSize * 2; i++) {
+                    parseValue(findType(stream), stream, handler);
+                }
+                handler.onMapEnd();
+                return;
+            case SET:
+                final long setSize = readLong(stream);
+                handler.onSetStart(setSize);
+                for (long i = 0; i < setSize; i++) {
+                    parseValue(findType(stream), stream, handler);
+                }
+                handler.onSetEnd();
+                return;
+            case PUSH:
+                final long pushSize = readLong(stream);
+                handler.onPushStart(pushSize);
+                for (long i = 0; i < pushSize; i++) {
+                    parseValue(findType(stream), stream, handler);
+                }
+                handler.onPushEnd();
+                return;
+            case DOUBLE:
+                handler.onDouble(readDouble(stream));
+                return;
+            case BIG_NUMBER:
+                parseSimpleString(stream, handler, type);
+                return;
+            case BOOLEAN:
+                handler.onBoolean(readBoolean(stream));
+                return;
+            case NULL:
+                readNull(stream);
+                handler.onNull();
+                return;
+            case VERBATIM_STRING:
+            case BLOB_ERROR:
+                parseBulk(stream, handler, type);
+                return;
+            case ATTRIBUTE:
+                readMap(stream);
+                parseValue(findType(stream), stream, handler);
+                return;
+        }
+
+        throw new IllegalStateException("Got unexpected type " + type);
+    }
+
+    private void parseBulk(InputStream stream, RespHandler handler, RespType type) throws IOException {
+        if (!(stream instanceof RespInputBuffer)) {
+            final byte[] bytes = readBulkBytes(stream);
+            if (bytes == null) {
+                handler.onNull();
+            } else {
+                onBulk(handler, type, bytes, 0, bytes.length);
+            }
+
+            return;
+        }
+
+        final RespInputBuffer buffer = (RespInputBuffer) stream;
+        final long strLen = readBulkLength(buffer);
+        if (strLen < 0) {
+            handler.onNull();
+            return;
+        }
+
+        final int len = (int) strLen;
+        final int start = buffer.require(len + 2);
+        final byte[] bytes = buffer.array();
+        expectNewline(bytes[start + len], bytes[start + len + 1]);
+
+        onBulk(handler, type, bytes, start, len);
+        buffer.skip(len + 2);
+    }
+
+    private void onBulk(RespHandler handler, RespType type, byte[] bytes, int offset, int length) {
+        switch (type) {
+            case VERBATIM_STRING:
+                expectVerbatimPrefix(bytes, offset, length);
+                handler.onVerbatimString(new String(bytes, offset, VERBATIM_FORMAT_LEN, RespEncodings.PROTOCOL),
+                    bytes, offset + VERBATIM_PREFIX_LEN, length - VERBATIM_PREFIX_LEN);
+                return;
+            case BLOB_ERROR:
+                handler.onError(new String(bytes, offset, length, payloadCharset));
+                return;
+            default:
+                handler.onBulk(bytes, offset, length);
+        }
+    }
+
+    private void parseSimpleString(InputStream stream, RespHandler handler, RespType type) throws IOException {
+        if (!(stream instanceof RespInputBuffer)) {
+            final byte[] bytes = readSimpleString(stream).getBytes(RespEncodings.PROTOCOL);
+            onLine(handler, type, bytes, 0, bytes.length);
+            return;
+        }
+
+        final RespInputBuffer buffer = (RespInputBuffer) stream;
+        final int len = buffer.requireLine();
+        onLine(handler, type, buffer.array(), buffer.offset(), len);
+        buffer.skip(len + 2);
+    }
+
+    private static void onLine(RespHandler handler, RespType type, byte[] bytes, int offset, int length) {
+        if (type == RespType.BIG_NUMBER) {
+            handler.onBigNumber(bytes, offset, length);
+        } else {
+            handler.onSimpleString(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Read a value of the given (already consumed) type from the input stream.
+     */
+    private Object readValue(RespType type, InputStream stream) throws IOException {
+        switch (type) {
+            case ARRAY:
+                return readArray(stream);
+            case BULK_STRING:
+                return readBulkString(stream);
+            case ERROR:
+                return readError(stream);
+            case INTEGER:
+                return readLong(stream);
+            case SIMPLE_STRING:
+                return readSimpleString(stream);
+            case MAP:
+                return readMap(stream);
+            case SET:
+                return readSet(stream);
+            case PUSH:
+                return readPush(stream);
+            case DOUBLE:
+                return readDouble(stream);
+            case BIG_NUMBER:
+                return readBigNumber(stream);
+            case BOOLEAN:
+                return readBoolean(stream);
+            case NULL:
+                readNull(stream);
+                return null;
+            case VERBATIM_STRING:
+                return readVerbatimString(stream);
+            case BLOB_ERROR:
+                return readBlobError(stream);
+            case ATTRIBUTE:
+                // Attributes only add auxiliary information about the reply
+                // that follows them, which is what the caller is interested in
+                readMap(stream);
+                return readValue(findType(stream), stream);
+        }
+
+        throw new IllegalStateException("Got unexpected type " + type);
+    }
+
     /**
      * Read an Redis bulk string response from the input stream with the
      * previously supplied character set.
@@ -153,16 +465,169 @@ public class RespParser {
      *                               was not able to be read
      */
     public String readBulkString(InputStream stream) throws IOException {
+        final byte[] bytes = readBulkBytes(stream);
+        return bytes == null ? null : new String(bytes, payloadCharset);
+    }
+
+    /**
+     * Read a Redis bulk string response from the input stream as raw bytes
+     * without decoding them using a character set.
+     * <p>
+     * Before using this method to read a bulk string, callers are expected
+     * to use the {@link #findType(InputStream)} method to determine that
+     * the response is a bulk string type.
+     * <p>
+     * Bulk strings may be empty or null.
+     *
+     * @param stream Input stream to read the bulk string from
+     * @return The bulk string response as bytes
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream or the expected number of bytes
+     *                               was not able to be read
+     */
+    public byte[] readBulkBytes(InputStream stream) throws IOException {
         Objects.requireNonNull(stream);
-        final long strLen = readLong(stream);
-        if (strLen == 0) { // special case empty string
-            return "";
+        final long strLen = readBulkLength(stream);
+        if (strLen < 0) { // special case null string
+            return null;
+        }
+
+        // Streams (sockets especially) may return fewer bytes than requested
+        // even when more are on the way, so keep reading until we have all of
+        // the bulk string or hit the end of the stream. Note that empty bulk
+        // strings still have a CRLF after their (empty) payload.
+        final byte[] buffer = new byte[(int) strLen];
+        int read = 0;
+        while (read < strLen) {
+            read += verifyNoEof(stream.read(buffer, read, (int) strLen - read));
+        }
+
+        expectNewline(verifyNoEof(stream.read()), stream);
+        return buffer;
+    }
+
+    /**
+     * Read a Redis bulk string response from the input stream as a read-only
+     * {@link ByteBuffer} without decoding it using a character set.
+     * <p>
+     * Before using this method to read a bulk string, callers are expected
+     * to use the {@link #findType(InputStream)} method to determine that
+     * the response is a bulk string type.
+     * <p>
+     * When the stream is a {@link RespInputBuffer}, the returned buffer is a
+     * view of the stream's own buffer and no copy of the bulk string is made.
+     * In this case the view is only valid until the next read from the stream
+     * and callers must copy anything they need to keep before then.
+     * <p>
+     * Bulk strings may be empty or null.
+     *
+     * @param stream Input stream to read the bulk string from
+     * @return The bulk string response as a read-only byte buffer
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream or the expected number of bytes
+     *                               was not able to be read
+     */
+    public ByteBuffer readBulkByteBuffer(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        if (!(stream instanceof RespInputBuffer)) {
+            final byte[] bytes = readBulkBytes(stream);
+            return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        final RespInputBuffer buffer = (RespInputBuffer) stream;
+        final long strLen = readBulkLength(buffer);
+        if (strLen < 0) { // special case null string
+            return null;
         }
 
+        // Make sure the trailing CRLF is buffered along with the payload so
+        // that consuming it can't cause the buffer (and our view) to move.
+        final ByteBuffer view = buffer.readSlice((int) strLen + 2);
+        expectNewline(view.get((int) strLen), view.get((int) strLen + 1));
+        view.limit((int) strLen);
+        return view;
+    }
+
+    /**
+     * Read a Redis bulk string response from the input stream as a stream over
+     * its payload, without reading the payload into memory.
+     * <p>
+     * Before using this method to read a bulk string, callers are expected
+     * to use the {@link #findType(InputStream)} method to determine that
+     * the response is a bulk string type.
+     * <p>
+     * The returned stream reads directly from the given stream and must be read
+     * to the end or closed before anything else is read from the given stream.
+     * Closing it discards any unread part of the payload but does not close the
+     * given stream.
+     *
+     * @param stream Input stream to read the bulk string from
+     * @return Stream over the payload of the bulk string, null for a null bulk string
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the stream
+     */
+    public InputStream readBulkStream(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        final long strLen = readBulkLength(stream);
         if (strLen < 0) { // special case null string
             return null;
         }
 
+        return new RespBulkInputStream(stream, strLen);
+    }
+
+    /**
+     * Read a Redis bulk string response from the input stream and copy its payload
+     * to the given output stream in small chunks, without reading the payload into
+     * memory all at once.
+     * <p>
+     * Before using this method to read a bulk string, callers are expected
+     * to use the {@link #findType(InputStream)} method to determine that
+     * the response is a bulk string type.
+     * <p>
+     * When the stream is a {@link RespInputBuffer} the payload is copied through
+     * its buffer without growing it, otherwise a small temporary buffer is used.
+     *
+     * @param stream Input stream to read the bulk string from
+     * @param target Output stream to copy the payload to
+     * @return Number of bytes copied, or -1 for a null bulk string
+     * @throws IOException           If the stream could not be read or the target
+     *                               could not be written
+     * @throws IllegalStateException If EOF was encountered reading the stream
+     */
+    public long transferBulk(InputStream stream, OutputStream target) throws IOException {
+        Objects.requireNonNull(stream);
+        Objects.requireNonNull(target);
+        final long strLen = readBulkLength(stream);
+        if (strLen < 0) { // special case null string
+            return -1;
+        }
+
+        if (stream instanceof RespInputBuffer) {
+            ((RespInputBuffer) stream).copyTo(strLen, target);
+        } else {
+            final byte[] chunk = new byte[(int) Math.min(strLen, TRANSFER_CHUNK_SIZE)];
+            long remaining = strLen;
+            while (remaining > 0) {
+                final int read = verifyNoEof(stream.read(chunk, 0, (int) Math.min(chunk.length, remaining)));
+                target.write(chunk, 0, read);
+                remaining -= read;
+            }
+        }
+
+        expectNewline(verifyNoEof(stream.read()), stream);
+        return strLen;
+    }
+
+    /**
+     * Read the length of a bulk string, making sure that it is within the
+     * limits of the protocol.
+     */
+    private long readBulkLength(InputStream stream) throws IOException {
+        final long strLen = readLong(stream);
+
         // The Redis protocol says the bulk strings won't be longer than
         // 512M, so we check that here to make sure the length isn't something
         // bigger than we can or should allocate.
@@ -171,18 +636,7 @@ public class RespParser {
                 "Got unexpected length for bulk string " + strLen + " bytes");
         }
 
-        // See if we can read the entire bulk string in one go into a single
-        // buffer. If there is enough data in the stream, we should get it.
-        final byte[] buffer = new byte[(int) strLen];
-        final int read = verifyNoEof(stream.read(buffer, 0, (int) strLen));
-
-        if (read != strLen) {
-            throw new IllegalStateException(
-                "Expected to read " + strLen + " bytes, got " + read);
-        }
-
-        expectNewline(verifyNoEof(stream.read()), stream);
-        return new String(buffer, payloadCharset);
+        return strLen;
     }
 
     /**
@@ -223,6 +677,10 @@ public class RespParser {
         // are 64bit which is a long in Java, so we just treat this as a long
         // and call it a long everywhere even though it corresponds to the
         // 'integer' type in RESP.
+        if (stream instanceof RespInputBuffer) {
+            return ((RespInputBuffer) stream).readLongLine();
+        }
+
         return Long.parseLong(readLine(stream));
     }
 
@@ -248,12 +706,175 @@ public class RespParser {
         return readLine(stream);
     }
 
+    /**
+     * Read a RESP3 double from the input stream.
+     * <p>
+     * Before using this method to read the double, callers are expected to
+     * use the {@link #findType(InputStream)} method to determine that the
+     * response is a double type.
+     *
+     * @param stream Input stream to read the double response from
+     * @return The double, which may be infinite or NaN
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream
+     * @throws NumberFormatException If the response was not a valid double
+     */
+    public double readDouble(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        return parseDouble(readLine(stream));
+    }
+
+    /**
+     * Read a RESP3 big number from the input stream.
+     * <p>
+     * Before using this method to read the number, callers are expected to
+     * use the {@link #findType(InputStream)} method to determine that the
+     * response is a big number type.
+     *
+     * @param stream Input stream to read the big number response from
+     * @return The big number
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream
+     * @throws NumberFormatException If the response was not a valid number
+     */
+    public BigInteger readBigNumber(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        return new BigInteger(readLine(stream));
+    }
+
+    /**
+     * Read a RESP3 boolean from the input stream.
+     * <p>
+     * Before using this method to read the boolean, callers are expected to
+     * use the {@link #findType(InputStream)} method to determine that the
+     * response is a boolean type.
+     *
+     * @param stream Input stream to read the boolean response from
+     * @return The boolean
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream or the response was not {@code t}
+     *                               or {@code f}
+     */
+    public boolean readBoolean(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        final String value = readLine(stream);
+        if ("t".equals(value)) {
+            return true;
+        }
+
+        if ("f".equals(value)) {
+            return false;
+        }
+
+        throw new IllegalStateException("Got unexpected value for boolean " + value);
+    }
+
+    /**
+     * Read the remainder of a RESP3 null from the input stream.
+     * <p>
+     * Before using this method to read the null, callers are expected to use
+     * the {@link #findType(InputStream)} method to determine that the response
+     * is a null type.
+     *
+     * @param stream Input stream to read the null response from
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream or the null was not followed by
+     *                               {@code \r\n}
+     */
+    public void readNull(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        expectNewline(verifyNoEof(stream.read()), stream);
+    }
+
+    /**
+     * Read a RESP3 verbatim string from the input stream with the previously
+     * supplied character set, without its format prefix.
+     * <p>
+     * Before using this method to read the string, callers are expected to
+     * use the {@link #findType(InputStream)} method to determine that the
+     * response is a verbatim string type.
+     *
+     * @param stream Input stream to read the verbatim string response from
+     * @return The verbatim string without its format prefix
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream or the string had no format prefix
+     */
+    public String readVerbatimString(InputStream stream) throws IOException {
+        final byte[] bytes = readBulkBytes(stream);
+        if (bytes == null) {
+            return null;
+        }
+
+        expectVerbatimPrefix(bytes, 0, bytes.length);
+        return new String(bytes, VERBATIM_PREFIX_LEN, bytes.length - VERBATIM_PREFIX_LEN, payloadCharset);
+    }
+
+    /**
+     * Read a RESP3 blob error response from the input stream.
+     * <p>
+     * Before using this method to read an error, callers are expected to
+     * use the {@link #findType(InputStream)} method to determine that the
+     * response is a blob error type.
+     *
+     * @param stream Input stream to read the error response from
+     * @return The Redis error response
+     * @throws IOException           If the stream could not be read
+     * @throws IllegalStateException If EOF was encountered reading the
+     *                               stream
+     */
+    public RespErrResponse readBlobError(InputStream stream) throws IOException {
+        final byte[] bytes = readBulkBytes(stream);
+        return new RespErrResponse(bytes == null ? null : new String(bytes, payloadCharset));
+    }
+
+    /**
+     * Parse a double as sent by a Redis server, either as a RESP3 double or as a
+     * string (such as a sorted set score) with RESP2. Redis uses {@code inf},
+     * {@code -inf} and {@code nan} for special values instead of the
+     * representations Java expects.
+     *
+     * @param value Textual representation of the double
+     * @return The double
+     * @throws NumberFormatException If the value was not a valid double
+     */
+    public static double parseDouble(String value) {
+        switch (value) {
+            case "inf":
+                return Double.POSITIVE_INFINITY;
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            case "nan":
+                return Double.NaN;
+            default:
+                return Double.parseDouble(value);
+        }
+    }
+
+    /**
+     * Verify that a verbatim string starts with a three character format followed
+     * by a colon, otherwise raise an {@code IllegalStateException}.
+     */
+    private static void expectVerbatimPrefix(byte[] bytes, int offset, int length) {
+        if (length < VERBATIM_PREFIX_LEN || bytes[offset + VERBATIM_FORMAT_LEN] != ':') {
+            throw new IllegalStateException("Expected format prefix for verbatim string");
+        }
+    }
+
     /**
      * Read the {@link InputStream} until encountering a {@code \r\n} and return
      * the results as a UTF-8 encoded string, not including the {@code \r\n}.
      */
     // VisibleForTesting
     static String readLine(InputStream stream) throws IOException {
+        if (stream instanceof RespInputBuffer) {
+            return ((RespInputBuffer) stream).readLine();
+        }
+
         final ByteArrayOutputStream os = new ByteArrayOutputStream();
         int res;
 
@@ -296,6 +917,18 @@ public class RespParser {
         throw new IllegalStateException("Expected CR (\\r), got " + c);
     }
 
+    /**
+     * Verify that the given bytes are a CR and LF, otherwise raise an
+     * {@code IllegalStateException}.
+     */
+    private static void expectNewline(byte cr, byte lf) {
+        if (CR != cr) {
+            throw new IllegalStateException("Expected CR (\\r), got " + cr);
+        }
+
+        expectLf(lf);
+    }
+
     /* This method could just as easily be another condition in the 'if' statement
      * in expectNewline() but this way we can raise a more specific exception when
      * we don't get the expected CRLF in the stream.
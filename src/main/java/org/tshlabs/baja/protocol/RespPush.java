@@ -0,0 +1,51 @@
+package org.tshlabs.baja.protocol;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Simple holder for an out of band push frame from a Redis server using RESP3,
+ * such as a pub/sub message or a client side caching invalidation.
+ * <p>
+ * Push frames are not replies to any particular command and may arrive in
+ * between replies at any time.
+ * <p>
+ * This class is thread safe.
+ *
+ * @see <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3 Specification</a>
+ */
+public class RespPush {
+
+    private final List<Object> values;
+
+    /**
+     * Construct a new push frame with the given values.
+     *
+     * @param values Values of the push frame, the first of which is its kind
+     * @throws NullPointerException If values is null
+     */
+    public RespPush(List<Object> values) {
+        this.values = Collections.unmodifiableList(Objects.requireNonNull(values));
+    }
+
+    /**
+     * @return The kind of push frame (such as {@code message} or {@code invalidate}),
+     * taken from its first value, or null if the frame is empty
+     */
+    public String getKind() {
+        return values.isEmpty() || values.get(0) == null ? null : String.valueOf(values.get(0));
+    }
+
+    /**
+     * @return All values of the push frame, including its kind
+     */
+    public List<Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "RespPush" + values;
+    }
+}
@@ -0,0 +1,175 @@
+package org.tshlabs.baja.protocol;
+
+import java.util.Arrays;
+
+/**
+ * Scanner that determines if a complete reply is available in a buffer of
+ * bytes without parsing it, so that replies arriving over many partial reads
+ * from a non-blocking channel are only parsed once they are complete.
+ * <p>
+ * Progress through a partial reply is kept between calls so that each call
+ * only has to look at bytes that have arrived since the previous one (apart
+ * from any incomplete header line). Bulk string payloads are skipped based
+ * on their length rather than being scanned.
+ * <p>
+ * RESP3 replies are supported as well. Maps count as two values per entry and
+ * attributes are treated as part of the value that follows them.
+ * <p>
+ * This class is <em>not</em> thread safe.
+ */
+class RespReplyScanner {
+
+    private static final byte CR = '\r';
+
+    private static final byte LF = '\n';
+
+    // Number of bytes of the current reply that have been scanned
+    private int scanned;
+
+    // Number of payload bytes (including the trailing CRLF) of a bulk
+    // string that still need to be skipped before the next header
+    private long skip;
+
+    // Number of elements that remain in each level of nested aggregates
+    private long[] remaining = new long[8];
+
+    private int depth;
+
+    /**
+     * Scan bytes starting at the beginning of a reply up to (but not including)
+     * the given end offset, continuing from where the last call left off if it
+     * did not find a complete reply.
+     * <p>
+     * The start of the reply may be at a different offset than in the previous
+     * call (if the buffer was compacted, for example) but the bytes of the
+     * reply must be the same.
+     *
+     * @param bytes Buffer containing the reply
+     * @param start Offset of the start of the reply in the buffer
+     * @param end   Offset after the last valid byte in the buffer
+     * @return Length of the reply in bytes if it is complete, -1 otherwise
+     * @throws IllegalStateException If an unknown type is encountered
+     */
+    int scan(byte[] bytes, int start, int end) {
+        int pos = start + scanned;
+
+        while (true) {
+            if (skip > 0) {
+                final int available = end - pos;
+                if (available < skip) {
+                    skip -= available;
+                    scanned = end - start;
+                    return -1;
+                }
+
+                pos += (int) skip;
+                skip = 0;
+
+                if (elementComplete()) {
+                    return complete(pos - start);
+                }
+            }
+
+            final int lineEnd = findLineEnd(bytes, pos, end);
+            if (lineEnd < 0) {
+                scanned = pos - start;
+                return -1;
+            }
+
+            final int type = bytes[pos];
+            final RespType respType = RespType.lookup(type).orElseThrow(() ->
+                new IllegalStateException("Could not parse invalid type " + type));
+
+            final int headerStart = pos + 1;
+            pos = lineEnd + 2;
+
+            if (isBulk(respType)) {
+                final long len = RespInputBuffer.parseLong(bytes, headerStart, lineEnd);
+                if (len >= 0) {
+                    skip = len + 2;
+                    continue;
+                }
+            } else if (respType == RespType.ATTRIBUTE) {
+                // An attribute is followed by the value it describes, which
+                // takes the attribute's place in the enclosing aggregate
+                push(RespInputBuffer.parseLong(bytes, headerStart, lineEnd) * 2 + 1);
+                continue;
+            } else if (isAggregate(respType)) {
+                final long len = RespInputBuffer.parseLong(bytes, headerStart, lineEnd);
+                if (len > 0) {
+                    push(respType == RespType.MAP ? len * 2 : len);
+                    continue;
+                }
+            }
+
+            if (elementComplete()) {
+                return complete(pos - start);
+            }
+        }
+    }
+
+    /**
+     * Forget any progress through a partial reply.
+     */
+    void reset() {
+        scanned = 0;
+        skip = 0;
+        depth = 0;
+    }
+
+    private int complete(int length) {
+        reset();
+        return length;
+    }
+
+    private void push(long elements) {
+        if (depth == remaining.length) {
+            remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+
+        remaining[depth++] = elements;
+    }
+
+    /**
+     * Mark a single value as having been scanned, returning true if that
+     * completes the entire reply.
+     */
+    private boolean elementComplete() {
+        while (depth > 0) {
+            if (--remaining[depth - 1] > 0) {
+                return false;
+            }
+
+            depth--;
+        }
+
+        return true;
+    }
+
+    private static boolean isBulk(RespType type) {
+        return type == RespType.BULK_STRING ||
+            type == RespType.VERBATIM_STRING ||
+            type == RespType.BLOB_ERROR;
+    }
+
+    private static boolean isAggregate(RespType type) {
+        return type == RespType.ARRAY ||
+            type == RespType.MAP ||
+            type == RespType.SET ||
+            type == RespType.PUSH;
+    }
+
+    private static int findLineEnd(byte[] bytes, int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (bytes[i] == CR) {
+                if (bytes[i + 1] != LF) {
+                    throw new IllegalStateException("Expected LF (\\n), got " + bytes[i + 1]);
+                }
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -8,16 +8,31 @@ import java.util.Optional;
 /**
  * Enum representing the types supported by the Redis Protocol.
  * <p>
+ * The first five types are part of RESP2 and are sent by every server. The
+ * rest are only sent by servers that have been switched to RESP3 with the
+ * {@code HELLO 3} command.
+ * <p>
  * This class is thread safe.
  *
  * @see <a href="http://redis.io/topics/protocol">Redis Protocol</a>
+ * @see <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3 Specification</a>
  */
 public enum RespType {
     ARRAY("*"),
     BULK_STRING("$"),
     ERROR("-"),
     INTEGER(":"),
-    SIMPLE_STRING("+");
+    SIMPLE_STRING("+"),
+    MAP("%"),
+    SET("~"),
+    DOUBLE(","),
+    BIG_NUMBER("("),
+    BOOLEAN("#"),
+    NULL("_"),
+    VERBATIM_STRING("="),
+    BLOB_ERROR("!"),
+    ATTRIBUTE("|"),
+    PUSH(">");
 
     private static final Map<Integer, RespType> BYTE_LOOKUP;
 
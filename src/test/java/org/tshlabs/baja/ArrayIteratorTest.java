@@ -0,0 +1,112 @@
+package org.tshlabs.baja;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespEncoder;
+import org.tshlabs.baja.protocol.RespErrResponse;
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArrayIteratorTest {
+
+    private RedisConnection connection;
+
+    private void replies(String replies) {
+        connection = new RedisConnection(
+            new RespInputBuffer(new ByteArrayInputStream(replies.getBytes(StandardCharsets.UTF_8))),
+            new ByteArrayOutputStream(),
+            RespEncoder.getInstance(),
+            RespParser.getInstance());
+    }
+
+    @Before
+    public void setup() {
+        replies("*4\r\n$3\r\nfoo\r\n:12\r\n*2\r\n+a\r\n$-1\r\n-ERR bad\r\n:99\r\n");
+    }
+
+    @Test
+    public void testIterateAll() {
+        final ArrayIterator it = connection.readArrayIterator();
+        assertEquals(4, it.size());
+
+        final List<Object> elements = new ArrayList<>();
+        it.forEachRemaining(elements::add);
+
+        assertEquals("foo", elements.get(0));
+        assertEquals(12L, elements.get(1));
+        assertEquals(Arrays.asList("a", null), elements.get(2));
+        assertTrue(elements.get(3) instanceof RespErrResponse);
+        assertFalse(it.hasNext());
+
+        assertEquals(99L, connection.readLong());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextAfterEnd() {
+        replies("*0\r\n");
+        connection.readArrayIterator().next();
+    }
+
+    @Test
+    public void testNullArray() {
+        replies("*-1\r\n:99\r\n");
+        final ArrayIterator it = connection.readArrayIterator();
+        assertFalse(it.hasNext());
+        assertEquals(0, it.size());
+        assertEquals(99L, connection.readLong());
+    }
+
+    @Test
+    public void testCloseDrainsRemaining() {
+        final ArrayIterator it = connection.readArrayIterator();
+        assertEquals("foo", it.next());
+        it.close();
+
+        assertFalse(it.hasNext());
+        assertEquals(99L, connection.readLong());
+    }
+
+    @Test
+    public void testStreamCloseDrainsRemaining() {
+        final List<Object> first;
+        try (Stream<Object> stream = connection.readArrayIterator().stream()) {
+            first = stream.limit(2).collect(Collectors.toList());
+        }
+
+        assertEquals(Arrays.asList("foo", 12L), first);
+        assertEquals(99L, connection.readLong());
+    }
+
+    @Test
+    public void testExecutedCommandAsArrayStream() {
+        final List<Object> all;
+        try (Stream<Object> stream = RedisCommand.cmd("LRANGE").arg("foo").arg(0).arg(-1)
+            .query(connection).asArrayStream()) {
+            all = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(4, all.size());
+        assertEquals(99L, connection.readLong());
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testNotArray() {
+        replies(":1\r\n");
+        connection.readArrayIterator();
+    }
+}
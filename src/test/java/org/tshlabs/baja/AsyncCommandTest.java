@@ -0,0 +1,186 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespEncoder;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncCommandTest {
+
+    private RedisEventLoop loop;
+
+    private StubRedisServer server;
+
+    private AsyncRedisConnection connection;
+
+    private static String reply(List<String> command) {
+        switch (command.get(0)) {
+            case "SET":
+                return "+OK\r\n";
+            case "GET":
+                return "$3\r\nbar\r\n";
+            case "INCR":
+                return ":" + command.get(1) + "\r\n";
+            case "MGET":
+                return "*3\r\n$3\r\nbar\r\n:4\r\n$-1\r\n";
+            case "MISSING":
+                return "$-1\r\n";
+            default:
+                return "-ERR unknown command\r\n";
+        }
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private static void assertFailsWith(CompletableFuture<?> future, Class<?> type) throws Exception {
+        try {
+            get(future);
+            fail("Expected future to fail with " + type.getSimpleName());
+        } catch (ExecutionException e) {
+            assertTrue(type.isInstance(e.getCause()));
+        }
+    }
+
+    @Before
+    public void setup() throws Exception {
+        loop = new RedisEventLoop();
+        server = new StubRedisServer(AsyncCommandTest::reply);
+        connection = new AsyncRedisConnection(
+            SocketChannel.open(server.getAddress()), loop, RespEncoder.getInstance(), RespParser.getInstance());
+    }
+
+    @After
+    public void teardown() {
+        connection.close();
+        server.close();
+        loop.close();
+    }
+
+    @Test
+    public void testAsString() throws Exception {
+        assertEquals("OK", get(RedisCommand.cmd("SET").arg("foo").arg("bar").queryAsync(connection).asString()));
+        assertEquals("bar", get(RedisCommand.cmd("GET").arg("foo").queryAsync(connection).asString()));
+        assertNull(get(RedisCommand.cmd("MISSING").queryAsync(connection).asString()));
+    }
+
+    @Test
+    public void testAsLong() throws Exception {
+        assertEquals(Long.valueOf(42), get(RedisCommand.cmd("INCR").arg(42).queryAsync(connection).asLong()));
+    }
+
+    @Test
+    public void testAsArray() throws Exception {
+        assertEquals(Arrays.asList("bar", 4L, null),
+            get(RedisCommand.cmd("MGET").queryAsync(connection).asArray()));
+    }
+
+    @Test
+    public void testAsStringArray() throws Exception {
+        assertEquals(Arrays.asList("bar", "4", null),
+            get(RedisCommand.cmd("MGET").queryAsync(connection).asStringArray()));
+    }
+
+    @Test
+    public void testAsObject() throws Exception {
+        assertEquals(7L, get(RedisCommand.cmd("INCR").arg(7).queryAsync(connection).asObject()));
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        assertNull(get(RedisCommand.cmd("SET").arg("foo").arg("bar").queryAsync(connection).discard()));
+    }
+
+    @Test
+    public void testManyOutstanding() throws Exception {
+        final List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(RedisCommand.cmd("INCR").arg(i).queryAsync(connection).asLong());
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Long.valueOf(i), get(futures.get(i)));
+        }
+    }
+
+    @Test
+    public void testTypeMismatch() throws Exception {
+        assertFailsWith(RedisCommand.cmd("GET").arg("foo").queryAsync(connection).asLong(),
+            BajaTypeMismatchException.class);
+        assertFailsWith(RedisCommand.cmd("MISSING").queryAsync(connection).asLong(),
+            BajaTypeMismatchException.class);
+        assertFailsWith(RedisCommand.cmd("INCR").arg(1).queryAsync(connection).asArray(),
+            BajaTypeMismatchException.class);
+    }
+
+    @Test
+    public void testErrorReply() throws Exception {
+        assertFailsWith(RedisCommand.cmd("BOGUS").queryAsync(connection).discard(),
+            BajaProtocolErrorException.class);
+    }
+
+    @Test
+    public void testConverterFailure() throws Exception {
+        assertFailsWith(RedisCommand.cmd("GET").arg("foo").queryAsync(connection).send(reply -> {
+            throw new IllegalStateException("bad converter");
+        }), IllegalStateException.class);
+    }
+
+    @Test
+    public void testEncodeFailure() throws Exception {
+        final ReadableByteChannel source = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                throw new IOException("read failed");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        final CompletableFuture<String> future = RedisCommand.cmd("SET")
+            .arg("foo")
+            .arg(3, source)
+            .queryAsync(connection)
+            .asString();
+
+        assertFailsWith(future, RuntimeException.class);
+    }
+
+    @Test
+    public void testCastNullable() {
+        assertNull(AsyncCommand.cast(null, String.class, true));
+        assertEquals("foo", AsyncCommand.cast("foo", String.class, false));
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testCastNotNullable() {
+        AsyncCommand.cast(null, Long.class, false);
+    }
+}
@@ -0,0 +1,295 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaRuntimeException;
+import org.tshlabs.baja.protocol.RespArgument;
+import org.tshlabs.baja.protocol.RespEncoder;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.tshlabs.baja.StubRedisServer.await;
+
+public class AsyncRedisConnectionTest {
+
+    private RedisEventLoop loop;
+
+    private StubRedisServer server;
+
+    private AsyncRedisConnection connection;
+
+    private static String reply(List<String> command) {
+        switch (command.get(0)) {
+            case "PING":
+                return "+PONG\r\n";
+            case "ECHO":
+                final String arg = command.get(1);
+                return "$" + arg.length() + "\r\n" + arg + "\r\n";
+            case "INCR":
+                return ":1\r\n";
+            case "BLPOP":
+                return null;
+            case "LRANGE":
+                return "*3\r\n$1\r\na\r\n$-1\r\n*1\r\n:2\r\n";
+            default:
+                return "-ERR unknown command '" + command.get(0) + "'\r\n";
+        }
+    }
+
+    private static List<RespArgument> args(String... args) {
+        return Arrays.stream(args).map(RespArgument::of).collect(Collectors.toList());
+    }
+
+    private static class FutureHandler implements ReplyHandler {
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        @Override
+        public void onReply(Object reply) {
+            future.complete(reply);
+        }
+
+        @Override
+        public void onFailure(BajaRuntimeException cause) {
+            future.completeExceptionally(cause);
+        }
+
+        Object get() throws Exception {
+            return future.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private void connect(boolean trickle) throws IOException {
+        server = new StubRedisServer(AsyncRedisConnectionTest::reply, trickle);
+        connection = new AsyncRedisConnection(
+            SocketChannel.open(server.getAddress()), loop, RespEncoder.getInstance(), RespParser.getInstance());
+    }
+
+    @Before
+    public void setup() {
+        loop = new RedisEventLoop();
+    }
+
+    @After
+    public void teardown() {
+        if (connection != null) {
+            connection.close();
+        }
+
+        if (server != null) {
+            server.close();
+        }
+
+        loop.close();
+    }
+
+    @Test
+    public void testSendSimpleString() throws Exception {
+        connect(false);
+        final FutureHandler handler = new FutureHandler();
+        connection.send(args("PING"), handler);
+        assertEquals("PONG", handler.get());
+    }
+
+    @Test
+    public void testRepliesInOrder() throws Exception {
+        connect(false);
+        final List<FutureHandler> handlers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final FutureHandler handler = new FutureHandler();
+            handlers.add(handler);
+            connection.send(args("ECHO", "value" + i), handler);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value" + i, handlers.get(i).get());
+        }
+    }
+
+    @Test
+    public void testConcurrentSenders() throws Exception {
+        connect(false);
+        final int threads = 8;
+        final int perThread = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<List<FutureHandler>>> sent = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                sent.add(executor.submit(() -> {
+                    final List<FutureHandler> handlers = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        final FutureHandler handler = new FutureHandler();
+                        handlers.add(handler);
+                        connection.send(args("ECHO", thread + ":" + i), handler);
+                    }
+                    return handlers;
+                }));
+            }
+
+            for (int t = 0; t < threads; t++) {
+                final List<FutureHandler> handlers = sent.get(t).get(5, TimeUnit.SECONDS);
+                for (int i = 0; i < perThread; i++) {
+                    assertEquals(t + ":" + i, handlers.get(i).get());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLargeBatch() throws Exception {
+        connect(false);
+        // More commands than fit in a single gathering write, with large values
+        // so that the socket buffer fills up and we have to wait to write more
+        final String value = String.join("", Collections.nCopies(1024, "x"));
+        final List<FutureHandler> handlers = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            final FutureHandler handler = new FutureHandler();
+            handlers.add(handler);
+            connection.send(args("ECHO", value + i), handler);
+        }
+
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(value + i, handlers.get(i).get());
+        }
+    }
+
+    @Test
+    public void testPartialReads() throws Exception {
+        connect(true);
+        final FutureHandler echo = new FutureHandler();
+        final FutureHandler incr = new FutureHandler();
+        final FutureHandler range = new FutureHandler();
+
+        connection.send(args("ECHO", "foo\r\nbar"), echo);
+        connection.send(args("INCR", "counter"), incr);
+        connection.send(args("LRANGE", "list", "0", "-1"), range);
+
+        assertEquals("foo\r\nbar", echo.get());
+        assertEquals(1L, incr.get());
+        assertEquals(Arrays.asList("a", null, Arrays.asList(2L)), range.get());
+    }
+
+    @Test
+    public void testErrorReply() throws Exception {
+        connect(false);
+        final FutureHandler bad = new FutureHandler();
+        final FutureHandler good = new FutureHandler();
+
+        connection.send(args("BOGUS"), bad);
+        connection.send(args("PING"), good);
+
+        try {
+            bad.get();
+            fail("Expected error reply");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BajaProtocolErrorException);
+        }
+
+        assertEquals("PONG", good.get());
+    }
+
+    @Test
+    public void testServerDisconnectFailsPending() throws Exception {
+        server = new StubRedisServer(command -> null);
+        connection = new AsyncRedisConnection(
+            SocketChannel.open(server.getAddress()), loop, RespEncoder.getInstance(), RespParser.getInstance());
+
+        final FutureHandler handler = new FutureHandler();
+        connection.send(args("PING"), handler);
+
+        // Wait for the command to arrive before hanging up on the client
+        await(() -> !server.getReceived().isEmpty());
+        server.disconnectClients();
+
+        try {
+            handler.get();
+            fail("Expected connection failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BajaResourceException);
+        }
+    }
+
+    @Test
+    public void testSendAfterClose() throws Exception {
+        connect(false);
+        connection.close();
+
+        final FutureHandler handler = new FutureHandler();
+        connection.send(args("PING"), handler);
+
+        try {
+            handler.get();
+            fail("Expected connection failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BajaResourceException);
+        }
+    }
+
+    @Test
+    public void testLoopCloseFailsPending() throws Exception {
+        connect(false);
+        final FutureHandler pending = new FutureHandler();
+        connection.send(args("BLPOP"), pending);
+        await(() -> !server.getReceived().isEmpty());
+
+        loop.close();
+        assertFalse(loop.isRunning());
+
+        try {
+            pending.get();
+            fail("Expected connection failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BajaResourceException);
+        }
+
+        // Sending and closing still complete once the loop has stopped
+        final FutureHandler after = new FutureHandler();
+        connection.send(args("PING"), after);
+
+        try {
+            after.get();
+            fail("Expected connection failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BajaResourceException);
+        }
+
+        connection.close();
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testExecuteAfterLoopClose() {
+        loop.close();
+        loop.execute(() -> {
+        });
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testConnectAfterLoopClose() throws Exception {
+        loop.close();
+        connect(false);
+    }
+}
@@ -0,0 +1,69 @@
+package org.tshlabs.baja;
+
+import org.junit.Test;
+import org.tshlabs.baja.protocol.RespArgument;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClusterSlotsTest {
+
+    @Test
+    public void testCrc16() {
+        final byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0x31C3, ClusterSlots.crc16(ByteBuffer.wrap(bytes), 0, bytes.length));
+    }
+
+    @Test
+    public void testGetSlot() {
+        assertEquals(12182, ClusterSlots.getSlot("foo"));
+        assertEquals(5061, ClusterSlots.getSlot("bar"));
+        assertEquals(0, ClusterSlots.getSlot(""));
+    }
+
+    @Test
+    public void testGetSlotBinary() {
+        assertEquals(12182, ClusterSlots.getSlot("foo".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(12182, ClusterSlots.getSlot(RespArgument.of("foo".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void testGetSlotHashTag() {
+        assertEquals(ClusterSlots.getSlot("user1000"), ClusterSlots.getSlot("{user1000}.following"));
+        assertEquals(ClusterSlots.getSlot("user1000"), ClusterSlots.getSlot("{user1000}.followers"));
+        assertEquals(ClusterSlots.getSlot("bar"), ClusterSlots.getSlot("foo{bar}{zap}"));
+    }
+
+    @Test
+    public void testGetSlotEmptyHashTag() {
+        assertEquals(ClusterSlots.crc16(ByteBuffer.wrap("foo{}{bar}".getBytes(StandardCharsets.UTF_8)), 0, 10) % 16384,
+            ClusterSlots.getSlot("foo{}{bar}"));
+        assertEquals(ClusterSlots.getSlot("{bar"), ClusterSlots.getSlot("{bar"));
+    }
+
+    @Test
+    public void testGetSlotCommand() {
+        assertEquals(12182, ClusterSlots.getSlot(RedisCommand.cmd("GET").arg("foo")));
+        assertEquals(12182, ClusterSlots.getSlot(RedisCommand.cmd("object").arg("ENCODING").arg("foo")));
+        assertEquals(12182, ClusterSlots.getSlot(RedisCommand.cmd("EVALSHA").arg("abc").arg(1).arg("foo").arg("x")));
+        assertEquals(12182, ClusterSlots.getSlot(
+            RedisCommand.cmd("XREAD").arg("COUNT").arg(2).arg("STREAMS").arg("foo").arg("0")));
+    }
+
+    @Test
+    public void testGetSlotCommandKeyless() {
+        assertEquals(-1, ClusterSlots.getSlot(RedisCommand.cmd("PING")));
+        assertEquals(-1, ClusterSlots.getSlot(RedisCommand.cmd("INFO").arg("server")));
+        assertEquals(-1, ClusterSlots.getSlot(RedisCommand.cmd("EVAL").arg("return 1").arg(0)));
+        assertEquals(-1, ClusterSlots.getSlot(RedisCommand.cmd("XREAD").arg("COUNT").arg(2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetSlotStreamed() {
+        ClusterSlots.getSlot(RespArgument.of(3, Channels.newChannel(new ByteArrayInputStream(new byte[3]))));
+    }
+}
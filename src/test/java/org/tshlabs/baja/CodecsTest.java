@@ -0,0 +1,179 @@
+package org.tshlabs.baja;
+
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespEncoder;
+import org.tshlabs.baja.protocol.RespErrResponse;
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CodecsTest {
+
+    private static ByteBuffer bytes(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    private static String encoded(Codec<?> codec, Object value) {
+        @SuppressWarnings("unchecked")
+        final Codec<Object> c = (Codec<Object>) codec;
+        return RedisCommand.cmd("SET").arg(value, c).getArgs().get(1);
+    }
+
+    private static RedisConnection connection(String replies) {
+        return new RedisConnection(
+            new RespInputBuffer(new ByteArrayInputStream(replies.getBytes(StandardCharsets.UTF_8))),
+            new ByteArrayOutputStream(),
+            RespEncoder.getInstance(),
+            RespParser.getInstance());
+    }
+
+    @Test
+    public void testLongRoundTrip() {
+        for (long value : new long[]{0, 7, -7, 10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            final String text = encoded(Codecs.LONG, value);
+            assertEquals(String.valueOf(value), text);
+            assertEquals(value, (long) Codecs.LONG.decode(bytes(text)));
+        }
+    }
+
+    @Test
+    public void testLongDecodeIgnoresBytesOutsideBuffer() {
+        final ByteBuffer buffer = ByteBuffer.wrap("xx-42yy".getBytes(StandardCharsets.US_ASCII));
+        buffer.position(2).limit(5);
+        assertEquals(-42L, (long) Codecs.LONG.decode(buffer));
+        assertEquals(2, buffer.position());
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testLongDecodeOverflow() {
+        Codecs.LONG.decode(bytes("9223372036854775808"));
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testLongDecodeNotNumber() {
+        Codecs.LONG.decode(bytes("12a"));
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testLongDecodeEmpty() {
+        Codecs.LONG.decode(bytes(""));
+    }
+
+    @Test
+    public void testDoubleDecode() {
+        for (String text : Arrays.asList("0", "3.14", "-2.5", ".5", "123456789012345", "0.1", "1.7976931348623157E308",
+            "1234567890.1234567", "1e-7", "4.9E-324", "10.")) {
+            assertEquals(text, Double.parseDouble(text), Codecs.DOUBLE.decode(bytes(text)), 0.0);
+        }
+
+        assertEquals(Double.POSITIVE_INFINITY, Codecs.DOUBLE.decode(bytes("inf")), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, Codecs.DOUBLE.decode(bytes("-inf")), 0.0);
+    }
+
+    @Test
+    public void testDoubleEncode() {
+        assertEquals("3.14", encoded(Codecs.DOUBLE, 3.14));
+        assertEquals("42", encoded(Codecs.DOUBLE, 42.0));
+        assertEquals("-inf", encoded(Codecs.DOUBLE, Double.NEGATIVE_INFINITY));
+        assertEquals(0.1, Codecs.DOUBLE.decode(bytes(encoded(Codecs.DOUBLE, 0.1))), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDoubleEncodeNaN() {
+        Codecs.DOUBLE.encode(Double.NaN);
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testDoubleDecodeInvalid() {
+        Codecs.DOUBLE.decode(bytes("abc"));
+    }
+
+    @Test
+    public void testUtf8() {
+        assertEquals("héllo", encoded(Codecs.UTF8, "héllo"));
+        assertEquals("héllo", Codecs.UTF8.decode(bytes("héllo")));
+
+        final char[] large = new char[100_000];
+        Arrays.fill(large, 'x');
+        assertEquals(new String(large), Codecs.UTF8.decode(bytes(new String(large))));
+    }
+
+    @Test
+    public void testBytes() {
+        final byte[] value = {0, 1, (byte) 0xff};
+        assertArrayEquals(value, Codecs.BYTES.decode(ByteBuffer.wrap(value).asReadOnlyBuffer()));
+        assertEquals(3, Codecs.BYTES.encode(value).getBytes().remaining());
+    }
+
+    @Test
+    public void testDecodeReply() {
+        assertEquals(12L, Codecs.decodeReply(Codecs.LONG, "12"));
+        assertEquals(12L, Codecs.decodeReply(Codecs.LONG, 12L));
+        assertNull(Codecs.decodeReply(Codecs.LONG, null));
+
+        final RespErrResponse err = new RespErrResponse("ERR bad");
+        assertSame(err, Codecs.decodeReply(Codecs.LONG, err));
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testDecodeReplyArray() {
+        Codecs.decodeReply(Codecs.UTF8, Collections.singletonList("a"));
+    }
+
+    @Test
+    public void testExecutedAsValue() {
+        final RedisConnection connection = connection("$5\r\n-1234\r\n$-1\r\n$4\r\n2.75\r\n");
+        assertEquals(-1234L, (long) RedisCommand.cmd("GET").arg("a").query(connection).asValue(Codecs.LONG));
+        assertNull(RedisCommand.cmd("GET").arg("b").query(connection).asValue(Codecs.LONG));
+        assertEquals(2.75, RedisCommand.cmd("GET").arg("c").query(connection).asValue(Codecs.DOUBLE), 0.0);
+    }
+
+    @Test
+    public void testExecutedAsValueNonBulk() {
+        final RedisConnection connection = connection(":42\r\n+7\r\n,2.5\r\n");
+        assertEquals(42L, (long) RedisCommand.cmd("INCRBY").arg("a").arg(2).query(connection).asValue(Codecs.LONG));
+        assertEquals(7L, (long) RedisCommand.cmd("ECHO").arg("7").query(connection).asValue(Codecs.LONG));
+        assertEquals(2.5, RedisCommand.cmd("INCRBYFLOAT").arg("b").arg(0.5).query(connection).asValue(Codecs.DOUBLE),
+            0.0);
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testExecutedAsValueArray() {
+        final RedisConnection connection = connection("*0\r\n");
+        RedisCommand.cmd("KEYS").arg("*").query(connection).asValue(Codecs.LONG);
+    }
+
+    @Test
+    public void testQueuedAsValue() {
+        final RedisConnection connection = connection("$2\r\n42\r\n$3\r\nabc\r\n$1\r\n7\r\n");
+        final Pipeline pipeline = connection.pipeline();
+        final Result<Long> first = RedisCommand.cmd("GET").arg("a").queue(pipeline).asValue(Codecs.LONG);
+        final Result<Long> second = RedisCommand.cmd("GET").arg("b").queue(pipeline).asValue(Codecs.LONG);
+        final Result<Long> third = RedisCommand.cmd("GET").arg("c").queue(pipeline).asValue(Codecs.LONG);
+        pipeline.execute();
+
+        assertEquals(42L, (long) first.get());
+        assertEquals(7L, (long) third.get());
+
+        try {
+            second.get();
+        } catch (BajaTypeMismatchException e) {
+            assertEquals("Unexpected value for long abc", e.getMessage());
+            return;
+        }
+
+        throw new AssertionError("Expected invalid value to be reported");
+    }
+}
@@ -0,0 +1,82 @@
+package org.tshlabs.baja;
+
+import org.junit.Test;
+import org.tshlabs.baja.protocol.RespErrResponse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MultiKeySplitTest {
+
+    private static List<List<String>> parts(MultiKeySplit split) {
+        return split.getParts().stream().map(RedisCommand::getArgs).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testOfNotSplittable() {
+        assertNull(MultiKeySplit.of(RedisCommand.cmd("GET").arg("foo")));
+        assertNull(MultiKeySplit.of(RedisCommand.cmd("MSETNX").arg("foo").arg("1").arg("bar").arg("2")));
+    }
+
+    @Test
+    public void testOfSingleSlot() {
+        assertNull(MultiKeySplit.of(RedisCommand.cmd("MGET").arg("foo")));
+        assertNull(MultiKeySplit.of(RedisCommand.cmd("MGET").arg("{foo}a").arg("{foo}b")));
+    }
+
+    @Test
+    public void testOfMalformedMset() {
+        assertNull(MultiKeySplit.of(RedisCommand.cmd("MSET").arg("foo").arg("1").arg("bar")));
+    }
+
+    @Test
+    public void testOfSplitsBySlot() {
+        final MultiKeySplit split = MultiKeySplit.of(RedisCommand.cmd("mget")
+            .arg("foo").arg("bar").arg("{foo}x"));
+
+        assertEquals(Arrays.asList(
+            Arrays.asList("MGET", "foo", "{foo}x"),
+            Arrays.asList("MGET", "bar")), parts(split));
+    }
+
+    @Test
+    public void testOfSplitsPairs() {
+        final MultiKeySplit split = MultiKeySplit.of(RedisCommand.cmd("MSET")
+            .arg("foo").arg("1").arg("bar").arg("2"));
+
+        assertEquals(Arrays.asList(
+            Arrays.asList("MSET", "foo", "1"),
+            Arrays.asList("MSET", "bar", "2")), parts(split));
+        assertEquals("OK", split.merge(Arrays.asList("OK", "OK")));
+    }
+
+    @Test
+    public void testMergeValuesInKeyOrder() {
+        final MultiKeySplit split = MultiKeySplit.of(RedisCommand.cmd("MGET")
+            .arg("foo").arg("bar").arg("{foo}x").arg("baz"));
+
+        // Parts are "foo" and "{foo}x", then "bar", then "baz"
+        final Object merged = split.merge(Arrays.asList(
+            Arrays.asList("1", null), Arrays.asList("2"), Arrays.asList("4")));
+
+        assertEquals(Arrays.asList("1", "2", null, "4"), merged);
+    }
+
+    @Test
+    public void testMergeSum() {
+        final MultiKeySplit split = MultiKeySplit.of(RedisCommand.cmd("DEL").arg("foo").arg("bar"));
+        assertEquals(3L, split.merge(Arrays.asList(1L, 2L)));
+    }
+
+    @Test
+    public void testMergeError() {
+        final RespErrResponse error = new RespErrResponse("ERR bad");
+        final MultiKeySplit split = MultiKeySplit.of(RedisCommand.cmd("DEL").arg("foo").arg("bar"));
+        assertSame(error, split.merge(Arrays.asList(1L, error)));
+    }
+}
@@ -0,0 +1,226 @@
+package org.tshlabs.baja;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.protocol.RespErrResponse;
+import org.tshlabs.baja.protocol.RespPush;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NearCacheTest {
+
+    @Mock
+    private RedisConnection connection;
+
+    private NearCache cache;
+
+    @Before
+    public void setup() {
+        cache = NearCache.builder(connection).maxSize(2).build();
+    }
+
+    private static RedisCommand get(String key) {
+        return RedisCommand.cmd("GET").arg(key);
+    }
+
+    private static RespPush invalidate(Object keys) {
+        return new RespPush(Arrays.asList("invalidate", keys));
+    }
+
+    @Test
+    public void testBuildEnablesTracking() {
+        verify(connection).hello(3);
+        verify(connection).setPushListener(any());
+        verify(connection).writeRawCommand(RedisCommand.cmd("CLIENT").arg("TRACKING").arg("ON").getRawArgs());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildInvalidMaxSize() {
+        NearCache.builder(connection).maxSize(0).build();
+    }
+
+    @Test
+    public void testQueryHit() {
+        when(connection.readReply()).thenReturn("bar");
+
+        assertEquals("bar", get("foo").query(cache).asString());
+        assertEquals("bar", get("foo").query(cache).asString());
+
+        verify(connection, times(1)).writeRawCommand(get("foo").getRawArgs());
+        verify(connection, times(2)).readPendingPushes();
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testQueryNotCacheable() {
+        when(connection.readReply()).thenReturn(1L);
+
+        assertEquals(1L, RedisCommand.cmd("INCR").arg("foo").query(cache).asLong());
+        assertEquals(1L, RedisCommand.cmd("INCR").arg("foo").query(cache).asLong());
+
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testQueryErrorNotCached() {
+        when(connection.readReply()).thenReturn(new RespErrResponse("WRONGTYPE"), "bar");
+
+        try {
+            get("foo").query(cache);
+            fail("Expected an error reply");
+        } catch (BajaProtocolErrorException e) {
+            assertEquals("WRONGTYPE", e.getMessage());
+        }
+
+        assertEquals(0, cache.size());
+        assertEquals("bar", get("foo").query(cache).asString());
+    }
+
+    @Test
+    public void testQueryResourceExceptionClears() {
+        when(connection.readReply()).thenReturn("bar").thenThrow(new BajaResourceException("closed"));
+        get("foo").query(cache);
+
+        try {
+            get("baz").query(cache);
+            fail("Expected an I/O error");
+        } catch (BajaResourceException e) {
+            assertEquals("closed", e.getMessage());
+        }
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        when(connection.readReply()).thenReturn("v1", "v2", "v3");
+        get("foo").query(cache);
+        RedisCommand.cmd("STRLEN").arg("foo").query(cache);
+
+        cache.onPush(invalidate(Collections.singletonList("foo")));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getInvalidations());
+
+        assertEquals("v3", get("foo").query(cache).asString());
+    }
+
+    @Test
+    public void testInvalidateSecondKey() {
+        when(connection.readReply()).thenReturn(1L, 2L);
+        final RedisCommand exists = RedisCommand.cmd("EXISTS").arg("foo").arg("bar");
+        assertEquals(1L, exists.query(cache).asLong());
+
+        cache.onPush(invalidate(Collections.singletonList("bar")));
+        assertEquals(2L, exists.query(cache).asLong());
+    }
+
+    @Test
+    public void testInvalidateBinaryKeyReused() {
+        when(connection.readReply()).thenReturn("v1", "v2");
+        final byte[] key = "foo".getBytes(StandardCharsets.UTF_8);
+        RedisCommand.cmd("GET").arg(key).query(cache);
+
+        // The caller may reuse the array once the command has been sent
+        key[0] = 'b';
+
+        cache.onPush(invalidate(Collections.singletonList("foo")));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        when(connection.readReply()).thenReturn("v1", "v2");
+        get("foo").query(cache);
+        get("bar").query(cache);
+
+        cache.onPush(invalidate(null));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getInvalidations());
+    }
+
+    @Test
+    public void testIgnoresOtherPushes() {
+        when(connection.readReply()).thenReturn("v1");
+        get("foo").query(cache);
+
+        cache.onPush(new RespPush(Arrays.asList("message", "foo", "hello")));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEvictLru() {
+        when(connection.readReply()).thenReturn("a", "b", "c", "b2");
+        get("a").query(cache);
+        get("b").query(cache);
+        get("a").query(cache);
+        get("c").query(cache);
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals("a", get("a").query(cache).asString());
+        assertEquals("b2", get("b").query(cache).asString());
+    }
+
+    @Test
+    public void testEvictLfu() {
+        final NearCache lfu = NearCache.builder(connection)
+            .maxSize(2)
+            .eviction(NearCache.Eviction.LFU)
+            .build();
+
+        when(connection.readReply()).thenReturn("a", "b", "c", "b2");
+        get("a").query(lfu);
+        get("a").query(lfu);
+        get("b").query(lfu);
+        get("b").query(lfu);
+        get("a").query(lfu);
+
+        // Both have been used, but "b" less often so it is evicted
+        get("c").query(lfu);
+        assertEquals(1, lfu.getEvictions());
+        assertEquals("a", get("a").query(lfu).asString());
+        assertEquals("b2", get("b").query(lfu).asString());
+    }
+
+    @Test
+    public void testClose() {
+        when(connection.readReply()).thenReturn("bar");
+        get("foo").query(cache);
+
+        cache.close();
+        assertEquals(0, cache.size());
+        verify(connection).setPushListener(null);
+        verify(connection).writeRawCommand(RedisCommand.cmd("CLIENT").arg("TRACKING").arg("OFF").getRawArgs());
+    }
+
+    @Test
+    public void testCustomCommands() {
+        final NearCache custom = NearCache.builder(connection)
+            .commands(Collections.singletonList("json.get"))
+            .build();
+
+        when(connection.readReply()).thenReturn("{}");
+        RedisCommand.cmd("JSON.GET").arg("doc").query(custom);
+        RedisCommand.cmd("JSON.GET").arg("doc").query(custom);
+        get("foo").query(custom);
+
+        assertEquals(1, custom.getHits());
+        assertEquals(1, custom.size());
+    }
+}
@@ -0,0 +1,160 @@
+package org.tshlabs.baja;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.protocol.RespArgument;
+import org.tshlabs.baja.protocol.RespErrResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PipelineTest {
+
+    @Mock
+    private RedisConnection connection;
+
+    private static List<RespArgument> args(String... args) {
+        final RespArgument[] raw = new RespArgument[args.length];
+        for (int i = 0; i < args.length; i++) {
+            raw[i] = RespArgument.of(args[i]);
+        }
+
+        return Arrays.asList(raw);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChunkSize() {
+        new Pipeline(connection, 0);
+    }
+
+    @Test
+    public void testExecuteNoCommands() {
+        new Pipeline(connection).execute();
+        verifyZeroInteractions(connection);
+    }
+
+    @Test
+    public void testExecuteWithResults() {
+        when(connection.readReply())
+            .thenReturn(123L)
+            .thenReturn("zip");
+
+        final Pipeline pipeline = new Pipeline(connection);
+        final Result<Long> res1 = RedisCommand.cmd("INCR").arg("foo").queue(pipeline).asLong();
+        final Result<String> res2 = RedisCommand.cmd("GET").arg("baz").queue(pipeline).asString();
+        pipeline.execute();
+
+        verify(connection).writeRawMultiCommand(Arrays.asList(args("INCR", "foo"), args("GET", "baz")));
+        assertEquals(123L, (long) res1.get());
+        assertEquals("zip", res2.get());
+    }
+
+    @Test
+    public void testExecuteInChunks() {
+        when(connection.readReply())
+            .thenReturn(1L)
+            .thenReturn(2L)
+            .thenReturn(3L);
+
+        final Pipeline pipeline = new Pipeline(connection, 2);
+        final Result<Long> res1 = RedisCommand.cmd("INCR").arg("a").queue(pipeline).asLong();
+        final Result<Long> res2 = RedisCommand.cmd("INCR").arg("b").queue(pipeline).asLong();
+        final Result<Long> res3 = RedisCommand.cmd("INCR").arg("c").queue(pipeline).asLong();
+        pipeline.execute();
+
+        final InOrder inOrder = inOrder(connection);
+        inOrder.verify(connection).writeRawMultiCommand(Arrays.asList(args("INCR", "a"), args("INCR", "b")));
+        inOrder.verify(connection, times(2)).readReply();
+        inOrder.verify(connection).writeRawMultiCommand(Collections.singletonList(args("INCR", "c")));
+        inOrder.verify(connection).readReply();
+
+        assertEquals(1L, (long) res1.get());
+        assertEquals(2L, (long) res2.get());
+        assertEquals(3L, (long) res3.get());
+    }
+
+    @Test
+    public void testExecuteErrorReply() {
+        final RespErrResponse err = new RespErrResponse("ERR wrong type");
+        when(connection.readReply())
+            .thenReturn(err)
+            .thenReturn("OK");
+
+        final Pipeline pipeline = new Pipeline(connection);
+        final Result<Object> res1 = RedisCommand.cmd("INCR").arg("foo").queue(pipeline).asObject();
+        final Result<String> res2 = RedisCommand.cmd("SET").arg("foo").arg("bar").queue(pipeline).asString();
+        pipeline.execute();
+
+        assertEquals(err, res1.get());
+        assertEquals("OK", res2.get());
+    }
+
+    @Test
+    public void testExecuteEmptiesPipeline() {
+        when(connection.readReply()).thenReturn("OK");
+
+        final Pipeline pipeline = new Pipeline(connection);
+        RedisCommand.cmd("SET").arg("foo").arg("bar").queue(pipeline).discard();
+        assertEquals(1, pipeline.size());
+
+        pipeline.execute();
+        assertEquals(0, pipeline.size());
+
+        final Result<String> res = RedisCommand.cmd("SET").arg("foo").arg("baz").queue(pipeline).asString();
+        pipeline.execute();
+        assertEquals("OK", res.get());
+    }
+
+    @Test
+    public void testExecuteResourceException() {
+        when(connection.readReply())
+            .thenThrow(new BajaResourceException("I/O Error!"));
+
+        final Pipeline pipeline = new Pipeline(connection);
+        final Result<Long> res = RedisCommand.cmd("GET").arg("foo").queue(pipeline).asLong();
+
+        try {
+            pipeline.execute();
+        } catch (BajaResourceException e) {
+            // expected
+        }
+
+        assertFalse(res.isDone());
+        assertEquals(0, pipeline.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExecuteEofWhileWrite() {
+        when(connection.writeRawMultiCommand(anyList()))
+            .thenThrow(new IllegalStateException("EOF"));
+
+        final Pipeline pipeline = new Pipeline(connection);
+        RedisCommand.cmd("GET").arg("foo").queue(pipeline).asLong();
+        pipeline.execute();
+    }
+
+    @Test
+    public void testConnectionPipeline() {
+        when(connection.pipeline()).thenCallRealMethod();
+        when(connection.readReply()).thenReturn("bar");
+
+        final Pipeline pipeline = connection.pipeline();
+        final Result<String> res = RedisCommand.cmd("GET").arg("foo").queue(pipeline).asString();
+        pipeline.execute();
+
+        assertTrue(res.isDone());
+        assertEquals("bar", res.get());
+    }
+}
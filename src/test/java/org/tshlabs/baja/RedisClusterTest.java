@@ -0,0 +1,509 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaRedirectException;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.protocol.RespErrResponse;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.tshlabs.baja.StubRedisServer.bulk;
+
+public class RedisClusterTest {
+
+    // Slot of the key "foo"
+    private static final int FOO_SLOT = 12182;
+
+    private StubRedisServer first;
+
+    private StubRedisServer second;
+
+    private volatile Function<List<String>, String> firstResponder;
+
+    private volatile Function<List<String>, String> secondResponder;
+
+    private RedisCluster cluster;
+
+    private static String slots(int port) {
+        return "*1\r\n*3\r\n:0\r\n:16383\r\n*3\r\n$9\r\n127.0.0.1\r\n:" + port + "\r\n$2\r\nid\r\n";
+    }
+
+    @Before
+    public void setup() throws Exception {
+        first = new StubRedisServer(command -> firstResponder.apply(command));
+        second = new StubRedisServer(command -> secondResponder.apply(command));
+
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? slots(first.getPort()) : "$3\r\none\r\n";
+        secondResponder = command -> "$3\r\ntwo\r\n";
+    }
+
+    @After
+    public void teardown() {
+        if (cluster != null) {
+            cluster.close();
+        }
+
+        first.close();
+        second.close();
+    }
+
+    // Slots 0-8191 on the first node, including "bar" and "baz", and the rest
+    // on the second node, including "foo"
+    private String splitSlots() {
+        return "*2\r\n" +
+            "*3\r\n:0\r\n:8191\r\n*2\r\n$9\r\n127.0.0.1\r\n:" + first.getPort() + "\r\n" +
+            "*3\r\n:8192\r\n:16383\r\n*2\r\n$9\r\n127.0.0.1\r\n:" + second.getPort() + "\r\n";
+    }
+
+    // All slots on the first node with the second node as a replica
+    private String replicaSlots() {
+        return "*1\r\n*4\r\n:0\r\n:16383\r\n" +
+            "*2\r\n$9\r\n127.0.0.1\r\n:" + first.getPort() + "\r\n" +
+            "*2\r\n$9\r\n127.0.0.1\r\n:" + second.getPort() + "\r\n";
+    }
+
+    // Reply to MGET with the given value for each key and to DEL with the number of keys
+    private static String multiKey(List<String> command, String value) {
+        final int keys = command.size() - 1;
+        if (command.get(0).equals("DEL")) {
+            return ":" + keys + "\r\n";
+        }
+
+        final StringBuilder out = new StringBuilder("*" + keys + "\r\n");
+        for (int i = 0; i < keys; i++) {
+            out.append("$").append(value.length()).append("\r\n").append(value).append("\r\n");
+        }
+
+        return out.toString();
+    }
+
+    private RedisCluster.Builder builder(StubRedisServer... seeds) {
+        return RedisCluster.builder(Arrays.stream(seeds)
+            .map(s -> new ClusterNode("127.0.0.1", s.getPort()))
+            .collect(Collectors.toList()))
+            .poolConfig(pool -> pool.evictionInterval(0, TimeUnit.SECONDS));
+    }
+
+    private static long count(Queue<List<String>> received, String command) {
+        return received.stream().filter(c -> c.get(0).equals(command)).count();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoSeeds() {
+        RedisCluster.builder(Collections.emptyList());
+    }
+
+    @Test
+    public void testBuildFetchesSlots() {
+        cluster = builder(first).build();
+
+        final ClusterNode node = new ClusterNode("127.0.0.1", first.getPort());
+        assertEquals(node, cluster.getNode(0));
+        assertEquals(node, cluster.getNode(16383));
+        assertEquals(Collections.singleton(node), cluster.getNodes());
+    }
+
+    @Test
+    public void testBuildSkipsUnreachableSeed() throws Exception {
+        final StubRedisServer dead = new StubRedisServer(command -> null);
+        dead.close();
+
+        cluster = builder(dead, first).build();
+        assertEquals(new ClusterNode("127.0.0.1", first.getPort()), cluster.getNode(FOO_SLOT));
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testBuildNoReachableSeeds() throws Exception {
+        final StubRedisServer dead = new StubRedisServer(command -> null);
+        dead.close();
+
+        builder(dead).build();
+    }
+
+    @Test
+    public void testQueryRoutesToSlotOwner() {
+        firstResponder = command -> slots(second.getPort());
+        cluster = builder(first).build();
+
+        assertEquals("two", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+        assertEquals(Arrays.asList("GET", "foo"), second.getReceived().peek());
+    }
+
+    @Test
+    public void testQueryMoved() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ?
+            slots(first.getPort()) : "-MOVED " + FOO_SLOT + " 127.0.0.1:" + second.getPort() + "\r\n";
+        cluster = builder(first).build();
+
+        assertEquals("two", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+        assertEquals("two", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+
+        // The slot was updated after the first redirect
+        assertEquals(1, count(first.getReceived(), "GET"));
+        assertEquals(2, count(second.getReceived(), "GET"));
+        assertEquals(new ClusterNode("127.0.0.1", second.getPort()), cluster.getNode(FOO_SLOT));
+        assertEquals(new ClusterNode("127.0.0.1", first.getPort()), cluster.getNode(FOO_SLOT - 1));
+    }
+
+    @Test
+    public void testQueryAsk() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ?
+            slots(first.getPort()) : "-ASK " + FOO_SLOT + " 127.0.0.1:" + second.getPort() + "\r\n";
+        secondResponder = command -> command.get(0).equals("ASKING") ? "+OK\r\n" : ":42\r\n";
+        cluster = builder(first).build();
+
+        assertEquals(42L, RedisCommand.cmd("INCR").arg("foo").query(cluster).asLong());
+        assertEquals(42L, RedisCommand.cmd("INCR").arg("foo").query(cluster).asLong());
+
+        // The slot isn't updated for ASK redirects
+        assertEquals(2, count(first.getReceived(), "INCR"));
+        assertEquals(2, count(second.getReceived(), "ASKING"));
+        assertEquals(new ClusterNode("127.0.0.1", first.getPort()), cluster.getNode(FOO_SLOT));
+    }
+
+    @Test
+    public void testQueryTooManyRedirects() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ?
+            slots(first.getPort()) : "-MOVED " + FOO_SLOT + " :" + first.getPort() + "\r\n";
+        cluster = builder(first).maxRedirects(2).build();
+
+        try {
+            RedisCommand.cmd("GET").arg("foo").query(cluster).asString();
+            fail("Expected too many redirects");
+        } catch (BajaRedirectException e) {
+            assertFalse(e.isAsk());
+            assertEquals(FOO_SLOT, e.getSlot());
+        }
+
+        assertEquals(3, count(first.getReceived(), "GET"));
+    }
+
+    @Test
+    public void testQueryKeyless() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? slots(first.getPort()) : "+PONG\r\n";
+        cluster = builder(first).build();
+
+        assertEquals("PONG", RedisCommand.cmd("PING").query(cluster).asString());
+    }
+
+    @Test
+    public void testQueryUnreachableRefreshes() throws Exception {
+        final int deadPort;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            deadPort = socket.getLocalPort();
+        }
+
+        firstResponder = command -> slots(deadPort);
+        cluster = builder(first).build();
+
+        final Queue<String> commands = new ConcurrentLinkedQueue<>();
+        firstResponder = command -> {
+            commands.add(command.get(0));
+            return slots(first.getPort());
+        };
+
+        try {
+            RedisCommand.cmd("GET").arg("foo").query(cluster).asString();
+            fail("Expected an I/O error");
+        } catch (BajaResourceException e) {
+            assertTrue(commands.contains("CLUSTER"));
+        }
+
+        assertEquals(new ClusterNode("127.0.0.1", first.getPort()), cluster.getNode(FOO_SLOT));
+    }
+
+    @Test
+    public void testPipelineGroupsByNode() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() : "$3\r\none\r\n";
+        cluster = builder(first).build();
+
+        final ClusterPipeline pipeline = cluster.pipeline();
+        final Result<String> foo1 = RedisCommand.cmd("GET").arg("foo").queue(pipeline).asString();
+        final Result<String> bar = RedisCommand.cmd("GET").arg("bar").queue(pipeline).asString();
+        final Result<String> foo2 = RedisCommand.cmd("GET").arg("foo").queue(pipeline).asString();
+        assertEquals(3, pipeline.size());
+
+        pipeline.execute();
+
+        assertEquals(0, pipeline.size());
+        assertEquals("two", foo1.get());
+        assertEquals("one", bar.get());
+        assertEquals("two", foo2.get());
+        assertEquals(1, count(first.getReceived(), "GET"));
+        assertEquals(2, count(second.getReceived(), "GET"));
+    }
+
+    @Test
+    public void testPipelineMoved() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() :
+            "-MOVED 5061 127.0.0.1:" + second.getPort() + "\r\n";
+        cluster = builder(first).build();
+
+        final ClusterPipeline pipeline = cluster.pipeline();
+        final Result<String> bar = RedisCommand.cmd("GET").arg("bar").queue(pipeline).asString();
+        final Result<String> foo = RedisCommand.cmd("GET").arg("foo").queue(pipeline).asString();
+        pipeline.execute();
+
+        assertEquals("two", bar.get());
+        assertEquals("two", foo.get());
+        assertEquals(new ClusterNode("127.0.0.1", second.getPort()), cluster.getNode(5061));
+    }
+
+    @Test
+    public void testPipelineAsk() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() :
+            "-ASK 5061 127.0.0.1:" + second.getPort() + "\r\n";
+        secondResponder = command -> command.get(0).equals("ASKING") ? "+OK\r\n" : "$3\r\ntwo\r\n";
+        cluster = builder(first).build();
+
+        final ClusterPipeline pipeline = cluster.pipeline();
+        final Result<String> bar = RedisCommand.cmd("GET").arg("bar").queue(pipeline).asString();
+        final Result<String> foo = RedisCommand.cmd("GET").arg("foo").queue(pipeline).asString();
+        pipeline.execute();
+
+        assertEquals("two", bar.get());
+        assertEquals("two", foo.get());
+        assertEquals(1, count(second.getReceived(), "ASKING"));
+        assertEquals(new ClusterNode("127.0.0.1", first.getPort()), cluster.getNode(5061));
+    }
+
+    @Test
+    public void testPipelineErrorReply() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() : "-ERR bad\r\n";
+        cluster = builder(first).build();
+
+        final ClusterPipeline pipeline = cluster.pipeline();
+        final Result<Object> bar = RedisCommand.cmd("GET").arg("bar").queue(pipeline).asObject();
+        final Result<String> foo = RedisCommand.cmd("GET").arg("foo").queue(pipeline).asString();
+        pipeline.execute();
+
+        assertEquals("ERR bad", ((RespErrResponse) bar.get()).getMessage());
+        assertEquals("two", foo.get());
+    }
+
+    @Test
+    public void testPipelineUnreachableNode() throws Exception {
+        final int deadPort;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            deadPort = socket.getLocalPort();
+        }
+
+        firstResponder = command -> "*2\r\n" +
+            "*3\r\n:0\r\n:8191\r\n*2\r\n$9\r\n127.0.0.1\r\n:" + deadPort + "\r\n" +
+            "*3\r\n:8192\r\n:16383\r\n*2\r\n$9\r\n127.0.0.1\r\n:" + second.getPort() + "\r\n";
+        cluster = builder(first).build();
+
+        final ClusterPipeline pipeline = cluster.pipeline();
+        final Result<String> bar = RedisCommand.cmd("GET").arg("bar").queue(pipeline).asString();
+        final Result<String> foo = RedisCommand.cmd("GET").arg("foo").queue(pipeline).asString();
+
+        try {
+            pipeline.execute();
+            fail("Expected an I/O error");
+        } catch (BajaResourceException e) {
+            // expected
+        }
+
+        assertFalse(bar.isDone());
+        assertEquals("two", foo.get());
+        assertEquals(0, pipeline.size());
+    }
+
+    @Test
+    public void testPipelineSplitsMultiKeyCommands() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() : multiKey(command, "one");
+        secondResponder = command -> multiKey(command, "two");
+        cluster = builder(first).build();
+
+        final ClusterPipeline pipeline = cluster.pipeline();
+        final Result<List<String>> mget = RedisCommand.cmd("MGET")
+            .arg("foo").arg("bar").arg("{foo}x").arg("baz").queue(pipeline).asStringArray();
+        final Result<Long> del = RedisCommand.cmd("DEL").arg("foo").arg("bar").arg("baz").queue(pipeline).asLong();
+        pipeline.execute();
+
+        assertEquals(Arrays.asList("two", "one", "two", "one"), mget.get());
+        assertEquals(Long.valueOf(3), del.get());
+
+        // One command per slot, not per node
+        assertEquals(2, count(first.getReceived(), "MGET"));
+        assertEquals(1, count(second.getReceived(), "MGET"));
+    }
+
+    @Test
+    public void testQuerySplitsMultiKeyCommands() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() : multiKey(command, "one");
+        secondResponder = command -> multiKey(command, "two");
+        cluster = builder(first).build();
+
+        assertEquals(Arrays.asList("one", "two"),
+            RedisCommand.cmd("MGET").arg("bar").arg("foo").query(cluster).asStringArray());
+        assertEquals(2L, RedisCommand.cmd("DEL").arg("bar").arg("foo").query(cluster).asLong());
+        assertTrue(second.getReceived().contains(Arrays.asList("MGET", "foo")));
+        assertTrue(second.getReceived().contains(Arrays.asList("DEL", "foo")));
+    }
+
+    @Test
+    public void testQuerySplitMset() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() : "+OK\r\n";
+        secondResponder = command -> "+OK\r\n";
+        cluster = builder(first).build();
+
+        assertEquals("OK", RedisCommand.cmd("MSET").arg("foo").arg("1").arg("bar").arg("2").query(cluster).asString());
+        assertTrue(first.getReceived().contains(Arrays.asList("MSET", "bar", "2")));
+        assertTrue(second.getReceived().contains(Arrays.asList("MSET", "foo", "1")));
+    }
+
+    @Test(expected = BajaProtocolErrorException.class)
+    public void testQuerySplitError() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() : "-ERR bad\r\n";
+        secondResponder = command -> ":1\r\n";
+        cluster = builder(first).build();
+
+        RedisCommand.cmd("DEL").arg("foo").arg("bar").query(cluster).asLong();
+    }
+
+    @Test
+    public void testReadFromPrimaryByDefault() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? replicaSlots() : "$3\r\none\r\n";
+        cluster = builder(first).build();
+
+        assertEquals(Collections.singletonList(new ClusterNode("127.0.0.1", second.getPort())),
+            cluster.getReplicas(FOO_SLOT));
+        assertEquals("one", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+        assertEquals("one", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+        assertTrue(second.getReceived().isEmpty());
+    }
+
+    @Test
+    public void testReadFromLowestLatency() {
+        firstResponder = command -> {
+            if (command.get(0).equals("CLUSTER")) {
+                return replicaSlots();
+            }
+
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return "$3\r\none\r\n";
+        };
+        secondResponder = command -> command.get(0).equals("READONLY") ? "+OK\r\n" : "$3\r\ntwo\r\n";
+        cluster = builder(first).readFrom(RedisCluster.ReadFrom.LOWEST_LATENCY).build();
+
+        // Neither node has been used so the first read goes to the primary, then
+        // the unused replica, which stays faster than the primary
+        assertEquals("one", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+        assertEquals("two", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+        assertEquals("two", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+
+        // Writes always go to the primary
+        assertEquals("one", RedisCommand.cmd("SET").arg("foo").arg("bar").query(cluster).asString());
+
+        assertEquals(1, count(second.getReceived(), "READONLY"));
+        assertEquals(2, count(second.getReceived(), "GET"));
+        assertEquals(0, count(second.getReceived(), "SET"));
+    }
+
+    @Test
+    public void testReadFromLeastOutstanding() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        firstResponder = command -> {
+            if (command.get(0).equals("CLUSTER")) {
+                return replicaSlots();
+            }
+
+            if (command.get(0).equals("READONLY")) {
+                return "+OK\r\n";
+            }
+
+            received.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return "$3\r\none\r\n";
+        };
+        secondResponder = command -> command.get(0).equals("READONLY") ? "+OK\r\n" : "$3\r\ntwo\r\n";
+        cluster = builder(first).readFrom(RedisCluster.ReadFrom.LEAST_OUTSTANDING).build();
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> slow = executor.submit(() ->
+                RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+
+            // The primary has a command outstanding so the replica is chosen
+            assertEquals("two", RedisCommand.cmd("GET").arg("foo").query(cluster).asString());
+
+            release.countDown();
+            assertEquals("one", slow.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Reply to SCAN with a single page of the given keys
+    private static String scanPage(String... keys) {
+        final StringBuilder out = new StringBuilder("*2\r\n" + bulk("0") + "*" + keys.length + "\r\n");
+        for (String key : keys) {
+            out.append(bulk(key));
+        }
+
+        return out.toString();
+    }
+
+    @Test
+    public void testScanAllNodes() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() : scanPage("bar", "baz");
+        secondResponder = command -> scanPage("foo");
+        cluster = builder(first).build();
+
+        final List<String> keys;
+        try (Stream<String> stream = cluster.scan(ScanCommand.scan().match("*"))) {
+            keys = stream.sorted().collect(Collectors.toList());
+        }
+
+        assertEquals(Arrays.asList("bar", "baz", "foo"), keys);
+        assertEquals(Arrays.asList("SCAN", "0", "MATCH", "*"), second.getReceived().peek());
+    }
+
+    @Test
+    public void testScanKeyUsesOwningNode() {
+        firstResponder = command -> command.get(0).equals("CLUSTER") ? splitSlots() : scanPage("wrong");
+        secondResponder = command -> scanPage("a", "b");
+        cluster = builder(first).build();
+
+        try (Stream<String> stream = cluster.scan(ScanCommand.sscan("foo"))) {
+            assertEquals(Arrays.asList("a", "b"), stream.sorted().collect(Collectors.toList()));
+        }
+
+        assertEquals(0, count(first.getReceived(), "SSCAN"));
+    }
+}
@@ -1,10 +1,17 @@
 package org.tshlabs.baja;
 
 import org.junit.Test;
+import org.tshlabs.baja.protocol.RespArgument;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -66,7 +73,42 @@ public class RedisCommandTest {
             .query(conn)
             .discard();
 
-        verify(conn).writeCommand(eq(Arrays.asList("SET", "foo", "123")));
+        verify(conn).writeRawCommand(eq(Arrays.asList(
+            RespArgument.of("SET"), RespArgument.of("foo"), RespArgument.of("123"))));
+    }
+
+    @Test
+    public void testArgBytes() {
+        final byte[] value = new byte[]{0, 1, 2};
+        final RedisCommand cmd = RedisCommand.cmd("SET").arg("foo").arg(value);
+        assertEquals(Arrays.asList(
+            RespArgument.of("SET"), RespArgument.of("foo"), RespArgument.of(value)), cmd.getRawArgs());
+    }
+
+    @Test
+    public void testArgBytesSlice() {
+        final byte[] value = new byte[]{0, 1, 2, 3};
+        final RedisCommand cmd = RedisCommand.cmd("SET").arg("foo").arg(value, 1, 2);
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2}), cmd.getRawArgs().get(2).getBytes());
+    }
+
+    @Test
+    public void testArgByteBuffer() {
+        final ByteBuffer value = ByteBuffer.wrap("bar".getBytes(StandardCharsets.UTF_8));
+        final RedisCommand cmd = RedisCommand.cmd("SET").arg("foo").arg(value);
+        assertEquals(Arrays.asList("SET", "foo", "bar"), cmd.getArgs());
+        assertEquals(0, value.position());
+    }
+
+    @Test
+    public void testArgStreamed() {
+        final ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(new byte[1024]));
+        final RedisCommand cmd = RedisCommand.cmd("SET").arg("foo").arg(1024, source);
+        final RespArgument arg = cmd.getRawArgs().get(2);
+
+        assertTrue(arg.isStreamed());
+        assertEquals(1024L, arg.getLength());
+        assertEquals(Arrays.asList("SET", "foo", "<1024 bytes>"), cmd.getArgs());
     }
 
     @Test
@@ -79,4 +121,15 @@ public class RedisCommandTest {
 
         verify(transaction).queue(cmd, res);
     }
+
+    @Test
+    public void testQueuePipeline() {
+        final Pipeline pipeline = mock(Pipeline.class);
+        final RedisCommand cmd = RedisCommand.cmd("GET").arg("foo");
+        final Result<String> res = cmd
+            .queue(pipeline)
+            .asString();
+
+        verify(pipeline).queue(cmd, res);
+    }
 }
@@ -0,0 +1,378 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RedisConnectionPoolTest {
+
+    private StubRedisServer server;
+
+    private AtomicInteger created;
+
+    private RedisConnectionFactory factory;
+
+    private RedisConnectionPool pool;
+
+    private static String reply(List<String> command) {
+        switch (command.get(0)) {
+            case "PING":
+                return "+PONG\r\n";
+            case "INCR":
+                return ":1\r\n";
+            case "GET":
+                return "$3\r\nbar\r\n";
+            default:
+                return "-ERR unknown command\r\n";
+        }
+    }
+
+    @Before
+    public void setup() throws Exception {
+        server = new StubRedisServer(RedisConnectionPoolTest::reply);
+        created = new AtomicInteger();
+
+        final SocketConnectionFactory sockets = new SocketConnectionFactory("127.0.0.1", server.getPort());
+        factory = () -> {
+            created.incrementAndGet();
+            return sockets.create();
+        };
+    }
+
+    @After
+    public void teardown() {
+        if (pool != null) {
+            pool.close();
+        }
+
+        server.close();
+    }
+
+    private RedisConnectionPool.Builder builder() {
+        return RedisConnectionPool.builder(factory).evictionInterval(0, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxTotal() {
+        builder().maxTotal(0).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMinIdle() {
+        builder().maxTotal(2).minIdle(3).build();
+    }
+
+    @Test
+    public void testBorrowReusesConnection() {
+        pool = builder().build();
+
+        final RedisConnection first = pool.borrow();
+        assertEquals(1, pool.getNumActive());
+        pool.release(first);
+        assertEquals(0, pool.getNumActive());
+        assertEquals(1, pool.getNumIdle());
+
+        final RedisConnection second = pool.borrow();
+        assertSame(first, second);
+        assertEquals(1, created.get());
+        pool.release(second);
+    }
+
+    @Test
+    public void testBorrowTimeout() {
+        pool = builder().maxTotal(1).borrowTimeout(50, TimeUnit.MILLISECONDS).build();
+        final RedisConnection conn = pool.borrow();
+
+        try {
+            pool.borrow();
+            fail("Expected timeout borrowing connection");
+        } catch (BajaResourceException e) {
+            // expected
+        }
+
+        pool.release(conn);
+        assertSame(conn, pool.borrow());
+    }
+
+    @Test
+    public void testBorrowFactoryFailureReleasesPermit() {
+        final AtomicInteger attempts = new AtomicInteger();
+        pool = RedisConnectionPool.builder(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new BajaResourceException("Connection refused");
+            }
+            return factory.create();
+        }).maxTotal(1).borrowTimeout(0, TimeUnit.SECONDS).evictionInterval(0, TimeUnit.SECONDS).build();
+
+        try {
+            pool.borrow();
+            fail("Expected factory failure");
+        } catch (BajaResourceException e) {
+            // expected
+        }
+
+        pool.release(pool.borrow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseNotBorrowed() {
+        pool = builder().build();
+        final RedisConnection conn = pool.borrow();
+        pool.release(conn);
+        pool.release(conn);
+    }
+
+    @Test
+    public void testInvalidate() {
+        pool = builder().build();
+        final RedisConnection first = pool.borrow();
+        pool.invalidate(first);
+
+        assertEquals(0, pool.getNumIdle());
+        final RedisConnection second = pool.borrow();
+        assertNotSame(first, second);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testTestOnBorrow() throws Exception {
+        pool = builder().testOnBorrow(true).build();
+        final RedisConnection first = pool.borrow();
+        // Make sure the server has accepted the connection before disconnecting it
+        RedisCommand.cmd("PING").query(first).discard();
+        pool.release(first);
+
+        server.disconnectClients();
+
+        final RedisConnection second = pool.borrow();
+        assertNotSame(first, second);
+        assertEquals("PONG", RedisCommand.cmd("PING").query(second).asString());
+    }
+
+    @Test
+    public void testWithConnection() {
+        pool = builder().build();
+        assertEquals(1L, (long) pool.withConnection(c -> RedisCommand.cmd("INCR").arg("foo").query(c).asLong()));
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testWithConnectionErrorReplyKeepsConnection() {
+        pool = builder().build();
+
+        try {
+            pool.withConnection(c -> RedisCommand.cmd("BOGUS").query(c).asString());
+            fail("Expected error reply");
+        } catch (BajaProtocolErrorException e) {
+            // expected
+        }
+
+        assertEquals(1, pool.getNumIdle());
+    }
+
+    @Test
+    public void testWithConnectionResourceErrorInvalidates() {
+        pool = builder().build();
+
+        try {
+            pool.withConnection(c -> {
+                throw new BajaResourceException("Broken pipe");
+            });
+            fail("Expected resource error");
+        } catch (BajaResourceException e) {
+            // expected
+        }
+
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testWithConnectionTypeMismatchInvalidates() {
+        pool = builder().build();
+
+        try {
+            pool.withConnection(c -> RedisCommand.cmd("GET").arg("foo").query(c).asLong());
+            fail("Expected type mismatch");
+        } catch (BajaTypeMismatchException e) {
+            // expected
+        }
+
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(0, pool.getNumActive());
+
+        // The unread part of the bulk string must not be read as the reply to this
+        assertEquals(1L, (long) pool.withConnection(c -> RedisCommand.cmd("INCR").arg("foo").query(c).asLong()));
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testEvictIdle() throws Exception {
+        pool = builder().idleTimeout(1, TimeUnit.MILLISECONDS).build();
+        final RedisConnection a = pool.borrow();
+        final RedisConnection b = pool.borrow();
+        pool.release(a);
+        pool.release(b);
+
+        Thread.sleep(10);
+        pool.evict();
+        assertEquals(0, pool.getNumIdle());
+    }
+
+    @Test
+    public void testEvictKeepsMinIdle() throws Exception {
+        pool = builder().minIdle(2).idleTimeout(1, TimeUnit.MILLISECONDS).build();
+
+        // Fills the pool up to the minimum
+        pool.evict();
+        assertEquals(2, pool.getNumIdle());
+        assertEquals(2, created.get());
+
+        Thread.sleep(10);
+        pool.evict();
+        assertEquals(2, pool.getNumIdle());
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testEvictMinIdleRespectsMaxTotal() {
+        pool = builder().maxTotal(2).minIdle(2).build();
+        final RedisConnection conn = pool.borrow();
+
+        pool.evict();
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(1, pool.getNumActive());
+        assertEquals(2, created.get());
+
+        pool.release(conn);
+    }
+
+    @Test
+    public void testEvictSkipsNewerConnections() throws Exception {
+        pool = builder().minIdle(2).idleTimeout(200, TimeUnit.MILLISECONDS).build();
+        final RedisConnection stale = pool.borrow();
+        final RedisConnection fresh = pool.borrow();
+        pool.release(stale);
+
+        // Keeps the stale connection since there are fewer than the minimum idle
+        // and creates a new one to bring the pool up to the minimum
+        Thread.sleep(250);
+        pool.evict();
+        assertEquals(2, pool.getNumIdle());
+        assertEquals(3, created.get());
+
+        // Now there are more idle than the minimum so the stale connection goes
+        pool.release(fresh);
+        pool.evict();
+        assertEquals(2, pool.getNumIdle());
+
+        final RedisConnection first = pool.borrow();
+        final RedisConnection second = pool.borrow();
+        assertNotSame(stale, first);
+        assertNotSame(stale, second);
+    }
+
+    @Test
+    public void testEvictTestsIdle() {
+        pool = builder().idleTimeout(1, TimeUnit.HOURS).build();
+        final RedisConnection conn = pool.borrow();
+        RedisCommand.cmd("PING").query(conn).discard();
+        pool.release(conn);
+
+        server.disconnectClients();
+        pool.evict();
+        assertEquals(0, pool.getNumIdle());
+    }
+
+    @Test
+    public void testClear() {
+        pool = builder().build();
+        final RedisConnection idle = pool.borrow();
+        final RedisConnection active = pool.borrow();
+        pool.release(idle);
+
+        pool.clear();
+        assertEquals(0, pool.getNumIdle());
+
+        // Connections borrowed before clearing are closed when returned
+        pool.release(active);
+        assertEquals(0, pool.getNumIdle());
+
+        final RedisConnection fresh = pool.borrow();
+        assertNotSame(idle, fresh);
+        assertNotSame(active, fresh);
+    }
+
+    @Test
+    public void testClose() {
+        pool = builder().build();
+        final RedisConnection idle = pool.borrow();
+        final RedisConnection active = pool.borrow();
+        pool.release(idle);
+
+        pool.close();
+        assertEquals(0, pool.getNumIdle());
+
+        pool.release(active);
+        assertEquals(0, pool.getNumIdle());
+
+        try {
+            pool.borrow();
+            fail("Expected pool to be closed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrowers() throws Exception {
+        pool = builder().maxTotal(4).borrowTimeout(5, TimeUnit.SECONDS).build();
+        final AtomicInteger inUse = new AtomicInteger();
+        final AtomicInteger maxInUse = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        pool.withConnection(c -> {
+                            maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                            final long res = RedisCommand.cmd("INCR").arg("foo").query(c).asLong();
+                            inUse.decrementAndGet();
+                            return res;
+                        });
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxInUse.get() <= 4);
+        assertTrue(created.get() <= 4);
+        assertEquals(0, pool.getNumActive());
+    }
+}
@@ -6,21 +6,34 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+import org.tshlabs.baja.exceptions.BajaRedirectException;
 import org.tshlabs.baja.exceptions.BajaResourceException;
 import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+import org.tshlabs.baja.protocol.RespArgument;
 import org.tshlabs.baja.protocol.RespEncoder;
 import org.tshlabs.baja.protocol.RespErrResponse;
+import org.tshlabs.baja.protocol.RespHandler;
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespOutputBuffer;
 import org.tshlabs.baja.protocol.RespParser;
+import org.tshlabs.baja.protocol.RespPush;
 import org.tshlabs.baja.protocol.RespType;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -42,26 +55,37 @@ public class RedisConnectionTest {
     private RedisConnection connection;
 
     @Test
-    public void testWriteCommandSingleItem() {
+    public void testWriteCommandSingleItem() throws IOException {
         final List<String> cmd = Collections.singletonList("COMMAND");
         connection.writeCommand(cmd);
-        verify(encoder).encodeMulti(Collections.singletonList(cmd));
+        verify(encoder).encodeMulti(eq(Collections.singletonList(cmd)), any(RespOutputBuffer.class));
     }
 
     @Test
-    public void testWriteCommandMultipleItems() {
+    public void testWriteCommandMultipleItems() throws IOException {
         final List<String> cmd = new ArrayList<>();
         cmd.add("SET");
         cmd.add("x");
         cmd.add("5");
 
         connection.writeCommand(cmd);
-        verify(encoder).encodeMulti(Collections.singletonList(cmd));
+        verify(encoder).encodeMulti(eq(Collections.singletonList(cmd)), any(RespOutputBuffer.class));
+    }
+
+    @Test
+    public void testWriteRawCommand() throws IOException {
+        final List<RespArgument> cmd = new ArrayList<>();
+        cmd.add(RespArgument.of("SET"));
+        cmd.add(RespArgument.of("x"));
+        cmd.add(RespArgument.of(new byte[]{0, 1}));
+
+        connection.writeRawCommand(cmd);
+        verify(encoder).encodeRawMulti(eq(Collections.singletonList(cmd)), any(RespOutputBuffer.class));
     }
 
     @Test(expected = BajaResourceException.class)
     public void testWriteCommandIOException() throws IOException {
-        doThrow(IOException.class).when(outputStream).write(any(byte[].class));
+        doThrow(IOException.class).when(encoder).encodeMulti(anyList(), any(RespOutputBuffer.class));
         final List<String> cmd = Collections.singletonList("INFO");
         connection.writeCommand(cmd);
     }
@@ -94,6 +118,34 @@ public class RedisConnectionTest {
         connection.readBulkString();
     }
 
+    @Test
+    public void testReadBulkBytesValid() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.BULK_STRING);
+        when(parser.readBulkBytes(inputStream)).thenReturn(new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, connection.readBulkBytes());
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testReadBulkBytesSimpleString() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.SIMPLE_STRING);
+        connection.readBulkBytes();
+    }
+
+    @Test
+    public void testReadBulkByteBufferValid() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{1, 2, 3}).asReadOnlyBuffer();
+        when(parser.findType(inputStream)).thenReturn(RespType.BULK_STRING);
+        when(parser.readBulkByteBuffer(inputStream)).thenReturn(buffer);
+        assertEquals(buffer, connection.readBulkByteBuffer());
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testReadBulkByteBufferIOException() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.BULK_STRING);
+        when(parser.readBulkByteBuffer(inputStream)).thenThrow(IOException.class);
+        connection.readBulkByteBuffer();
+    }
+
     @Test
     public void testReadSimpleOrBulkStringSimple() throws IOException {
         when(parser.findType(inputStream)).thenReturn(RespType.SIMPLE_STRING);
@@ -159,6 +211,106 @@ public class RedisConnectionTest {
         connection.readAnyType();
     }
 
+    @Test
+    public void testClose() throws IOException {
+        connection.close();
+        verify(inputStream).close();
+        verify(outputStream).close();
+    }
+
+    @Test
+    public void testCloseInputFailure() throws IOException {
+        doThrow(new IOException("Broken")).when(inputStream).close();
+
+        try {
+            connection.close();
+        } catch (BajaResourceException e) {
+            // expected
+        }
+
+        verify(outputStream).close();
+    }
+
+    @Test
+    public void testReadBulkStreamSuccess() throws IOException {
+        final InputStream bulk = mock(InputStream.class);
+        when(parser.findType(inputStream)).thenReturn(RespType.BULK_STRING);
+        when(parser.readBulkStream(inputStream)).thenReturn(bulk);
+        assertEquals(bulk, connection.readBulkStream());
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testReadBulkStreamWrongType() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.INTEGER);
+        connection.readBulkStream();
+    }
+
+    @Test
+    public void testTransferBulkSuccess() throws IOException {
+        final OutputStream target = mock(OutputStream.class);
+        when(parser.findType(inputStream)).thenReturn(RespType.BULK_STRING);
+        when(parser.transferBulk(inputStream, target)).thenReturn(1234L);
+        assertEquals(1234L, connection.transferBulk(target));
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testTransferBulkIOException() throws IOException {
+        final OutputStream target = mock(OutputStream.class);
+        when(parser.findType(inputStream)).thenReturn(RespType.BULK_STRING);
+        when(parser.transferBulk(inputStream, target)).thenThrow(IOException.class);
+        connection.transferBulk(target);
+    }
+
+    @Test
+    public void testReadReplyHandler() throws IOException {
+        final RespHandler handler = mock(RespHandler.class);
+        connection.readReply(handler);
+        verify(parser).parse(inputStream, handler);
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testReadReplyHandlerIOException() throws IOException {
+        final RespHandler handler = mock(RespHandler.class);
+        doThrow(IOException.class).when(parser).parse(inputStream, handler);
+        connection.readReply(handler);
+    }
+
+    @Test
+    public void testAwaitReplyConsumesNothing() {
+        final RedisConnection conn = new RedisConnection(
+            new RespInputBuffer(new ByteArrayInputStream(":42\r\n".getBytes(StandardCharsets.UTF_8))),
+            outputStream, RespEncoder.getInstance(), RespParser.getInstance());
+
+        conn.awaitReply();
+        assertEquals(42L, conn.readLong());
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testAwaitReplyTimeout() throws IOException {
+        when(inputStream.markSupported()).thenReturn(true);
+        when(inputStream.read()).thenThrow(SocketTimeoutException.class);
+        connection.awaitReply();
+    }
+
+    @Test
+    public void testReadReplySuccess() throws IOException {
+        when(parser.readReply(inputStream)).thenReturn(6458L);
+        assertEquals(6458L, connection.readReply());
+    }
+
+    @Test
+    public void testReadReplyError() throws IOException {
+        final RespErrResponse err = new RespErrResponse("ERR bad");
+        when(parser.readReply(inputStream)).thenReturn(err);
+        assertEquals(err, connection.readReply());
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testReadReplyIOException() throws IOException {
+        when(parser.readReply(inputStream)).thenThrow(IOException.class);
+        connection.readReply();
+    }
+
     @Test
     public void testReadLongSuccess() throws IOException {
         when(parser.findType(inputStream)).thenReturn(RespType.INTEGER);
@@ -267,4 +419,160 @@ public class RedisConnectionTest {
         assertEquals(RespType.BULK_STRING, type);
     }
 
+    @Test
+    public void testReadMapResp3() throws IOException {
+        final Map<Object, Object> res = new LinkedHashMap<>();
+        res.put("field", "value");
+
+        when(parser.findType(inputStream)).thenReturn(RespType.MAP);
+        when(parser.readMap(inputStream)).thenReturn(res);
+
+        assertEquals(res, connection.readMap());
+    }
+
+    @Test
+    public void testReadMapResp2() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.ARRAY);
+        when(parser.readArray(inputStream)).thenReturn(Arrays.asList("a", "1", "b", "2"));
+
+        final Map<Object, Object> res = connection.readMap();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(res.keySet()));
+        assertEquals("2", res.get("b"));
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testReadMapResp2OddElements() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.ARRAY);
+        when(parser.readArray(inputStream)).thenReturn(Arrays.asList("a", "1", "b"));
+        connection.readMap();
+    }
+
+    @Test
+    public void testReadDoubleResp3() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.DOUBLE);
+        when(parser.readDouble(inputStream)).thenReturn(1.5);
+        assertEquals(1.5, connection.readDouble(), 0.0);
+    }
+
+    @Test
+    public void testReadDoubleResp2() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.BULK_STRING);
+        when(parser.readBulkString(inputStream)).thenReturn("inf");
+        assertEquals(Double.POSITIVE_INFINITY, connection.readDouble(), 0.0);
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testReadDoubleInvalid() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.BULK_STRING);
+        when(parser.readBulkString(inputStream)).thenReturn("abc");
+        connection.readDouble();
+    }
+
+    @Test
+    public void testReadBulkStringResp3Null() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.NULL);
+        assertNull(connection.readBulkString());
+        verify(parser).readNull(inputStream);
+    }
+
+    @Test
+    public void testVerifyResponseTypeSkipsPush() throws IOException {
+        final RespPush push = new RespPush(Arrays.asList("invalidate", null));
+        final List<RespPush> received = new ArrayList<>();
+        connection.setPushListener(received::add);
+
+        when(parser.findType(inputStream)).thenReturn(RespType.PUSH, RespType.ATTRIBUTE, RespType.INTEGER);
+        when(parser.readPush(inputStream)).thenReturn(push);
+
+        assertEquals(RespType.INTEGER, connection.verifyResponseType(Collections.singleton(RespType.INTEGER)));
+        assertEquals(Collections.singletonList(push), received);
+        verify(parser).readMap(inputStream);
+    }
+
+    @Test(expected = BajaProtocolErrorException.class)
+    public void testVerifyResponseTypeBlobErrorType() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.BLOB_ERROR);
+        when(parser.readBlobError(inputStream)).thenReturn(new RespErrResponse("SYNTAX invalid"));
+        connection.verifyResponseType(Collections.singleton(RespType.SIMPLE_STRING));
+    }
+
+    @Test
+    public void testReadReplySkipsPush() throws IOException {
+        final RespPush push = new RespPush(Arrays.asList("invalidate", null));
+        final List<RespPush> received = new ArrayList<>();
+        connection.setPushListener(received::add);
+
+        when(parser.readReply(inputStream)).thenReturn(push, 1L);
+
+        assertEquals(1L, connection.readReply());
+        assertEquals(Collections.singletonList(push), received);
+    }
+
+    @Test
+    public void testHello() throws IOException {
+        final Map<Object, Object> res = new LinkedHashMap<>();
+        res.put("server", "redis");
+        res.put("proto", 3L);
+
+        when(parser.findType(inputStream)).thenReturn(RespType.MAP);
+        when(parser.readMap(inputStream)).thenReturn(res);
+
+        final Map<String, Object> info = connection.hello(3);
+        assertEquals(3L, info.get("proto"));
+        verify(encoder).encodeMulti(
+            eq(Collections.singletonList(Arrays.asList("HELLO", "3"))), any(RespOutputBuffer.class));
+    }
+
+    @Test
+    public void testReadPendingPushes() throws IOException {
+        final RespPush push = new RespPush(Arrays.asList("invalidate", null));
+        final List<RespPush> received = new ArrayList<>();
+        connection.setPushListener(received::add);
+
+        when(inputStream.available()).thenReturn(10, 0);
+        when(parser.findType(inputStream)).thenReturn(RespType.PUSH);
+        when(parser.readPush(inputStream)).thenReturn(push);
+
+        assertEquals(1, connection.readPendingPushes());
+        assertEquals(Collections.singletonList(push), received);
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testReadPendingPushesUnexpectedReply() throws IOException {
+        when(inputStream.available()).thenReturn(4);
+        when(parser.findType(inputStream)).thenReturn(RespType.INTEGER);
+        connection.readPendingPushes();
+    }
+
+    @Test
+    public void testVerifyResponseTypeMoved() throws IOException {
+        when(parser.findType(inputStream)).thenReturn(RespType.ERROR);
+        when(parser.readError(inputStream)).thenReturn(new RespErrResponse("MOVED 3999 127.0.0.1:6381"));
+
+        try {
+            connection.verifyResponseType(Collections.singleton(RespType.SIMPLE_STRING));
+        } catch (BajaRedirectException e) {
+            assertEquals(false, e.isAsk());
+            assertEquals(3999, e.getSlot());
+            assertEquals("127.0.0.1", e.getHost());
+            assertEquals(6381, e.getPort());
+            return;
+        }
+
+        throw new AssertionError("Expected a redirect");
+    }
+
+    @Test
+    public void testProtocolErrorAsk() {
+        final BajaProtocolErrorException e = RedisConnection.protocolError("ASK 3999 ::1:6381");
+        assertEquals(true, ((BajaRedirectException) e).isAsk());
+        assertEquals("::1", ((BajaRedirectException) e).getHost());
+    }
+
+    @Test
+    public void testProtocolErrorNotRedirect() {
+        assertEquals(BajaProtocolErrorException.class, RedisConnection.protocolError("MOVED along").getClass());
+        assertEquals(BajaProtocolErrorException.class, RedisConnection.protocolError("ERR bad").getClass());
+    }
+
 }
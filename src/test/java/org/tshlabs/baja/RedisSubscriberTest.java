@@ -0,0 +1,291 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.tshlabs.baja.StubRedisServer.await;
+import static org.tshlabs.baja.StubRedisServer.bulk;
+
+public class RedisSubscriberTest {
+
+    private StubRedisServer server;
+
+    private RedisSubscriber subscriber;
+
+    private final BlockingQueue<List<PubSubMessage>> batches = new LinkedBlockingQueue<>();
+
+    private static String message(String channel, String payload) {
+        return "*3\r\n" + bulk("message") + bulk(channel) + bulk(payload);
+    }
+
+    @Before
+    public void setup() throws Exception {
+        server = new StubRedisServer(command -> {
+            final String kind = command.get(0).toLowerCase();
+            return "*3\r\n" + bulk(kind) + bulk(command.get(1)) + ":1\r\n";
+        });
+    }
+
+    @After
+    public void teardown() {
+        if (subscriber != null) {
+            subscriber.close();
+        }
+
+        server.close();
+    }
+
+    private RedisSubscriber.Builder builder() {
+        return RedisSubscriber.builder(new SocketConnectionFactory("127.0.0.1", server.getPort()).create(),
+            batches::add);
+    }
+
+    private void subscribe(String channel) throws InterruptedException {
+        subscriber.subscribe(channel);
+        await(() -> server.getReceived().contains(Arrays.asList("SUBSCRIBE", channel)));
+    }
+
+    private List<String> payloads(int count) throws InterruptedException {
+        final List<String> out = new ArrayList<>();
+        while (out.size() < count) {
+            final List<PubSubMessage> batch = batches.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Timed out waiting for messages", batch);
+            batch.forEach(m -> out.add(m.getPayload()));
+        }
+
+        return out;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQueueSize() {
+        builder().queueSize(0).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBatchSize() {
+        builder().batchSize(0).build();
+    }
+
+    @Test
+    public void testSubscribeAndReceive() throws Exception {
+        subscriber = builder().build();
+        subscribe("news");
+        subscriber.psubscribe("n*");
+        await(() -> server.getReceived().contains(Arrays.asList("PSUBSCRIBE", "n*")));
+
+        server.broadcast(message("news", "hello"));
+        server.broadcast("*4\r\n" + bulk("pmessage") + bulk("n*") + bulk("news") + bulk("world"));
+
+        final List<PubSubMessage> received = new ArrayList<>();
+        while (received.size() < 2) {
+            received.addAll(batches.poll(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(Arrays.asList(
+            new PubSubMessage(null, "news", "hello"),
+            new PubSubMessage("n*", "news", "world")), received);
+        assertEquals(2, subscriber.getReceived());
+        await(() -> subscriber.getDelivered() == 2);
+    }
+
+    @Test
+    public void testReceivePushFrames() throws Exception {
+        subscriber = builder().build();
+        subscribe("news");
+
+        server.broadcast(">3\r\n" + bulk("message") + bulk("news") + bulk("pushed"));
+
+        assertEquals(Arrays.asList("pushed"), payloads(1));
+    }
+
+    @Test
+    public void testUnsubscribe() throws Exception {
+        subscriber = builder().build();
+        subscribe("news");
+        subscriber.unsubscribe("news");
+
+        await(() -> server.getReceived().contains(Arrays.asList("UNSUBSCRIBE", "news")));
+        assertTrue(subscriber.isOpen());
+    }
+
+    @Test
+    public void testBatchesWhileListenerBusy() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final BlockingQueue<Integer> sizes = new LinkedBlockingQueue<>();
+
+        subscriber = RedisSubscriber.builder(
+            new SocketConnectionFactory("127.0.0.1", server.getPort()).create(),
+            batch -> {
+                sizes.add(batch.size());
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            })
+            .batchSize(3)
+            .build();
+        subscribe("news");
+
+        // The first message is taken by the busy listener and the rest wait in the queue
+        server.broadcast(message("news", "m0"));
+        await(() -> subscriber.getReceived() == 1 && subscriber.getPending() == 0);
+        for (int i = 1; i < 6; i++) {
+            server.broadcast(message("news", "m" + i));
+        }
+
+        await(() -> subscriber.getReceived() == 6);
+        assertEquals(5, subscriber.getPending());
+        release.countDown();
+
+        await(() -> subscriber.getDelivered() == 6);
+        assertEquals(Arrays.asList(1, 3, 2), new ArrayList<>(sizes));
+        assertEquals(0, subscriber.getDropped());
+    }
+
+    private void testOverflow(RedisSubscriber.Overflow overflow, List<String> expected) throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final BlockingQueue<String> payloads = new LinkedBlockingQueue<>();
+
+        subscriber = RedisSubscriber.builder(
+            new SocketConnectionFactory("127.0.0.1", server.getPort()).create(),
+            batch -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                payloads.addAll(batch.stream().map(PubSubMessage::getPayload).collect(Collectors.toList()));
+            })
+            .queueSize(2)
+            .overflow(overflow)
+            .build();
+        subscribe("news");
+
+        // The first message is taken by the busy listener, then the queue fills up
+        server.broadcast(message("news", "m0"));
+        await(() -> subscriber.getReceived() == 1 && subscriber.getPending() == 0);
+        for (int i = 1; i < 5; i++) {
+            server.broadcast(message("news", "m" + i));
+        }
+
+        await(() -> subscriber.getReceived() == 5);
+        assertEquals(2, subscriber.getDropped());
+        release.countDown();
+
+        await(() -> subscriber.getDelivered() == 3);
+        assertEquals(expected, new ArrayList<>(payloads));
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        testOverflow(RedisSubscriber.Overflow.DROP_NEWEST, Arrays.asList("m0", "m1", "m2"));
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        testOverflow(RedisSubscriber.Overflow.DROP_OLDEST, Arrays.asList("m0", "m3", "m4"));
+    }
+
+    @Test
+    public void testBlockDoesNotDrop() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        subscriber = RedisSubscriber.builder(
+            new SocketConnectionFactory("127.0.0.1", server.getPort()).create(),
+            batch -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            })
+            .queueSize(1)
+            .overflow(RedisSubscriber.Overflow.BLOCK)
+            .build();
+        subscribe("news");
+
+        // The first message is taken by the busy listener before the rest arrive
+        server.broadcast(message("news", "m0"));
+        await(() -> subscriber.getReceived() == 1 && subscriber.getPending() == 0);
+        for (int i = 1; i < 4; i++) {
+            server.broadcast(message("news", "m" + i));
+        }
+
+        // One being delivered, one queued, and the reader waiting with the third
+        await(() -> subscriber.getReceived() == 3);
+        assertEquals(0, subscriber.getDropped());
+        release.countDown();
+
+        await(() -> subscriber.getDelivered() == 4);
+        assertEquals(0, subscriber.getDropped());
+    }
+
+    @Test
+    public void testConnectionLost() throws Exception {
+        final BlockingQueue<RuntimeException> errors = new LinkedBlockingQueue<>();
+        subscriber = builder().errorListener(errors::add).build();
+        subscribe("news");
+
+        server.disconnectClients();
+
+        assertNotNull(errors.poll(5, TimeUnit.SECONDS));
+        await(() -> !subscriber.isOpen());
+    }
+
+    @Test
+    public void testReadTimeoutWhileIdle() throws Exception {
+        final BlockingQueue<RuntimeException> errors = new LinkedBlockingQueue<>();
+        subscriber = RedisSubscriber.builder(
+            new SocketConnectionFactory("127.0.0.1", server.getPort(), 1000, 20).create(), batches::add)
+            .errorListener(errors::add)
+            .build();
+        subscribe("news");
+
+        Thread.sleep(100);
+        server.broadcast(message("news", "hello"));
+
+        assertEquals(Collections.singletonList("hello"), payloads(1));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testReadTimeoutMidFrame() throws Exception {
+        final BlockingQueue<RuntimeException> errors = new LinkedBlockingQueue<>();
+        subscriber = RedisSubscriber.builder(
+            new SocketConnectionFactory("127.0.0.1", server.getPort(), 1000, 20).create(), batches::add)
+            .errorListener(errors::add)
+            .build();
+        subscribe("news");
+
+        // Only the start of a message arrives before the timeout
+        server.broadcast("*3\r\n" + bulk("message"));
+
+        assertNotNull(errors.poll(5, TimeUnit.SECONDS));
+        await(() -> !subscriber.isOpen());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSubscribeAfterClose() {
+        subscriber = builder().build();
+        subscriber.close();
+
+        assertFalse(subscriber.isOpen());
+        subscriber.subscribe("news");
+    }
+}
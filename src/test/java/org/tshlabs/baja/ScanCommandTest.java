@@ -0,0 +1,66 @@
+package org.tshlabs.baja;
+
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaTypeMismatchException;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScanCommandTest {
+
+    @Test
+    public void testScanArgs() {
+        assertEquals(Arrays.asList("SCAN", "0"), ScanCommand.scan().getArgs("0"));
+        assertEquals(Arrays.asList("SCAN", "17", "MATCH", "user:*", "COUNT", "500", "TYPE", "hash"),
+            ScanCommand.scan().match("user:*").count(500).type("hash").getArgs("17"));
+    }
+
+    @Test
+    public void testKeyedArgs() {
+        assertEquals(Arrays.asList("HSCAN", "h", "5", "COUNT", "10"), ScanCommand.hscan("h").count(10).getArgs("5"));
+        assertEquals(Arrays.asList("SSCAN", "s", "0", "MATCH", "a*"), ScanCommand.sscan("s").match("a*").getArgs("0"));
+        assertEquals(Arrays.asList("ZSCAN", "z", "0"), ScanCommand.zscan("z").getArgs("0"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTypeNotScan() {
+        ScanCommand.sscan("s").type("string");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCount() {
+        ScanCommand.scan().count(0);
+    }
+
+    @Test
+    public void testConvertStrings() {
+        assertEquals(Arrays.asList("a", "b"), ScanCommand.scan().convert(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void testConvertHash() {
+        assertEquals(Arrays.asList(
+            new AbstractMap.SimpleImmutableEntry<>("f1", "v1"),
+            new AbstractMap.SimpleImmutableEntry<>("f2", "v2")),
+            ScanCommand.hscan("h").convert(Arrays.asList("f1", "v1", "f2", "v2")));
+    }
+
+    @Test
+    public void testConvertSortedSet() {
+        final List<Object> page = Arrays.asList("a", "1.5", "b", "-inf", "c", 3.0);
+        assertEquals(Arrays.asList(
+            new AbstractMap.SimpleImmutableEntry<>("a", 1.5),
+            new AbstractMap.SimpleImmutableEntry<>("b", Double.NEGATIVE_INFINITY),
+            new AbstractMap.SimpleImmutableEntry<>("c", 3.0)),
+            ScanCommand.zscan("z").convert(page));
+    }
+
+    @Test(expected = BajaTypeMismatchException.class)
+    public void testConvertOddPairs() {
+        ScanCommand.hscan("h").convert(Collections.singletonList("f1"));
+    }
+}
@@ -0,0 +1,133 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.tshlabs.baja.StubRedisServer.await;
+import static org.tshlabs.baja.StubRedisServer.bulk;
+
+public class ScanIteratorTest {
+
+    private StubRedisServer server;
+
+    private RedisConnection connection;
+
+    private static String page(String cursor, String... elements) {
+        final StringBuilder out = new StringBuilder("*2\r\n" + bulk(cursor) + "*" + elements.length + "\r\n");
+        for (String element : elements) {
+            out.append(bulk(element));
+        }
+
+        return out.toString();
+    }
+
+    @Before
+    public void setup() throws Exception {
+        server = new StubRedisServer(command -> {
+            switch (command.get(0)) {
+                case "SCAN":
+                    if (command.contains("MATCH")) {
+                        return "-ERR syntax error\r\n";
+                    }
+
+                    switch (command.get(1)) {
+                        case "0":
+                            return page("7", "a", "b");
+                        case "7":
+                            return page("3");
+                        case "3":
+                            return page("0", "c");
+                        default:
+                            return "-ERR invalid cursor\r\n";
+                    }
+                case "HSCAN":
+                    return page("0", "f1", "v1", "f2", "v2");
+                default:
+                    return "+PONG\r\n";
+            }
+        });
+
+        connection = new SocketConnectionFactory("127.0.0.1", server.getPort()).create();
+    }
+
+    @After
+    public void teardown() {
+        connection.close();
+        server.close();
+    }
+
+    private List<List<String>> scans() {
+        return server.getReceived().stream()
+            .filter(command -> command.get(0).equals("SCAN"))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testAllPages() {
+        final ScanIterator<String> iterator = ScanCommand.scan().iterate(connection);
+        final List<String> keys = new ArrayList<>();
+        iterator.forEachRemaining(keys::add);
+
+        assertEquals(Arrays.asList("a", "b", "c"), keys);
+        assertEquals(3, iterator.getPages());
+        assertEquals(Arrays.asList(
+            Arrays.asList("SCAN", "0"),
+            Arrays.asList("SCAN", "7"),
+            Arrays.asList("SCAN", "3")), scans());
+    }
+
+    @Test
+    public void testPrefetchNextPage() throws Exception {
+        final ScanIterator<String> iterator = ScanCommand.scan().iterate(connection);
+        assertEquals("a", iterator.next());
+
+        // The next page was requested before the first one was consumed
+        await(() -> scans().size() == 2);
+        assertEquals(1, iterator.getPages());
+        iterator.close();
+    }
+
+    @Test
+    public void testCloseEarly() {
+        final ScanIterator<String> iterator = ScanCommand.scan().iterate(connection);
+        assertEquals("a", iterator.next());
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        assertEquals("PONG", RedisCommand.cmd("PING").query(connection).asString());
+    }
+
+    @Test
+    public void testStream() {
+        try (Stream<String> keys = ScanCommand.scan().count(2).stream(connection)) {
+            assertEquals(Arrays.asList("a", "b", "c"), keys.collect(Collectors.toList()));
+        }
+
+        assertEquals(Arrays.asList("SCAN", "0", "COUNT", "2"), scans().get(0));
+        assertEquals("PONG", RedisCommand.cmd("PING").query(connection).asString());
+    }
+
+    @Test
+    public void testHashPairs() {
+        final List<String> fields = ScanCommand.hscan("h").stream(connection)
+            .map(e -> e.getKey() + "=" + e.getValue())
+            .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("f1=v1", "f2=v2"), fields);
+    }
+
+    @Test(expected = BajaProtocolErrorException.class)
+    public void testErrorReply() {
+        ScanCommand.scan().match("a*").iterate(connection).next();
+    }
+}
@@ -0,0 +1,118 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaProtocolErrorException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.tshlabs.baja.StubRedisServer.bulk;
+
+public class ScanSpliteratorTest {
+
+    private StubRedisServer server;
+
+    private RedisConnectionPool pool;
+
+    // Two pages of keys for each type, named after the type
+    private static String scan(List<String> command) {
+        final String type = command.get(command.indexOf("TYPE") + 1);
+        if (type.equals("bad")) {
+            return "-ERR unknown type\r\n";
+        }
+
+        return command.get(1).equals("0") ?
+            "*2\r\n" + bulk("1") + "*2\r\n" + bulk(type + ":a") + bulk(type + ":b") :
+            "*2\r\n" + bulk("0") + "*1\r\n" + bulk(type + ":c");
+    }
+
+    @Before
+    public void setup() throws Exception {
+        server = new StubRedisServer(command -> command.get(0).equals("SCAN") ? scan(command) : "+PONG\r\n");
+        pool = RedisConnectionPool.builder(new SocketConnectionFactory("127.0.0.1", server.getPort()))
+            .evictionInterval(0, TimeUnit.SECONDS)
+            .build();
+    }
+
+    @After
+    public void teardown() {
+        pool.close();
+        server.close();
+    }
+
+    private static List<ScanCommand<String>> byType(String... types) {
+        return Arrays.stream(types).map(t -> ScanCommand.scan().type(t)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testAllPartitions() throws Exception {
+        final Set<String> keys;
+        try (Stream<String> stream = ScanCommand.parallelStream(pool, byType("string", "hash", "set", "zset"))) {
+            keys = ForkJoinPool.commonPool().submit(() -> stream.collect(Collectors.toSet())).get();
+        }
+
+        assertEquals(12, keys.size());
+        assertTrue(keys.containsAll(Arrays.asList("string:a", "hash:b", "set:c", "zset:a")));
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testSplitPartitions() {
+        final List<ScanSpliterator.Partition<String>> partitions = byType("string", "hash", "set").stream()
+            .map(c -> new ScanSpliterator.Partition<>(pool, c))
+            .collect(Collectors.toList());
+
+        final Stream<String> stream = ScanSpliterator.stream(partitions);
+        final Spliterator<String> root = stream.spliterator();
+        final Spliterator<String> prefix = root.trySplit();
+
+        assertEquals(Collections.singletonList("string:a"), next(prefix));
+        assertNull(prefix.trySplit());
+        assertEquals(Collections.singletonList("hash:a"), next(root));
+
+        stream.close();
+    }
+
+    private static List<String> next(Spliterator<String> spliterator) {
+        final String[] out = new String[1];
+        assertTrue(spliterator.tryAdvance(key -> out[0] = key));
+        return Collections.singletonList(out[0]);
+    }
+
+    @Test
+    public void testCloseReturnsConnections() {
+        try (Stream<String> stream = ScanCommand.parallelStream(pool, byType("string", "hash"))) {
+            assertTrue(stream.sequential().findFirst().isPresent());
+            assertEquals(1, pool.getNumActive());
+        }
+
+        assertEquals(0, pool.getNumActive());
+        assertEquals("PONG", pool.withConnection(c -> RedisCommand.cmd("PING").query(c).asString()));
+    }
+
+    @Test
+    public void testErrorInvalidatesConnection() {
+        try (Stream<String> stream = ScanCommand.parallelStream(pool, byType("bad")).sequential()) {
+            stream.forEach(key -> {
+            });
+            fail("Expected error reply");
+        } catch (BajaProtocolErrorException e) {
+            assertEquals("ERR unknown type", e.getMessage());
+        }
+
+        assertEquals(0, pool.getNumActive());
+    }
+}
@@ -0,0 +1,235 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SentinelConnectionFactoryTest {
+
+    private static final String SUBSCRIBED = "*3\r\n$9\r\nsubscribe\r\n$14\r\n+switch-master\r\n:1\r\n";
+
+    private StubRedisServer sentinel;
+
+    private StubRedisServer first;
+
+    private StubRedisServer second;
+
+    private volatile int masterPort;
+
+    private volatile String firstRole;
+
+    private SentinelConnectionFactory factory;
+
+    private static String address(int port) {
+        final String p = String.valueOf(port);
+        return "*2\r\n$9\r\n127.0.0.1\r\n$" + p.length() + "\r\n" + p + "\r\n";
+    }
+
+    private static String switchMaster(String name, int from, int to) {
+        final String payload = name + " 127.0.0.1 " + from + " 127.0.0.1 " + to;
+        return "*3\r\n$7\r\nmessage\r\n$14\r\n+switch-master\r\n$" + payload.length() + "\r\n" + payload + "\r\n";
+    }
+
+    private static String master(List<String> command, String role, String value) {
+        return command.get(0).equals("ROLE") ?
+            "*1\r\n$" + role.length() + "\r\n" + role + "\r\n" :
+            "$" + value.length() + "\r\n" + value + "\r\n";
+    }
+
+    @Before
+    public void setup() throws Exception {
+        firstRole = "master";
+        first = new StubRedisServer(command -> master(command, firstRole, "one"));
+        second = new StubRedisServer(command -> master(command, "master", "two"));
+        masterPort = first.getPort();
+
+        sentinel = new StubRedisServer(command -> {
+            switch (command.get(0)) {
+                case "SENTINEL":
+                    return command.get(2).equals("mymaster") ? address(masterPort) : "*-1\r\n";
+                case "SUBSCRIBE":
+                    return SUBSCRIBED;
+                default:
+                    return "*2\r\n$4\r\npong\r\n$0\r\n\r\n";
+            }
+        });
+    }
+
+    @After
+    public void teardown() {
+        if (factory != null) {
+            factory.close();
+        }
+
+        sentinel.close();
+        first.close();
+        second.close();
+    }
+
+    private SentinelConnectionFactory.Builder builder(String name, StubRedisServer... sentinels) {
+        final List<InetSocketAddress> addresses = Arrays.asList(Arrays.stream(sentinels)
+            .map(s -> InetSocketAddress.createUnresolved("127.0.0.1", s.getPort()))
+            .toArray(InetSocketAddress[]::new));
+
+        return SentinelConnectionFactory.builder(name, addresses)
+            .retryInterval(10, TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitSubscribed() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sentinel.getReceived().stream().filter(c -> c.get(0).equals("SENTINEL")).count() < 2) {
+            assertTrue("Timed out waiting for subscription", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoSentinels() {
+        SentinelConnectionFactory.builder("mymaster", Collections.emptyList());
+    }
+
+    @Test
+    public void testBuildLooksUpMaster() {
+        factory = builder("mymaster", sentinel).build();
+
+        assertEquals(first.getPort(), factory.getMaster().getPort());
+        try (RedisConnection connection = factory.create()) {
+            assertEquals("one", RedisCommand.cmd("GET").arg("foo").query(connection).asString());
+        }
+
+        assertTrue(first.getReceived().contains(Collections.singletonList("ROLE")));
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testBuildUnknownMaster() {
+        builder("other", sentinel).build();
+    }
+
+    @Test
+    public void testBuildSkipsUnreachableSentinel() throws Exception {
+        final int deadPort;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            deadPort = socket.getLocalPort();
+        }
+
+        factory = SentinelConnectionFactory.builder("mymaster", Arrays.asList(
+            InetSocketAddress.createUnresolved("127.0.0.1", deadPort),
+            InetSocketAddress.createUnresolved("127.0.0.1", sentinel.getPort())))
+            .build();
+
+        assertEquals(first.getPort(), factory.getMaster().getPort());
+    }
+
+    @Test
+    public void testSwitchMaster() throws Exception {
+        final BlockingQueue<InetSocketAddress> failovers = new LinkedBlockingQueue<>();
+        factory = builder("mymaster", sentinel).build();
+
+        final RedisConnectionPool pool = RedisConnectionPool.builder(factory)
+            .evictionInterval(0, TimeUnit.SECONDS)
+            .build();
+
+        // Listeners are called in order, so the pool is cleared by the time we hear about it
+        factory.addFailoverListener(master -> pool.clear());
+        factory.addFailoverListener(failovers::add);
+
+        try {
+            assertEquals("one", pool.withConnection(c -> RedisCommand.cmd("GET").arg("foo").query(c).asString()));
+            assertEquals(1, pool.getNumIdle());
+
+            awaitSubscribed();
+            sentinel.broadcast(switchMaster("mymaster", first.getPort(), second.getPort()));
+
+            final InetSocketAddress announced = failovers.poll(5, TimeUnit.SECONDS);
+            assertEquals(second.getPort(), announced.getPort());
+            assertEquals(second.getPort(), factory.getMaster().getPort());
+
+            // Connections to the old master were closed by the listener
+            assertEquals(0, pool.getNumIdle());
+            assertEquals("two", pool.withConnection(c -> RedisCommand.cmd("GET").arg("foo").query(c).asString()));
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testTimeoutMidMessageResubscribes() throws Exception {
+        factory = builder("mymaster", sentinel)
+            .connectionFactory(a -> new SocketConnectionFactory(a.getHostString(), a.getPort(), 1000, 200))
+            .build();
+
+        awaitSubscribed();
+
+        // Only the start of a message arrives before the timeout
+        sentinel.broadcast("*3\r\n$7\r\nmessage\r\n");
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sentinel.getReceived().stream().filter(c -> c.get(0).equals("SUBSCRIBE")).count() < 2) {
+            assertTrue("Timed out waiting to resubscribe", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+
+        // The broken connection wasn't mistaken for an idle one and checked with PING
+        assertFalse(sentinel.getReceived().contains(Collections.singletonList("PING")));
+    }
+
+    @Test
+    public void testSwitchOtherMasterIgnored() throws Exception {
+        factory = builder("mymaster", sentinel).build();
+        factory.onMessage(Arrays.asList("message", "+switch-master",
+            "other 127.0.0.1 1 127.0.0.1 " + second.getPort()));
+        factory.onMessage(Arrays.asList("pong", ""));
+
+        assertEquals(first.getPort(), factory.getMaster().getPort());
+    }
+
+    @Test
+    public void testCreateLooksUpDemotedMaster() {
+        final BlockingQueue<InetSocketAddress> failovers = new LinkedBlockingQueue<>();
+        factory = builder("mymaster", sentinel).build();
+        factory.addFailoverListener(failovers::add);
+
+        // The failover was missed by the subscription
+        firstRole = "slave";
+        masterPort = second.getPort();
+
+        try (RedisConnection connection = factory.create()) {
+            assertEquals("two", RedisCommand.cmd("GET").arg("foo").query(connection).asString());
+        }
+
+        assertEquals(second.getPort(), factory.getMaster().getPort());
+        assertEquals(second.getPort(), failovers.peek().getPort());
+    }
+
+    @Test
+    public void testCreateWithoutRoleCheck() {
+        factory = builder("mymaster", sentinel).checkRole(false).build();
+        firstRole = "slave";
+
+        try (RedisConnection connection = factory.create()) {
+            assertEquals("one", RedisCommand.cmd("GET").arg("foo").query(connection).asString());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCreateAfterClose() {
+        factory = builder("mymaster", sentinel).build();
+        factory.close();
+        factory.create();
+    }
+}
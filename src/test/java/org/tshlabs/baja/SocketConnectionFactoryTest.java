@@ -0,0 +1,35 @@
+package org.tshlabs.baja;
+
+import org.junit.Test;
+import org.tshlabs.baja.exceptions.BajaResourceException;
+
+import java.net.ServerSocket;
+
+import static org.junit.Assert.assertEquals;
+
+public class SocketConnectionFactoryTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTimeout() {
+        new SocketConnectionFactory("localhost", 6379, -1, 0);
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        try (StubRedisServer server = new StubRedisServer(command -> "+PONG\r\n")) {
+            final RedisConnection connection = new SocketConnectionFactory("127.0.0.1", server.getPort()).create();
+            assertEquals("PONG", RedisCommand.cmd("PING").query(connection).asString());
+            connection.close();
+        }
+    }
+
+    @Test(expected = BajaResourceException.class)
+    public void testCreateRefused() throws Exception {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        new SocketConnectionFactory("127.0.0.1", port).create();
+    }
+}
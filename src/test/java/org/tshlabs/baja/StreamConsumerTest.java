@@ -0,0 +1,252 @@
+package org.tshlabs.baja;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.tshlabs.baja.StubRedisServer.await;
+import static org.tshlabs.baja.StubRedisServer.bulk;
+
+public class StreamConsumerTest {
+
+    private static final String NO_CLAIM = "*3\r\n$3\r\n0-0\r\n*0\r\n*0\r\n";
+
+    private StubRedisServer server;
+
+    private StreamConsumer consumer;
+
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+
+    private final Queue<StreamEntry> handled = new ConcurrentLinkedQueue<>();
+
+    private final Queue<RuntimeException> errors = new ConcurrentLinkedQueue<>();
+
+    private volatile String claimReply = NO_CLAIM;
+
+    /**
+     * Reply to XREADGROUP with up to COUNT of the pending entry IDs, each with a
+     * single field, or a null reply after a short wait if there are none.
+     */
+    private String read(List<String> command) throws InterruptedException {
+        final int count = Integer.parseInt(command.get(command.indexOf("COUNT") + 1));
+        final String first = pending.poll(20, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return "*-1\r\n";
+        }
+
+        final List<String> ids = new ArrayList<>();
+        ids.add(first);
+        pending.drainTo(ids, count - 1);
+
+        final StringBuilder out = new StringBuilder("*1\r\n*2\r\n" + bulk("s1") + "*" + ids.size() + "\r\n");
+        for (String id : ids) {
+            out.append("*2\r\n").append(bulk(id)).append("*2\r\n").append(bulk("id")).append(bulk(id));
+        }
+
+        return out.toString();
+    }
+
+    @Before
+    public void setup() throws Exception {
+        server = new StubRedisServer(command -> {
+            switch (command.get(0)) {
+                case "XREADGROUP":
+                    try {
+                        return read(command);
+                    } catch (InterruptedException e) {
+                        return null;
+                    }
+                case "XACK":
+                    return ":" + (command.size() - 3) + "\r\n";
+                case "XAUTOCLAIM":
+                    return claimReply;
+                default:
+                    return "+OK\r\n";
+            }
+        });
+    }
+
+    @After
+    public void teardown() {
+        if (consumer != null) {
+            consumer.close();
+        }
+
+        server.close();
+    }
+
+    private StreamConsumer.Builder builder(Consumer<StreamEntry> handler) {
+        return StreamConsumer.builder(new SocketConnectionFactory("127.0.0.1", server.getPort()), "g", "c1", handler)
+            .streams("s1")
+            .block(50, TimeUnit.MILLISECONDS)
+            .retryInterval(10, TimeUnit.MILLISECONDS)
+            .errorListener(errors::add);
+    }
+
+    private List<String> acked() {
+        final List<String> out = new ArrayList<>();
+        for (List<String> command : server.getReceived()) {
+            if (command.get(0).equals("XACK")) {
+                out.addAll(command.subList(3, command.size()));
+            }
+        }
+
+        return out;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildNoStreams() {
+        StreamConsumer.builder(() -> null, "g", "c1", handled::add).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildInvalidCount() {
+        StreamConsumer.builder(() -> null, "g", "c1", handled::add).streams("s1").count(0).build();
+    }
+
+    @Test
+    public void testReadCommand() throws Exception {
+        consumer = builder(handled::add).streams("s1", "s2").count(10).claimInterval(0, TimeUnit.SECONDS).build();
+
+        await(() -> !server.getReceived().isEmpty());
+        assertEquals(Arrays.asList("XREADGROUP", "GROUP", "g", "c1", "COUNT", "10", "BLOCK", "50",
+            "STREAMS", "s1", "s2", ">", ">"), server.getReceived().peek());
+    }
+
+    @Test
+    public void testProcessAndAcknowledge() throws Exception {
+        pending.addAll(Arrays.asList("1-0", "2-0", "3-0"));
+        consumer = builder(handled::add).claimInterval(0, TimeUnit.SECONDS).build();
+
+        await(() -> consumer.getAcknowledged() == 3);
+        assertEquals(3, consumer.getReceived());
+        assertEquals(3, consumer.getProcessed());
+        assertEquals(0, consumer.getFailed());
+        assertEquals(Arrays.asList("1-0", "2-0", "3-0"), new ArrayList<>(acked()).subList(0, 3));
+
+        final StreamEntry first = handled.stream().filter(e -> e.getId().equals("1-0")).findFirst().get();
+        assertEquals("s1", first.getStream());
+        assertEquals(Collections.singletonMap("id", "1-0"), first.getFields());
+    }
+
+    @Test
+    public void testFailedNotAcknowledged() throws Exception {
+        pending.addAll(Arrays.asList("1-0", "2-0"));
+        consumer = builder(entry -> {
+            if (entry.getId().equals("2-0")) {
+                throw new IllegalStateException("boom");
+            }
+        }).claimInterval(0, TimeUnit.SECONDS).build();
+
+        await(() -> consumer.getAcknowledged() == 1 && consumer.getFailed() == 1);
+        assertEquals(1, consumer.getProcessed());
+        assertFalse(acked().contains("2-0"));
+        assertEquals("boom", errors.peek().getMessage());
+    }
+
+    @Test
+    public void testMaxInFlight() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        pending.addAll(Arrays.asList("1-0", "2-0", "3-0", "4-0"));
+        consumer = builder(entry -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).maxInFlight(2).workers(4).claimInterval(0, TimeUnit.SECONDS).build();
+
+        await(() -> consumer.getInFlight() == 2);
+        Thread.sleep(100);
+        assertEquals(2, consumer.getReceived());
+        assertEquals(2, pending.size());
+
+        release.countDown();
+        await(() -> consumer.getAcknowledged() == 4);
+    }
+
+    @Test
+    public void testClaim() throws Exception {
+        claimReply = "*3\r\n" + bulk("7-0") + "*2\r\n" +
+            "*2\r\n" + bulk("5-0") + "*2\r\n" + bulk("id") + bulk("5-0") +
+            "*2\r\n" + bulk("6-0") + "*-1\r\n" +
+            "*0\r\n";
+        consumer = builder(handled::add).claimMinIdle(5, TimeUnit.SECONDS).build();
+
+        await(() -> consumer.getAcknowledged() == 2);
+        assertEquals(1, consumer.getClaimed());
+        assertEquals(1, handled.size());
+        assertEquals("5-0", handled.peek().getId());
+        assertTrue(acked().containsAll(Arrays.asList("5-0", "6-0")));
+        assertTrue(server.getReceived().contains(
+            Arrays.asList("XAUTOCLAIM", "s1", "g", "c1", "5000", "0-0", "COUNT", "100")));
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        pending.add("1-0");
+        consumer = builder(handled::add).claimInterval(0, TimeUnit.SECONDS).build();
+        await(() -> consumer.getAcknowledged() == 1);
+
+        server.disconnectClients();
+        await(() -> !errors.isEmpty());
+
+        // Let the stub finish with the old connection so it doesn't take the next entry
+        Thread.sleep(50);
+        pending.add("2-0");
+        await(() -> consumer.getAcknowledged() == 2);
+        assertEquals(2, consumer.getProcessed());
+    }
+
+    @Test
+    public void testReconnectWithoutRetryInterval() throws Exception {
+        pending.add("1-0");
+        consumer = builder(handled::add).retryInterval(0, TimeUnit.MILLISECONDS)
+            .claimInterval(0, TimeUnit.SECONDS).build();
+        await(() -> consumer.getAcknowledged() == 1);
+
+        server.disconnectClients();
+        await(() -> !errors.isEmpty());
+
+        Thread.sleep(50);
+        pending.add("2-0");
+        await(() -> consumer.getAcknowledged() == 2);
+    }
+
+    @Test
+    public void testCloseAcknowledgesInFlight() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        pending.add("1-0");
+        consumer = builder(entry -> {
+            started.countDown();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).claimInterval(0, TimeUnit.SECONDS).build();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        consumer.close();
+
+        assertFalse(consumer.isOpen());
+        assertEquals(1, consumer.getProcessed());
+        assertEquals(1, consumer.getAcknowledged());
+        assertEquals(Collections.singletonList("1-0"), acked());
+    }
+}
@@ -0,0 +1,94 @@
+package org.tshlabs.baja;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamEntryDecoderTest {
+
+    private StreamEntryDecoder decoder;
+
+    private static Map<String, String> fields(String... pairs) {
+        final Map<String, String> out = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            out.put(pairs[i], pairs[i + 1]);
+        }
+
+        return out;
+    }
+
+    private void parse(String reply) throws IOException {
+        new RespParser(StandardCharsets.UTF_8).parse(
+            new ByteArrayInputStream(reply.getBytes(StandardCharsets.UTF_8)), decoder);
+    }
+
+    @Before
+    public void setup() {
+        decoder = new StreamEntryDecoder();
+    }
+
+    @Test
+    public void testResp2() throws IOException {
+        parse("*2\r\n" +
+            "*2\r\n$2\r\ns1\r\n*2\r\n" +
+            "*2\r\n$3\r\n1-0\r\n*4\r\n$1\r\na\r\n$1\r\n1\r\n$1\r\nb\r\n$1\r\n2\r\n" +
+            "*2\r\n$3\r\n2-0\r\n*2\r\n$1\r\na\r\n$1\r\n3\r\n" +
+            "*2\r\n$2\r\ns2\r\n*1\r\n" +
+            "*2\r\n$3\r\n1-5\r\n*2\r\n$1\r\nc\r\n:4\r\n");
+
+        assertEquals(Arrays.asList(
+            new StreamEntry("s1", "1-0", fields("a", "1", "b", "2")),
+            new StreamEntry("s1", "2-0", fields("a", "3")),
+            new StreamEntry("s2", "1-5", fields("c", "4"))), decoder.getEntries());
+        assertNull(decoder.getError());
+    }
+
+    @Test
+    public void testResp3() throws IOException {
+        parse("%2\r\n" +
+            "$2\r\ns1\r\n*1\r\n" +
+            "*2\r\n$3\r\n1-0\r\n*2\r\n$1\r\na\r\n$1\r\n1\r\n" +
+            "$2\r\ns2\r\n*1\r\n" +
+            "*2\r\n$3\r\n3-0\r\n*2\r\n$1\r\nb\r\n$1\r\n2\r\n");
+
+        assertEquals(Arrays.asList(
+            new StreamEntry("s1", "1-0", fields("a", "1")),
+            new StreamEntry("s2", "3-0", fields("b", "2"))), decoder.getEntries());
+    }
+
+    @Test
+    public void testTimeout() throws IOException {
+        parse("*-1\r\n");
+
+        assertTrue(decoder.getEntries().isEmpty());
+        assertNull(decoder.getError());
+    }
+
+    @Test
+    public void testDeletedEntry() throws IOException {
+        parse("*1\r\n*2\r\n$2\r\ns1\r\n*1\r\n*2\r\n$3\r\n1-0\r\n*-1\r\n");
+
+        assertEquals(Collections.singletonList(new StreamEntry("s1", "1-0", Collections.emptyMap())),
+            decoder.getEntries());
+    }
+
+    @Test
+    public void testError() throws IOException {
+        parse("-NOGROUP No such key 's1' or consumer group 'g'\r\n");
+
+        assertTrue(decoder.getEntries().isEmpty());
+        assertEquals("NOGROUP No such key 's1' or consumer group 'g'", decoder.getError());
+    }
+}
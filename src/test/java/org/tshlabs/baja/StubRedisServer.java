@@ -0,0 +1,182 @@
+package org.tshlabs.baja;
+
+import org.tshlabs.baja.protocol.RespInputBuffer;
+import org.tshlabs.baja.protocol.RespParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Minimal Redis server stub listening on the loopback interface for tests.
+ * <p>
+ * Each command received is passed to a responder function which returns the
+ * raw RESP encoded reply to write back, or null to not reply at all. Replies
+ * can optionally be written one byte at a time to exercise clients handling
+ * partial reads. Unsolicited replies, such as Pub/Sub messages, can be sent to
+ * every connected client with {@link #broadcast(String)}.
+ */
+public class StubRedisServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+
+    private final Function<List<String>, String> responder;
+
+    private final boolean trickle;
+
+    private final Queue<Socket> clients = new ConcurrentLinkedQueue<>();
+
+    private final Queue<List<String>> received = new ConcurrentLinkedQueue<>();
+
+    public StubRedisServer(Function<List<String>, String> responder) throws IOException {
+        this(responder, false);
+    }
+
+    public StubRedisServer(Function<List<String>, String> responder, boolean trickle) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.responder = responder;
+        this.trickle = trickle;
+
+        final Thread acceptor = new Thread(this::accept, "stub-redis-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Encode the given value as a RESP bulk string for use in a reply.
+     */
+    public static String bulk(String value) {
+        return "$" + value.getBytes(StandardCharsets.UTF_8).length + "\r\n" + value + "\r\n";
+    }
+
+    /**
+     * Wait up to five seconds for the given condition to become true, failing
+     * the test if it doesn't.
+     */
+    public static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for condition", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public Queue<List<String>> getReceived() {
+        return received;
+    }
+
+    /**
+     * Write the given raw RESP encoded data to every connected client.
+     */
+    public void broadcast(String data) {
+        final byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        for (Socket client : clients) {
+            synchronized (client) {
+                try {
+                    client.getOutputStream().write(bytes);
+                    client.getOutputStream().flush();
+                } catch (IOException e) {
+                    // Client went away
+                }
+            }
+        }
+    }
+
+    /**
+     * Close all client connections without stopping the server.
+     */
+    public void disconnectClients() {
+        Socket client;
+        while ((client = clients.poll()) != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // nothing
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        disconnectClients();
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // nothing
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket client = serverSocket.accept();
+                clients.add(client);
+
+                final Thread handler = new Thread(() -> handle(client), "stub-redis-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        try {
+            final InputStream in = new RespInputBuffer(client.getInputStream());
+            final OutputStream out = client.getOutputStream();
+            final RespParser parser = RespParser.getInstance();
+
+            while (true) {
+                parser.findType(in);
+                final List<String> command = parser.readArray(in).stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.toList());
+                received.add(command);
+
+                final String reply = responder.apply(command);
+                if (reply == null) {
+                    continue;
+                }
+
+                final byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+                synchronized (client) {
+                    if (trickle) {
+                        for (byte b : bytes) {
+                            out.write(b);
+                            out.flush();
+                        }
+                    } else {
+                        out.write(bytes);
+                        out.flush();
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Client went away or sent garbage, either way we're done with it
+        }
+    }
+}
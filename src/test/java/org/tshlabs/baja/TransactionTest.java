@@ -73,7 +73,7 @@ public class TransactionTest {
 
     @Test(expected = IllegalStateException.class)
     public void testExecuteEofWhileWrite() {
-        when(connection.writeMultiCommand(anyList()))
+        when(connection.writeRawMultiCommand(anyList()))
             .thenThrow(new IllegalStateException("EOF"));
 
         RedisCommand.cmd("GET").arg("foo").queue(transaction).asLong();
@@ -3,8 +3,16 @@ package org.tshlabs.baja.protocol;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -21,32 +29,6 @@ public class RespEncoderTest {
         this.encoder = new RespEncoder(StandardCharsets.UTF_8);
     }
 
-    @Test
-    public void testGetArrayPreamble() {
-        final List<String> args = new ArrayList<>();
-        args.add("GET");
-        args.add("foobar");
-
-        final byte[] bytes = RespEncoder.getArrayPreamble(args);
-        final String preamble = new String(bytes, StandardCharsets.US_ASCII);
-        assertEquals("*2\r\n", preamble);
-    }
-
-    @Test
-    public void testGetArgPreamble() {
-        final List<String> args = new ArrayList<>();
-        args.add("GET");
-        args.add("foobar");
-
-        final byte[] getBytes = RespEncoder.getArgPreamble(args.get(0));
-        final String getPreamble = new String(getBytes, StandardCharsets.UTF_8);
-        assertEquals("$3\r\n", getPreamble);
-
-        final byte[] fooBytes = RespEncoder.getArgPreamble(args.get(1));
-        final String fooPreamble = new String(fooBytes, StandardCharsets.UTF_8);
-        assertEquals("$6\r\n", fooPreamble);
-    }
-
     @Test(expected = NullPointerException.class)
     public void testEncodeNullInput() {
         encoder.encodeMulti(null);
@@ -86,4 +68,101 @@ public class RespEncoderTest {
         assertArrayEquals(expected, encoder.encodeMulti(Collections.singletonList((args))));
 
     }
+
+    @Test
+    public void testEncodeNonAsciiUsesByteLength() {
+        final List<String> args = new ArrayList<>();
+        args.add("GET");
+        args.add("ئ");
+
+        final byte[] expected = "*2\r\n$3\r\nGET\r\n$2\r\nئ\r\n".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, encoder.encodeMulti(Collections.singletonList(args)));
+    }
+
+    @Test
+    public void testEncodeRawBinary() {
+        final List<RespArgument> args = new ArrayList<>();
+        args.add(RespArgument.of("SET"));
+        args.add(RespArgument.of(new byte[]{'k', 'e', 'y', 'x'}, 0, 3));
+        args.add(RespArgument.of(new byte[]{0, -1, '\r', '\n'}));
+
+        final byte[] expected = new byte[]{
+                '*', '3', '\r', '\n',
+                '$', '3', '\r', '\n', 'S', 'E', 'T', '\r', '\n',
+                '$', '3', '\r', '\n', 'k', 'e', 'y', '\r', '\n',
+                '$', '4', '\r', '\n', 0, -1, '\r', '\n', '\r', '\n'};
+
+        assertArrayEquals(expected, encoder.encodeRawMulti(Collections.singletonList(args)));
+    }
+
+    @Test
+    public void testEncodeMultiToOutputBuffer() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(out, 32);
+
+        final List<List<String>> commands = new ArrayList<>();
+        commands.add(Arrays.asList("SET", "foo", "a value longer than the buffer"));
+        commands.add(Arrays.asList("GET", "foo"));
+
+        encoder.encodeMulti(commands, buffer);
+        buffer.flush();
+
+        final byte[] expected = ("*3\r\n$3\r\nSET\r\n$3\r\nfoo\r\n$30\r\na value longer than the buffer\r\n" +
+                "*2\r\n$3\r\nGET\r\n$3\r\nfoo\r\n").getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    public void testEncodeNonAsciiCompatibleCharset() {
+        final RespEncoder utf16 = new RespEncoder(StandardCharsets.UTF_16BE);
+        final List<String> args = Collections.singletonList("OK");
+
+        final byte[] expected = new byte[]{'*', '1', '\r', '\n', '$', '4', '\r', '\n', 0, 'O', 0, 'K', '\r', '\n'};
+        assertArrayEquals(expected, utf16.encodeMulti(Collections.singletonList(args)));
+    }
+
+    @Test
+    public void testEncodeRawDirectBuffer() {
+        final ByteBuffer value = ByteBuffer.allocateDirect(3);
+        value.put(new byte[]{1, 2, 3}).flip();
+
+        final List<RespArgument> args = new ArrayList<>();
+        args.add(RespArgument.of("ECHO"));
+        args.add(RespArgument.of(value));
+
+        final byte[] expected = new byte[]{
+                '*', '2', '\r', '\n',
+                '$', '4', '\r', '\n', 'E', 'C', 'H', 'O', '\r', '\n',
+                '$', '3', '\r', '\n', 1, 2, 3, '\r', '\n'};
+
+        assertArrayEquals(expected, encoder.encodeRawMulti(Collections.singletonList(args)));
+        assertEquals(0, value.position());
+    }
+
+    @Test
+    public void testEncodeRawStreamed() {
+        final ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(new byte[]{1, 2, 3, 4}));
+
+        final List<RespArgument> args = new ArrayList<>();
+        args.add(RespArgument.of("ECHO"));
+        args.add(RespArgument.of(3, source));
+
+        final byte[] expected = new byte[]{
+                '*', '2', '\r', '\n',
+                '$', '4', '\r', '\n', 'E', 'C', 'H', 'O', '\r', '\n',
+                '$', '3', '\r', '\n', 1, 2, 3, '\r', '\n'};
+
+        assertArrayEquals(expected, encoder.encodeRawMulti(Collections.singletonList(args)));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testEncodeRawStreamedEof() {
+        final ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(new byte[]{1, 2}));
+        encoder.encodeRawMulti(Collections.singletonList(Arrays.asList(RespArgument.of("ECHO"), RespArgument.of(3, source))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStreamedNegativeLength() {
+        RespArgument.of(-1, Channels.newChannel(new ByteArrayInputStream(new byte[0])));
+    }
 }
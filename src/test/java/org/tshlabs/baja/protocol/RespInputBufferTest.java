@@ -0,0 +1,226 @@
+package org.tshlabs.baja.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+public class RespInputBufferTest {
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    /**
+     * Stream that returns at most a single byte per read to make sure that
+     * partial reads from the underlying stream are handled.
+     */
+    private static class TrickleInputStream extends InputStream {
+        private final InputStream delegate;
+
+        private TrickleInputStream(byte[] bytes) {
+            this.delegate = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    private static RespInputBuffer buffer(String contents, int size) {
+        return new RespInputBuffer(new ByteArrayInputStream(contents.getBytes(CHARSET)), size);
+    }
+
+    private static RespInputBuffer trickle(String contents, int size) {
+        return new RespInputBuffer(new TrickleInputStream(contents.getBytes(CHARSET)), size);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new RespInputBuffer(new ByteArrayInputStream(new byte[]{}), 0);
+    }
+
+    @Test
+    public void testReadSingleBytes() throws IOException {
+        final RespInputBuffer in = buffer("ab", 1);
+        assertEquals('a', in.read());
+        assertEquals('b', in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testReadArrayLargerThanBuffer() throws IOException {
+        final RespInputBuffer in = buffer("foobar", 2);
+        final byte[] out = new byte[6];
+        int read = 0;
+        while (read < out.length) {
+            read += in.read(out, read, out.length - read);
+        }
+
+        assertEquals("foobar", new String(out, CHARSET));
+        assertEquals(-1, in.read(out, 0, 1));
+    }
+
+    @Test
+    public void testReadLine() throws IOException {
+        final RespInputBuffer in = buffer("foo\r\nbar\r\n", 64);
+        assertEquals("foo", in.readLine());
+        assertEquals("bar", in.readLine());
+    }
+
+    @Test
+    public void testReadLineGrowsBuffer() throws IOException {
+        final RespInputBuffer in = buffer("a long line of text\r\nx\r\n", 2);
+        assertEquals("a long line of text", in.readLine());
+        assertEquals("x", in.readLine());
+    }
+
+    @Test
+    public void testReadLinePartialReads() throws IOException {
+        final RespInputBuffer in = trickle("foo\r\nbar\r\n", 3);
+        assertEquals("foo", in.readLine());
+        assertEquals("bar", in.readLine());
+    }
+
+    @Test
+    public void testReadLineNonAscii() throws IOException {
+        final RespInputBuffer in = buffer("ئ\r\n", 8);
+        assertEquals("ئ", in.readLine());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadLineEof() throws IOException {
+        buffer("foo", 8).readLine();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadLineMissingLf() throws IOException {
+        buffer("foo\r\0", 8).readLine();
+    }
+
+    @Test
+    public void testReadLongLine() throws IOException {
+        final RespInputBuffer in = trickle("1308\r\n-42\r\n0\r\n", 2);
+        assertEquals(1308L, in.readLongLine());
+        assertEquals(-42L, in.readLongLine());
+        assertEquals(0L, in.readLongLine());
+    }
+
+    @Test
+    public void testParseLongLimits() {
+        final byte[] max = String.valueOf(Long.MAX_VALUE).getBytes(CHARSET);
+        final byte[] min = String.valueOf(Long.MIN_VALUE).getBytes(CHARSET);
+        assertEquals(Long.MAX_VALUE, RespInputBuffer.parseLong(max, 0, max.length));
+        assertEquals(Long.MIN_VALUE, RespInputBuffer.parseLong(min, 0, min.length));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseLongOverflow() {
+        final byte[] bytes = "9223372036854775808".getBytes(CHARSET);
+        RespInputBuffer.parseLong(bytes, 0, bytes.length);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseLongInvalid() {
+        final byte[] bytes = "12a".getBytes(CHARSET);
+        RespInputBuffer.parseLong(bytes, 0, bytes.length);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseLongSignOnly() {
+        final byte[] bytes = "-".getBytes(CHARSET);
+        RespInputBuffer.parseLong(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testSkip() throws IOException {
+        final RespInputBuffer in = trickle("foobarbaz\r\n", 4);
+        assertEquals(6L, in.skip(6));
+        assertEquals("baz", in.readLine());
+        assertEquals(0L, in.skip(10));
+    }
+
+    @Test
+    public void testRequireGrowsBuffer() throws IOException {
+        final RespInputBuffer in = trickle("foobarbaz", 2);
+        in.read();
+        final int start = in.require(8);
+        assertEquals("oobarbaz", new String(in.array(), start, 8, CHARSET));
+    }
+
+    @Test
+    public void testChannelHasCompleteReply() throws IOException {
+        final Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        final RespInputBuffer in = new RespInputBuffer(pipe.source(), 4);
+        final RespParser parser = new RespParser(CHARSET);
+
+        assertEquals(0, in.readAvailable());
+        assertFalse(in.hasCompleteReply());
+
+        pipe.sink().write(ByteBuffer.wrap("*2\r\n$3\r\nfo".getBytes(CHARSET)));
+        while (in.readAvailable() > 0) {
+            // Keep reading until everything written so far is buffered
+        }
+        assertFalse(in.hasCompleteReply());
+
+        pipe.sink().write(ByteBuffer.wrap("o\r\n:7\r\n+OK\r\n".getBytes(CHARSET)));
+        while (in.readAvailable() > 0) {
+            // Keep reading until everything written so far is buffered
+        }
+
+        assertTrue(in.hasCompleteReply());
+        assertEquals(Arrays.asList("foo", 7L), parser.readReply(in));
+        assertTrue(in.hasCompleteReply());
+        assertEquals("OK", parser.readReply(in));
+        assertFalse(in.hasCompleteReply());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testChannelIncompleteReply() throws IOException {
+        final Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        final RespInputBuffer in = new RespInputBuffer(pipe.source());
+
+        pipe.sink().write(ByteBuffer.wrap("$3\r\nfo".getBytes(CHARSET)));
+        in.readAvailable();
+        new RespParser(CHARSET).readReply(in);
+    }
+
+    @Test
+    public void testParserReadArray() throws IOException {
+        final RespParser parser = new RespParser(CHARSET);
+        final RespInputBuffer in = trickle("*3\r\n$3\r\nfoo\r\n:12\r\n+OK\r\n", 4);
+
+        assertEquals(RespType.ARRAY, parser.findType(in));
+        final List<Object> res = parser.readArray(in);
+
+        assertEquals(3, res.size());
+        assertEquals("foo", res.get(0));
+        assertEquals(12L, res.get(1));
+        assertEquals("OK", res.get(2));
+    }
+
+    @Test
+    public void testParserReadBulkStringLargerThanBuffer() throws IOException {
+        final RespParser parser = new RespParser(CHARSET);
+        final RespInputBuffer in = trickle("$11\r\nhello world\r\n", 4);
+
+        assertEquals(RespType.BULK_STRING, parser.findType(in));
+        assertEquals("hello world", parser.readBulkString(in));
+    }
+}
@@ -0,0 +1,227 @@
+package org.tshlabs.baja.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+
+
+public class RespOutputBufferTest {
+
+    private static String contents(ByteArrayOutputStream out) {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeTooSmall() {
+        new RespOutputBuffer(new ByteArrayOutputStream(), 4);
+    }
+
+    @Test
+    public void testWriteHeaderCached() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(out);
+
+        buffer.writeHeader(RespType.ARRAY, 2);
+        buffer.writeHeader(RespType.BULK_STRING, 3);
+        buffer.writeHeader(RespType.BULK_STRING, 6);
+        buffer.flush();
+
+        assertEquals("*2\r\n$3\r\n$6\r\n", contents(out));
+    }
+
+    @Test
+    public void testWriteHeaderLarge() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(out);
+
+        buffer.writeHeader(RespType.BULK_STRING, 1024);
+        buffer.writeHeader(RespType.BULK_STRING, 536870912);
+        buffer.writeHeader(RespType.ARRAY, Long.MAX_VALUE);
+        buffer.writeHeader(RespType.ARRAY, -1);
+        buffer.flush();
+
+        assertEquals("$1024\r\n$536870912\r\n*9223372036854775807\r\n*-1\r\n", contents(out));
+    }
+
+    @Test
+    public void testPutLong() {
+        final long[] values = {0, 7, 10, 99, 100, 12345, -12345, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            final byte[] bytes = new byte[20];
+            final int end = RespOutputBuffer.putLong(bytes, 0, value);
+            assertEquals(String.valueOf(value), new String(bytes, 0, end, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testFlushesWhenFull() throws IOException {
+        final OutputStream out = mock(OutputStream.class);
+        final RespOutputBuffer buffer = new RespOutputBuffer(out, 32);
+
+        buffer.writeAscii("0123456789012345678901234567890123456789");
+        verify(out).write(any(byte[].class), eq(0), eq(32));
+        assertEquals(8, buffer.size());
+    }
+
+    @Test
+    public void testLargeWriteBypassesBuffer() throws IOException {
+        final OutputStream out = mock(OutputStream.class);
+        final RespOutputBuffer buffer = new RespOutputBuffer(out, 32);
+        final byte[] large = new byte[64];
+
+        buffer.write('x');
+        buffer.write(large, 0, large.length);
+
+        // One write to flush the pending byte, then the large array directly
+        verify(out).write(any(byte[].class), eq(0), eq(1));
+        verify(out).write(large, 0, 64);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testWriteDirectByteBuffer() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(out, 32);
+
+        final ByteBuffer small = ByteBuffer.allocateDirect(3);
+        small.put(new byte[]{'a', 'b', 'c'}).flip();
+
+        final ByteBuffer large = ByteBuffer.allocateDirect(40);
+        while (large.hasRemaining()) {
+            large.put((byte) 'z');
+        }
+        large.flip();
+
+        buffer.write(small);
+        buffer.write(large);
+        buffer.flush();
+
+        assertEquals(0, small.position());
+        assertEquals(0, large.position());
+        assertEquals("abc" + "zzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzz", contents(out));
+    }
+
+    @Test
+    public void testWriteToChannel() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(Channels.newChannel(out), 32);
+
+        buffer.writeHeader(RespType.BULK_STRING, 3);
+        buffer.writeAscii("foo");
+        buffer.writeNewline();
+        buffer.flush();
+
+        assertEquals("$3\r\nfoo\r\n", contents(out));
+    }
+
+    @Test
+    public void testResetDiscardsPending() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(out);
+
+        buffer.writeAscii("partial");
+        buffer.reset();
+        buffer.writeAscii("OK");
+        buffer.flush();
+
+        assertArrayEquals("OK".getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testFlushIOException() throws IOException {
+        final OutputStream out = mock(OutputStream.class);
+        doThrow(IOException.class).when(out).write(any(byte[].class), anyInt(), anyInt());
+
+        final RespOutputBuffer buffer = new RespOutputBuffer(out);
+        buffer.writeAscii("OK");
+        buffer.flush();
+    }
+
+    private static Path tempFile(String contents) throws IOException {
+        final Path file = Files.createTempFile("baja", ".tmp");
+        file.toFile().deleteOnExit();
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testTransferFromChannel() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(out, 32);
+        final ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(
+            "a value that is longer than the buffer, plus extra".getBytes(StandardCharsets.UTF_8)));
+
+        buffer.writeAscii("<");
+        buffer.transferFrom(source, 38);
+        buffer.writeAscii(">");
+        buffer.flush();
+
+        assertEquals("<a value that is longer than the buffer>", contents(out));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTransferFromChannelEof() throws IOException {
+        final RespOutputBuffer buffer = new RespOutputBuffer(new ByteArrayOutputStream());
+        buffer.transferFrom(Channels.newChannel(new ByteArrayInputStream(new byte[10])), 11);
+    }
+
+    @Test
+    public void testTransferFromFileToStream() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(out, 32);
+
+        try (FileChannel file = FileChannel.open(tempFile("0123456789 a region longer than the buffer 0123"))) {
+            buffer.writeAscii("<");
+            buffer.transferFrom(file, 11, 31);
+            buffer.writeAscii(">");
+            buffer.flush();
+
+            assertEquals(0, file.position());
+        }
+
+        assertEquals("<a region longer than the buffer>", contents(out));
+    }
+
+    @Test
+    public void testTransferFromFileToChannel() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RespOutputBuffer buffer = new RespOutputBuffer(Channels.newChannel(out), 32);
+
+        try (FileChannel file = FileChannel.open(tempFile("0123456789 a region longer than the buffer 0123"))) {
+            buffer.writeAscii("<");
+            buffer.transferFrom(file, 11, 31);
+            buffer.writeAscii(">");
+            buffer.flush();
+
+            assertEquals(0, file.position());
+        }
+
+        assertEquals("<a region longer than the buffer>", contents(out));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTransferFromFileEof() throws IOException {
+        final RespOutputBuffer buffer = new RespOutputBuffer(Channels.newChannel(new ByteArrayOutputStream()));
+
+        try (FileChannel file = FileChannel.open(tempFile("short"))) {
+            buffer.transferFrom(file, 0, 10);
+        }
+    }
+}
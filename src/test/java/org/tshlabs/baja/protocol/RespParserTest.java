@@ -6,11 +6,18 @@ import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -71,7 +78,7 @@ public class RespParserTest {
 
     @Test(expected = IllegalArgumentException.class)
     public void testFindTypeInvalid() throws IOException {
-        final InputStream inputStream = new ByteArrayInputStream(new byte[]{'#'});
+        final InputStream inputStream = new ByteArrayInputStream(new byte[]{'@'});
         parser.findType(inputStream);
     }
 
@@ -138,8 +145,16 @@ public class RespParserTest {
 
     @Test
     public void testReadBulkStringEmpty() throws IOException {
-        final InputStream inputStream = new ByteArrayInputStream("0\r\n".getBytes(CHARSET));
+        final InputStream inputStream = new ByteArrayInputStream("0\r\n\r\n".getBytes(CHARSET));
+        assertEquals("", parser.readBulkString(inputStream));
+    }
+
+    @Test
+    public void testReadBulkStringEmptyConsumesNewline() throws IOException {
+        final InputStream inputStream = new ByteArrayInputStream("0\r\n\r\n+OK\r\n".getBytes(CHARSET));
         assertEquals("", parser.readBulkString(inputStream));
+        assertEquals(RespType.SIMPLE_STRING, parser.findType(inputStream));
+        assertEquals("OK", parser.readSimpleString(inputStream));
     }
 
     @Test
@@ -162,6 +177,65 @@ public class RespParserTest {
         parser.readBulkString(inputStream);
     }
 
+    @Test
+    public void testReadBulkBytes() throws IOException {
+        final InputStream inputStream = new ByteArrayInputStream("3\r\n\0\1\2\r\n".getBytes(CHARSET));
+        assertArrayEquals(new byte[]{0, 1, 2}, parser.readBulkBytes(inputStream));
+    }
+
+    @Test
+    public void testReadBulkBytesEmpty() throws IOException {
+        final InputStream inputStream = new ByteArrayInputStream("0\r\n\r\n".getBytes(CHARSET));
+        assertArrayEquals(new byte[]{}, parser.readBulkBytes(inputStream));
+    }
+
+    @Test
+    public void testReadBulkBytesNull() throws IOException {
+        final InputStream inputStream = new ByteArrayInputStream("-1\r\n".getBytes(CHARSET));
+        assertNull(parser.readBulkBytes(inputStream));
+    }
+
+    @Test
+    public void testReadBulkByteBufferStream() throws IOException {
+        final InputStream inputStream = new ByteArrayInputStream("6\r\nfoobar\r\n".getBytes(CHARSET));
+        final ByteBuffer buffer = parser.readBulkByteBuffer(inputStream);
+        assertTrue(buffer.isReadOnly());
+        assertEquals("foobar", CHARSET.decode(buffer).toString());
+    }
+
+    @Test
+    public void testReadBulkByteBufferInputBuffer() throws IOException {
+        final InputStream inputStream = new RespInputBuffer(new ByteArrayInputStream(
+                "8\r\nfoo\r\nbar\r\n+OK\r\n".getBytes(CHARSET)), 4);
+        final ByteBuffer buffer = parser.readBulkByteBuffer(inputStream);
+        assertTrue(buffer.isReadOnly());
+        assertEquals("foo\r\nbar", CHARSET.decode(buffer).toString());
+
+        assertEquals(RespType.SIMPLE_STRING, parser.findType(inputStream));
+        assertEquals("OK", parser.readSimpleString(inputStream));
+    }
+
+    @Test
+    public void testReadBulkByteBufferInputBufferNull() throws IOException {
+        final InputStream inputStream = new RespInputBuffer(new ByteArrayInputStream(
+                "-1\r\n".getBytes(CHARSET)));
+        assertNull(parser.readBulkByteBuffer(inputStream));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadBulkByteBufferInputBufferMissingNewline() throws IOException {
+        final InputStream inputStream = new RespInputBuffer(new ByteArrayInputStream(
+                "3\r\nfoobar\r\n".getBytes(CHARSET)));
+        parser.readBulkByteBuffer(inputStream);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadBulkByteBufferInputBufferShort() throws IOException {
+        final InputStream inputStream = new RespInputBuffer(new ByteArrayInputStream(
+                "1024\r\nfoo\r\n".getBytes(CHARSET)));
+        parser.readBulkByteBuffer(inputStream);
+    }
+
     @Test
     public void testReadArrayEmpty() throws IOException {
         final InputStream inputStream = new ByteArrayInputStream("0\r\n".getBytes(CHARSET));
@@ -289,4 +363,259 @@ public class RespParserTest {
         final InputStream inputStream = new ByteArrayInputStream(new byte[]{});
         RespParser.readLine(inputStream);
     }
+
+    /**
+     * Handler that records each callback as a string so that the sequence of
+     * callbacks can be compared.
+     */
+    private static class RecordingHandler implements RespHandler {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onArrayStart(long length) {
+            events.add("array:" + length);
+        }
+
+        @Override
+        public void onArrayEnd() {
+            events.add("end");
+        }
+
+        @Override
+        public void onBulk(byte[] bytes, int offset, int length) {
+            events.add("bulk:" + new String(bytes, offset, length, CHARSET));
+        }
+
+        @Override
+        public void onSimpleString(byte[] bytes, int offset, int length) {
+            events.add("simple:" + new String(bytes, offset, length, CHARSET));
+        }
+
+        @Override
+        public void onInteger(long value) {
+            events.add("int:" + value);
+        }
+
+        @Override
+        public void onError(String message) {
+            events.add("error:" + message);
+        }
+
+        @Override
+        public void onNull() {
+            events.add("null");
+        }
+    }
+
+    private static final String MIXED_REPLY =
+        "*6\r\n$8\r\nfoo\r\nbar\r\n:-42\r\n+OK\r\n-ERR bad\r\n$-1\r\n*2\r\n*-1\r\n$0\r\n\r\n";
+
+    private static final List<String> MIXED_EVENTS = Arrays.asList(
+        "array:6", "bulk:foo\r\nbar", "int:-42", "simple:OK", "error:ERR bad", "null",
+        "array:2", "null", "bulk:", "end", "end");
+
+    @Test
+    public void testParseInputBuffer() throws IOException {
+        final RespInputBuffer in = new RespInputBuffer(new ByteArrayInputStream(
+            (MIXED_REPLY + ":1\r\n").getBytes(CHARSET)), 4);
+        final RecordingHandler handler = new RecordingHandler();
+
+        parser.parse(in, handler);
+        assertEquals(MIXED_EVENTS, handler.events);
+
+        // Make sure exactly one reply was consumed
+        assertEquals(1L, parser.readReply(in));
+    }
+
+    @Test
+    public void testParsePlainStream() throws IOException {
+        final InputStream in = new ByteArrayInputStream((MIXED_REPLY + ":1\r\n").getBytes(CHARSET));
+        final RecordingHandler handler = new RecordingHandler();
+
+        parser.parse(in, handler);
+        assertEquals(MIXED_EVENTS, handler.events);
+        assertEquals(1L, parser.readReply(in));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testParseBulkMissingNewline() throws IOException {
+        final RespInputBuffer in = new RespInputBuffer(new ByteArrayInputStream("$3\r\nfooxx".getBytes(CHARSET)));
+        parser.parse(in, new RecordingHandler());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testParseEof() throws IOException {
+        final RespInputBuffer in = new RespInputBuffer(new ByteArrayInputStream("*2\r\n:1\r\n".getBytes(CHARSET)));
+        parser.parse(in, new RecordingHandler());
+    }
+
+    private static String repeat(char c, int n) {
+        final char[] chars = new char[n];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void testTransferBulkInputBufferDoesNotGrow() throws IOException {
+        final String payload = repeat('x', 1000);
+        final RespInputBuffer in = new RespInputBuffer(new ByteArrayInputStream(
+            ("1000\r\n" + payload + "\r\n:1\r\n").getBytes(CHARSET)), 16);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(1000L, parser.transferBulk(in, out));
+        assertEquals(payload, new String(out.toByteArray(), CHARSET));
+        assertEquals(16, in.array().length);
+        assertEquals(1L, parser.readReply(in));
+    }
+
+    @Test
+    public void testTransferBulkPlainStream() throws IOException {
+        final String payload = repeat('y', 20000);
+        final InputStream in = new ByteArrayInputStream(("20000\r\n" + payload + "\r\n:1\r\n").getBytes(CHARSET));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(20000L, parser.transferBulk(in, out));
+        assertEquals(payload, new String(out.toByteArray(), CHARSET));
+        assertEquals(1L, parser.readReply(in));
+    }
+
+    @Test
+    public void testTransferBulkNull() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(-1L, parser.transferBulk(new ByteArrayInputStream("-1\r\n".getBytes(CHARSET)), out));
+        assertEquals(0, out.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTransferBulkEof() throws IOException {
+        parser.transferBulk(new ByteArrayInputStream("10\r\nabc".getBytes(CHARSET)), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testReadBulkStreamFully() throws IOException {
+        final RespInputBuffer in = new RespInputBuffer(new ByteArrayInputStream(
+            "8\r\nfoo\r\nbar\r\n:1\r\n".getBytes(CHARSET)), 4);
+        final InputStream bulk = parser.readBulkStream(in);
+
+        final byte[] out = new byte[8];
+        int read = 0;
+        int n;
+        while ((n = bulk.read(out, read, out.length - read)) > 0) {
+            read += n;
+        }
+
+        assertEquals("foo\r\nbar", new String(out, 0, read, CHARSET));
+        assertEquals(-1, bulk.read());
+        bulk.close();
+        assertEquals(1L, parser.readReply(in));
+    }
+
+    @Test
+    public void testReadBulkStreamCloseEarly() throws IOException {
+        final InputStream in = new ByteArrayInputStream("6\r\nfoobar\r\n:1\r\n".getBytes(CHARSET));
+        final InputStream bulk = parser.readBulkStream(in);
+
+        assertEquals('f', bulk.read());
+        bulk.close();
+        assertEquals(1L, parser.readReply(in));
+    }
+
+    @Test
+    public void testReadBulkStreamEmpty() throws IOException {
+        final InputStream in = new ByteArrayInputStream("0\r\n\r\n:1\r\n".getBytes(CHARSET));
+        final InputStream bulk = parser.readBulkStream(in);
+
+        assertEquals(-1, bulk.read());
+        bulk.close();
+        assertEquals(1L, parser.readReply(in));
+    }
+
+    @Test
+    public void testReadBulkStreamNull() throws IOException {
+        assertNull(parser.readBulkStream(new ByteArrayInputStream("-1\r\n".getBytes(CHARSET))));
+    }
+
+    @Test
+    public void testReadMap() throws IOException {
+        final InputStream in = new ByteArrayInputStream(
+            "2\r\n+first\r\n:1\r\n$6\r\nsecond\r\n#t\r\n".getBytes(CHARSET));
+        final Map<Object, Object> res = parser.readMap(in);
+
+        assertEquals(Arrays.asList("first", "second"), new ArrayList<>(res.keySet()));
+        assertEquals(1L, res.get("first"));
+        assertEquals(true, res.get("second"));
+    }
+
+    @Test
+    public void testReadSet() throws IOException {
+        final InputStream in = new ByteArrayInputStream("3\r\n+a\r\n+b\r\n+a\r\n".getBytes(CHARSET));
+        final Set<Object> res = parser.readSet(in);
+
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(res));
+    }
+
+    @Test
+    public void testReadDouble() throws IOException {
+        assertEquals(3.14, parser.readDouble(new ByteArrayInputStream("3.14\r\n".getBytes(CHARSET))), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY,
+            parser.readDouble(new ByteArrayInputStream("-inf\r\n".getBytes(CHARSET))), 0.0);
+        assertTrue(Double.isNaN(parser.readDouble(new ByteArrayInputStream("nan\r\n".getBytes(CHARSET)))));
+    }
+
+    @Test
+    public void testReadBigNumber() throws IOException {
+        final InputStream in = new ByteArrayInputStream(
+            "3492890328409238509324850943850943825024385\r\n".getBytes(CHARSET));
+        assertEquals(new BigInteger("3492890328409238509324850943850943825024385"), parser.readBigNumber(in));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadBooleanInvalid() throws IOException {
+        parser.readBoolean(new ByteArrayInputStream("x\r\n".getBytes(CHARSET)));
+    }
+
+    @Test
+    public void testReadVerbatimString() throws IOException {
+        final InputStream in = new ByteArrayInputStream("15\r\ntxt:Some string\r\n".getBytes(CHARSET));
+        assertEquals("Some string", parser.readVerbatimString(in));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadVerbatimStringNoPrefix() throws IOException {
+        parser.readVerbatimString(new ByteArrayInputStream("2\r\nab\r\n".getBytes(CHARSET)));
+    }
+
+    @Test
+    public void testReadReplyResp3() throws IOException {
+        final InputStream in = new ByteArrayInputStream(
+            ("_\r\n!10\r\nSYNTAX bad\r\n|1\r\n+ttl\r\n:3600\r\n:42\r\n" +
+                ">2\r\n+invalidate\r\n*1\r\n$3\r\nfoo\r\n").getBytes(CHARSET));
+
+        assertNull(parser.readReply(in));
+        assertEquals("SYNTAX bad", ((RespErrResponse) parser.readReply(in)).getMessage());
+        assertEquals(42L, parser.readReply(in));
+
+        final RespPush push = (RespPush) parser.readReply(in);
+        assertEquals("invalidate", push.getKind());
+        assertEquals(Arrays.asList("foo"), push.getValues().get(1));
+    }
+
+    private static final String RESP3_REPLY =
+        "%2\r\n+a\r\n,1.5\r\n+b\r\n~1\r\n#f\r\n|1\r\n+k\r\n+v\r\n(12\r\n";
+
+    @Test
+    public void testParseResp3AsResp2() throws IOException {
+        final RespInputBuffer in = new RespInputBuffer(new ByteArrayInputStream(
+            (RESP3_REPLY + "=8\r\ntxt:done\r\n_\r\n").getBytes(CHARSET)), 4);
+        final RecordingHandler handler = new RecordingHandler();
+
+        parser.parse(in, handler);
+        parser.parse(in, handler);
+        parser.parse(in, handler);
+        parser.parse(in, handler);
+
+        assertEquals(Arrays.asList(
+            "array:4", "simple:a", "simple:1.5", "simple:b", "array:1", "int:0", "end", "end",
+            "simple:12", "bulk:done", "null"), handler.events);
+    }
 }
@@ -0,0 +1,102 @@
+package org.tshlabs.baja.protocol;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class RespReplyScannerTest {
+
+    private RespReplyScanner scanner;
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Feed the reply to the scanner one byte at a time, making sure it is only
+     * complete once all bytes have been seen.
+     */
+    private void assertCompleteOnlyAtEnd(String reply) {
+        final byte[] bytes = bytes(reply);
+        for (int end = 0; end < bytes.length; end++) {
+            assertEquals("Complete after " + end + " bytes", -1, scanner.scan(bytes, 0, end));
+        }
+
+        assertEquals(bytes.length, scanner.scan(bytes, 0, bytes.length));
+    }
+
+    @Before
+    public void setup() {
+        scanner = new RespReplyScanner();
+    }
+
+    @Test
+    public void testSimpleTypes() {
+        assertCompleteOnlyAtEnd("+OK\r\n");
+        assertCompleteOnlyAtEnd("-ERR bad\r\n");
+        assertCompleteOnlyAtEnd(":1234\r\n");
+    }
+
+    @Test
+    public void testBulkStrings() {
+        assertCompleteOnlyAtEnd("$8\r\nfoo\r\nbar\r\n");
+        assertCompleteOnlyAtEnd("$0\r\n\r\n");
+        assertCompleteOnlyAtEnd("$-1\r\n");
+    }
+
+    @Test
+    public void testArrays() {
+        assertCompleteOnlyAtEnd("*0\r\n");
+        assertCompleteOnlyAtEnd("*-1\r\n");
+        assertCompleteOnlyAtEnd("*3\r\n$3\r\nfoo\r\n:1\r\n$-1\r\n");
+        assertCompleteOnlyAtEnd("*2\r\n*2\r\n:1\r\n*1\r\n+a\r\n*0\r\n");
+    }
+
+    @Test
+    public void testResp3Types() {
+        assertCompleteOnlyAtEnd("_\r\n");
+        assertCompleteOnlyAtEnd(",3.14\r\n");
+        assertCompleteOnlyAtEnd("=8\r\ntxt:a\r\nb\r\n");
+        assertCompleteOnlyAtEnd("%2\r\n+a\r\n:1\r\n+b\r\n~1\r\n#t\r\n");
+        assertCompleteOnlyAtEnd(">2\r\n+invalidate\r\n*1\r\n$3\r\nfoo\r\n");
+        assertCompleteOnlyAtEnd("|1\r\n+ttl\r\n:10\r\n:42\r\n");
+    }
+
+    @Test
+    public void testOnlyFirstReply() {
+        final byte[] bytes = bytes("+OK\r\n:1\r\n");
+        assertEquals(5, scanner.scan(bytes, 0, bytes.length));
+        assertEquals(4, scanner.scan(bytes, 5, bytes.length));
+    }
+
+    @Test
+    public void testStartMoves() {
+        final byte[] first = bytes("xx*2\r\n$3\r\nfo");
+        assertEquals(-1, scanner.scan(first, 2, first.length));
+
+        // Same reply, compacted to the start of a new buffer with more data
+        final byte[] second = bytes("*2\r\n$3\r\nfoo\r\n:1\r\n");
+        assertEquals(second.length, scanner.scan(second, 0, second.length));
+    }
+
+    @Test
+    public void testDeeplyNested() {
+        final StringBuilder reply = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            reply.append("*1\r\n");
+        }
+        reply.append(":1\r\n");
+
+        assertCompleteOnlyAtEnd(reply.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidType() {
+        final byte[] bytes = bytes("@foo\r\n");
+        scanner.scan(bytes, 0, bytes.length);
+    }
+}
@@ -33,9 +33,23 @@ public class RespTypeTest {
         assertEquals(RespType.SIMPLE_STRING, RespType.lookup('+').get());
     }
 
+    @Test
+    public void testByteLookupResp3() {
+        assertEquals(RespType.MAP, RespType.lookup('%').get());
+        assertEquals(RespType.SET, RespType.lookup('~').get());
+        assertEquals(RespType.DOUBLE, RespType.lookup(',').get());
+        assertEquals(RespType.BIG_NUMBER, RespType.lookup('(').get());
+        assertEquals(RespType.BOOLEAN, RespType.lookup('#').get());
+        assertEquals(RespType.NULL, RespType.lookup('_').get());
+        assertEquals(RespType.VERBATIM_STRING, RespType.lookup('=').get());
+        assertEquals(RespType.BLOB_ERROR, RespType.lookup('!').get());
+        assertEquals(RespType.ATTRIBUTE, RespType.lookup('|').get());
+        assertEquals(RespType.PUSH, RespType.lookup('>').get());
+    }
+
     @Test
     public void testByteLookupInvalid() {
-        assertFalse(RespType.lookup('%').isPresent());
+        assertFalse(RespType.lookup('@').isPresent());
     }
 
     @Test
@@ -63,8 +77,13 @@ public class RespTypeTest {
         assertEquals(RespType.SIMPLE_STRING, RespType.lookup("+").get());
     }
 
+    @Test
+    public void testStringLookupMap() {
+        assertEquals(RespType.MAP, RespType.lookup("%").get());
+    }
+
     @Test
     public void testStringLookupInvalid() {
-        assertFalse(RespType.lookup("%").isPresent());
+        assertFalse(RespType.lookup("@").isPresent());
     }
 }